@@ -0,0 +1,94 @@
+package com.savora.api.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files (e.g. two BenchmarkRunner runs) by
+ * benchmark and parameters:
+ *
+ *   -Djmh.main=com.savora.api.benchmark.BenchmarkComparison
+ *   -Djmh.args="benchmark-results/old.json benchmark-results/new.json [threshold-percent]"
+ *
+ * A benchmark regressed if it got worse by more than the threshold (default
+ * 5%) and by more than both runs' error margins; the exit status is 1 if any
+ * did. Throughput scores are better higher, time scores lower.
+ */
+public final class BenchmarkComparison {
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparison <base.json> <head.json> [threshold-percent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        Map<String, JsonNode> base = load(args[0]);
+        Map<String, JsonNode> head = load(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Base", "Head", "Change");
+        for (Map.Entry<String, JsonNode> entry : head.entrySet()) {
+            JsonNode after = entry.getValue();
+            JsonNode before = base.get(entry.getKey());
+            String unit = after.path("primaryMetric").path("scoreUnit").asText();
+            double headScore = after.path("primaryMetric").path("score").asDouble();
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s  %s%n", entry.getKey(), "-", headScore, "new", unit);
+                continue;
+            }
+            double baseScore = before.path("primaryMetric").path("score").asDouble();
+            double change = (headScore - baseScore) / baseScore * 100;
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            double worse = higherIsBetter ? -change : change;
+            double noise = scoreError(before) + scoreError(after);
+            boolean regressed = worse > threshold && Math.abs(headScore - baseScore) > noise;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), baseScore, headScore, change,
+                    unit, regressed ? "  REGRESSION" : "");
+        }
+        for (String key : base.keySet()) {
+            if (!head.containsKey(key)) {
+                System.out.printf("%-90s %14s %14s %9s%n", key, "", "-", "removed");
+            }
+        }
+        System.out.println(regressions + " regression(s) beyond " + threshold + "%");
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    // NaN when a run had too few iterations to estimate it
+    private static double scoreError(JsonNode result) {
+        double error = result.path("primaryMetric").path("scoreError").asDouble(0);
+        return Double.isFinite(error) ? error : 0;
+    }
+
+    // Keyed by benchmark name and its parameters, in name order
+    private static Map<String, JsonNode> load(String file) throws IOException {
+        Map<String, JsonNode> results = new TreeMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(Paths.get(file).toFile())) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.savora.api.benchmark.", ""));
+            Map<String, String> params = new LinkedHashMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = result.path("params").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            if (!params.isEmpty()) {
+                key.append(params);
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,56 @@
+package com.savora.api.benchmark;
+
+import org.openjdk.jmh.Main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JMH's Main, plus a JSON result file per run: benchmark-results/<commit>.json
+ * (git describe --always --dirty) unless -rf/-rff are given. Compare two of
+ * them with BenchmarkComparison.
+ */
+public final class BenchmarkRunner {
+
+    static final Path RESULTS = Paths.get("benchmark-results");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf") && !jmhArgs.contains("-rff")) {
+            Files.createDirectories(RESULTS);
+            Path result = RESULTS.resolve(commit() + ".json");
+            jmhArgs.addAll(Arrays.asList("-rf", "json", "-rff", result.toString()));
+            System.out.println("Results: " + result.toAbsolutePath());
+        }
+        Main.main(jmhArgs.toArray(new String[0]));
+    }
+
+    private static String commit() {
+        try {
+            Process git = new ProcessBuilder("git", "describe", "--always", "--dirty").redirectErrorStream(true).start();
+            try (BufferedReader output = new BufferedReader(
+                    new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = output.readLine();
+                if (git.waitFor() == 0 && line != null && !line.isEmpty()) {
+                    return line.trim();
+                }
+            }
+        } catch (IOException e) {
+            // No git: fall through
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "local-" + System.currentTimeMillis();
+    }
+}
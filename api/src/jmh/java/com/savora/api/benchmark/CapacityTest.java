@@ -0,0 +1,730 @@
+package com.savora.api.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop capacity test against a running API:
+ *
+ *   mvn -Pjmh compile exec:exec -Djmh.main=com.savora.api.benchmark.CapacityTest \
+ *       -Djmh.args="url=http://localhost:5000 rate=25,50,100,200 seconds=30"
+ *
+ * Requests go out on a fixed schedule, rate per second, whether or not the
+ * earlier ones have been answered, and each latency is taken from the time
+ * the request was due rather than the time it was sent. A server that
+ * stalls for a second therefore shows that second in every request due
+ * during it, instead of in the one request a waiting client would have had
+ * outstanding (coordinated omission). "service" is the uncorrected time
+ * from send to response; a gap between the two means requests queued.
+ *
+ * Each rate in the list is one step: warmup seconds at that rate, then
+ * seconds measured. Steps stop after the first one whose corrected p99 is
+ * over slo-p99-ms or whose errors are over max-error-pct; the last step
+ * that passed is the capacity of this node for this mix.
+ *
+ * Options, as name=value:
+ *   url            API base URL (http://localhost:5000)
+ *   rate           requests per second, or a comma list of steps (50)
+ *   seconds        measured seconds per step (30)
+ *   warmup         seconds at each rate before measuring (5)
+ *   mix            op:weight list of the synthetic ops (browse:40,filter:20,search:15,recommendations:10,login:3,profile:2,events:10)
+ *   burst          events per events request (50)
+ *   users          load-test accounts registered up front for login, profile and authenticated replays (20)
+ *   replay         JSON lines file of requests to send in order, cycled, instead of the mix
+ *   record         file to write the requests sent to, in the replay format
+ *   slo-p99-ms     corrected p99 a step has to stay under (500)
+ *   max-error-pct  errors a step may have, in percent (1)
+ *   timeout-ms     per request (10000)
+ *   max-in-flight  outstanding requests beyond which new ones count as errors without being sent (5000)
+ *   start          true to launch the API from this classpath first, with the settings below (false)
+ *   seed           of the synthetic mix (42)
+ *
+ * A replay line is {"op":"browse","method":"GET","path":"/api/restaurants/7"},
+ * optionally with "body" (sent as JSON) and "auth":true (sent with the token
+ * of a load-test account). Synthetic requests are drawn from the catalog
+ * the API returns, so run it against a database with restaurants loaded.
+ *
+ * start=true is not a self-contained run. The API still needs a real
+ * PostgreSQL on spring.datasource.url (there are no in-process stand-ins),
+ * and Kafka is pointed at a closed port, so every events request measures
+ * the spill-log path rather than a send to a broker: size event ingest
+ * against a real broker. start=true also turns off the rate limits and
+ * login throttle, which would otherwise answer most of the load with 429.
+ * Against an API started by hand, pass the same:
+ *
+ *   --spring.kafka.bootstrap-servers=localhost:<closed port> --ratelimit.enabled=false
+ *   --auth.login-throttle.enabled=false
+ */
+public class CapacityTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final String DEFAULT_MIX =
+            "browse:40,filter:20,search:15,recommendations:10,login:3,profile:2,events:10";
+    private static final String PASSWORD = "load-test-password";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        URI base = URI.create(options.getOrDefault("url", "http://localhost:5000"));
+        double[] rates = Arrays.stream(options.getOrDefault("rate", "50").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int users = Integer.parseInt(options.getOrDefault("users", "20"));
+        double sloMillis = Double.parseDouble(options.getOrDefault("slo-p99-ms", "500"));
+        double maxErrorPct = Double.parseDouble(options.getOrDefault("max-error-pct", "1"));
+        long timeoutMillis = Long.parseLong(options.getOrDefault("timeout-ms", "10000"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "5000"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        if (Boolean.parseBoolean(options.getOrDefault("start", "false"))) {
+            startApi(client, base);
+        }
+
+        Target target = new Target(client, base, Duration.ofMillis(timeoutMillis));
+        List<Account> accounts = target.accounts(users);
+        Workload workload;
+        if (options.containsKey("replay")) {
+            workload = new Replay(Paths.get(options.get("replay")), accounts);
+        } else {
+            workload = new Synthetic(options.getOrDefault("mix", DEFAULT_MIX), target.catalog(), accounts,
+                    Integer.parseInt(options.getOrDefault("burst", "50")),
+                    Long.parseLong(options.getOrDefault("seed", "42")));
+        }
+        BufferedWriter record = options.containsKey("record")
+                ? Files.newBufferedWriter(Paths.get(options.get("record")), StandardCharsets.UTF_8) : null;
+
+        System.out.printf(Locale.ROOT, "%s, %s, %d s per step after %d s warmup, SLO p99 %.0f ms with %.1f%% errors%n",
+                base, workload, seconds, warmup, sloMillis, maxErrorPct);
+        List<String> summary = new ArrayList<>();
+        double capacity = 0;
+        try {
+            for (double rate : rates) {
+                Step step = run(target, workload, record, rate, warmup, seconds, maxInFlight);
+                step.report();
+                double p99 = step.all.corrected.getValueAtPercentile(99) / 1000.0;
+                boolean pass = p99 <= sloMillis && step.all.errorPct() <= maxErrorPct;
+                summary.add(String.format(Locale.ROOT, "%8.1f %10.1f %10.1f %9.1f %7.2f%%  %s", rate,
+                        step.all.responses() / (double) seconds, step.all.ok() / (double) seconds,
+                        p99, step.all.errorPct(), pass ? "pass" : "FAIL"));
+                if (!pass) {
+                    break;
+                }
+                capacity = rate;
+            }
+        } finally {
+            if (record != null) {
+                record.close();
+            }
+        }
+
+        System.out.println();
+        System.out.println("  offered   answered/s       ok/s   p99 (ms)  errors");
+        summary.forEach(System.out::println);
+        System.out.printf(Locale.ROOT, "Capacity: %s%n", capacity > 0
+                ? String.format(Locale.ROOT, "%.1f requests/s within the SLO", capacity)
+                : "no step met the SLO");
+        System.exit(0);
+    }
+
+    private static Step run(Target target, Workload workload, BufferedWriter record, double rate,
+                            int warmup, int seconds, int maxInFlight) throws IOException, InterruptedException {
+        Step step = new Step(rate, seconds);
+        AtomicInteger inFlight = new AtomicInteger();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; ; i++) {
+            long due = start + Math.round(i * 1e9 / rate);
+            if (due >= end) {
+                break;
+            }
+            // Behind schedule the request goes out at once; its latency still counts from due
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            Request request = workload.next();
+            if (record != null) {
+                record.write(JSON.writeValueAsString(request.toJson()));
+                record.newLine();
+            }
+            boolean measured = due >= measureFrom;
+            if (inFlight.get() >= maxInFlight) {
+                if (measured) {
+                    step.op(request.op).outcome("not sent (max-in-flight)");
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            long sent = System.nanoTime();
+            target.send(request).whenComplete((response, error) -> {
+                long done = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (measured) {
+                    step.op(request.op).record(done - due, done - sent,
+                            response != null ? String.valueOf(response.statusCode()) : outcome(error));
+                }
+            });
+        }
+        long drainUntil = System.nanoTime() + target.timeout.toNanos() + TimeUnit.SECONDS.toNanos(1);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        step.finish();
+        return step;
+    }
+
+    private static String outcome(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof HttpTimeoutException ? "timeout" : cause.getClass().getSimpleName();
+    }
+
+    // The API on this classpath, with Kafka pointed at a closed port and the limits off; PostgreSQL must be running
+    private static void startApi(HttpClient client, URI base) throws IOException, InterruptedException {
+        int kafkaPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            kafkaPort = socket.getLocalPort();
+        }
+        int managementPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            managementPort = socket.getLocalPort();
+        }
+        Path dir = Files.createTempDirectory("savora-capacity");
+        File log = dir.resolve("api.log").toFile();
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "com.savora.api.ApiApplication",
+                "--server.port=" + (base.getPort() > 0 ? base.getPort() : 80),
+                "--management.server.port=" + managementPort,
+                "--spring.kafka.bootstrap-servers=localhost:" + kafkaPort,
+                "--kafka.spill.dir=" + dir.resolve("spill"),
+                "--analytics.archive.dir=" + dir.resolve("archive"),
+                "--ratelimit.enabled=false",
+                "--auth.login-throttle.enabled=false",
+                "--spring.jpa.show-sql=false",
+                "--spring.devtools.restart.enabled=false",
+                "--logging.level.com.savora=INFO"));
+        Process api = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(api::destroy));
+        System.out.printf(Locale.ROOT, "Starting the API, log in %s%n", log);
+        System.out.println("No Kafka: events requests measure the spill log, not a broker");
+
+        HttpRequest health = HttpRequest.newBuilder(URI.create(
+                        base.getScheme() + "://" + base.getHost() + ":" + managementPort + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2)).GET().build();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(3);
+        while (System.nanoTime() < deadline) {
+            if (!api.isAlive()) {
+                throw new IllegalStateException("The API exited with " + api.exitValue() + ", see " + log);
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("The API did not come up within 3 minutes, see " + log);
+    }
+
+    private static final class Target {
+        final HttpClient client;
+        final URI base;
+        final Duration timeout;
+
+        Target(HttpClient client, URI base, Duration timeout) {
+            this.client = client;
+            this.base = base;
+            this.timeout = timeout;
+        }
+
+        CompletableFuture<HttpResponse<Void>> send(Request request) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(request.path)).timeout(timeout);
+            if (request.token != null) {
+                builder.header("Authorization", "Bearer " + request.token);
+            }
+            if (request.body == null) {
+                builder.method(request.method, HttpRequest.BodyPublishers.noBody());
+            } else {
+                builder.header("Content-Type", "application/json")
+                        .method(request.method, HttpRequest.BodyPublishers.ofString(request.body));
+            }
+            return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding());
+        }
+
+        JsonNode call(String method, String path, Object body) throws IOException, InterruptedException {
+            // Setup calls go through the same limits as the load; wait out 429 and 503
+            for (int attempt = 0; ; attempt++) {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(path)).timeout(timeout);
+                if (body == null) {
+                    builder.method(method, HttpRequest.BodyPublishers.noBody());
+                } else {
+                    builder.header("Content-Type", "application/json")
+                            .method(method, HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body)));
+                }
+                HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+                int status = response.statusCode();
+                if ((status == 429 || status == 503) && attempt < 30) {
+                    Thread.sleep(1000);
+                    continue;
+                }
+                JsonNode json = response.body().isEmpty() ? JSON.nullNode() : JSON.readTree(response.body());
+                return status < 300 ? json : JSON.createObjectNode().put("status", status).set("body", json);
+            }
+        }
+
+        Catalog catalog() throws IOException, InterruptedException {
+            JsonNode restaurants = call("GET", "/api/restaurants?sortBy=review_count&sortOrder=desc&limit=1000", null);
+            if (!restaurants.isArray() || restaurants.size() == 0) {
+                throw new IllegalStateException("No restaurants from " + base + "/api/restaurants: " + restaurants);
+            }
+            return new Catalog(restaurants);
+        }
+
+        List<Account> accounts(int count) throws IOException, InterruptedException {
+            List<Account> accounts = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                String email = "loadtest" + i + "@savora.test";
+                Map<String, Object> register = new LinkedHashMap<>();
+                register.put("username", "loadtest" + i);
+                register.put("email", email);
+                register.put("password", PASSWORD);
+                register.put("firstName", "Load");
+                register.put("lastName", "Test " + i);
+                // Fails once the account exists, which is fine
+                call("POST", "/api/auth/register", register);
+
+                Map<String, Object> login = new LinkedHashMap<>();
+                login.put("email", email);
+                login.put("password", PASSWORD);
+                JsonNode response = call("POST", "/api/auth/login", login);
+                if (!response.path("success").asBoolean()) {
+                    throw new IllegalStateException("Cannot log in as " + email + ": " + response);
+                }
+                accounts.add(new Account(response.path("user").path("id").asLong(), email,
+                        response.path("token").asText()));
+            }
+            return accounts;
+        }
+    }
+
+    private static final class Account {
+        final long id;
+        final String email;
+        final String token;
+
+        Account(long id, String email, String token) {
+            this.id = id;
+            this.email = email;
+            this.token = token;
+        }
+    }
+
+    private static final class Request {
+        final String op;
+        final String method;
+        final String path;
+        final String body;
+        final String token;
+
+        Request(String op, String method, String path, String body, String token) {
+            this.op = op;
+            this.method = method;
+            this.path = path;
+            this.body = body;
+            this.token = token;
+        }
+
+        ObjectNode toJson() {
+            ObjectNode json = JSON.createObjectNode().put("op", op).put("method", method).put("path", path);
+            if (body != null) {
+                json.put("body", body);
+            }
+            if (token != null) {
+                json.put("auth", true);
+            }
+            return json;
+        }
+    }
+
+    private interface Workload {
+        // Called from the scheduling thread only
+        Request next() throws IOException;
+    }
+
+    /**
+     * Requests read from a JSON lines file, sent in order and from the top
+     * again when the file runs out
+     */
+    private static final class Replay implements Workload {
+        private final Path file;
+        private final List<Request> requests = new ArrayList<>();
+        private int next;
+
+        Replay(Path file, List<Account> accounts) throws IOException {
+            this.file = file;
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode json = JSON.readTree(line);
+                if (!json.hasNonNull("path")) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + " has no path");
+                }
+                String token = null;
+                if (json.path("auth").asBoolean()) {
+                    if (accounts.isEmpty()) {
+                        throw new IllegalArgumentException(file + ":" + lineNumber + " needs auth; set users above 0");
+                    }
+                    token = accounts.get(requests.size() % accounts.size()).token;
+                }
+                JsonNode body = json.get("body");
+                requests.add(new Request(json.path("op").asText(json.get("path").asText()),
+                        json.path("method").asText("GET"), json.get("path").asText(),
+                        body == null || body.isNull() ? null : body.isTextual() ? body.asText() : body.toString(),
+                        token));
+            }
+            if (requests.isEmpty()) {
+                throw new IllegalArgumentException(file + " has no requests");
+            }
+        }
+
+        @Override
+        public Request next() {
+            Request request = requests.get(next);
+            next = (next + 1) % requests.size();
+            return request;
+        }
+
+        @Override
+        public String toString() {
+            return "replaying " + requests.size() + " requests from " + file;
+        }
+    }
+
+    /**
+     * Restaurants the API returned, to draw ids, categories, price ranges
+     * and search words from
+     */
+    private static final class Catalog {
+        final List<JsonNode> restaurants = new ArrayList<>();
+        final List<String> categories;
+        final List<String> priceRanges;
+        final List<String> words;
+
+        Catalog(JsonNode json) {
+            Set<String> categories = new LinkedHashSet<>();
+            Set<String> priceRanges = new LinkedHashSet<>();
+            Set<String> words = new LinkedHashSet<>();
+            for (JsonNode restaurant : json) {
+                restaurants.add(restaurant);
+                for (String category : restaurant.path("categories").asText("").split(",\\s*")) {
+                    if (!category.isBlank()) {
+                        categories.add(category.trim());
+                    }
+                }
+                if (!restaurant.path("priceRange").asText("").isBlank()) {
+                    priceRanges.add(restaurant.path("priceRange").asText());
+                }
+                for (String word : restaurant.path("name").asText("").split("[^\\p{L}\\p{N}]+")) {
+                    if (word.length() >= 4) {
+                        words.add(word.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            this.categories = new ArrayList<>(categories);
+            this.priceRanges = new ArrayList<>(priceRanges);
+            this.words = new ArrayList<>(words);
+        }
+    }
+
+    /**
+     * Weighted mix of the kinds of request the apps make, with parameters
+     * drawn from the catalog
+     */
+    private static final class Synthetic implements Workload {
+        private final Map<String, Integer> weights = new LinkedHashMap<>();
+        private final Catalog catalog;
+        private final List<Account> accounts;
+        private final int burst;
+        private final Random random;
+        private final String[] ops;
+        private final int[] cumulative;
+        private long events;
+
+        Synthetic(String mix, Catalog catalog, List<Account> accounts, int burst, long seed) {
+            for (String entry : mix.split(",")) {
+                String[] parts = entry.split(":");
+                int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+                if (weight > 0) {
+                    weights.put(parts[0].trim(), weight);
+                }
+            }
+            for (String op : weights.keySet()) {
+                if (!Arrays.asList("browse", "filter", "search", "recommendations", "login", "profile", "events").contains(op)) {
+                    throw new IllegalArgumentException("Unknown op " + op);
+                }
+                if ((op.equals("login") || op.equals("profile")) && accounts.isEmpty()) {
+                    throw new IllegalArgumentException(op + " needs load-test accounts; set users above 0");
+                }
+            }
+            this.catalog = catalog;
+            this.accounts = accounts;
+            this.burst = burst;
+            this.random = new Random(seed);
+            this.ops = weights.keySet().toArray(new String[0]);
+            this.cumulative = new int[ops.length];
+            int total = 0;
+            for (int i = 0; i < ops.length; i++) {
+                total += weights.get(ops[i]);
+                cumulative[i] = total;
+            }
+        }
+
+        @Override
+        public Request next() throws IOException {
+            int pick = random.nextInt(cumulative[cumulative.length - 1]);
+            int i = 0;
+            while (cumulative[i] <= pick) {
+                i++;
+            }
+            String op = ops[i];
+            int variant = random.nextInt(10);
+            switch (op) {
+                case "browse":
+                    if (variant < 6) {
+                        return get(op, "/api/restaurants/" + restaurant().path("id").asLong());
+                    } else if (variant < 8) {
+                        return get(op, "/api/restaurants?sortBy=rating&sortOrder=desc&limit=20");
+                    } else if (variant < 9) {
+                        return get(op, "/api/restaurants/cuisines");
+                    }
+                    return get(op, "/api/restaurants/top-by-cuisine");
+                case "filter":
+                    if (variant < 4) {
+                        return get(op, "/api/restaurants?category=" + encode(pick(catalog.categories))
+                                + "&sortBy=rating&sortOrder=desc&limit=20");
+                    } else if (variant < 6 && !catalog.priceRanges.isEmpty()) {
+                        return get(op, "/api/restaurants?category=" + encode(pick(catalog.categories))
+                                + "&price=" + encode(pick(catalog.priceRanges)) + "&sortBy=review_count&sortOrder=desc&limit=20");
+                    } else if (variant < 8 && !catalog.priceRanges.isEmpty()) {
+                        return get(op, "/api/restaurants/by-price?priceRange=" + encode(pick(catalog.priceRanges)));
+                    }
+                    return get(op, "/api/restaurants/cuisine/" + encode(pick(catalog.categories))
+                            + "?sortBy=rating&sortOrder=desc&limit=20");
+                case "search":
+                    return get(op, "/api/restaurants/search?query=" + encode(pick(catalog.words)));
+                case "recommendations":
+                    if (variant < 7 && !accounts.isEmpty()) {
+                        return get(op, "/api/recommendations/" + pick(accounts).id);
+                    }
+                    return get(op, "/api/recommendations?limit=10");
+                case "login": {
+                    ObjectNode body = JSON.createObjectNode().put("email", pick(accounts).email).put("password", PASSWORD);
+                    return new Request(op, "POST", "/api/auth/login", JSON.writeValueAsString(body), null);
+                }
+                case "profile":
+                    return new Request(op, "GET", "/api/users/me", null, pick(accounts).token);
+                default:
+                    return new Request(op, "POST", "/api/events/batch", JSON.writeValueAsString(eventBurst()), null);
+            }
+        }
+
+        // One session's worth of views and clicks; distinct eventIds, so deduplication keeps them all
+        private ArrayNode eventBurst() {
+            long userId = accounts.isEmpty() ? 1 + random.nextInt(1000) : pick(accounts).id;
+            String session = "load-" + Long.toHexString(random.nextLong());
+            ArrayNode batch = JSON.createArrayNode();
+            for (int i = 0; i < burst; i++) {
+                JsonNode restaurant = restaurant();
+                ObjectNode event = batch.addObject()
+                        .put("eventType", random.nextInt(4) == 0 ? "RESTAURANT_CLICKED" : "RESTAURANT_VIEWED")
+                        .put("userId", userId)
+                        .put("sessionId", session)
+                        .put("eventId", session + "-" + events++);
+                event.putObject("data")
+                        .put("restaurantId", restaurant.path("id").asLong())
+                        .put("restaurantName", restaurant.path("name").asText())
+                        .put("cuisineType", restaurant.path("categories").asText("").split(",")[0].trim());
+            }
+            return batch;
+        }
+
+        private Request get(String op, String path) {
+            return new Request(op, "GET", path, null, null);
+        }
+
+        private JsonNode restaurant() {
+            // Popular restaurants (the list is by review count) get most of the views
+            int size = catalog.restaurants.size();
+            return catalog.restaurants.get(Math.min(size - 1, (int) (size * Math.pow(random.nextDouble(), 2))));
+        }
+
+        private <T> T pick(List<T> values) {
+            return values.get(random.nextInt(values.size()));
+        }
+
+        private static String encode(String value) {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return "synthetic mix " + weights + " over " + catalog.restaurants.size() + " restaurants";
+        }
+    }
+
+    /**
+     * Latencies and outcomes of one step's measured requests, per op
+     */
+    private static final class Step {
+        final double rate;
+        final int seconds;
+        final Map<String, OpStats> ops = new ConcurrentHashMap<>();
+        final Map<String, Totals> results = new TreeMap<>();
+        final Totals all = new Totals();
+
+        Step(double rate, int seconds) {
+            this.rate = rate;
+            this.seconds = seconds;
+        }
+
+        OpStats op(String op) {
+            return ops.computeIfAbsent(op, k -> new OpStats());
+        }
+
+        // Once the step has drained; a Recorder hands out its histogram only once
+        void finish() {
+            ops.forEach((name, stats) -> {
+                Totals totals = new Totals();
+                totals.add(stats);
+                results.put(name, totals);
+                all.add(totals);
+            });
+        }
+
+        void report() {
+            System.out.printf(Locale.ROOT, "%nStep %.1f requests/s (ms; corrected from when each request was due, service from when it was sent)%n", rate);
+            System.out.printf(Locale.ROOT, "%-16s %8s %8s %8s %8s %8s %8s %8s  %s%n",
+                    "op", "count", "p50", "p90", "p99", "p99.9", "max", "svc p99", "outcomes");
+            results.forEach(this::reportRow);
+            reportRow("all", all);
+            System.out.printf(Locale.ROOT, "Throughput %.1f answered/s, %.1f ok/s of %.1f offered; %.2f%% errors%n",
+                    all.responses() / (double) seconds, all.ok() / (double) seconds, rate, all.errorPct());
+        }
+
+        private void reportRow(String name, Totals totals) {
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-16s %8d",
+                    name, totals.corrected.getTotalCount()));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(Locale.ROOT, " %8.1f", totals.corrected.getValueAtPercentile(percentile) / 1000.0));
+            }
+            line.append(String.format(Locale.ROOT, " %8.1f %8.1f  %s", totals.corrected.getMaxValue() / 1000.0,
+                    totals.service.getValueAtPercentile(99) / 1000.0, totals.outcomes));
+            System.out.println(line);
+        }
+    }
+
+    private static final class OpStats {
+        // Microseconds; auto-resizing, 3 significant digits
+        final Recorder corrected = new Recorder(3);
+        final Recorder service = new Recorder(3);
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        void record(long correctedNanos, long serviceNanos, String outcome) {
+            corrected.recordValue(Math.max(1, correctedNanos / 1000));
+            service.recordValue(Math.max(1, serviceNanos / 1000));
+            outcome(outcome);
+        }
+
+        void outcome(String outcome) {
+            outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+        }
+    }
+
+    private static final class Totals {
+        final Histogram corrected = new Histogram(3);
+        final Histogram service = new Histogram(3);
+        final Map<String, Long> outcomes = new TreeMap<>();
+
+        void add(OpStats stats) {
+            corrected.add(stats.corrected.getIntervalHistogram());
+            service.add(stats.service.getIntervalHistogram());
+            stats.outcomes.forEach((outcome, count) -> outcomes.merge(outcome, count.sum(), Long::sum));
+        }
+
+        void add(Totals other) {
+            corrected.add(other.corrected);
+            service.add(other.service);
+            other.outcomes.forEach((outcome, count) -> outcomes.merge(outcome, count, Long::sum));
+        }
+
+        long responses() {
+            return outcomes.entrySet().stream().filter(e -> Character.isDigit(e.getKey().charAt(0)))
+                    .mapToLong(Map.Entry::getValue).sum();
+        }
+
+        long ok() {
+            return outcomes.entrySet().stream().filter(e -> e.getKey().startsWith("2"))
+                    .mapToLong(Map.Entry::getValue).sum();
+        }
+
+        double errorPct() {
+            long total = outcomes.values().stream().mapToLong(Long::longValue).sum();
+            return total == 0 ? 0 : 100.0 * (total - ok()) / total;
+        }
+    }
+}
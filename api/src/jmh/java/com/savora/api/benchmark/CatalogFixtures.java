@@ -0,0 +1,258 @@
+package com.savora.api.benchmark;
+
+import com.savora.api.model.Restaurant;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Restaurant rows shaped like the restaurants table, generated from
+ * data_collection/mankato_restaurants.csv. The first copy of the catalog is
+ * the CSV as is; each further copy moves every restaurant to a nearby town
+ * and jitters its rating, review count and position, and reorders (and now
+ * and then extends) its categories, so the number of distinct category
+ * strings grows with the catalog as it would with real data. The same size
+ * always gives the same rows.
+ *
+ * The CSV is read from -Dsavora.fixtures.csv, or found by walking up from
+ * the working directory.
+ */
+final class CatalogFixtures {
+
+    private static final String CSV = "data_collection/mankato_restaurants.csv";
+
+    // Same rule V2__restaurant_search_indexes.sql uses to fill restaurants.city
+    private static final Pattern CITY = Pattern.compile("([^,]+),\\s*[A-Z]{2}\\s+\\d{5}");
+
+    private static final String[][] TOWNS = {
+        {"Mankato", "MN 56001"}, {"North Mankato", "MN 56003"}, {"St. Peter", "MN 56082"},
+        {"New Ulm", "MN 56073"}, {"Owatonna", "MN 55060"}, {"Faribault", "MN 55021"},
+        {"Rochester", "MN 55901"}, {"Northfield", "MN 55057"}
+    };
+
+    private static List<String[]> csvRows;
+
+    private CatalogFixtures() {
+    }
+
+    /**
+     * size rows keyed by column name, ids 1..size
+     */
+    static List<Map<String, Object>> restaurantRows(int size) {
+        List<String[]> base = csvRows();
+        Random random = new Random(42);
+        List<Map<String, Object>> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String[] source = base.get(i % base.size());
+            int copy = i / base.size();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i + 1);
+            row.put("name", copy == 0 ? source[0] : source[0] + " #" + (copy + 1));
+            row.put("rating", copy == 0 ? parseDouble(source[1])
+                    : Math.round(clamp(parseDouble(source[1]) + random.nextGaussian() * 0.3, 1, 5) * 10) / 10.0);
+            row.put("review_count", copy == 0 ? (int) parseDouble(source[2])
+                    : (int) (parseDouble(source[2]) * Math.exp(random.nextGaussian() * 0.5)));
+            row.put("price_range", source[3]);
+            row.put("categories", copy == 0 ? source[4] : shuffleCategories(source[4], base, random));
+            String address = copy == 0 ? source[5] : moveToTown(source[5], TOWNS[copy % TOWNS.length]);
+            row.put("address", address);
+            Matcher city = CITY.matcher(address == null ? "" : address);
+            row.put("city", city.find() ? city.group(1).trim() : null);
+            row.put("latitude", parseDouble(source[6]) + (copy == 0 ? 0 : (random.nextDouble() - 0.5) / 10));
+            row.put("longitude", parseDouble(source[7]) + (copy == 0 ? 0 : (random.nextDouble() - 0.5) / 10));
+            row.put("phone", copy == 0 ? source[8] : String.format(Locale.ROOT, "1507%07d", random.nextInt(10_000_000)));
+            row.put("url", source[9]);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * The rows as the catalog endpoints return them
+     */
+    static List<Restaurant> restaurants(int size) {
+        try {
+            return new RowMapperResultSetExtractor<>(restaurantServiceMapper(), size)
+                    .extractData(resultSet(restaurantRows(size)));
+        } catch (ReflectiveOperationException | SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The row mapper nested in RestaurantService, which the catalog endpoints use
+     */
+    @SuppressWarnings("unchecked")
+    static RowMapper<Restaurant> restaurantServiceMapper() throws ReflectiveOperationException {
+        Constructor<?> constructor = Class.forName("com.savora.api.service.RestaurantService$RestaurantRowMapper")
+                .getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return (RowMapper<Restaurant>) constructor.newInstance();
+    }
+
+    /**
+     * A forward-only ResultSet over the rows, answering the getters a
+     * RowMapper calls; unknown columns fail like the PostgreSQL driver's
+     */
+    static ResultSet resultSet(List<Map<String, Object>> rows) {
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(CatalogFixtures.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.size();
+                        case "getRow":
+                            return cursor[0] + 1;
+                        case "wasNull":
+                            return wasNull[0];
+                        case "close":
+                            return null;
+                        default:
+                            break;
+                    }
+                    if (args == null || args.length != 1 || !(args[0] instanceof String)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    Map<String, Object> row = rows.get(cursor[0]);
+                    String column = (String) args[0];
+                    if (!row.containsKey(column)) {
+                        throw new SQLException("The column name " + column + " was not found in this ResultSet.", "42703");
+                    }
+                    Object value = row.get(column);
+                    wasNull[0] = value == null;
+                    switch (method.getName()) {
+                        case "getString":
+                            return value == null ? null : value.toString();
+                        case "getLong":
+                            return value == null ? 0L : ((Number) value).longValue();
+                        case "getInt":
+                            return value == null ? 0 : ((Number) value).intValue();
+                        case "getDouble":
+                            return value == null ? 0.0 : ((Number) value).doubleValue();
+                        case "getFloat":
+                            return value == null ? 0.0f : ((Number) value).floatValue();
+                        case "getObject":
+                            return value;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static synchronized List<String[]> csvRows() {
+        if (csvRows == null) {
+            try {
+                List<String> lines = Files.readAllLines(locateCsv(), StandardCharsets.UTF_8);
+                List<String[]> rows = new ArrayList<>();
+                for (String line : lines.subList(1, lines.size())) {
+                    if (!line.isEmpty()) {
+                        rows.add(parseCsvLine(line));
+                    }
+                }
+                csvRows = Collections.unmodifiableList(rows);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read " + CSV, e);
+            }
+        }
+        return csvRows;
+    }
+
+    private static Path locateCsv() {
+        String configured = System.getProperty("savora.fixtures.csv");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        for (Path dir = Paths.get("").toAbsolutePath(); dir != null; dir = dir.getParent()) {
+            Path candidate = dir.resolve(CSV);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException(CSV + " not found above " + Paths.get("").toAbsolutePath()
+                + "; set -Dsavora.fixtures.csv");
+    }
+
+    // RFC 4180: fields may be quoted, quotes inside doubled
+    static String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        while (fields.size() < 10) {
+            fields.add("");
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    private static String shuffleCategories(String categories, List<String[]> base, Random random) {
+        List<String> parts = new ArrayList<>(Arrays.asList(categories.split(",\\s*")));
+        Collections.shuffle(parts, random);
+        if (random.nextInt(4) == 0) {
+            String[] other = base.get(random.nextInt(base.size()))[4].split(",\\s*");
+            String extra = other[random.nextInt(other.length)];
+            if (!parts.contains(extra)) {
+                parts.add(extra);
+            }
+        }
+        return String.join(", ", parts);
+    }
+
+    private static String moveToTown(String address, String[] town) {
+        if (address == null) {
+            return null;
+        }
+        return CITY.matcher(address).replaceFirst(" " + town[0] + ", " + town[1]).trim();
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
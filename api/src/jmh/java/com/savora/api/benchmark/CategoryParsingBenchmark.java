@@ -0,0 +1,88 @@
+package com.savora.api.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting the comma-separated restaurants.categories into cuisines.
+ * "distinctCuisines" is how getAllCuisines built its list, over the
+ * distinct category strings, before V5 moved it into cuisine_stats;
+ * "cuisineIndex" is the same split as UserAffinityService.loadCatalog does
+ * it over every restaurant when it builds the cuisine vectors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryParsingBenchmark {
+
+    @Param({"1000", "20000"})
+    private int restaurants;
+
+    private List<String> categories;
+    private List<String> distinctCategories;
+
+    @Setup
+    public void setUp() {
+        categories = new ArrayList<>(restaurants);
+        for (Map<String, Object> row : CatalogFixtures.restaurantRows(restaurants)) {
+            categories.add((String) row.get("categories"));
+        }
+        distinctCategories = new ArrayList<>(new LinkedHashSet<>(categories));
+    }
+
+    @Benchmark
+    public List<String> distinctCuisines() {
+        Set<String> uniqueCuisines = new HashSet<>();
+        for (String value : distinctCategories) {
+            if (value != null && !value.isEmpty()) {
+                for (String part : value.split(",")) {
+                    String cuisine = part.trim();
+                    if (!cuisine.isEmpty()) {
+                        uniqueCuisines.add(cuisine);
+                    }
+                }
+            }
+        }
+        List<String> cuisines = new ArrayList<>(uniqueCuisines);
+        cuisines.sort(String::compareToIgnoreCase);
+        return cuisines;
+    }
+
+    @Benchmark
+    public Map<String, Integer> cuisineIndex() {
+        Map<String, Integer> cuisineIndex = new HashMap<>();
+        for (String value : categories) {
+            if (value != null) {
+                for (String part : value.split(",")) {
+                    String cuisine = part.trim().toLowerCase(Locale.ROOT);
+                    if (!cuisine.isEmpty()) {
+                        cuisineIndex.computeIfAbsent(cuisine, c -> cuisineIndex.size());
+                    }
+                }
+            }
+        }
+        return cuisineIndex;
+    }
+}
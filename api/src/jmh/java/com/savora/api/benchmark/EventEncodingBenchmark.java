@@ -0,0 +1,123 @@
+package com.savora.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.config.EventSchemaConfig;
+import com.savora.api.model.Event;
+import com.savora.api.service.EventCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON strings (today's wire format) against the schema-based binary form,
+ * per event type. Run main() for the message-size table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventEncodingBenchmark {
+
+    static final String[] EVENT_TYPES = {
+        "CUISINE_SELECTED", "DIETARY_PREFERENCE_SELECTED", "RESTAURANT_VIEWED",
+        "RESTAURANT_BOOKMARKED", "SEARCH_PERFORMED"
+    };
+
+    @Param({"CUISINE_SELECTED", "DIETARY_PREFERENCE_SELECTED", "RESTAURANT_VIEWED",
+            "RESTAURANT_BOOKMARKED", "SEARCH_PERFORMED"})
+    private String eventType;
+
+    private ObjectMapper objectMapper;
+    private EventCodec codec;
+    private Event event;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper();
+        codec = newCodec(objectMapper);
+        event = sampleEvent(eventType);
+        json = objectMapper.writeValueAsString(event);
+        binary = codec.encodeBinary(event);
+    }
+
+    @Benchmark
+    public String jsonEncode() throws IOException {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public Event jsonDecode() throws IOException {
+        return objectMapper.readValue(json, Event.class);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return codec.encodeBinary(event);
+    }
+
+    @Benchmark
+    public Event binaryDecode() {
+        return codec.decode(binary);
+    }
+
+    static EventCodec newCodec(ObjectMapper objectMapper) throws IOException {
+        return new EventCodec(objectMapper,
+                EventSchemaConfig.load(objectMapper, "classpath:event-schemas/*.json"), "binary");
+    }
+
+    static Event sampleEvent(String eventType) {
+        Event event = new Event();
+        event.setEventType(eventType);
+        event.setTimestamp("2024-03-01T18:42:07.123Z");
+        event.setUserId(1042L);
+        switch (eventType) {
+            case "CUISINE_SELECTED":
+                event.setData("cuisineType", "Italian");
+                break;
+            case "DIETARY_PREFERENCE_SELECTED":
+                event.setData("preference", "Vegetarian");
+                break;
+            case "RESTAURANT_BOOKMARKED":
+                event.setData("bookmarked", true);
+                // fall through
+            case "RESTAURANT_VIEWED":
+                event.setData("restaurantId", 17);
+                event.setData("restaurantName", "Pagliai's Pizza");
+                break;
+            default:
+                event.setData("location", "Mankato, MN");
+                event.setData("date", "2024-03-02");
+        }
+        return event;
+    }
+
+    public static void main(String[] args) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        EventCodec codec = newCodec(objectMapper);
+        System.out.printf(Locale.ROOT, "%-30s %6s %7s %6s%n", "event type", "json", "binary", "ratio");
+        for (String eventType : EVENT_TYPES) {
+            Event event = sampleEvent(eventType);
+            int jsonBytes = objectMapper.writeValueAsString(event).getBytes(StandardCharsets.UTF_8).length;
+            int binaryBytes = codec.encodeBinary(event).length;
+            System.out.printf(Locale.ROOT, "%-30s %6d %7d %5.1fx%n", eventType, jsonBytes, binaryBytes,
+                    (double) jsonBytes / binaryBytes);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.savora.api.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for the isolation of event ingestion from the other endpoints,
+ * against a running API:
+ *
+ *   mvn -Pjmh compile
+ *   java -cp target/classes com.savora.api.benchmark.EventIngestLoadTest \
+ *       http://localhost:5000 [flood clients] [upload ms] [probe path] [seconds]
+ *
+ * A probe requests a non-event endpoint (default /api/restaurants) one call
+ * at a time, first alone and then while flood clients post events to
+ * /api/events. Each flood client uploads its body in four parts spread over
+ * the upload time, like a phone on a poor connection, which is what holds a
+ * blocking worker longest. Compare probe latency between the phases, and
+ * between events.ingest.non-blocking=true and false; with a per-IP rate
+ * limit in front, run with ratelimit.enabled=false to load the handler
+ * itself.
+ */
+public class EventIngestLoadTest {
+
+    private static final String EVENT = "{\"eventType\":\"RESTAURANT_VIEWED\",\"userId\":%d,"
+            + "\"data\":{\"restaurantId\":%d,\"restaurantName\":\"Load test restaurant\",\"cuisineType\":\"Thai\"}}";
+
+    public static void main(String[] args) throws Exception {
+        URI base = URI.create(args.length > 0 ? args[0] : "http://localhost:5000");
+        int floodClients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        long uploadMillis = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+        String probePath = args.length > 3 ? args[3] : "/api/restaurants";
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest probe = HttpRequest.newBuilder(base.resolve(probePath)).timeout(Duration.ofSeconds(30)).GET().build();
+
+        System.out.printf(Locale.ROOT, "Probe %s, %d flood clients uploading over %d ms, %d s per phase%n",
+                probePath, floodClients, uploadMillis, seconds);
+        report("alone", runProbe(client, probe, seconds), null);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Map<String, AtomicLong> floodStatuses = new ConcurrentHashMap<>();
+        List<Thread> flood = new ArrayList<>();
+        for (int i = 0; i < floodClients; i++) {
+            int clientId = i;
+            Thread thread = new Thread(() -> {
+                long sequence = 0;
+                while (running.get()) {
+                    String status = postSlowly(base, String.format(Locale.ROOT, EVENT, clientId, sequence++ % 500), uploadMillis);
+                    floodStatuses.computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+                }
+            }, "flood-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            flood.add(thread);
+        }
+        // Let the flood fill the server before measuring
+        Thread.sleep(uploadMillis + 1000);
+        floodStatuses.clear();
+        List<Long> underFlood = runProbe(client, probe, seconds);
+        running.set(false);
+        report("under flood", underFlood, new TreeMap<>(floodStatuses));
+        for (Thread thread : flood) {
+            thread.join(uploadMillis + 10_000);
+        }
+    }
+
+    /**
+     * Sequential probe calls for the given time; latencies in microseconds,
+     * failed calls as -1
+     */
+    private static List<Long> runProbe(HttpClient client, HttpRequest probe, int seconds) {
+        List<Long> latencies = new ArrayList<>();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(probe, HttpResponse.BodyHandlers.discarding());
+                latencies.add(response.statusCode() < 500 ? (System.nanoTime() - start) / 1000 : -1);
+            } catch (IOException e) {
+                latencies.add(-1L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * One event over a raw connection, body sent in parts; returns the status code
+     */
+    private static String postSlowly(URI base, String body, long uploadMillis) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        int port = base.getPort() > 0 ? base.getPort() : 80;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(base.getHost(), port), 5000);
+            socket.setSoTimeout(30_000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /api/events HTTP/1.1\r\nHost: " + base.getHost() + ":" + port
+                    + "\r\nContent-Type: application/json\r\nContent-Length: " + bytes.length
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            int parts = 4;
+            for (int i = 0; i < parts; i++) {
+                out.write(bytes, i * bytes.length / parts, (i + 1) * bytes.length / parts - i * bytes.length / parts);
+                out.flush();
+                Thread.sleep(uploadMillis / parts);
+            }
+            String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))
+                    .readLine();
+            return statusLine == null ? "closed" : statusLine.split(" ")[1];
+        } catch (IOException e) {
+            return "error";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    private static void report(String phase, List<Long> latencies, Map<String, AtomicLong> floodStatuses) {
+        List<Long> ok = new ArrayList<>();
+        for (long latency : latencies) {
+            if (latency >= 0) {
+                ok.add(latency);
+            }
+        }
+        Collections.sort(ok);
+        System.out.printf(Locale.ROOT, "%-12s probes=%d failed=%d p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                phase, latencies.size(), latencies.size() - ok.size(),
+                percentile(ok, 0.50), percentile(ok, 0.99), ok.isEmpty() ? 0 : ok.get(ok.size() - 1) / 1000.0);
+        if (floodStatuses != null) {
+            System.out.println("             flood responses by status: " + floodStatuses);
+        }
+    }
+
+    private static double percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(quantile * sorted.size()) - 1)) / 1000.0;
+    }
+}
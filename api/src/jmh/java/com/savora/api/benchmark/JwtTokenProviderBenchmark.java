@@ -0,0 +1,65 @@
+package com.savora.api.benchmark;
+
+import com.savora.api.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtTokenProvider on its own: signing a token at login, and verifying one,
+ * with and without the verified-token cache. Parsing cycles through 2000
+ * session tokens, so with the cache on every parse after the first round
+ * is a cache hit. JwtAuthenticationFilterBenchmark covers the whole filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private static final int SESSIONS = 2000;
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final List<String> ROLES = List.of("ROLE_USER");
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private JwtTokenProvider provider;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider(SECRET, 86400, cache, 10000, 300);
+        tokens = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            tokens[i] = provider.generateToken((long) i, "user" + i + "@example.com", ROLES);
+        }
+    }
+
+    @Benchmark
+    public String generate() {
+        next = (next + 1) % SESSIONS;
+        return provider.generateToken((long) next, "user" + next + "@example.com", ROLES);
+    }
+
+    @Benchmark
+    public Claims parse() {
+        next = (next + 1) % SESSIONS;
+        return provider.parseToken(tokens[next]);
+    }
+}
@@ -0,0 +1,112 @@
+package com.savora.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.config.EventSchemaConfig;
+import com.savora.api.model.Event;
+import com.savora.api.service.EventCodec;
+import com.savora.api.service.EventSpillLog;
+import com.savora.api.service.KafkaProducerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Events/sec one API node can push through KafkaProducerService, with the
+ * broker replaced by an auto-completing MockProducer. This is the CPU ceiling
+ * of the send path (Jackson + producer append), not of the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaProducerServiceBenchmark {
+
+    @Param({"json", "binary"})
+    private String encoding;
+
+    private MockProducer<String, byte[]> producer;
+    private KafkaProducerService service;
+    private Event event;
+    private EventSpillLog spillLog;
+    private Path spillDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        producer = new ReusableMockProducer();
+        KafkaTemplate<String, byte[]> template = new KafkaTemplate<>(() -> producer);
+        ObjectMapper objectMapper = new ObjectMapper();
+        EventCodec codec = new EventCodec(objectMapper, EventSchemaConfig.load(objectMapper, "classpath:event-schemas/*.json"), encoding);
+        spillDirectory = Files.createTempDirectory("spill-bench");
+        spillLog = new EventSpillLog(spillDirectory, 1 << 20, 4);
+        service = new KafkaProducerService(template, codec, spillLog, new SimpleMeterRegistry(), 10000, 1000);
+
+        event = new Event();
+        event.setEventType("RESTAURANT_VIEWED");
+        event.setTimestamp(Instant.parse("2024-03-01T12:00:00Z").toString());
+        event.setUserId(42L);
+        event.setData("restaurantId", 17);
+        event.setData("restaurantName", "Pagliai's Pizza");
+    }
+
+    @Setup(Level.Iteration)
+    public void clearHistory() {
+        producer.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException, IOException {
+        service.shutdown();
+        spillLog.close();
+        try (Stream<Path> files = Files.walk(spillDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void sendEvent() {
+        service.sendEvent(event);
+    }
+
+    /**
+     * KafkaTemplate closes non-transactional producers after each send; keep this one open
+     */
+    private static class ReusableMockProducer extends MockProducer<String, byte[]> {
+        ReusableMockProducer() {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(Duration timeout) {
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.savora.api.benchmark;
+
+import com.savora.api.config.MeteredJdbcTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsProperties;
+import org.springframework.boot.actuate.autoconfigure.metrics.PropertiesMeterFilter;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CPU cost of the latency instrumentation on one request, against the
+ * PrometheusMeterRegistry configured from the management.metrics.* entries
+ * of application.properties (HdrHistogram percentiles and, for endpoints,
+ * buckets). "request" is what a catalog request records: its endpoint
+ * timer, one service method, two statements and a cache lookup. Compare it
+ * with the CPU a request costs the server; the budget is 1%.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    private static final int LATENCIES = 1024;
+
+    private MeterRegistry registry;
+    private StatementHooks metered;
+    private StatementHooks unmetered;
+    private Statement statement;
+    private LongAdder cacheHits;
+    private long[] latencies;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        Properties properties = PropertiesLoaderUtils.loadAllProperties("application.properties");
+        MetricsProperties metricsProperties = new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("management.metrics", MetricsProperties.class);
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().meterFilter(new PropertiesMeterFilter(metricsProperties));
+
+        DataSource dataSource = new DriverManagerDataSource("jdbc:postgresql://localhost/unused");
+        metered = new MeteredHooks(dataSource, registry);
+        unmetered = new PlainHooks(dataSource);
+        statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Statement.class}, (proxy, method, args) -> null);
+        cacheHits = new LongAdder();
+
+        // 0.2 ms to 50 ms, so the histograms fill more than one bucket
+        latencies = new long[LATENCIES];
+        for (int i = 0; i < LATENCIES; i++) {
+            latencies[i] = TimeUnit.MICROSECONDS.toNanos(200 + (i * 7919L) % 50_000);
+        }
+    }
+
+    @Benchmark
+    public void httpServerRequest() {
+        // As WebMvcMetricsFilter records each request
+        Timer.builder("http.server.requests")
+                .tags("exception", "None", "method", "GET", "outcome", "SUCCESS", "status", "200", "uri", "/api/restaurants/{id}")
+                .register(registry)
+                .record(nextLatency(), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void serviceMethod() {
+        // As TimedAspect records a @Timed method
+        Timer.Sample sample = Timer.start(registry);
+        sample.stop(Timer.builder("savora.service")
+                .tags("class", "com.savora.api.service.RestaurantService", "method", "getRestaurantById", "exception", "none")
+                .register(registry));
+    }
+
+    @Benchmark
+    public void meteredStatement() throws SQLException {
+        metered.run(statement);
+    }
+
+    @Benchmark
+    public void unmeteredStatement() throws SQLException {
+        unmetered.run(statement);
+    }
+
+    @Benchmark
+    public void request() throws SQLException {
+        httpServerRequest();
+        serviceMethod();
+        metered.run(statement);
+        metered.run(statement);
+        cacheHits.increment();
+    }
+
+    private long nextLatency() {
+        next = (next + 1) & (LATENCIES - 1);
+        return latencies[next];
+    }
+
+    private interface StatementHooks {
+        void run(Statement statement) throws SQLException;
+    }
+
+    // The two calls JdbcTemplate makes around every statement it executes
+    private static final class MeteredHooks extends MeteredJdbcTemplate implements StatementHooks {
+        MeteredHooks(DataSource dataSource, MeterRegistry registry) {
+            super(dataSource, registry, "benchmark");
+        }
+
+        @Override
+        public void run(Statement statement) throws SQLException {
+            applyStatementSettings(statement);
+            handleWarnings(statement);
+        }
+    }
+
+    private static final class PlainHooks extends JdbcTemplate implements StatementHooks {
+        PlainHooks(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public void run(Statement statement) throws SQLException {
+            applyStatementSettings(statement);
+            handleWarnings(statement);
+        }
+    }
+}
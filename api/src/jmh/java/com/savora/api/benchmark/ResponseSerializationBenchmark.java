@@ -0,0 +1,81 @@
+package com.savora.api.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.savora.api.model.Recommendation;
+import com.savora.api.model.Restaurant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the Restaurant and Recommendation lists the
+ * catalog and recommendation endpoints return, with an ObjectMapper set up
+ * as Spring Boot sets up the one behind its message converters. 20 is a
+ * page, 500 a large listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"20", "500"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Restaurant> restaurants;
+    private List<Recommendation> recommendations;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        restaurants = CatalogFixtures.restaurants(size);
+        recommendations = new ArrayList<>(size);
+        LocalDateTime generatedAt = LocalDateTime.of(2024, 5, 1, 3, 0);
+        for (int i = 0; i < size; i++) {
+            Restaurant restaurant = restaurants.get(i);
+            Recommendation recommendation = new Recommendation();
+            recommendation.setId(i + 1);
+            recommendation.setUserId(1000 + i / 10);
+            recommendation.setRestaurantName(restaurant.getName());
+            recommendation.setRestaurantCategories(restaurant.getCategories());
+            recommendation.setRating((float) restaurant.getRating());
+            recommendation.setReviewCount(restaurant.getReviewCount());
+            recommendation.setPriceRange(restaurant.getPriceRange());
+            recommendation.setScore(1.0f / (1 + i % 10));
+            recommendation.setRecommendationRank(i % 10 + 1);
+            recommendation.setGeneratedAt(generatedAt);
+            recommendations.add(recommendation);
+        }
+    }
+
+    @Benchmark
+    public byte[] restaurants() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(restaurants);
+    }
+
+    @Benchmark
+    public byte[] recommendations() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(recommendations);
+    }
+}
@@ -0,0 +1,58 @@
+package com.savora.api.benchmark;
+
+import com.savora.api.model.Restaurant;
+import com.savora.api.service.RestaurantRowMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two Restaurant row mappers over a page (20 rows) and a catalog load
+ * (1000 rows) of SELECT * FROM restaurants: "standalone" is
+ * service.RestaurantRowMapper, "service" the one nested in RestaurantService
+ * that the catalog endpoints use (city column, image path). Rows come from
+ * an in-memory ResultSet, so this is mapping cost only, not the driver's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestaurantRowMapperBenchmark {
+
+    @Param({"standalone", "service"})
+    private String mapper;
+
+    @Param({"20", "1000"})
+    private int rows;
+
+    private RowMapperResultSetExtractor<Restaurant> extractor;
+    private List<Map<String, Object>> fixture;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        fixture = CatalogFixtures.restaurantRows(rows);
+        extractor = new RowMapperResultSetExtractor<>(
+                "service".equals(mapper) ? CatalogFixtures.restaurantServiceMapper() : new RestaurantRowMapper(), rows);
+    }
+
+    @Benchmark
+    public List<Restaurant> mapRows() throws SQLException {
+        return extractor.extractData(CatalogFixtures.resultSet(fixture));
+    }
+}
@@ -0,0 +1,51 @@
+package com.savora.api.benchmark;
+
+import com.savora.api.model.Restaurant;
+import com.savora.api.service.RestaurantService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RestaurantService.sortRestaurants, descending as the endpoints sort, on
+ * a result page and on the whole scaled-up catalog
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RestaurantSortBenchmark {
+
+    @Param({"rating", "reviewCount", "name"})
+    private String sortBy;
+
+    @Param({"50", "10000"})
+    private int size;
+
+    private RestaurantService service;
+    private List<Restaurant> restaurants;
+
+    @Setup
+    public void setUp() {
+        service = new RestaurantService();
+        restaurants = CatalogFixtures.restaurants(size);
+    }
+
+    @Benchmark
+    public List<Restaurant> sortDescending() {
+        return service.sortRestaurants(restaurants, sortBy, false);
+    }
+}
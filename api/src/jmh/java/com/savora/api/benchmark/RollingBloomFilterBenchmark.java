@@ -0,0 +1,92 @@
+package com.savora.api.benchmark;
+
+import com.savora.api.service.RollingBloomFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of the dedup check + insert per event, with the filter sized like
+ * application.properties. Run main() to measure the false-positive rate
+ * against the configured target as the slices fill up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RollingBloomFilterBenchmark {
+
+    private RollingBloomFilter filter;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        filter = new RollingBloomFilter(60_000, 6, 100_000, 0.001);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean checkAndPut() {
+        long key = mix(sequence.incrementAndGet());
+        boolean seen = filter.mightContain(key, mix(key) | 1);
+        if (!seen) {
+            filter.put(key, mix(key) | 1);
+        }
+        return seen;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args) {
+        int slices = 6;
+        long perSlice = 100_000;
+        double target = 0.001;
+        long[] now = {0};
+        SplittableRandom random = new SplittableRandom(42);
+        RollingBloomFilter sizing = new RollingBloomFilter(60_000, slices, perSlice, target);
+        System.out.printf(Locale.ROOT, "memory=%d bytes, hashes=%d, target=%.4f%n",
+                sizing.getMemoryBytes(), sizing.getHashCount(), target);
+        System.out.printf(Locale.ROOT, "%-22s %10s %10s%n", "inserted per slice", "measured", "estimated");
+
+        for (double load : new double[] {0.5, 1.0, 2.0}) {
+            RollingBloomFilter filter = new RollingBloomFilter(60_000, slices, perSlice, target, () -> now[0]);
+            // Fill the current slice and every earlier one still in the window
+            for (int slice = 0; slice <= slices; slice++) {
+                now[0] = slice * 10_000L;
+                for (long i = 0; i < perSlice * load; i++) {
+                    long key = random.nextLong();
+                    filter.put(key, mix(key) | 1);
+                }
+            }
+            int probes = 1_000_000;
+            int falsePositives = 0;
+            for (int i = 0; i < probes; i++) {
+                long key = random.nextLong();
+                if (filter.mightContain(key, mix(key) | 1)) {
+                    falsePositives++;
+                }
+            }
+            System.out.printf(Locale.ROOT, "%-22d %10.5f %10.5f%n", (long) (perSlice * load),
+                    (double) falsePositives / probes, filter.estimatedFalsePositiveRate());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.savora.api.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The primary DataSource (spring.datasource.*, used by JPA and every write)
+ * and, next to it, readJdbcTemplate for catalog and recommendation reads,
+ * which goes to the read replicas listed as datasource.replicas[n].* when
+ * there are any. Each replica entry takes any HikariConfig property
+ * (jdbc-url, maximum-pool-size, connection-timeout, ...); username, password
+ * and driver default to the primary's.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSource dataSource,
+            DataSourceProperties properties,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${datasource.replica.health-check-interval-ms:5000}") long checkIntervalMs,
+            @Value("${datasource.replica.max-lag-seconds:30}") long maxLagSeconds) {
+        Binder binder = Binder.get(environment);
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            HikariConfig config = replicaDefaults(properties, i);
+            if (!binder.bind("datasource.replicas[" + i + "]", Bindable.ofInstance(config)).isBound()) {
+                break;
+            }
+            // An unset environment variable leaves an empty URL: no replica there
+            if (!StringUtils.hasText(config.getJdbcUrl())) {
+                continue;
+            }
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(dataSource, pools, meterRegistry, checkIntervalMs, maxLagSeconds);
+    }
+
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, MeterRegistry meterRegistry) {
+        return new MeteredJdbcTemplate(dataSource, meterRegistry, "primary");
+    }
+
+    /**
+     * For reads that can be a few seconds stale; never use it to write
+     */
+    @Bean
+    public JdbcTemplate readJdbcTemplate(@Qualifier("replicaRoutingDataSource") DataSource replicaRoutingDataSource,
+                                         MeterRegistry meterRegistry) {
+        return new MeteredJdbcTemplate(replicaRoutingDataSource, meterRegistry, "read");
+    }
+
+    // Fail fast on a dead replica and fall back rather than holding a request for Hikari's default 30 s
+    private static HikariConfig replicaDefaults(DataSourceProperties properties, int index) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("replica-" + (index + 1));
+        config.setUsername(properties.determineUsername());
+        config.setPassword(properties.determinePassword());
+        config.setDriverClassName(properties.determineDriverClassName());
+        config.setReadOnly(true);
+        config.setMaximumPoolSize(10);
+        config.setConnectionTimeout(1000);
+        config.setInitializationFailTimeout(-1);
+        return config;
+    }
+}
@@ -0,0 +1,46 @@
+package com.savora.api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.controller.EventIngestServlet;
+import com.savora.api.service.EventIngestService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Maps EventIngestServlet over EventController's paths. Exact servlet
+ * mappings win over the DispatcherServlet's "/", and filters (rate limits,
+ * security) still apply, so only the handler changes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "events.ingest.non-blocking", havingValue = "true", matchIfMissing = true)
+public class EventIngestConfig {
+
+    @Value("${events.ingest.threads:2}")
+    private int threads;
+
+    @Value("${events.ingest.queue-capacity:2000}")
+    private int queueCapacity;
+
+    @Value("${events.ingest.max-body-bytes:1048576}")
+    private int maxBodyBytes;
+
+    @Value("${events.ingest.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Bean
+    public ServletRegistrationBean<EventIngestServlet> eventIngestServlet(
+            EventIngestService eventIngestService, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        EventIngestServlet servlet = new EventIngestServlet(eventIngestService, objectMapper, meterRegistry,
+                threads, queueCapacity, maxBodyBytes, timeoutMs);
+        ServletRegistrationBean<EventIngestServlet> registration =
+                new ServletRegistrationBean<>(servlet, "/api/events", "/api/events/batch");
+        registration.setName("eventIngestServlet");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
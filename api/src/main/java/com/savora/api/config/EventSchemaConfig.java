@@ -0,0 +1,40 @@
+package com.savora.api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.events.EventSchema;
+import com.savora.events.EventSchemaRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event schemas from events.schema.location, in the registry the archiver
+ * and sessionizer also read them with
+ */
+@Configuration
+public class EventSchemaConfig {
+
+    @Bean
+    public EventSchemaRegistry eventSchemaRegistry(
+            ObjectMapper objectMapper,
+            @Value("${events.schema.location:classpath:event-schemas/*.json}") String location) throws IOException {
+        return load(objectMapper, location);
+    }
+
+    public static EventSchemaRegistry load(ObjectMapper objectMapper, String location) throws IOException {
+        List<EventSchema> schemas = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location)) {
+            try (InputStream in = resource.getInputStream()) {
+                schemas.add(objectMapper.readValue(in, EventSchema.class));
+            }
+        }
+        return new EventSchemaRegistry(schemas);
+    }
+}
@@ -1,14 +1,19 @@
 package com.savora.api.config;
 
+import com.savora.api.service.EventSpillLog;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
 
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,17 +23,67 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers:kafka:9093}")
     private String bootstrapServers;
 
+    /**
+     * "throughput" batches and compresses; "latency" sends each record immediately
+     */
+    @Value("${kafka.producer.profile:throughput}")
+    private String producerProfile;
+
+    @Value("${kafka.producer.max-block-ms:500}")
+    private int maxBlockMs;
+
+    @Value("${kafka.producer.delivery-timeout-ms:30000}")
+    private int deliveryTimeoutMs;
+
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, byte[]> producerFactory(MeterRegistry meterRegistry) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        return new DefaultKafkaProducerFactory<>(configProps);
+        // Values are EventCodec output: JSON bytes or the schema-based binary form
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+
+        // Idempotent writes so producer retries cannot duplicate events
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        // Bound how long send() may wait on metadata or a full buffer
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        // Fail undeliverable records in time for them to be spilled to disk
+        configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 10000);
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeoutMs);
+
+        if ("latency".equalsIgnoreCase(producerProfile)) {
+            configProps.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+            configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
+            configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+        } else {
+            configProps.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+            configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 65536);
+            configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+            configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432L);
+        }
+
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(configProps);
+        // Publishes producer metrics (record-send-rate, batch-size-avg, record-queue-time-avg, ...)
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    /**
+     * Local disk buffer for events while the broker is unreachable;
+     * at most segment-bytes * max-segments on disk
+     */
+    @Bean(destroyMethod = "close")
+    public EventSpillLog eventSpillLog(
+            @Value("${kafka.spill.dir:spill}") String directory,
+            @Value("${kafka.spill.segment-bytes:16777216}") int segmentBytes,
+            @Value("${kafka.spill.max-segments:16}") int maxSegments) {
+        return new EventSpillLog(Paths.get(directory), segmentBytes, maxSegments);
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
     }
-}
\ No newline at end of file
+}
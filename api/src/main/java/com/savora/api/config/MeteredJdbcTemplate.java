@@ -0,0 +1,62 @@
+package com.savora.api.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JdbcTemplate that times every statement it runs as savora.jdbc.query,
+ * tagged with the template's datasource name and the outcome. The clock
+ * starts once the statement is prepared and stops after its results have
+ * been mapped, so connection checkout is left to the hikaricp.* metrics.
+ * Work done directly on a Connection (execute(ConnectionCallback)) is not
+ * timed.
+ */
+public class MeteredJdbcTemplate extends JdbcTemplate {
+
+    // Start of the statement running on this thread, 0 when none is
+    private final ThreadLocal<long[]> started = ThreadLocal.withInitial(() -> new long[1]);
+    private final Timer successTimer;
+    private final Timer errorTimer;
+
+    public MeteredJdbcTemplate(DataSource dataSource, MeterRegistry meterRegistry, String name) {
+        super(dataSource);
+        this.successTimer = Timer.builder("savora.jdbc.query")
+                .tag("datasource", name).tag("outcome", "success").register(meterRegistry);
+        this.errorTimer = Timer.builder("savora.jdbc.query")
+                .tag("datasource", name).tag("outcome", "error").register(meterRegistry);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        started.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    protected void handleWarnings(Statement stmt) throws SQLException {
+        stop(successTimer);
+        super.handleWarnings(stmt);
+    }
+
+    @Override
+    protected DataAccessException translateException(String task, String sql, SQLException ex) {
+        stop(errorTimer);
+        return super.translateException(task, sql, ex);
+    }
+
+    private void stop(Timer timer) {
+        long[] start = started.get();
+        // Nothing started when the connection itself failed
+        if (start[0] != 0) {
+            timer.record(System.nanoTime() - start[0], TimeUnit.NANOSECONDS);
+            start[0] = 0;
+        }
+    }
+}
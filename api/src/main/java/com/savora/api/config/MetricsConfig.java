@@ -0,0 +1,29 @@
+package com.savora.api.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Latency metrics on /actuator/prometheus, next to the counters and gauges
+ * the services register themselves:
+ *
+ *   http.server.requests    per endpoint (Spring Boot)
+ *   savora.service          per method of the services annotated @Timed
+ *   savora.jdbc.query       per statement run through a JdbcTemplate
+ *   savora.events.send      event handed over to Kafka until acked
+ *   executor.*              active threads and queue of each worker pool
+ *   cache.gets              hits and misses of the JWT and user caches
+ *
+ * Percentiles and histogram buckets for these are set under
+ * management.metrics.distribution in application.properties.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,156 @@
+package com.savora.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource for read-only work: hands out connections from the replica
+ * pools in turn, skipping any that failed their last health check, and from
+ * the primary when none is healthy (or none is configured).
+ *
+ * A replica is marked down when it refuses a connection or when the check,
+ * run every checkIntervalMs, cannot reach it or finds it more than
+ * maxLagSeconds behind the primary; the next passing check brings it back.
+ * Reads served by a replica may therefore be up to maxLagSeconds stale.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    // Seconds of replay lag; 0 when caught up and on a server that is not a standby
+    private static final String LAG_SQL = "SELECT COALESCE(CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END, 0)";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+    private final Counter primaryFallbackCounter;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, MeterRegistry meterRegistry,
+                                    long checkIntervalMs, long maxLagSeconds) {
+        this.primary = primary;
+        this.maxLagSeconds = maxLagSeconds;
+        for (HikariDataSource pool : replicaPools) {
+            Replica replica = new Replica(pool);
+            replicas.add(replica);
+            meterRegistry.gauge("savora.datasource.replica.healthy",
+                    Tags.of("pool", pool.getPoolName()), replica, r -> r.healthy ? 1 : 0);
+        }
+        this.primaryFallbackCounter = meterRegistry.counter("savora.datasource.replica.fallback");
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!replicas.isEmpty()) {
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int count = replicas.size();
+        if (count == 0) {
+            return primary.getConnection();
+        }
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException e) {
+                replica.markDown("connection failed: " + e.getMessage());
+            }
+        }
+        primaryFallbackCounter.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // As HikariDataSource does: a pool cannot hand out connections for other credentials
+        throw new SQLFeatureNotSupportedException("Replica pools use their configured credentials");
+    }
+
+    public int getHealthyReplicaCount() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.pool.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(LAG_SQL)) {
+                double lagSeconds = lag.next() ? lag.getDouble(1) : 0;
+                if (lagSeconds > maxLagSeconds) {
+                    replica.markDown(String.format("%.0f s behind the primary", lagSeconds));
+                } else {
+                    replica.markUp();
+                }
+            } catch (Exception e) {
+                replica.markDown("health check failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    private static final class Replica {
+        final HikariDataSource pool;
+        // Optimistic until the first check says otherwise
+        volatile boolean healthy = true;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        void markDown(String reason) {
+            if (healthy) {
+                logger.warn("Replica {} out of rotation, {}", pool.getPoolName(), reason);
+            }
+            healthy = false;
+        }
+
+        void markUp() {
+            if (!healthy) {
+                logger.info("Replica {} back in rotation", pool.getPoolName());
+            }
+            healthy = true;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.savora.api.controller;
+
+import com.savora.api.dto.EventQueryRequest;
+import com.savora.api.dto.EventQueryResponse;
+import com.savora.api.service.EventQueryEngine;
+import com.savora.api.service.RecommendationTableWriter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Admin-only analytics; access is restricted to ROLE_ADMIN in WebSecurityConfig
+ */
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*", allowedHeaders = "*")
+public class AdminController {
+
+    private final EventQueryEngine eventQueryEngine;
+    private final RecommendationTableWriter recommendationTableWriter;
+
+    public AdminController(EventQueryEngine eventQueryEngine, RecommendationTableWriter recommendationTableWriter) {
+        this.eventQueryEngine = eventQueryEngine;
+        this.recommendationTableWriter = recommendationTableWriter;
+    }
+
+    /**
+     * Aggregate archived events, e.g. views per restaurant per day:
+     * {"eventTypes": ["RESTAURANT_VIEWED"], "from": "2024-03-01", "to": "2024-03-31",
+     *  "groupBy": ["restaurantName", "day"], "limit": 50}
+     */
+    @PostMapping("/events/query")
+    public ResponseEntity<?> queryEvents(@RequestBody EventQueryRequest request) {
+        try {
+            EventQueryResponse response = eventQueryEngine.query(request);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Replace every user's recommendations with the CSV body (header row, then
+     * RecommendationTableWriter.COLUMNS), streamed straight into the table
+     */
+    @PutMapping(value = "/recommendations", consumes = "text/csv")
+    public ResponseEntity<?> replaceRecommendations(HttpServletRequest request) {
+        try {
+            RecommendationTableWriter.RefreshResult result = recommendationTableWriter.replaceAll(request.getReader());
+            return ResponseEntity.ok(Map.of("modelVersion", result.getModelVersion(), "rows", result.getRows()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (SQLException | IOException e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Recommendation refresh failed: " + e.getMessage()));
+        }
+    }
+}
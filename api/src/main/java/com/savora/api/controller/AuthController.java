@@ -3,29 +3,52 @@ package com.savora.api.controller;
 import com.savora.api.dto.AuthResponse;
 import com.savora.api.dto.LoginRequest;
 import com.savora.api.dto.RegisterRequest;
+import com.savora.api.security.LoginThrottle;
+import com.savora.api.security.LoginThrottledException;
+import com.savora.api.security.PasswordHashingRejectedException;
+import com.savora.api.security.UserPrincipal;
+import com.savora.api.service.AccountAvailabilityService;
 import com.savora.api.service.AuthService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
     
     private final AuthService authService;
+    private final AccountAvailabilityService accountAvailabilityService;
+    private final LoginThrottle loginThrottle;
     
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, AccountAvailabilityService accountAvailabilityService,
+                          LoginThrottle loginThrottle) {
         this.authService = authService;
+        this.accountAvailabilityService = accountAvailabilityService;
+        this.loginThrottle = loginThrottle;
     }
     
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@Valid @RequestBody RegisterRequest registerRequest) {
-        AuthResponse response = authService.register(registerRequest);
+        AuthResponse response;
+        try {
+            response = authService.register(registerRequest);
+        } catch (PasswordHashingRejectedException e) {
+            return busy();
+        }
         
         if (response.isSuccess()) {
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
@@ -35,8 +58,17 @@ public class AuthController {
     }
     
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        AuthResponse response = authService.login(loginRequest);
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
+        AuthResponse response;
+        try {
+            response = authService.login(loginRequest, loginThrottle.clientAddress(request));
+        } catch (LoginThrottledException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Retry-After", String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new AuthResponse(false, e.getMessage(), null, null));
+        } catch (PasswordHashingRejectedException e) {
+            return busy();
+        }
         
         if (response.isSuccess()) {
             return ResponseEntity.ok(response);
@@ -44,4 +76,53 @@ public class AuthController {
             return ResponseEntity.badRequest().body(response);
         }
     }
-}
\ No newline at end of file
+    
+    // Revoke the presented token on every instance; an already invalid one is fine
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (!StringUtils.hasText(bearerToken) || !bearerToken.startsWith("Bearer ")) {
+            return ResponseEntity.badRequest().body(Map.of("message", "No bearer token to revoke"));
+        }
+        authService.logout(bearerToken.substring(7));
+        return ResponseEntity.ok(Map.of("message", "Logged out"));
+    }
+    
+    // Revoke every token of the signed-in user, on all devices
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutEverywhere() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal)
+                || ((UserPrincipal) authentication.getPrincipal()).getId() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Sign in first"));
+        }
+        authService.logoutEverywhere(((UserPrincipal) authentication.getPrincipal()).getId());
+        return ResponseEntity.ok(Map.of("message", "Logged out on all devices"));
+    }
+    
+    // Live "already taken?" check for the signup form; most answers come from memory
+    @GetMapping("/availability")
+    public ResponseEntity<?> checkAvailability(@RequestParam(required = false) String username,
+                                               @RequestParam(required = false) String email) {
+        if ((username == null || username.isBlank()) && (email == null || email.isBlank())) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Give a username or email to check"));
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        if (username != null && !username.isBlank()) {
+            response.put("username", username);
+            response.put("usernameAvailable", accountAvailabilityService.isUsernameAvailable(username));
+        }
+        if (email != null && !email.isBlank()) {
+            response.put("email", email);
+            response.put("emailAvailable", accountAvailabilityService.isEmailAvailable(email));
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    // Password hashing is saturated; refused before queueing more bcrypt work
+    static ResponseEntity<?> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(Map.of("message", "Server is busy, retry later"));
+    }
+}
@@ -1,31 +1,81 @@
 package com.savora.api.controller;
 
+import com.savora.api.dto.EventBatchResponse;
 import com.savora.api.model.Event;
-import com.savora.api.service.KafkaProducerService;
+import com.savora.api.security.UserPrincipal;
+import com.savora.api.service.EventIngestService;
+import com.savora.api.service.InvalidEventException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Blocking event endpoints. With events.ingest.non-blocking=true (the
+ * default) EventIngestServlet is mapped to the same paths and takes these
+ * requests before they reach Spring MVC.
+ */
 @RestController
 @RequestMapping("/api/events")
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class EventController {
 
+    private static final Logger logger = LoggerFactory.getLogger(EventController.class);
+
+    static final String NDJSON = "application/x-ndjson";
+
     @Autowired
-    private KafkaProducerService kafkaProducerService;
+    private EventIngestService eventIngestService;
 
     @PostMapping
     public ResponseEntity<?> trackEvent(@RequestBody Event event) {
         try {
-            System.out.println("Received event: " + event);
-            kafkaProducerService.sendEvent(event);
+            if (eventIngestService.track(event, UserPrincipal.currentUserId()) == EventIngestService.Outcome.QUEUE_FULL) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Event queue is full, retry later");
+            }
             return ResponseEntity.ok().build();
+        } catch (InvalidEventException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
-            System.err.println("Error processing event: " + e.getMessage());
-            e.printStackTrace();
+            logger.warn("Error processing event", e);
             return ResponseEntity.internalServerError().body("Failed to process event: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Accept a JSON array of events in one request
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> trackEvents(@RequestBody List<Event> events) {
+        try {
+            return batchResponse(eventIngestService.trackBatch(events, UserPrincipal.currentUserId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Accept newline-delimited JSON, one event per line
+     */
+    @PostMapping(value = "/batch", consumes = NDJSON)
+    public ResponseEntity<?> trackEventStream(@RequestBody String body) {
+        try {
+            return batchResponse(eventIngestService.trackNdjson(body, UserPrincipal.currentUserId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    private static ResponseEntity<?> batchResponse(EventBatchResponse response) {
+        if (EventIngestService.isQueueFull(response)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+}
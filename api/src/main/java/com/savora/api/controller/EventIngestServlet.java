@@ -0,0 +1,330 @@
+package com.savora.api.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.dto.EventBatchResponse;
+import com.savora.api.model.Event;
+import com.savora.api.security.UserPrincipal;
+import com.savora.api.service.EventIngestService;
+import com.savora.api.service.InvalidEventException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking handler for POST /api/events and /api/events/batch, with the
+ * same request and response formats as EventController.
+ *
+ * The request goes async at once and its body is read with a ReadListener,
+ * so a Tomcat worker is only held for the moments bytes are available, not
+ * while a slow client uploads. Parsing and the hand-off to
+ * KafkaProducerService's send queue run on a small bounded pool; when that
+ * pool's queue is full, or Kafka's queue and spill log are, requests are
+ * refused with 503 rather than waiting. Event spikes therefore queue here
+ * instead of taking the workers the catalog and auth endpoints need.
+ */
+public class EventIngestServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventIngestServlet.class);
+
+    private static final String SINGLE_PATH = "/api/events";
+    private static final TypeReference<List<Event>> EVENT_LIST = new TypeReference<List<Event>>() {};
+    private static final int READ_CHUNK = 4096;
+
+    private enum BodyFormat {
+        EVENT, JSON_ARRAY, NDJSON
+    }
+
+    private final EventIngestService eventIngestService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final int maxBodyBytes;
+    private final long timeoutMs;
+    private final Counter rejectedCounter;
+
+    public EventIngestServlet(EventIngestService eventIngestService, ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry, int threads, int queueCapacity,
+                              int maxBodyBytes, long timeoutMs) {
+        this.eventIngestService = eventIngestService;
+        this.objectMapper = objectMapper;
+        this.maxBodyBytes = maxBodyBytes;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "event-ingest-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.rejectedCounter = meterRegistry.counter("savora.events.ingest.rejected");
+        meterRegistry.gauge("savora.events.ingest.queue.depth", executor, pool -> pool.getQueue().size());
+        new ExecutorServiceMetrics(executor, "event-ingest", Collections.emptyList()).bindTo(meterRegistry);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BodyFormat format;
+        String contentType = request.getContentType() == null ? "" : request.getContentType();
+        if (SINGLE_PATH.equals(request.getServletPath())) {
+            format = BodyFormat.EVENT;
+        } else if (contentType.startsWith(EventController.NDJSON)) {
+            format = BodyFormat.NDJSON;
+        } else if (contentType.startsWith(MediaType.APPLICATION_JSON_VALUE)) {
+            format = BodyFormat.JSON_ARRAY;
+        } else {
+            writeJson(response, HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                    Map.of("message", "Use " + MediaType.APPLICATION_JSON_VALUE + " or " + EventController.NDJSON));
+            return;
+        }
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            writeJson(response, HttpStatus.PAYLOAD_TOO_LARGE, Map.of("message", "Body exceeds " + maxBodyBytes + " bytes"));
+            return;
+        }
+        // Already backed up: refuse before spending anything on the body
+        if (executor.getQueue().remainingCapacity() == 0) {
+            rejectedCounter.increment();
+            response.setHeader("Retry-After", "1");
+            writeText(response, HttpStatus.SERVICE_UNAVAILABLE, "Event queue is full, retry later");
+            return;
+        }
+
+        AsyncContext async = request.startAsync();
+        async.setTimeout(timeoutMs);
+        // The security context belongs to this thread, not the ingest pool
+        Exchange exchange = new Exchange(async, format, UserPrincipal.currentUserId(),
+                (int) Math.min(maxBodyBytes, Math.max(READ_CHUNK, request.getContentLengthLong())));
+        async.addListener(exchange);
+        ServletInputStream in = request.getInputStream();
+        in.setReadListener(new BodyReader(exchange, in));
+    }
+
+    /**
+     * Parse and hand off a complete body, on the ingest pool
+     */
+    private void process(Exchange exchange) {
+        if (!exchange.claim()) {
+            // Timed out while queued and already answered
+            return;
+        }
+        HttpServletResponse response = (HttpServletResponse) exchange.async.getResponse();
+        try {
+            if (exchange.format == BodyFormat.EVENT) {
+                Event event;
+                try {
+                    event = objectMapper.readValue(exchange.body, 0, exchange.size, Event.class);
+                } catch (IOException e) {
+                    writeJson(response, HttpStatus.BAD_REQUEST, Map.of("message", "Malformed JSON"));
+                    return;
+                }
+                EventIngestService.Outcome outcome;
+                try {
+                    outcome = eventIngestService.track(event, exchange.userId);
+                } catch (InvalidEventException e) {
+                    writeJson(response, HttpStatus.BAD_REQUEST, Map.of("message", e.getMessage()));
+                    return;
+                }
+                if (outcome == EventIngestService.Outcome.QUEUE_FULL) {
+                    writeText(response, HttpStatus.SERVICE_UNAVAILABLE, "Event queue is full, retry later");
+                } else {
+                    response.setStatus(HttpStatus.OK.value());
+                }
+                return;
+            }
+
+            EventBatchResponse batch;
+            try {
+                if (exchange.format == BodyFormat.NDJSON) {
+                    batch = eventIngestService.trackNdjson(
+                            new String(exchange.body, 0, exchange.size, StandardCharsets.UTF_8), exchange.userId);
+                } else {
+                    List<Event> events;
+                    try {
+                        events = objectMapper.readValue(exchange.body, 0, exchange.size, EVENT_LIST);
+                    } catch (IOException e) {
+                        writeJson(response, HttpStatus.BAD_REQUEST, Map.of("message", "Malformed JSON"));
+                        return;
+                    }
+                    batch = eventIngestService.trackBatch(events, exchange.userId);
+                }
+            } catch (IllegalArgumentException e) {
+                writeJson(response, HttpStatus.PAYLOAD_TOO_LARGE, Map.of("message", e.getMessage()));
+                return;
+            }
+            writeJson(response, EventIngestService.isQueueFull(batch) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK, batch);
+        } catch (Exception e) {
+            logger.warn("Error processing event: {}", e.getMessage());
+            try {
+                writeText(response, HttpStatus.INTERNAL_SERVER_ERROR, "Failed to process event: " + e.getMessage());
+            } catch (IOException ignored) {
+                // Client is gone
+            }
+        } finally {
+            exchange.complete();
+        }
+    }
+
+    private void writeJson(HttpServletResponse response, HttpStatus status, Object body) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    private static void writeText(HttpServletResponse response, HttpStatus status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("{} event requests not processed before shutdown", executor.getQueue().size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One request in flight: its body so far, and a guard so exactly one of
+     * processing, a read error or the timeout answers it
+     */
+    private static final class Exchange implements AsyncListener {
+        final AsyncContext async;
+        final BodyFormat format;
+        final Long userId;
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile boolean bodyRead;
+        byte[] body;
+        int size;
+
+        Exchange(AsyncContext async, BodyFormat format, Long userId, int initialCapacity) {
+            this.async = async;
+            this.format = format;
+            this.userId = userId;
+            this.body = new byte[initialCapacity];
+        }
+
+        boolean claim() {
+            return finished.compareAndSet(false, true);
+        }
+
+        void complete() {
+            try {
+                async.complete();
+            } catch (IllegalStateException e) {
+                // The container gave up on the request first
+            }
+        }
+
+        void fail(HttpStatus status) {
+            if (claim()) {
+                HttpServletResponse response = (HttpServletResponse) async.getResponse();
+                if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+                    response.setHeader("Retry-After", "1");
+                }
+                response.setStatus(status.value());
+                complete();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // A body still arriving is the client's fault; one waiting in the queue is ours
+            fail(bodyRead ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.REQUEST_TIMEOUT);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            fail(HttpStatus.BAD_REQUEST);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private final class BodyReader implements ReadListener {
+        private final Exchange exchange;
+        private final ServletInputStream in;
+
+        BodyReader(Exchange exchange, ServletInputStream in) {
+            this.exchange = exchange;
+            this.in = in;
+        }
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            // Read only what has arrived; returning hands the worker back until more does
+            while (!exchange.finished.get() && in.isReady()) {
+                if (exchange.size == exchange.body.length) {
+                    exchange.body = Arrays.copyOf(exchange.body, Math.min(maxBodyBytes + 1, exchange.body.length * 2));
+                }
+                int read = in.read(exchange.body, exchange.size, exchange.body.length - exchange.size);
+                if (read < 0) {
+                    return;
+                }
+                exchange.size += read;
+                if (exchange.size > maxBodyBytes) {
+                    exchange.fail(HttpStatus.PAYLOAD_TOO_LARGE);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (exchange.finished.get()) {
+                return;
+            }
+            exchange.bodyRead = true;
+            try {
+                executor.execute(() -> process(exchange));
+            } catch (RejectedExecutionException e) {
+                rejectedCounter.increment();
+                exchange.fail(HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            exchange.fail(HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.savora.api.controller;
 
+import com.savora.api.dto.RatingSummary;
 import com.savora.api.model.Restaurant;
 import com.savora.api.service.RestaurantService;
 import org.springframework.http.ResponseEntity;
@@ -35,12 +36,26 @@ public class RestaurantController {
         return ResponseEntity.ok(restaurantService.getRestaurantById(id));
     }
 
+    @GetMapping("/{id}/ratings")
+    public ResponseEntity<RatingSummary> getRatingSummary(@PathVariable Long id) {
+        RatingSummary summary = restaurantService.getRatingSummary(id);
+        if (summary == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(summary);
+    }
+
     @GetMapping("/cuisines")
     public ResponseEntity<List<String>> getAllCuisines() {
         List<String> cuisines = restaurantService.getAllCuisines();
         return ResponseEntity.ok(cuisines);
     }
 
+    @GetMapping("/cuisines/counts")
+    public ResponseEntity<Map<String, Integer>> getCuisineCounts() {
+        return ResponseEntity.ok(restaurantService.getCuisineCounts());
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<Restaurant>> searchRestaurants(
             @RequestParam String query,
@@ -3,6 +3,7 @@ package com.savora.api.controller;
 import com.savora.api.dto.PasswordResetRequest;
 import com.savora.api.dto.UserDto;
 import com.savora.api.dto.UserProfileUpdateRequest;
+import com.savora.api.security.PasswordHashingRejectedException;
 import com.savora.api.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -53,7 +54,11 @@ public class UserController {
     
     @PostMapping("/password-reset/confirm")
     public ResponseEntity<?> confirmPasswordReset(@Valid @RequestBody PasswordResetRequest request) {
-        userService.completePasswordReset(request);
+        try {
+            userService.completePasswordReset(request);
+        } catch (PasswordHashingRejectedException e) {
+            return AuthController.busy();
+        }
         return ResponseEntity.ok().body(
             java.util.Map.of("message", "Password has been reset successfully")
         );
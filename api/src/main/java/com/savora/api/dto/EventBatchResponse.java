@@ -0,0 +1,105 @@
+package com.savora.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventBatchResponse {
+    private int accepted;
+    private int rejected;
+    private int duplicates;
+    private List<ItemStatus> results = new ArrayList<>();
+    
+    // Default constructor
+    public EventBatchResponse() {
+    }
+    
+    public void addResult(int index, String status, String error) {
+        results.add(new ItemStatus(index, status, error));
+        if (ItemStatus.ACCEPTED.equals(status)) {
+            accepted++;
+        } else if (ItemStatus.DUPLICATE.equals(status)) {
+            duplicates++;
+        } else {
+            rejected++;
+        }
+    }
+    
+    // Getters and setters
+    public int getAccepted() {
+        return accepted;
+    }
+    
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
+    
+    public int getRejected() {
+        return rejected;
+    }
+    
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+    
+    public int getDuplicates() {
+        return duplicates;
+    }
+    
+    public void setDuplicates(int duplicates) {
+        this.duplicates = duplicates;
+    }
+    
+    public List<ItemStatus> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<ItemStatus> results) {
+        this.results = results;
+    }
+    
+    // Outcome for one event, by its position in the request
+    public static class ItemStatus {
+        public static final String ACCEPTED = "accepted";
+        public static final String INVALID = "invalid";
+        public static final String DROPPED = "dropped";
+        // Seen before within the dedup window; not sent again, no need to retry
+        public static final String DUPLICATE = "duplicate";
+        
+        private int index;
+        private String status;
+        private String error;
+        
+        public ItemStatus() {
+        }
+        
+        public ItemStatus(int index, String status, String error) {
+            this.index = index;
+            this.status = status;
+            this.error = error;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public void setIndex(int index) {
+            this.index = index;
+        }
+        
+        public String getStatus() {
+            return status;
+        }
+        
+        public void setStatus(String status) {
+            this.status = status;
+        }
+        
+        public String getError() {
+            return error;
+        }
+        
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.savora.api.dto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregate query over archived events: count (or count distinct users)
+ * grouped by up to three columns, over whole UTC days from..to inclusive.
+ * Group and filter columns are event data keys plus userId, "day" and
+ * "eventType".
+ */
+public class EventQueryRequest {
+    public static final String METRIC_COUNT = "count";
+    public static final String METRIC_USERS = "users";
+
+    private List<String> eventTypes = new ArrayList<>();
+    private LocalDate from;
+    private LocalDate to;
+    private List<String> groupBy = new ArrayList<>();
+    private Map<String, String> filters = new LinkedHashMap<>();
+    private String metric = METRIC_COUNT;
+    private int limit = 20;
+
+    // Default constructor
+    public EventQueryRequest() {
+    }
+
+    // Getters and setters
+    public List<String> getEventTypes() {
+        return eventTypes;
+    }
+
+    public void setEventTypes(List<String> eventTypes) {
+        this.eventTypes = eventTypes;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(List<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public Map<String, String> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(Map<String, String> filters) {
+        this.filters = filters;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public void setMetric(String metric) {
+        this.metric = metric;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,132 @@
+package com.savora.api.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventQueryResponse {
+    private List<String> columns = new ArrayList<>();
+    private List<Row> rows = new ArrayList<>();
+    private long groups;
+    private int partitionsScanned;
+    private int partitionsPruned;
+    private int filesScanned;
+    private int filesPruned;
+    private long rowsScanned;
+    private long rowsMatched;
+    private long elapsedMs;
+
+    // Default constructor
+    public EventQueryResponse() {
+    }
+
+    // Getters and setters
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<Row> rows) {
+        this.rows = rows;
+    }
+
+    public long getGroups() {
+        return groups;
+    }
+
+    public void setGroups(long groups) {
+        this.groups = groups;
+    }
+
+    public int getPartitionsScanned() {
+        return partitionsScanned;
+    }
+
+    public void setPartitionsScanned(int partitionsScanned) {
+        this.partitionsScanned = partitionsScanned;
+    }
+
+    public int getPartitionsPruned() {
+        return partitionsPruned;
+    }
+
+    public void setPartitionsPruned(int partitionsPruned) {
+        this.partitionsPruned = partitionsPruned;
+    }
+
+    public int getFilesScanned() {
+        return filesScanned;
+    }
+
+    public void setFilesScanned(int filesScanned) {
+        this.filesScanned = filesScanned;
+    }
+
+    public int getFilesPruned() {
+        return filesPruned;
+    }
+
+    public void setFilesPruned(int filesPruned) {
+        this.filesPruned = filesPruned;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public void setRowsScanned(long rowsScanned) {
+        this.rowsScanned = rowsScanned;
+    }
+
+    public long getRowsMatched() {
+        return rowsMatched;
+    }
+
+    public void setRowsMatched(long rowsMatched) {
+        this.rowsMatched = rowsMatched;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    // One group: its key values in the order of columns, and the metric
+    public static class Row {
+        private List<String> key;
+        private long value;
+
+        public Row() {
+        }
+
+        public Row(List<String> key, long value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public List<String> getKey() {
+            return key;
+        }
+
+        public void setKey(List<String> key) {
+            this.key = key;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public void setValue(long value) {
+            this.value = value;
+        }
+    }
+}
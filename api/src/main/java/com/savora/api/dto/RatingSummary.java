@@ -0,0 +1,60 @@
+package com.savora.api.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Review ratings of one restaurant: count, average and how many reviews gave each of 1-5 stars
+ */
+public class RatingSummary {
+    private Long restaurantId;
+    private int reviewCount;
+    private Double averageRating;
+    private Map<Integer, Integer> histogram = new LinkedHashMap<>();
+    
+    // Default constructor
+    public RatingSummary() {
+    }
+    
+    public RatingSummary(Long restaurantId, int reviewCount, long ratingSum, int[] starCounts) {
+        this.restaurantId = restaurantId;
+        this.reviewCount = reviewCount;
+        this.averageRating = reviewCount > 0 ? (double) ratingSum / reviewCount : null;
+        for (int stars = 1; stars <= starCounts.length; stars++) {
+            histogram.put(stars, starCounts[stars - 1]);
+        }
+    }
+    
+    // Getters and setters
+    public Long getRestaurantId() {
+        return restaurantId;
+    }
+    
+    public void setRestaurantId(Long restaurantId) {
+        this.restaurantId = restaurantId;
+    }
+    
+    public int getReviewCount() {
+        return reviewCount;
+    }
+    
+    public void setReviewCount(int reviewCount) {
+        this.reviewCount = reviewCount;
+    }
+    
+    public Double getAverageRating() {
+        return averageRating;
+    }
+    
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+    
+    public Map<Integer, Integer> getHistogram() {
+        return histogram;
+    }
+    
+    public void setHistogram(Map<Integer, Integer> histogram) {
+        this.histogram = histogram;
+    }
+}
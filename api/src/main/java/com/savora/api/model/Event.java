@@ -2,6 +2,7 @@ package com.savora.api.model;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -11,6 +12,12 @@ public class Event {
     private String eventType;
     private String timestamp;
     private Long userId;
+    // Optional client-generated id, reused on retries so duplicates can be dropped
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String eventId;
+    // Per-tab id from the webapp; identifies anonymous users' sessions
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String sessionId;
     private Map<String, Object> data = new HashMap<>();
     
     // Default constructor
@@ -42,6 +49,22 @@ public class Event {
         this.userId = userId;
     }
     
+    public String getEventId() {
+        return eventId;
+    }
+    
+    public void setEventId(String eventId) {
+        this.eventId = eventId;
+    }
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+    
     @JsonAnyGetter
     public Map<String, Object> getData() {
         return data;
@@ -62,6 +85,8 @@ public class Event {
                 "eventType='" + eventType + '\'' +
                 ", timestamp='" + timestamp + '\'' +
                 ", userId=" + userId +
+                ", eventId='" + eventId + '\'' +
+                ", sessionId='" + sessionId + '\'' +
                 ", data=" + data +
                 '}';
     }
@@ -29,7 +29,8 @@ public class User {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
-    @Column(name = "last_login")
+    // Written only by LastLoginWriter, so saving a stale entity cannot roll it back
+    @Column(name = "last_login", updatable = false)
     private LocalDateTime lastLogin;
     
     @Column(name = "reset_token")
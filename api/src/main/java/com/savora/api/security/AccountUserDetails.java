@@ -0,0 +1,24 @@
+package com.savora.api.security;
+
+import com.savora.api.model.User;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * UserDetails returned for a password login, keeping the user row it was
+ * built from so the login response needs no second lookup
+ */
+public class AccountUserDetails extends org.springframework.security.core.userdetails.User {
+
+    private final transient User account;
+
+    public AccountUserDetails(User account, Collection<? extends GrantedAuthority> authorities) {
+        super(account.getEmail(), account.getPassword(), authorities);
+        this.account = account;
+    }
+
+    public User getAccount() {
+        return account;
+    }
+}
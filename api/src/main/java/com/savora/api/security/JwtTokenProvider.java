@@ -1,38 +1,87 @@
 package com.savora.api.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtTokenProvider {
+
+    public static final String USER_ID_CLAIM = "uid";
+    // iat has whole seconds only; revocation cut-offs need the millisecond
+    public static final String ISSUED_AT_MILLIS_CLAIM = "iat_ms";
+    static final String ROLES_CLAIM = "roles";
+    
+    private final String jwtSecret;
+    private final int jwtExpirationInSec;
+    // Null when jwt.cache.enabled=false
+    private final VerifiedTokenCache tokenCache;
+    private List<TokenRevocationCheck> revocationChecks = Collections.emptyList();
+    
+    public JwtTokenProvider(
+            @Value("${jwt.secret}") String jwtSecret,
+            @Value("${jwt.expiration}") int jwtExpirationInSec,
+            @Value("${jwt.cache.enabled:true}") boolean cacheEnabled,
+            @Value("${jwt.cache.max-size:10000}") int cacheMaxSize,
+            @Value("${jwt.cache.ttl-seconds:300}") long cacheTtlSeconds) {
+        this.jwtSecret = jwtSecret;
+        this.jwtExpirationInSec = jwtExpirationInSec;
+        this.tokenCache = cacheEnabled ? new VerifiedTokenCache(cacheMaxSize, cacheTtlSeconds * 1000) : null;
+    }
     
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    @Autowired(required = false)
+    public void setRevocationChecks(List<TokenRevocationCheck> revocationChecks) {
+        this.revocationChecks = revocationChecks;
+    }
     
-    @Value("${jwt.expiration}")
-    private int jwtExpirationInSec;
+    // Hit ratio of the verified-token cache, as cache.gets{cache=jwt} hits over all gets
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        if (tokenCache == null) {
+            return;
+        }
+        FunctionCounter.builder("cache.gets", tokenCache, VerifiedTokenCache::getHits)
+                .tags("cache", "jwt", "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", tokenCache, VerifiedTokenCache::getMisses)
+                .tags("cache", "jwt", "result", "miss").register(meterRegistry);
+        meterRegistry.gauge("cache.size", Tags.of("cache", "jwt"), tokenCache, VerifiedTokenCache::size);
+    }
     
-    // Generate token for user
-    public String generateToken(String email) {
+    // Generate token for user; id and roles go in the claims so requests need no user lookup
+    public String generateToken(Long userId, String email, Collection<String> roles) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, userId);
+        claims.put(ROLES_CLAIM, new ArrayList<>(roles));
         return createToken(claims, email);
     }
     
+    // Each token gets its own id (jti) so it can be revoked on its own
     private String createToken(Map<String, Object> claims, String subject) {
+        long now = System.currentTimeMillis();
+        claims.put(ISSUED_AT_MILLIS_CLAIM, now);
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationInSec * 1000))
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + jwtExpirationInSec * 1000L))
                 .signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
@@ -42,16 +91,23 @@ public class JwtTokenProvider {
         return getClaimFromToken(token, Claims::getSubject);
     }
     
-    // Check if token is valid
-    public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = getUsernameFromToken(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    /**
+     * Subject of a token an earlier request has already verified, or null.
+     * Neither the signature nor revocation is checked here, so this is only
+     * fit for bucketing requests, never for granting access.
+     */
+    public String getVerifiedSubject(String token) {
+        Claims claims = tokenCache == null ? null : tokenCache.peek(token);
+        return claims == null ? null : claims.getSubject();
     }
     
-    // Check if token is expired
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    /**
+     * Verify signature and expiry once and return the claims
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is invalid or expired
+     */
+    public Claims parseToken(String token) {
+        return getAllClaimsFromToken(token);
     }
     
     // Get expiration date from token
@@ -65,8 +121,24 @@ public class JwtTokenProvider {
         return claimsResolver.apply(claims);
     }
     
-    // Get all claims from token
+    // Get all claims from token, verifying the signature only on the first request with it
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
+        Claims claims = tokenCache == null ? null : tokenCache.get(token);
+        boolean cached = claims != null;
+        if (!cached) {
+            claims = Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
+        }
+        for (TokenRevocationCheck check : revocationChecks) {
+            if (check.isRevoked(claims)) {
+                if (cached) {
+                    tokenCache.invalidate(token);
+                }
+                throw new JwtException("Token has been revoked");
+            }
+        }
+        if (!cached && tokenCache != null) {
+            tokenCache.put(token, claims);
+        }
+        return claims;
     }
 }
\ No newline at end of file
@@ -0,0 +1,212 @@
+package com.savora.api.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding-window limits on password logins, checked before any bcrypt work:
+ * login attempts per client address, and failed attempts per account. The
+ * address limit stops one source spraying many accounts; the account limit
+ * stops many sources guessing one password. A successful login clears the
+ * account's failures.
+ *
+ * Each key keeps two fixed-window counts and estimates the sliding count as
+ * current + previous * (unexpired share of the previous window), so memory
+ * is a few fields per recently seen address or account.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final boolean trustForwardedFor;
+    private final SlidingWindowCounter attemptsByAddress;
+    private final SlidingWindowCounter failuresByAccount;
+    private final int maxAttemptsPerAddress;
+    private final int maxFailuresPerAccount;
+    private final ScheduledExecutorService sweeper;
+    private final Counter addressThrottled;
+    private final Counter accountThrottled;
+
+    public LoginThrottle(
+            MeterRegistry meterRegistry,
+            @Value("${auth.login-throttle.enabled:true}") boolean enabled,
+            @Value("${ratelimit.trust-forwarded-for:false}") boolean trustForwardedFor,
+            @Value("${auth.login-throttle.address.max-attempts:30}") int maxAttemptsPerAddress,
+            @Value("${auth.login-throttle.address.window-seconds:300}") long addressWindowSeconds,
+            @Value("${auth.login-throttle.account.max-failures:10}") int maxFailuresPerAccount,
+            @Value("${auth.login-throttle.account.window-seconds:900}") long accountWindowSeconds) {
+        this.enabled = enabled;
+        this.trustForwardedFor = trustForwardedFor;
+        this.maxAttemptsPerAddress = maxAttemptsPerAddress;
+        this.maxFailuresPerAccount = maxFailuresPerAccount;
+        this.attemptsByAddress = new SlidingWindowCounter(TimeUnit.SECONDS.toMillis(addressWindowSeconds), System::currentTimeMillis);
+        this.failuresByAccount = new SlidingWindowCounter(TimeUnit.SECONDS.toMillis(accountWindowSeconds), System::currentTimeMillis);
+        this.addressThrottled = meterRegistry.counter("savora.auth.login.throttled", "limit", "address");
+        this.accountThrottled = meterRegistry.counter("savora.auth.login.throttled", "limit", "account");
+        meterRegistry.gauge("savora.auth.login.throttle.keys", this,
+                throttle -> throttle.attemptsByAddress.size() + throttle.failuresByAccount.size());
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-throttle-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(() -> {
+            attemptsByAddress.sweep();
+            failuresByAccount.sweep();
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Count a login attempt from the address against the account
+     *
+     * @return 0 if it may go ahead, otherwise seconds the client should wait
+     */
+    public long tryAttempt(String address, String account) {
+        if (!enabled) {
+            return 0;
+        }
+        String accountKey = normalize(account);
+        if (failuresByAccount.estimate(accountKey) >= maxFailuresPerAccount) {
+            accountThrottled.increment();
+            return failuresByAccount.secondsUntilBelow(accountKey, maxFailuresPerAccount);
+        }
+        if (attemptsByAddress.incrementAndEstimate(address) > maxAttemptsPerAddress) {
+            addressThrottled.increment();
+            return attemptsByAddress.secondsUntilBelow(address, maxAttemptsPerAddress);
+        }
+        return 0;
+    }
+
+    public void recordFailure(String account) {
+        if (enabled) {
+            failuresByAccount.incrementAndEstimate(normalize(account));
+        }
+    }
+
+    public void recordSuccess(String account) {
+        if (enabled) {
+            failuresByAccount.reset(normalize(account));
+        }
+    }
+
+    public String clientAddress(HttpServletRequest request) {
+        return RateLimitFilter.clientAddress(request, trustForwardedFor);
+    }
+
+    private static String normalize(String account) {
+        return account == null ? "" : account.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    static final class SlidingWindowCounter {
+        private final long windowMillis;
+        private final LongSupplier clock;
+        private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+        SlidingWindowCounter(long windowMillis, LongSupplier clock) {
+            this.windowMillis = Math.max(1, windowMillis);
+            this.clock = clock;
+        }
+
+        double incrementAndEstimate(String key) {
+            long now = clock.getAsLong();
+            Window window = windows.computeIfAbsent(key, k -> new Window());
+            synchronized (window) {
+                window.roll(now / windowMillis);
+                window.current++;
+                return window.estimate(now, windowMillis);
+            }
+        }
+
+        double estimate(String key) {
+            Window window = windows.get(key);
+            if (window == null) {
+                return 0;
+            }
+            long now = clock.getAsLong();
+            synchronized (window) {
+                window.roll(now / windowMillis);
+                return window.estimate(now, windowMillis);
+            }
+        }
+
+        /**
+         * Seconds until the estimate drops below limit, assuming no new hits
+         */
+        long secondsUntilBelow(String key, int limit) {
+            Window window = windows.get(key);
+            if (window == null) {
+                return 1;
+            }
+            long now = clock.getAsLong();
+            synchronized (window) {
+                window.roll(now / windowMillis);
+                long windowEnd = (now / windowMillis + 1) * windowMillis;
+                double waitMillis;
+                if (window.current >= limit) {
+                    // Once rolled over, current * (1 - t / window) < limit
+                    waitMillis = windowEnd - now + windowMillis * (1 - limit / (double) window.current);
+                } else {
+                    // previous * (1 - t / window) + current < limit, within this window
+                    double elapsed = windowMillis * (1 - (limit - window.current) / (double) window.previous);
+                    waitMillis = windowEnd - windowMillis + elapsed - now;
+                }
+                return Math.max(1, (long) Math.ceil(waitMillis / 1000));
+            }
+        }
+
+        void reset(String key) {
+            windows.remove(key);
+        }
+
+        // Drop keys whose counts have fully aged out
+        void sweep() {
+            long epoch = clock.getAsLong() / windowMillis;
+            windows.values().removeIf(window -> {
+                synchronized (window) {
+                    return window.epoch < epoch - 1;
+                }
+            });
+        }
+
+        int size() {
+            return windows.size();
+        }
+    }
+
+    private static final class Window {
+        long epoch;
+        int previous;
+        int current;
+
+        void roll(long now) {
+            if (now == epoch) {
+                return;
+            }
+            previous = now == epoch + 1 ? current : 0;
+            current = 0;
+            epoch = now;
+        }
+
+        double estimate(long nowMillis, long windowMillis) {
+            double remaining = 1 - (nowMillis % windowMillis) / (double) windowMillis;
+            return current + previous * remaining;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.savora.api.security;
+
+/**
+ * Password hashing was refused because its pool is saturated; answer 503
+ * and let the client retry
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,307 @@
+package com.savora.api.security;
+
+import com.savora.api.service.KafkaProducerService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client rate limits and load shedding, ahead of Spring Security so a
+ * refused request costs no user lookup.
+ *
+ * ratelimit.routes lists "pattern=rate:burst:priority" entries, first match
+ * wins; a client is its JWT subject if an earlier request already verified
+ * its token (see JwtTokenProvider.getVerifiedSubject), otherwise its IP, so
+ * admission never parses a token. Requests that match no route are never
+ * limited or shed.
+ *
+ * Shedding looks at in-flight requests against the Tomcat pool, a moving
+ * average of request latency against ratelimit.shed.latency-target-ms and,
+ * for low-priority routes only, the Kafka send queue. Low-priority routes
+ * (event tracking, which the webapp can lose) are shed from
+ * ratelimit.shed.low-threshold, medium ones from medium-threshold, high ones
+ * never. Both refusals answer 429 with Retry-After. A request that goes
+ * async (event ingest) stays in flight and is timed until its AsyncContext
+ * completes, not until the filter chain returns.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String ALLOWED = "allowed";
+    private static final String LIMITED = "limited";
+    private static final String SHED = "shed";
+    private static final double LATENCY_SMOOTHING = 0.05;
+    // Ignore the latency average once nothing has been admitted for this long
+    private static final long LATENCY_STALE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final KafkaProducerService kafkaProducerService;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<Route> routes = new ArrayList<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final boolean enabled;
+    private final boolean trustForwardedFor;
+    private final int maxThreads;
+    private final double latencyTargetMs;
+    private final double lowThreshold;
+    private final double mediumThreshold;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Moving average of request latency in ms, as double bits
+    private final AtomicLong latencyAverage = new AtomicLong(Double.doubleToLongBits(0));
+    private final AtomicLong lastLatencySample = new AtomicLong(System.nanoTime());
+
+    public RateLimitFilter(
+            JwtTokenProvider jwtTokenProvider,
+            KafkaProducerService kafkaProducerService,
+            MeterRegistry meterRegistry,
+            @Value("${ratelimit.enabled:true}") boolean enabled,
+            @Value("${ratelimit.routes:}") String routeSpec,
+            @Value("${ratelimit.trust-forwarded-for:false}") boolean trustForwardedFor,
+            @Value("${server.tomcat.threads.max:200}") int maxThreads,
+            @Value("${ratelimit.shed.latency-target-ms:500}") double latencyTargetMs,
+            @Value("${ratelimit.shed.low-threshold:0.7}") double lowThreshold,
+            @Value("${ratelimit.shed.medium-threshold:0.9}") double mediumThreshold) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.kafkaProducerService = kafkaProducerService;
+        this.enabled = enabled;
+        this.trustForwardedFor = trustForwardedFor;
+        this.maxThreads = maxThreads;
+        this.latencyTargetMs = latencyTargetMs;
+        this.lowThreshold = lowThreshold;
+        this.mediumThreshold = mediumThreshold;
+
+        for (String entry : routeSpec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] patternAndBudget = entry.trim().split("=");
+            String[] budget = patternAndBudget[1].split(":");
+            Route route = new Route(patternAndBudget[0],
+                    new TokenBucketLimiter(Double.parseDouble(budget[0]), Integer.parseInt(budget[1])),
+                    Priority.valueOf(budget[2].toUpperCase(Locale.ROOT)));
+            route.allowed = decisionCounter(meterRegistry, route, ALLOWED);
+            route.limited = decisionCounter(meterRegistry, route, LIMITED);
+            route.shed = decisionCounter(meterRegistry, route, SHED);
+            routes.add(route);
+        }
+
+        meterRegistry.gauge("savora.ratelimit.pressure", this, filter -> filter.pressure(false));
+        meterRegistry.gauge("savora.ratelimit.clients", routes,
+                all -> all.stream().mapToInt(route -> route.limiter.size()).sum());
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ratelimit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sweeper.scheduleWithFixedDelay(() -> routes.forEach(route -> route.limiter.sweep()), 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // CORS preflights carry no credentials and must not use up the budget
+        return !enabled || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Route route = match(request.getServletPath());
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        double threshold = route.priority == Priority.LOW ? lowThreshold
+                : route.priority == Priority.MEDIUM ? mediumThreshold : Double.MAX_VALUE;
+        if (pressure(route.priority == Priority.LOW) >= threshold) {
+            route.shed.increment();
+            reject(response, 1, "Server is busy, retry later");
+            return;
+        }
+
+        long waitNanos = route.limiter.tryAcquire(clientKey(request));
+        if (waitNanos > 0) {
+            route.limited.increment();
+            reject(response, (int) Math.max(1, (long) Math.ceil(waitNanos / 1e9)), "Too many requests, retry later");
+            return;
+        }
+        route.allowed.increment();
+
+        long start = System.nanoTime();
+        inFlight.incrementAndGet();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(start));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                release(start);
+            }
+        }
+    }
+
+    private void release(long start) {
+        inFlight.decrementAndGet();
+        recordLatency((System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Highest of the load signals, each scaled so 1.0 means saturated
+     */
+    private double pressure(boolean includeEventQueue) {
+        double threads = (double) inFlight.get() / maxThreads;
+        // Shedding everything leaves no fresh samples, so a stale average must not keep it going
+        double latency = System.nanoTime() - lastLatencySample.get() > LATENCY_STALE_NANOS
+                ? 0 : Double.longBitsToDouble(latencyAverage.get()) / latencyTargetMs;
+        double pressure = Math.max(threads, latency);
+        return includeEventQueue ? Math.max(pressure, kafkaProducerService.getQueueFill()) : pressure;
+    }
+
+    private void recordLatency(double millis) {
+        lastLatencySample.set(System.nanoTime());
+        while (true) {
+            long bits = latencyAverage.get();
+            double average = Double.longBitsToDouble(bits);
+            double updated = average + LATENCY_SMOOTHING * (millis - average);
+            if (latencyAverage.compareAndSet(bits, Double.doubleToLongBits(updated))) {
+                return;
+            }
+        }
+    }
+
+    private Route match(String path) {
+        for (Route route : routes) {
+            if (pathMatcher.match(route.pattern, path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            String subject = jwtTokenProvider.getVerifiedSubject(bearerToken.substring(7));
+            if (subject != null) {
+                return "user:" + subject;
+            }
+            // Not verified yet, or invalid: limit by address like any anonymous client
+        }
+        return "ip:" + clientAddress(request, trustForwardedFor);
+    }
+
+    static String clientAddress(HttpServletRequest request, boolean trustForwardedFor) {
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (StringUtils.hasText(forwardedFor)) {
+                // Our proxy appends the address it saw last; earlier entries are client-controlled
+                String[] hops = forwardedFor.split(",");
+                return hops[hops.length - 1].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, int retryAfterSeconds, String message) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"" + message + "\"}");
+    }
+
+    private static Counter decisionCounter(MeterRegistry meterRegistry, Route route, String decision) {
+        return Counter.builder("savora.ratelimit.decisions")
+                .tag("route", route.pattern)
+                .tag("priority", route.priority.name().toLowerCase(Locale.ROOT))
+                .tag("decision", decision)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    // Releases an async request once, when the container completes it (also after a timeout or error)
+    private final class CompletionListener implements AsyncListener {
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        CompletionListener(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (released.compareAndSet(false, true)) {
+                release(start);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners do not carry over to a restarted async cycle
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private enum Priority {
+        LOW, MEDIUM, HIGH
+    }
+
+    private static final class Route {
+        final String pattern;
+        final TokenBucketLimiter limiter;
+        final Priority priority;
+        Counter allowed;
+        Counter limited;
+        Counter shed;
+
+        Route(String pattern, TokenBucketLimiter limiter, Priority priority) {
+            this.pattern = pattern;
+            this.limiter = limiter;
+            this.priority = priority;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.savora.api.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -8,8 +10,13 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class SecurityBeans {
     
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    // bcrypt runs on its own bounded pool so a login storm cannot take every request thread
+    @Bean(destroyMethod = "shutdown")
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${auth.password-hash.threads:0}") int threads,
+            @Value("${auth.password-hash.queue-capacity:32}") int queueCapacity,
+            @Value("${auth.password-hash.timeout-ms:5000}") long timeoutMs) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), meterRegistry, threads, queueCapacity, timeoutMs);
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.savora.api.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per key, stored as a single "bucket full again at" timestamp
+ * (the GCRA form of a token bucket), so a decision is one compare-and-set
+ * with no locks. Each allowed request moves the timestamp on by one token's
+ * refill time; a request is refused if that would put it more than burst
+ * tokens in the future.
+ *
+ * A bucket that has refilled completely is indistinguishable from a new one,
+ * so sweep() drops those and memory only grows with clients active within
+ * the last burst / rate seconds.
+ */
+public class TokenBucketLimiter {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    public TokenBucketLimiter(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    public TokenBucketLimiter(double tokensPerSecond, int burst, LongSupplier clock) {
+        if (tokensPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.nanosPerToken = (long) (1_000_000_000L / tokensPerSecond);
+        this.burstNanos = nanosPerToken * burst;
+        this.clock = clock;
+    }
+
+    /**
+     * Take one token for the key
+     *
+     * @return 0 if allowed, otherwise nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        AtomicLong fullAt = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + nanosPerToken;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Forget buckets that are full again
+     */
+    public void sweep() {
+        long now = clock.getAsLong();
+        buckets.values().removeIf(fullAt -> fullAt.get() <= now);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+}
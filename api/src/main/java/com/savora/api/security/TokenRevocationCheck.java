@@ -0,0 +1,13 @@
+package com.savora.api.security;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Hook consulted by JwtTokenProvider for every token it accepts, cached or
+ * freshly verified, so a revoked token is refused even while its claims are
+ * cached
+ */
+public interface TokenRevocationCheck {
+
+    boolean isRevoked(Claims claims);
+}
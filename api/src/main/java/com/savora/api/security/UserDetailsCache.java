@@ -0,0 +1,108 @@
+package com.savora.api.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Small LRU cache of UserDetails by email, for the few paths that still need
+ * database state per request (tokens without role claims). Entries live at
+ * most security.user-cache.ttl-seconds and are evicted explicitly when a
+ * user's password or profile changes.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Bumped by every evict, so a load that raced one is not cached
+    private long evictions;
+
+    public UserDetailsCache(
+            @Value("${security.user-cache.max-size:1000}") int maxSize,
+            @Value("${security.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > UserDetailsCache.this.maxSize;
+            }
+        };
+    }
+
+    // Hit ratio, as cache.gets{cache=user-details} hits over all gets
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("cache.gets", this, UserDetailsCache::getHits)
+                .tags("cache", "user-details", "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.gets", this, UserDetailsCache::getMisses)
+                .tags("cache", "user-details", "result", "miss").register(meterRegistry);
+        meterRegistry.gauge("cache.size", Tags.of("cache", "user-details"), this, UserDetailsCache::size);
+    }
+
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        long now = System.currentTimeMillis();
+        long evictionsBefore;
+        synchronized (entries) {
+            Entry entry = entries.get(email);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return entry.user;
+            }
+            evictionsBefore = evictions;
+        }
+        misses.increment();
+        // Load outside the lock; a concurrent miss for the same user just loads twice
+        UserDetails user = loader.apply(email);
+        synchronized (entries) {
+            if (evictions == evictionsBefore) {
+                entries.put(email, new Entry(user, now + ttlMillis));
+            }
+        }
+        return user;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void evict(String email) {
+        synchronized (entries) {
+            entries.remove(email);
+            evictions++;
+        }
+    }
+
+    private static final class Entry {
+        final UserDetails user;
+        final long expiresAt;
+
+        Entry(UserDetails user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.savora.api.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Claims of tokens whose signature has already been verified, keyed by the
+ * SHA-256 of the token so raw tokens are not kept in memory. A lookup costs
+ * one hash of the token instead of an HMAC-SHA512 verification and a JSON
+ * parse.
+ *
+ * An entry expires at the token's own expiry or after ttlMillis, whichever
+ * comes first, so a cached token is never accepted past its exp. When full,
+ * expired entries are dropped first and then an arbitrary eighth of the
+ * rest. Cached Claims are shared between requests and must not be modified.
+ */
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    public VerifiedTokenCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        if (maxSize < 1 || ttlMillis < 1) {
+            throw new IllegalArgumentException("Cache size and TTL must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Cached claims for the token, or null if it has to be verified
+     */
+    public Claims get(String token) {
+        Key key = Key.of(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (clock.getAsLong() >= entry.expiresAt) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.claims;
+    }
+
+    /**
+     * Like get, but left out of the hit ratio: for callers that only need to
+     * know whether the token was verified before
+     */
+    public Claims peek(String token) {
+        Entry entry = entries.get(Key.of(token));
+        return entry == null || clock.getAsLong() >= entry.expiresAt ? null : entry.claims;
+    }
+
+    public void put(String token, Claims claims) {
+        long now = clock.getAsLong();
+        long expiresAt = now + ttlMillis;
+        if (claims.getExpiration() != null) {
+            expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            makeRoom(now);
+        }
+        entries.put(Key.of(token), new Entry(claims, expiresAt));
+    }
+
+    public void invalidate(String token) {
+        entries.remove(Key.of(token));
+    }
+
+    /**
+     * Drop every entry whose claims match, e.g. all tokens of one user
+     */
+    public void invalidateIf(Predicate<Claims> predicate) {
+        entries.values().removeIf(entry -> predicate.test(entry.claims));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void makeRoom(long now) {
+        entries.values().removeIf(entry -> now >= entry.expiresAt);
+        int excess = entries.size() - maxSize + Math.max(1, maxSize / 8);
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (excess-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static final class Entry {
+        final Claims claims;
+        final long expiresAt;
+
+        Entry(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // The full 256-bit digest, so a colliding forged token is out of reach
+    private static final class Key {
+        final long a;
+        final long b;
+        final long c;
+        final long d;
+
+        private Key(long a, long b, long c, long d) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.d = d;
+        }
+
+        static Key of(String token) {
+            MessageDigest digest = SHA256.get();
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+            return new Key(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return a == key.a && b == key.b && c == key.c && d == key.d;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) a;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.savora.api.security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -26,13 +27,16 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final int managementPort;
 
     public WebSecurityConfig(UserDetailsService userDetailsService, 
                             PasswordEncoder passwordEncoder,
-                            JwtAuthenticationFilter jwtAuthenticationFilter) {
+                            JwtAuthenticationFilter jwtAuthenticationFilter,
+                            @Value("${management.server.port:-1}") int managementPort) {
         this.userDetailsService = userDetailsService;
         this.passwordEncoder = passwordEncoder;
         this.jwtAuthenticationFilter = jwtAuthenticationFilter;
+        this.managementPort = managementPort;
     }
 
     @Override
@@ -58,6 +62,10 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/recommendations/**").permitAll() // Allow access to recommendations
                 .antMatchers("/api/restaurants/**").permitAll() // Allow access to restaurants endpoints
                 .antMatchers("/api/cuisines/**").permitAll() // Allow access to cuisines if you have this endpoint
+                .requestMatchers(request -> request.getLocalPort() == managementPort).permitAll() // Metrics scraping on the internal management port
+                .antMatchers("/actuator/health").permitAll() // Allow health checks
+                .antMatchers("/actuator/**").hasRole("ADMIN") // Metrics stay private if actuator shares the public port
+                .antMatchers("/api/admin/**").hasRole("ADMIN") // Analytics over the event archive
                 .anyRequest().authenticated();
         
         // Add JWT filter before the standard authentication filter
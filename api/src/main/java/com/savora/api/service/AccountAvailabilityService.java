@@ -0,0 +1,131 @@
+package com.savora.api.service;
+
+import com.savora.api.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whether a username or email is still free, for registration and the
+ * signup form's as-you-type check. Bloom filters over every normalized
+ * username and email answer "free" without touching the database; only a
+ * possible hit is checked with a query. The filters are filled from the
+ * users table in the background after startup, and until that finishes
+ * every check goes to the database. The unique constraints on users stay
+ * the final arbiter for races between check and insert.
+ */
+@Service
+public class AccountAvailabilityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountAvailabilityService.class);
+
+    private static final long WARM_RETRY_SECONDS = 30;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final BloomFilter usernames;
+    private final BloomFilter emails;
+    private final ScheduledExecutorService warmExecutor;
+    private final Counter filterCounter;
+    private final Counter databaseCounter;
+
+    private volatile boolean warm;
+
+    public AccountAvailabilityService(
+            UserRepository userRepository,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${auth.availability.bloom.enabled:true}") boolean enabled,
+            @Value("${auth.availability.bloom.expected-users:1000000}") long expectedUsers,
+            @Value("${auth.availability.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.usernames = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.emails = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.warmExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-filter-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.filterCounter = meterRegistry.counter("savora.auth.availability.checks", "source", "filter");
+        this.databaseCounter = meterRegistry.counter("savora.auth.availability.checks", "source", "database");
+        meterRegistry.gauge("savora.auth.availability.bloom.fpp", usernames, BloomFilter::estimatedFalsePositiveRate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarming() {
+        if (enabled) {
+            warmExecutor.execute(this::warm);
+        }
+    }
+
+    public boolean isUsernameAvailable(String username) {
+        if (warm && !usernames.mightContain(normalize(username))) {
+            filterCounter.increment();
+            return true;
+        }
+        databaseCounter.increment();
+        return !userRepository.existsByUsername(username);
+    }
+
+    public boolean isEmailAvailable(String email) {
+        if (warm && !emails.mightContain(normalize(email))) {
+            filterCounter.increment();
+            return true;
+        }
+        databaseCounter.increment();
+        return !userRepository.existsByEmail(email);
+    }
+
+    /**
+     * Call after inserting a user or changing a username
+     */
+    public void recordTaken(String username, String email) {
+        if (username != null) {
+            usernames.put(normalize(username));
+        }
+        if (email != null) {
+            emails.put(normalize(email));
+        }
+    }
+
+    // Case-folded, so the filters can only err towards asking the database
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Users inserted meanwhile are recorded directly, so the scan only needs to see those before it
+    private void warm() {
+        try {
+            long start = System.currentTimeMillis();
+            jdbcTemplate.query("SELECT username, email FROM users", resultSet -> {
+                recordTaken(resultSet.getString(1), resultSet.getString(2));
+            });
+            warm = true;
+            logger.info("Account availability filters loaded {} users in {} ms",
+                    usernames.getInsertions(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.warn("Failed to load account availability filters, retrying in {} s: {}", WARM_RETRY_SECONDS, e.getMessage());
+            warmExecutor.schedule(this::warm, WARM_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmExecutor.shutdownNow();
+    }
+}
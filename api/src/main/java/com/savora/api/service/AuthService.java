@@ -6,17 +6,25 @@ import com.savora.api.dto.RegisterRequest;
 import com.savora.api.dto.UserDto;
 import com.savora.api.model.User;
 import com.savora.api.repository.UserRepository;
+import com.savora.api.security.AccountUserDetails;
 import com.savora.api.security.JwtTokenProvider;
+import com.savora.api.security.LoginThrottle;
+import com.savora.api.security.LoginThrottledException;
+import com.savora.api.security.PasswordHashingRejectedException;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class AuthService {
@@ -26,29 +34,41 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
     private final UserService userService;
+    private final LastLoginWriter lastLoginWriter;
+    private final AccountAvailabilityService accountAvailabilityService;
+    private final LoginThrottle loginThrottle;
+    private final TokenRevocationService tokenRevocationService;
 
     public AuthService(
             AuthenticationManager authenticationManager,
             UserRepository userRepository,
             PasswordEncoder passwordEncoder,
             JwtTokenProvider jwtTokenProvider,
-            UserService userService) {
+            UserService userService,
+            LastLoginWriter lastLoginWriter,
+            AccountAvailabilityService accountAvailabilityService,
+            LoginThrottle loginThrottle,
+            TokenRevocationService tokenRevocationService) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtTokenProvider = jwtTokenProvider;
         this.userService = userService;
+        this.lastLoginWriter = lastLoginWriter;
+        this.accountAvailabilityService = accountAvailabilityService;
+        this.loginThrottle = loginThrottle;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
-    @Transactional
+    // Not transactional: the single insert is, and a unique violation must not mark an outer transaction rollback-only
     public AuthResponse register(RegisterRequest registerRequest) {
-        // Check if username is already taken
-        if (userRepository.existsByUsername(registerRequest.getUsername())) {
+        // Check if username is already taken (a query only if the filter says it might be)
+        if (!accountAvailabilityService.isUsernameAvailable(registerRequest.getUsername())) {
             return new AuthResponse(false, "Username is already taken!", null, null);
         }
 
         // Check if email is already in use
-        if (userRepository.existsByEmail(registerRequest.getEmail())) {
+        if (!accountAvailabilityService.isEmailAvailable(registerRequest.getEmail())) {
             return new AuthResponse(false, "Email is already in use!", null, null);
         }
 
@@ -64,11 +84,16 @@ public class AuthService {
         
         user.setCreatedAt(LocalDateTime.now());
         
-        // Save the user in the database
-        userRepository.save(user);
+        // Save the user in the database; the unique constraints catch a name taken since the check
+        try {
+            userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            return new AuthResponse(false, "Username or email is already taken!", null, null);
+        }
+        accountAvailabilityService.recordTaken(user.getUsername(), user.getEmail());
         
         // Generate JWT token for the registered user
-        String jwt = jwtTokenProvider.generateToken(user.getEmail());
+        String jwt = jwtTokenProvider.generateToken(user.getId(), user.getEmail(), userService.getRoles(user.getEmail()));
         
         // Convert User to UserDto
         UserDto userDto = userService.mapToUserDto(user);
@@ -76,7 +101,15 @@ public class AuthService {
         return new AuthResponse(true, "User registered successfully!", jwt, userDto);
     }
 
-    public AuthResponse login(LoginRequest loginRequest) {
+    /**
+     * @throws LoginThrottledException if the address or account is over its login limit
+     * @throws PasswordHashingRejectedException if password checks are backed up
+     */
+    public AuthResponse login(LoginRequest loginRequest, String clientAddress) {
+        long retryAfterSeconds = loginThrottle.tryAttempt(clientAddress, loginRequest.getEmail());
+        if (retryAfterSeconds > 0) {
+            throw new LoginThrottledException(retryAfterSeconds);
+        }
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
@@ -85,21 +118,45 @@ public class AuthService {
                     )
             );
             
-            // Get the authenticated user email
-            String userEmail = loginRequest.getEmail();
+            loginThrottle.recordSuccess(loginRequest.getEmail());
             
-            // Generate JWT token
-            String jwt = jwtTokenProvider.generateToken(userEmail);
+            // Reuse the user row loaded to check the password; no further lookups
+            User user = ((AccountUserDetails) authentication.getPrincipal()).getAccount();
+            lastLoginWriter.record(user.getId(), LocalDateTime.now());
+            UserDto userDto = userService.mapToUserDto(user);
             
-            // Record login time
-            userService.recordLogin(userEmail);
-            
-            // Get user info
-            UserDto userDto = userService.getUserByEmail(userEmail);
+            // Generate JWT token with the roles just authenticated
+            List<String> roles = new ArrayList<>();
+            for (GrantedAuthority authority : authentication.getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+            String jwt = jwtTokenProvider.generateToken(user.getId(), user.getEmail(), roles);
             
             return new AuthResponse(true, "User logged in successfully!", jwt, userDto);
+        } catch (PasswordHashingRejectedException e) {
+            throw e;
         } catch (Exception e) {
+            if (e instanceof BadCredentialsException) {
+                loginThrottle.recordFailure(loginRequest.getEmail());
+            }
             return new AuthResponse(false, "Authentication failed: " + e.getMessage(), null, null);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Revoke the token; one that is already invalid or expired needs nothing
+     */
+    public void logout(String token) {
+        Claims claims;
+        try {
+            claims = jwtTokenProvider.parseToken(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return;
+        }
+        tokenRevocationService.revokeToken(claims);
+    }
+
+    public void logoutEverywhere(Long userId) {
+        tokenRevocationService.revokeAllTokens(userId);
+    }
+}
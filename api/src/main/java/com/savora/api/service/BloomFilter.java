@@ -0,0 +1,98 @@
+package com.savora.api.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over strings, sized for expectedInsertions at
+ * falsePositiveRate. Keys can be added but never removed, so a removed or
+ * renamed key only costs false positives. Safe for concurrent use: bits are
+ * set with CAS, and a lookup racing a put of the same key may miss it.
+ */
+public class BloomFilter {
+
+    private final int bitCount;
+    private final int hashes;
+    private final AtomicLongArray bits;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter settings");
+        }
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    /**
+     * False means the key was definitely never put
+     */
+    public boolean mightContain(CharSequence key) {
+        long hash1 = hash(key);
+        long hash2 = secondHash(hash1);
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash1, hash2, i);
+            if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void put(CharSequence key) {
+        long hash1 = hash(key);
+        long hash2 = secondHash(hash1);
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash1, hash2, i);
+            long mask = 1L << (bit & 63);
+            int word = bit >>> 6;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Expected false-positive rate from the insertions so far: (1 - e^(-k n / m))^k
+     */
+    public double estimatedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * insertions.get() / bitCount), hashes);
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public long getMemoryBytes() {
+        return (long) bits.length() * Long.BYTES;
+    }
+
+    // Kirsch-Mitzenmacher: k indexes from two hashes
+    private int index(long hash1, long hash2, int i) {
+        return (int) Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+    }
+
+    // 64-bit FNV-1a with a finalizer; the second hash is derived from it, odd so every step moves
+    private static long hash(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long secondHash(long hash1) {
+        return mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,145 @@
+package com.savora.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.model.Event;
+import com.savora.events.BinaryEvent;
+import com.savora.events.BinaryEventCodec;
+import com.savora.events.EventSchemaRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+
+/**
+ * Wire format for events on the user-events topic.
+ *
+ * With events.encoding=binary, events whose type has a registered schema are
+ * written in event-format's BinaryEventCodec layout, the one the archiver and
+ * sessionizer decode. Anything that does not fit its schema exactly (unknown
+ * type or field, wrong value type, non-UTC or sub-millisecond timestamp) is
+ * written as the JSON the topic has always carried. Readers tell the two
+ * apart by the first byte: JSON never starts with 0x00.
+ */
+@Service
+public class EventCodec {
+
+    private final ObjectMapper objectMapper;
+    private final BinaryEventCodec binaryCodec;
+    private final boolean binary;
+
+    public EventCodec(
+            ObjectMapper objectMapper,
+            EventSchemaRegistry registry,
+            @Value("${events.encoding:json}") String encoding) {
+        this.objectMapper = objectMapper;
+        this.binaryCodec = new BinaryEventCodec(registry);
+        this.binary = "binary".equalsIgnoreCase(encoding);
+    }
+
+    public byte[] encode(Event event) {
+        if (binary) {
+            byte[] encoded = encodeBinary(event);
+            if (encoded != null) {
+                return encoded;
+            }
+        }
+        return encodeJson(event);
+    }
+
+    public byte[] encodeJson(Event event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize event", e);
+        }
+    }
+
+    public Event decode(byte[] message) {
+        if (BinaryEventCodec.isBinary(message)) {
+            return decodeBinary(message);
+        }
+        try {
+            return objectMapper.readValue(message, Event.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to parse event", e);
+        }
+    }
+
+    /**
+     * Binary form of the event, or null if it has to fall back to JSON
+     */
+    public byte[] encodeBinary(Event event) {
+        Long millis = null;
+        if (event.getTimestamp() != null) {
+            millis = toEpochMillis(event.getTimestamp());
+            if (millis == null) {
+                return null;
+            }
+        }
+        return binaryCodec.encode(new BinaryEvent(event.getEventType(), event.getUserId(), millis,
+                event.getEventId(), event.getSessionId(), event.getData()));
+    }
+
+    private Event decodeBinary(byte[] message) {
+        BinaryEvent decoded = binaryCodec.decode(message);
+        Event event = new Event();
+        event.setEventType(decoded.getEventType());
+        event.setUserId(decoded.getUserId());
+        if (decoded.getTimestampMillis() != null) {
+            event.setTimestamp(Instant.ofEpochMilli(decoded.getTimestampMillis()).toString());
+        }
+        event.setEventId(decoded.getEventId());
+        event.setSessionId(decoded.getSessionId());
+        event.setData(new HashMap<>(decoded.getData()));
+        return event;
+    }
+
+    private static Long toEpochMillis(String timestamp) {
+        // Fast path for what the webapp sends: Date.toISOString(), yyyy-MM-ddTHH:mm:ss.SSSZ
+        if (timestamp.length() == 24 && timestamp.charAt(4) == '-' && timestamp.charAt(7) == '-'
+                && timestamp.charAt(10) == 'T' && timestamp.charAt(13) == ':' && timestamp.charAt(16) == ':'
+                && timestamp.charAt(19) == '.' && timestamp.charAt(23) == 'Z') {
+            int year = digits(timestamp, 0, 4);
+            int month = digits(timestamp, 5, 2);
+            int day = digits(timestamp, 8, 2);
+            int hour = digits(timestamp, 11, 2);
+            int minute = digits(timestamp, 14, 2);
+            int second = digits(timestamp, 17, 2);
+            int millis = digits(timestamp, 20, 3);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour < 24
+                    && minute >= 0 && minute < 60 && second >= 0 && second < 60 && millis >= 0
+                    && day <= LocalDate.of(year, month, 1).lengthOfMonth()) {
+                long epochDay = LocalDate.of(year, month, day).toEpochDay();
+                return ((epochDay * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+            }
+        }
+        try {
+            OffsetDateTime parsed = OffsetDateTime.parse(timestamp);
+            if (!ZoneOffset.UTC.equals(parsed.getOffset()) || parsed.getNano() % 1_000_000 != 0) {
+                return null;
+            }
+            return parsed.toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
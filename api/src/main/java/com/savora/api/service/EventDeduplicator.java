@@ -0,0 +1,117 @@
+package com.savora.api.service;
+
+import com.savora.api.model.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Drops events already seen within events.dedup.window-ms. An event is
+ * identified by its client-supplied eventId when it has one, otherwise by a
+ * hash of type, user (or session, if anonymous) and data (not the timestamp, which differs between a
+ * double-click's two events). Backed by a RollingBloomFilter, so memory is
+ * fixed and a small, measured fraction of new events is dropped as
+ * duplicates: see savora.events.dedup.false.positive.rate.
+ */
+@Service
+public class EventDeduplicator {
+
+    private final boolean enabled;
+    private final RollingBloomFilter filter;
+    private final Counter duplicateCounter;
+
+    public EventDeduplicator(
+            MeterRegistry meterRegistry,
+            @Value("${events.dedup.enabled:true}") boolean enabled,
+            @Value("${events.dedup.window-ms:60000}") long windowMs,
+            @Value("${events.dedup.slices:6}") int slices,
+            @Value("${events.dedup.expected-per-slice:100000}") long expectedPerSlice,
+            @Value("${events.dedup.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.enabled = enabled;
+        this.filter = new RollingBloomFilter(windowMs, slices, expectedPerSlice, falsePositiveRate);
+        this.duplicateCounter = meterRegistry.counter("savora.events.duplicates");
+        meterRegistry.gauge("savora.events.dedup.false.positive.rate", filter, RollingBloomFilter::estimatedFalsePositiveRate);
+        meterRegistry.gauge("savora.events.dedup.memory.bytes", filter, RollingBloomFilter::getMemoryBytes);
+    }
+
+    /**
+     * Fingerprint to pass to isDuplicate and remember
+     */
+    public long[] fingerprint(Event event) {
+        StringBuilder key = new StringBuilder(128);
+        key.append(event.getEventType()).append('|').append(event.getUserId()).append('|');
+        if (event.getUserId() == null) {
+            key.append(event.getSessionId()).append('|');
+        }
+        if (event.getEventId() != null && !event.getEventId().isEmpty()) {
+            key.append("id:").append(event.getEventId());
+        } else {
+            appendCanonical(key, event.getData());
+        }
+        return hash(key);
+    }
+
+    public boolean isDuplicate(long[] fingerprint) {
+        if (!enabled || !filter.mightContain(fingerprint[0], fingerprint[1])) {
+            return false;
+        }
+        duplicateCounter.increment();
+        return true;
+    }
+
+    /**
+     * Call once the event has been accepted, so a rejected event can be retried
+     */
+    public void remember(long[] fingerprint) {
+        if (enabled) {
+            filter.put(fingerprint[0], fingerprint[1]);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Map entries in key order so equal data always gives the same key
+    private static void appendCanonical(StringBuilder key, Object value) {
+        if (value instanceof Map) {
+            key.append('{');
+            for (Map.Entry<?, ?> entry : new TreeMap<>((Map<?, ?>) value).entrySet()) {
+                key.append(entry.getKey()).append('=');
+                appendCanonical(key, entry.getValue());
+                key.append(',');
+            }
+            key.append('}');
+        } else if (value instanceof Collection) {
+            key.append('[');
+            for (Object item : (Collection<?>) value) {
+                appendCanonical(key, item);
+                key.append(',');
+            }
+            key.append(']');
+        } else {
+            key.append(value);
+        }
+    }
+
+    // 64-bit FNV-1a, then two differently seeded finalizers for the filter's two hashes
+    private static long[] hash(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return new long[] {mix(h), mix(h ^ 0x9E3779B97F4A7C15L) | 1};
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
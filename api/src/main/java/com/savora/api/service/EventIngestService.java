@@ -0,0 +1,182 @@
+package com.savora.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.dto.EventBatchResponse;
+import com.savora.api.dto.EventBatchResponse.ItemStatus;
+import com.savora.api.model.Event;
+import com.savora.events.EventSchema;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validation, duplicate suppression and hand-off to Kafka for tracked
+ * events, shared by EventController and the non-blocking EventIngestServlet.
+ * Nothing here blocks: the Kafka hand-off only enqueues.
+ */
+@Service
+public class EventIngestService {
+
+    public enum Outcome {
+        ACCEPTED, DUPLICATE, QUEUE_FULL
+    }
+
+    private final KafkaProducerService kafkaProducerService;
+    private final UserAffinityService userAffinityService;
+    private final EventDeduplicator eventDeduplicator;
+    private final ObjectMapper objectMapper;
+    private final int maxBatchSize;
+
+    public EventIngestService(
+            KafkaProducerService kafkaProducerService,
+            UserAffinityService userAffinityService,
+            EventDeduplicator eventDeduplicator,
+            ObjectMapper objectMapper,
+            // Large enough for a few seconds of client-side buffering of scroll views
+            @Value("${events.batch.max-size:1000}") int maxBatchSize) {
+        this.kafkaProducerService = kafkaProducerService;
+        this.userAffinityService = userAffinityService;
+        this.eventDeduplicator = eventDeduplicator;
+        this.objectMapper = objectMapper;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param authenticatedUserId id of the caller's token, or null if
+     *        anonymous; only events for that user update online affinity
+     * @throws InvalidEventException if the event fails the checks a batch item would
+     */
+    public Outcome track(Event event, Long authenticatedUserId) {
+        String error = validate(event);
+        if (error != null) {
+            throw new InvalidEventException(error);
+        }
+        long[] fingerprint = eventDeduplicator.fingerprint(event);
+        if (eventDeduplicator.isDuplicate(fingerprint)) {
+            // Already have it: acknowledge so the client stops retrying
+            return Outcome.DUPLICATE;
+        }
+        if (!kafkaProducerService.sendEventAsync(event)) {
+            // The client retries; only the accepted copy may count towards affinity
+            return Outcome.QUEUE_FULL;
+        }
+        eventDeduplicator.remember(fingerprint);
+        userAffinityService.recordEvent(event, authenticatedUserId);
+        return Outcome.ACCEPTED;
+    }
+
+    /**
+     * Parse newline-delimited JSON, one event per line, and track it as a batch
+     */
+    public EventBatchResponse trackNdjson(String body, Long authenticatedUserId) {
+        List<Event> parsed = new ArrayList<>();
+        List<String> parseErrors = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                parsed.add(objectMapper.readValue(line, Event.class));
+                parseErrors.add(null);
+            } catch (Exception e) {
+                parsed.add(null);
+                parseErrors.add("Malformed JSON");
+            }
+        }
+        return trackBatch(parsed, parseErrors, authenticatedUserId);
+    }
+
+    public EventBatchResponse trackBatch(List<Event> events, Long authenticatedUserId) {
+        return trackBatch(events, new ArrayList<>(), authenticatedUserId);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the batch has more than events.batch.max-size events
+     */
+    private EventBatchResponse trackBatch(List<Event> events, List<String> parseErrors, Long authenticatedUserId) {
+        if (events.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " events per batch");
+        }
+
+        EventBatchResponse response = new EventBatchResponse();
+        List<Event> valid = new ArrayList<>(events.size());
+        List<Integer> validIndexes = new ArrayList<>(events.size());
+        List<long[]> fingerprints = new ArrayList<>(events.size());
+        Set<Long> seenInBatch = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            String error = i < parseErrors.size() && parseErrors.get(i) != null ? parseErrors.get(i) : validate(event);
+            if (error != null) {
+                response.addResult(i, ItemStatus.INVALID, error);
+                continue;
+            }
+            long[] fingerprint = eventDeduplicator.fingerprint(event);
+            if (eventDeduplicator.isDuplicate(fingerprint)
+                    || (eventDeduplicator.isEnabled() && !seenInBatch.add(fingerprint[0]))) {
+                response.addResult(i, ItemStatus.DUPLICATE, null);
+                continue;
+            }
+            valid.add(event);
+            validIndexes.add(i);
+            fingerprints.add(fingerprint);
+        }
+
+        boolean queued = kafkaProducerService.sendEventsAsync(valid);
+        for (int i = 0; i < valid.size(); i++) {
+            if (queued) {
+                eventDeduplicator.remember(fingerprints.get(i));
+                userAffinityService.recordEvent(valid.get(i), authenticatedUserId);
+                response.addResult(validIndexes.get(i), ItemStatus.ACCEPTED, null);
+            } else {
+                response.addResult(validIndexes.get(i), ItemStatus.DROPPED, "Event queue is full, retry later");
+            }
+        }
+        response.getResults().sort((a, b) -> Integer.compare(a.getIndex(), b.getIndex()));
+        return response;
+    }
+
+    /**
+     * True if events of the batch were dropped because the queue was full,
+     * which callers answer with 503
+     */
+    public static boolean isQueueFull(EventBatchResponse response) {
+        return response.getResults().stream().anyMatch(result -> ItemStatus.DROPPED.equals(result.getStatus()));
+    }
+
+    /**
+     * Returns a reason the event cannot be accepted, or null if it is valid.
+     * Missing timestamps are filled with the server time.
+     */
+    private String validate(Event event) {
+        if (event == null) {
+            return "Empty event";
+        }
+        if (!EventSchema.isValidEventType(event.getEventType())) {
+            return "eventType is missing or malformed";
+        }
+        if (event.getEventId() != null && event.getEventId().length() > 128) {
+            return "eventId must be at most 128 characters";
+        }
+        if (event.getSessionId() != null && event.getSessionId().length() > 128) {
+            return "sessionId must be at most 128 characters";
+        }
+        if (event.getTimestamp() == null || event.getTimestamp().isEmpty()) {
+            event.setTimestamp(Instant.now().truncatedTo(ChronoUnit.MILLIS).toString());
+        } else {
+            try {
+                OffsetDateTime.parse(event.getTimestamp());
+            } catch (DateTimeParseException e) {
+                return "timestamp must be ISO-8601 with an offset";
+            }
+        }
+        return null;
+    }
+}
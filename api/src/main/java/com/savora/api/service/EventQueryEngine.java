@@ -0,0 +1,583 @@
+package com.savora.api.service;
+
+import com.savora.api.dto.EventQueryRequest;
+import com.savora.api.dto.EventQueryResponse;
+import com.savora.events.ColumnarEventFile;
+import com.savora.events.ColumnarFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Aggregate queries over the archiver's output (date=/event_type=/*.svc).
+ *
+ * Planning prunes whole partitions by their directory names, then files by
+ * the timestamp range in their footers. Each remaining file is one task on a
+ * fixed pool: it reads only the columns the query names, narrows a selection
+ * vector of row numbers filter by filter, and counts groups over int codes
+ * (dictionary codes for strings, day numbers for "day"), into a flat array
+ * when the key space is small. Partial results are merged by group label
+ * and the top groups kept.
+ */
+@Service
+public class EventQueryEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventQueryEngine.class);
+
+    static final String DAY = "day";
+    static final String EVENT_TYPE = "eventType";
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final int MAX_GROUP_COLUMNS = 3;
+    private static final int MAX_LIMIT = 1000;
+    // Key spaces up to this size are counted in an array rather than a map
+    private static final int DENSE_KEY_LIMIT = 1 << 20;
+
+    private final Path archiveDir;
+    private final int maxDays;
+    private final long timeoutMs;
+    private final ExecutorService executor;
+
+    public EventQueryEngine(
+            @Value("${analytics.archive.dir:archive}") String archiveDir,
+            @Value("${analytics.query.threads:0}") int threads,
+            @Value("${analytics.query.max-days:366}") int maxDays,
+            @Value("${analytics.query.timeout-ms:60000}") long timeoutMs) {
+        this.archiveDir = Paths.get(archiveDir);
+        this.maxDays = maxDays;
+        this.timeoutMs = timeoutMs;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "event-query-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public EventQueryResponse query(EventQueryRequest request) {
+        validate(request);
+        long started = System.nanoTime();
+        EventQueryResponse response = new EventQueryResponse();
+        response.setColumns(new ArrayList<>(request.getGroupBy()));
+
+        long fromMillis = request.getFrom().toEpochDay() * DAY_MILLIS;
+        long toMillis = (request.getTo().toEpochDay() + 1) * DAY_MILLIS;
+        List<Path> files = plan(request, response);
+
+        List<Future<Partial>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(executor.submit(() -> scan(file, request, fromMillis, toMillis)));
+        }
+
+        boolean users = EventQueryRequest.METRIC_USERS.equals(request.getMetric());
+        Map<List<String>, long[]> counts = new HashMap<>();
+        Map<List<String>, LongSet> distinctUsers = new HashMap<>();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try {
+            for (Future<Partial> future : futures) {
+                Partial partial = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (partial == null) {
+                    response.setFilesPruned(response.getFilesPruned() + 1);
+                    continue;
+                }
+                response.setFilesScanned(response.getFilesScanned() + 1);
+                response.setRowsScanned(response.getRowsScanned() + partial.rowsScanned);
+                response.setRowsMatched(response.getRowsMatched() + partial.rowsMatched);
+                if (users) {
+                    partial.users.forEach((key, ids) ->
+                            distinctUsers.computeIfAbsent(key, k -> new LongSet()).addAll(ids));
+                } else {
+                    partial.counts.forEach((key, count) -> counts.computeIfAbsent(key, k -> new long[1])[0] += count[0]);
+                }
+            }
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Query took longer than " + timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Query interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to scan archive: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        // Top k by value, ties broken by key so results are stable
+        PriorityQueue<EventQueryResponse.Row> top = new PriorityQueue<>((a, b) -> a.getValue() != b.getValue()
+                ? Long.compare(a.getValue(), b.getValue()) : compareKeys(b.getKey(), a.getKey()));
+        if (users) {
+            distinctUsers.forEach((key, ids) -> offer(top, new EventQueryResponse.Row(key, ids.size()), request.getLimit()));
+            response.setGroups(distinctUsers.size());
+        } else {
+            counts.forEach((key, count) -> offer(top, new EventQueryResponse.Row(key, count[0]), request.getLimit()));
+            response.setGroups(counts.size());
+        }
+        List<EventQueryResponse.Row> rows = new ArrayList<>(top);
+        rows.sort(top.comparator().reversed());
+        response.setRows(rows);
+        response.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        logger.debug("Event query over {} files ({} rows) took {} ms",
+                response.getFilesScanned(), response.getRowsScanned(), response.getElapsedMs());
+        return response;
+    }
+
+    private void validate(EventQueryRequest request) {
+        if (request.getFrom() == null || request.getTo() == null) {
+            throw new IllegalArgumentException("from and to are required");
+        }
+        if (request.getTo().isBefore(request.getFrom())) {
+            throw new IllegalArgumentException("to must not be before from");
+        }
+        if (request.getTo().toEpochDay() - request.getFrom().toEpochDay() >= maxDays) {
+            throw new IllegalArgumentException("Range is limited to " + maxDays + " days");
+        }
+        if (request.getGroupBy() == null) {
+            request.setGroupBy(new ArrayList<>());
+        }
+        if (request.getEventTypes() == null) {
+            request.setEventTypes(new ArrayList<>());
+        }
+        if (request.getFilters() == null) {
+            request.setFilters(new HashMap<>());
+        }
+        if (request.getGroupBy().size() > MAX_GROUP_COLUMNS) {
+            throw new IllegalArgumentException("At most " + MAX_GROUP_COLUMNS + " group by columns");
+        }
+        if (new HashSet<>(request.getGroupBy()).size() != request.getGroupBy().size()) {
+            throw new IllegalArgumentException("Group by columns must be distinct");
+        }
+        if (!EventQueryRequest.METRIC_COUNT.equals(request.getMetric())
+                && !EventQueryRequest.METRIC_USERS.equals(request.getMetric())) {
+            throw new IllegalArgumentException("metric must be count or users");
+        }
+        if (request.getLimit() < 1 || request.getLimit() > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+
+    /**
+     * Files under the partitions the query can match
+     */
+    private List<Path> plan(EventQueryRequest request, EventQueryResponse response) {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(archiveDir)) {
+            return files;
+        }
+        Set<String> eventTypes = new HashSet<>(request.getEventTypes());
+        try (DirectoryStream<Path> dates = Files.newDirectoryStream(archiveDir, "date=*")) {
+            for (Path dateDir : dates) {
+                LocalDate date = partitionDate(dateDir);
+                if (date == null || date.isBefore(request.getFrom()) || date.isAfter(request.getTo())) {
+                    response.setPartitionsPruned(response.getPartitionsPruned() + 1);
+                    continue;
+                }
+                try (DirectoryStream<Path> types = Files.newDirectoryStream(dateDir, "event_type=*")) {
+                    for (Path typeDir : types) {
+                        String eventType = typeDir.getFileName().toString().substring("event_type=".length());
+                        if (!eventTypes.isEmpty() && !eventTypes.contains(eventType)) {
+                            response.setPartitionsPruned(response.getPartitionsPruned() + 1);
+                            continue;
+                        }
+                        response.setPartitionsScanned(response.getPartitionsScanned() + 1);
+                        // Skip the dot-prefixed temp files of writes still in progress
+                        try (DirectoryStream<Path> parts = Files.newDirectoryStream(typeDir,
+                                "[!.]*" + ColumnarFormat.FILE_SUFFIX)) {
+                            parts.forEach(files::add);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list archive " + archiveDir, e);
+        }
+        return files;
+    }
+
+    private static LocalDate partitionDate(Path dateDir) {
+        try {
+            return LocalDate.parse(dateDir.getFileName().toString().substring("date=".length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Aggregate one file, or null if its footer shows it is out of range
+     */
+    private static Partial scan(Path path, EventQueryRequest request, long fromMillis, long toMillis) throws IOException {
+        ColumnarEventFile file = ColumnarEventFile.open(path);
+        if (file.getMaxTimestamp() < fromMillis || file.getMinTimestamp() >= toMillis || file.getRowCount() == 0) {
+            return null;
+        }
+        Map<String, ColumnarEventFile.Column> columns = new HashMap<>();
+        int rowCount = file.getRowCount();
+
+        // Selection vector: the row numbers still in play, narrowed in place
+        int[] selection = new int[rowCount];
+        int selected = 0;
+        if (file.getMinTimestamp() >= fromMillis && file.getMaxTimestamp() < toMillis) {
+            for (int row = 0; row < rowCount; row++) {
+                selection[selected++] = row;
+            }
+        } else {
+            long[] timestamps = column(file, columns, ColumnarFormat.TIMESTAMP_COLUMN).getLongs();
+            for (int row = 0; row < rowCount; row++) {
+                if (timestamps[row] >= fromMillis && timestamps[row] < toMillis) {
+                    selection[selected++] = row;
+                }
+            }
+        }
+
+        for (Map.Entry<String, String> filter : request.getFilters().entrySet()) {
+            selected = applyFilter(file, columns, filter.getKey(), filter.getValue(), selection, selected);
+        }
+
+        Partial partial = new Partial();
+        partial.rowsScanned = rowCount;
+        partial.rowsMatched = selected;
+
+        List<String> groupBy = request.getGroupBy();
+        KeyColumn[] keys = new KeyColumn[groupBy.size()];
+        long keySpace = 1;
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyColumn(file, columns, groupBy.get(i));
+            if (keySpace > Long.MAX_VALUE / keys[i].labels.length) {
+                throw new IllegalArgumentException("Too many distinct groups in " + path.getFileName());
+            }
+            keySpace *= keys[i].labels.length;
+        }
+
+        // Mixed-radix composite key: one long per row however many columns
+        long[] composite = new long[selected];
+        for (KeyColumn key : keys) {
+            int radix = key.labels.length;
+            if (key.codes == null) {
+                for (int i = 0; i < selected; i++) {
+                    composite[i] *= radix;
+                }
+            } else {
+                int[] codes = key.codes;
+                for (int i = 0; i < selected; i++) {
+                    composite[i] = composite[i] * radix + codes[selection[i]];
+                }
+            }
+        }
+
+        if (EventQueryRequest.METRIC_USERS.equals(request.getMetric())) {
+            ColumnarEventFile.Column userIds = column(file, columns, ColumnarFormat.USER_ID_COLUMN);
+            long[] userIdValues = userIds.getLongs();
+            Map<Long, LongSet> users = new HashMap<>();
+            LongSet last = null;
+            long lastKey = -1;
+            for (int i = 0; i < selected; i++) {
+                int row = selection[i];
+                if (userIds.isPresent(row)) {
+                    if (last == null || composite[i] != lastKey) {
+                        lastKey = composite[i];
+                        last = users.computeIfAbsent(lastKey, k -> new LongSet());
+                    }
+                    last.add(userIdValues[row]);
+                }
+            }
+            partial.users = new HashMap<>();
+            users.forEach((key, ids) -> partial.users.put(labels(keys, key), ids));
+        } else if (keySpace <= DENSE_KEY_LIMIT) {
+            long[] counts = new long[(int) keySpace];
+            for (int i = 0; i < selected; i++) {
+                counts[(int) composite[i]]++;
+            }
+            partial.counts = new HashMap<>();
+            for (int key = 0; key < counts.length; key++) {
+                if (counts[key] > 0) {
+                    partial.counts.put(labels(keys, key), new long[] {counts[key]});
+                }
+            }
+        } else {
+            Map<Long, long[]> counts = new HashMap<>();
+            for (int i = 0; i < selected; i++) {
+                counts.computeIfAbsent(composite[i], k -> new long[1])[0]++;
+            }
+            partial.counts = new HashMap<>();
+            counts.forEach((key, count) -> partial.counts.put(labels(keys, key), count));
+        }
+        return partial;
+    }
+
+    private static int applyFilter(ColumnarEventFile file, Map<String, ColumnarEventFile.Column> columns,
+                                   String name, String value, int[] selection, int selected) throws IOException {
+        int kept = 0;
+        if (EVENT_TYPE.equals(name)) {
+            return file.getEventType().equals(value) ? selected : 0;
+        }
+        if (DAY.equals(name)) {
+            long day;
+            try {
+                day = LocalDate.parse(value).toEpochDay();
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("day filter must be yyyy-MM-dd");
+            }
+            long[] timestamps = column(file, columns, ColumnarFormat.TIMESTAMP_COLUMN).getLongs();
+            for (int i = 0; i < selected; i++) {
+                if (Math.floorDiv(timestamps[selection[i]], DAY_MILLIS) == day) {
+                    selection[kept++] = selection[i];
+                }
+            }
+            return kept;
+        }
+        ColumnarEventFile.Column column = column(file, columns, name);
+        if (column.getCodes() != null) {
+            // Compare dictionary codes, not strings
+            int code = Arrays.asList(column.getDictionary()).indexOf(value);
+            if (code < 0) {
+                return 0;
+            }
+            int[] codes = column.getCodes();
+            for (int i = 0; i < selected; i++) {
+                if (codes[selection[i]] == code) {
+                    selection[kept++] = selection[i];
+                }
+            }
+            return kept;
+        }
+        for (int i = 0; i < selected; i++) {
+            if (value.equals(column.text(selection[i]))) {
+                selection[kept++] = selection[i];
+            }
+        }
+        return kept;
+    }
+
+    private static KeyColumn keyColumn(ColumnarEventFile file, Map<String, ColumnarEventFile.Column> columns,
+                                       String name) throws IOException {
+        KeyColumn key = new KeyColumn();
+        if (EVENT_TYPE.equals(name)) {
+            key.labels = new String[] {file.getEventType()};
+            return key;
+        }
+        if (DAY.equals(name)) {
+            long firstDay = Math.floorDiv(file.getMinTimestamp(), DAY_MILLIS);
+            int days = (int) (Math.floorDiv(file.getMaxTimestamp(), DAY_MILLIS) - firstDay + 1);
+            key.labels = new String[days];
+            for (int i = 0; i < days; i++) {
+                key.labels[i] = LocalDate.ofEpochDay(firstDay + i).toString();
+            }
+            long[] timestamps = column(file, columns, ColumnarFormat.TIMESTAMP_COLUMN).getLongs();
+            key.codes = new int[timestamps.length];
+            for (int row = 0; row < timestamps.length; row++) {
+                key.codes[row] = (int) (Math.floorDiv(timestamps[row], DAY_MILLIS) - firstDay);
+            }
+            return key;
+        }
+        ColumnarEventFile.Column column = column(file, columns, name);
+        int[] codes = column.getCodes();
+        if (codes != null) {
+            // Null takes the code after the dictionary
+            int nullCode = column.getDictionary().length;
+            key.labels = Arrays.copyOf(column.getDictionary(), nullCode + 1);
+            key.codes = new int[codes.length];
+            for (int row = 0; row < key.codes.length; row++) {
+                key.codes[row] = codes[row] < 0 ? nullCode : codes[row];
+            }
+            return key;
+        }
+        // Numbers: code each row by its rank among the file's sorted distinct values
+        long[] longs = column.getLongs();
+        double[] doubles = column.getDoubles();
+        int rows = file.getRowCount();
+        long[] values = new long[rows];
+        int present = 0;
+        for (int row = 0; row < rows; row++) {
+            if (column.isPresent(row)) {
+                // Doubles are ranked by their sortable bit pattern
+                values[present++] = longs != null ? longs[row] : sortableBits(doubles[row]);
+            }
+        }
+        Arrays.sort(values, 0, present);
+        int distinct = 0;
+        for (int i = 0; i < present; i++) {
+            if (i == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        key.labels = new String[distinct + 1];
+        for (int i = 0; i < distinct; i++) {
+            key.labels[i] = longs != null ? String.valueOf(values[i])
+                    : String.valueOf(Double.longBitsToDouble(unsortableBits(values[i])));
+        }
+        key.codes = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            key.codes[row] = !column.isPresent(row) ? distinct : Arrays.binarySearch(values, 0, distinct,
+                    longs != null ? longs[row] : sortableBits(doubles[row]));
+        }
+        return key;
+    }
+
+    private static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+    }
+
+    private static long unsortableBits(long bits) {
+        return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+    }
+
+    private static ColumnarEventFile.Column column(ColumnarEventFile file, Map<String, ColumnarEventFile.Column> columns,
+                                                   String name) throws IOException {
+        ColumnarEventFile.Column column = columns.get(name);
+        if (column == null) {
+            column = file.readColumn(name);
+            columns.put(name, column);
+        }
+        return column;
+    }
+
+    private static List<String> labels(KeyColumn[] keys, long composite) {
+        String[] labels = new String[keys.length];
+        for (int i = keys.length - 1; i >= 0; i--) {
+            int radix = keys[i].labels.length;
+            labels[i] = keys[i].labels[(int) (composite % radix)];
+            composite /= radix;
+        }
+        return Collections.unmodifiableList(Arrays.asList(labels));
+    }
+
+    private static void offer(PriorityQueue<EventQueryResponse.Row> top, EventQueryResponse.Row row, int limit) {
+        top.offer(row);
+        if (top.size() > limit) {
+            top.poll();
+        }
+    }
+
+    private static int compareKeys(List<String> a, List<String> b) {
+        for (int i = 0; i < a.size(); i++) {
+            String x = a.get(i);
+            String y = b.get(i);
+            int order = x == null ? (y == null ? 0 : -1) : y == null ? 1 : x.compareTo(y);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Group column of one file: a code per row (none if constant) and the label of each code
+    private static final class KeyColumn {
+        int[] codes;
+        String[] labels;
+    }
+
+    private static final class Partial {
+        long rowsScanned;
+        long rowsMatched;
+        Map<List<String>, long[]> counts;
+        Map<List<String>, LongSet> users;
+    }
+
+    /**
+     * Open-addressing set of longs, so distinct counts do not box every user id
+     */
+    static final class LongSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] slots = newSlots(16);
+        private int size;
+        private boolean hasEmptyValue;
+
+        void add(long value) {
+            if (value == EMPTY) {
+                if (!hasEmptyValue) {
+                    hasEmptyValue = true;
+                    size++;
+                }
+                return;
+            }
+            if ((size + 1) * 2 > slots.length) {
+                grow();
+            }
+            if (insert(slots, value)) {
+                size++;
+            }
+        }
+
+        void addAll(LongSet other) {
+            for (long value : other.slots) {
+                if (value != EMPTY) {
+                    add(value);
+                }
+            }
+            if (other.hasEmptyValue) {
+                add(EMPTY);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] grown = newSlots(slots.length * 2);
+            for (long value : slots) {
+                if (value != EMPTY) {
+                    insert(grown, value);
+                }
+            }
+            slots = grown;
+        }
+
+        private static boolean insert(long[] slots, long value) {
+            int mask = slots.length - 1;
+            long mixed = value * 0x9E3779B97F4A7C15L;
+            int slot = (int) (mixed ^ (mixed >>> 32)) & mask;
+            while (slots[slot] != EMPTY) {
+                if (slots[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = value;
+            return true;
+        }
+
+        private static long[] newSlots(int capacity) {
+            long[] slots = new long[capacity];
+            Arrays.fill(slots, EMPTY);
+            return slots;
+        }
+    }
+}
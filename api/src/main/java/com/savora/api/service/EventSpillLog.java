@@ -0,0 +1,314 @@
+package com.savora.api.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped spill log for events that could not be handed
+ * to Kafka. Records live in fixed-size segment files:
+ *
+ *   [int length][int crc32(payload)][payload]
+ *
+ * The length is written last, so a record is visible only once complete; a
+ * zero length marks the end of a segment. On open, the tail is scanned and
+ * anything after the first torn or CRC-failing record is zeroed.
+ *
+ * Disk usage is bounded by segmentBytes * maxSegments; appends beyond that
+ * are refused. A separate cursor file records how far the drainer has got,
+ * and fully drained segments are deleted.
+ */
+public class EventSpillLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    private long readSegmentId;
+    private int readPosition;
+
+    public EventSpillLog(Path directory, int segmentBytes, int maxSegments) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open spill log in " + directory, e);
+        }
+    }
+
+    /**
+     * Append one record. Returns false if it does not fit in the disk budget.
+     */
+    public synchronized boolean append(byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes) {
+            return false;
+        }
+
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.writePosition + recordBytes > segmentBytes) {
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            segment = openSegment(segment == null ? readSegmentId : segment.id + 1);
+            segments.addLast(segment);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = segment.buffer;
+        int position = segment.writePosition;
+        buffer.putInt(position + 4, (int) crc.getValue());
+        ByteBuffer body = buffer.duplicate();
+        body.position(position + HEADER_BYTES);
+        body.put(payload);
+        // Publishing the length commits the record
+        buffer.putInt(position, payload.length);
+        segment.writePosition = position + recordBytes;
+        return true;
+    }
+
+    /**
+     * Up to max undrained records, oldest first, without consuming them.
+     * Records that fail their CRC come back with isCorrupt() set, so the
+     * drainer can commit past them instead of stalling on them.
+     */
+    public synchronized List<Record> peek(int max) {
+        List<Record> records = new ArrayList<>(Math.min(max, 1024));
+        long segmentId = readSegmentId;
+        int position = readPosition;
+        for (Segment segment : segments) {
+            if (segment.id < segmentId) {
+                continue;
+            }
+            if (segment.id > segmentId) {
+                segmentId = segment.id;
+                position = 0;
+            }
+            while (records.size() < max && position < segment.writePosition) {
+                ByteBuffer buffer = segment.buffer;
+                int length = buffer.getInt(position);
+                if (length < 0 || position + HEADER_BYTES + length > segment.writePosition) {
+                    // Length itself is damaged: nothing after it in this segment can be framed
+                    position = segment.writePosition;
+                    records.add(new Record(null, segmentId, position));
+                    break;
+                }
+                int crc = buffer.getInt(position + 4);
+                byte[] payload = read(buffer, position + HEADER_BYTES, length);
+                position += HEADER_BYTES + length;
+
+                CRC32 check = new CRC32();
+                check.update(payload);
+                // Corrupted after it was written; never replay it
+                records.add(new Record((int) check.getValue() == crc ? payload : null, segmentId, position));
+            }
+            if (records.size() >= max) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Mark everything up to and including the given record as drained
+     */
+    public synchronized void commit(Record record) throws IOException {
+        readSegmentId = record.segmentId;
+        readPosition = record.nextPosition;
+
+        // Drop segments that are fully drained and no longer written to
+        while (segments.size() > 1) {
+            Segment head = segments.peekFirst();
+            if (head.id > readSegmentId || (head.id == readSegmentId && readPosition < head.writePosition)) {
+                break;
+            }
+            segments.removeFirst();
+            head.close();
+            Files.deleteIfExists(head.path);
+            if (head.id == readSegmentId) {
+                readSegmentId = segments.peekFirst().id;
+                readPosition = 0;
+            }
+        }
+
+        ByteBuffer cursor = ByteBuffer.allocate(12).putLong(readSegmentId).putInt(readPosition);
+        Path temp = directory.resolve(CURSOR_FILE + ".tmp");
+        Files.write(temp, cursor.array());
+        Files.move(temp, directory.resolve(CURSOR_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized boolean isEmpty() {
+        Segment tail = segments.peekLast();
+        return tail == null || (tail.id == readSegmentId && readPosition >= tail.writePosition);
+    }
+
+    /**
+     * Bytes held on disk, drained or not, by live segments
+     */
+    public synchronized long getDiskBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    /**
+     * Force the active segment to disk. Records survive a process crash
+     * without this (the page cache holds them), but not a host crash.
+     */
+    public synchronized void flush() {
+        Segment tail = segments.peekLast();
+        if (tail != null) {
+            tail.buffer.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        ids.sort(Long::compare);
+
+        Path cursorFile = directory.resolve(CURSOR_FILE);
+        if (Files.exists(cursorFile)) {
+            ByteBuffer cursor = ByteBuffer.wrap(Files.readAllBytes(cursorFile));
+            readSegmentId = cursor.getLong();
+            readPosition = cursor.getInt();
+        }
+
+        for (Long id : ids) {
+            if (id < readSegmentId) {
+                Files.deleteIfExists(segmentPath(id));
+                continue;
+            }
+            Segment segment = openSegment(id);
+            segment.writePosition = scanEnd(segment.buffer);
+            segments.addLast(segment);
+        }
+        if (segments.isEmpty()) {
+            readPosition = 0;
+        } else if (segments.peekFirst().id > readSegmentId) {
+            readSegmentId = segments.peekFirst().id;
+            readPosition = 0;
+        }
+    }
+
+    private int scanEnd(MappedByteBuffer buffer) {
+        int position = 0;
+        while (position + HEADER_BYTES <= segmentBytes) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segmentBytes) {
+                break;
+            }
+            byte[] payload = read(buffer, position + HEADER_BYTES, length);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        // Clear a torn tail so later appends cannot be confused by it
+        for (int i = position; i < segmentBytes; i++) {
+            if (buffer.get(i) != 0) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        return position;
+    }
+
+    private static byte[] read(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = segmentPath(id);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        return new Segment(id, path, channel, buffer);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, SUFFIX));
+    }
+
+    /**
+     * One spilled record and the cursor position just past it
+     */
+    public static final class Record {
+        private final byte[] payload;
+        private final long segmentId;
+        private final int nextPosition;
+
+        Record(byte[] payload, long segmentId, int nextPosition) {
+            this.payload = payload;
+            this.segmentId = segmentId;
+            this.nextPosition = nextPosition;
+        }
+
+        // Null if the record failed its CRC
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public boolean isCorrupt() {
+            return payload == null;
+        }
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+
+        Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
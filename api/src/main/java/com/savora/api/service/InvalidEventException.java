@@ -0,0 +1,11 @@
+package com.savora.api.service;
+
+/**
+ * A tracked event failed validation; answer 400 with the message
+ */
+public class InvalidEventException extends RuntimeException {
+
+    public InvalidEventException(String message) {
+        super(message);
+    }
+}
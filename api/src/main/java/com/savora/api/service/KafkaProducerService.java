@@ -1,38 +1,357 @@
 package com.savora.api.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.savora.api.model.Event;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.apache.kafka.common.InvalidRecordException;
+import org.apache.kafka.common.errors.RecordBatchTooLargeException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class KafkaProducerService {
 
+    private static final Logger logger = LoggerFactory.getLogger(KafkaProducerService.class);
+
     private static final String TOPIC = "user-events";
+    private static final int DRAIN_BATCH = 500;
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final EventCodec eventCodec;
+    private final EventSpillLog spillLog;
+    private final ThreadPoolExecutor sendExecutor;
+    private final ScheduledExecutorService drainExecutor;
+    private final Counter enqueuedCounter;
+    private final Counter droppedCounter;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter spilledCounter;
+    private final Counter drainedCounter;
+    private final Counter deadLetterCounter;
+    private final Timer sendTimer;
+
+    // Cleared on the first send failure, set again once the drainer gets an ack
+    private volatile boolean producerHealthy = true;
 
-    @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
-    
-    @Autowired
-    private ObjectMapper objectMapper;
+    public KafkaProducerService(
+            KafkaTemplate<String, byte[]> kafkaTemplate,
+            EventCodec eventCodec,
+            EventSpillLog spillLog,
+            MeterRegistry meterRegistry,
+            @Value("${kafka.producer.async.queue-capacity:10000}") int queueCapacity,
+            @Value("${kafka.spill.drain-interval-ms:1000}") long drainIntervalMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.eventCodec = eventCodec;
+        this.spillLog = spillLog;
+
+        // A single sender thread keeps per-request ordering and never needs more:
+        // KafkaProducer.send only appends to the batch accumulator
+        this.sendExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "kafka-event-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.drainExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kafka-spill-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.drainExecutor.scheduleWithFixedDelay(this::drainSpillLog, drainIntervalMs, drainIntervalMs, TimeUnit.MILLISECONDS);
+
+        this.enqueuedCounter = meterRegistry.counter("savora.events.enqueued");
+        this.droppedCounter = meterRegistry.counter("savora.events.dropped");
+        this.sentCounter = meterRegistry.counter("savora.events.sent");
+        this.failedCounter = meterRegistry.counter("savora.events.failed");
+        this.spilledCounter = meterRegistry.counter("savora.events.spilled");
+        this.drainedCounter = meterRegistry.counter("savora.events.spill.drained");
+        this.deadLetterCounter = meterRegistry.counter("savora.events.spill.dead.letter");
+        // From the request handing the event over to the broker's ack, queue wait included
+        this.sendTimer = meterRegistry.timer("savora.events.send");
+        new ExecutorServiceMetrics(sendExecutor, "kafka-event-sender", Collections.emptyList()).bindTo(meterRegistry);
+        meterRegistry.gauge("savora.events.queue.depth", sendExecutor, executor -> executor.getQueue().size());
+        meterRegistry.gauge("savora.events.spill.disk.bytes", spillLog, EventSpillLog::getDiskBytes);
+        meterRegistry.gauge("savora.events.producer.healthy", this, service -> service.producerHealthy ? 1 : 0);
+    }
+
+    /**
+     * Fraction of the send queue in use, 0 to 1
+     */
+    public double getQueueFill() {
+        int size = sendExecutor.getQueue().size();
+        return (double) size / (size + sendExecutor.getQueue().remainingCapacity());
+    }
+
+    /**
+     * Fire-and-forget: hand the event to the sender thread and return at once.
+     * If the send queue is full the event goes to the spill log instead.
+     * Returns false only if both are full and the event was dropped.
+     */
+    public boolean sendEventAsync(Event event) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            sendExecutor.execute(() -> {
+                try {
+                    sendEvent(event, enqueuedAt);
+                } catch (Exception e) {
+                    failedCounter.increment();
+                    logger.warn("Failed to send event to Kafka: {}", e.getMessage());
+                }
+            });
+            enqueuedCounter.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            return spillEvent(event);
+        }
+    }
+
+    /**
+     * Fire-and-forget for a whole batch: one queue slot, one pass over the
+     * producer, so the records land in the same producer batches.
+     */
+    public boolean sendEventsAsync(List<Event> events) {
+        if (events.isEmpty()) {
+            return true;
+        }
+        long enqueuedAt = System.nanoTime();
+        try {
+            sendExecutor.execute(() -> {
+                for (Event event : events) {
+                    try {
+                        sendEvent(event, enqueuedAt);
+                    } catch (Exception e) {
+                        failedCounter.increment();
+                        logger.warn("Failed to send event to Kafka: {}", e.getMessage());
+                    }
+                }
+            });
+            enqueuedCounter.increment(events.size());
+            return true;
+        } catch (RejectedExecutionException e) {
+            boolean spilled = true;
+            for (Event event : events) {
+                spilled &= spillEvent(event);
+            }
+            return spilled;
+        }
+    }
 
     public void sendEvent(Event event) {
+        sendEvent(event, System.nanoTime());
+    }
+
+    private void sendEvent(Event event, long enqueuedAt) {
+        byte[] value = eventCodec.encode(event);
+        logger.debug("Sending event to Kafka: {}", event);
+
+        String key = partitionKey(event);
+
+        // Keep order: while anything is spilled, new events queue up behind it
+        if (!producerHealthy || !spillLog.isEmpty()) {
+            spill(key, value);
+            return;
+        }
+
         try {
-            String eventJson = objectMapper.writeValueAsString(event);
-            System.out.println("Sending event to Kafka: " + eventJson);
-            
-            // Use eventType as key for partitioning
-            String key = event.getEventType();
-            kafkaTemplate.send(TOPIC, key, eventJson)
+            kafkaTemplate.send(TOPIC, key, value)
                 .addCallback(
-                    result -> System.out.println("Event sent successfully to " + TOPIC + ": " + eventJson),
-                    ex -> System.err.println("Failed to send event to Kafka: " + ex.getMessage())
+                    result -> {
+                        sentCounter.increment();
+                        sendTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                    },
+                    ex -> {
+                        failedCounter.increment();
+                        markUnhealthy(ex);
+                        spill(key, value);
+                    }
                 );
         } catch (Exception e) {
-            System.err.println("Error serializing event: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Failed to send event to Kafka", e);
+            // Buffer full or metadata unavailable within max.block.ms
+            markUnhealthy(e);
+            spill(key, value);
+        }
+    }
+
+    /**
+     * Key by user so each user's events land on one partition in order:
+     * "u:<userId>", or "s:<sessionId>" for anonymous users. Events with
+     * neither get a null key and are spread by the sticky partitioner.
+     */
+    static String partitionKey(Event event) {
+        if (event.getUserId() != null) {
+            return "u:" + event.getUserId();
+        }
+        if (event.getSessionId() != null && !event.getSessionId().isEmpty()) {
+            return "s:" + event.getSessionId();
+        }
+        return null;
+    }
+
+    private boolean spillEvent(Event event) {
+        try {
+            return spill(partitionKey(event), eventCodec.encode(event));
+        } catch (Exception e) {
+            droppedCounter.increment();
+            return false;
+        }
+    }
+
+    private boolean spill(String key, byte[] value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length + 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(key == null ? "" : key);
+            out.write(value);
+            if (spillLog.append(bytes.toByteArray())) {
+                spilledCounter.increment();
+                return true;
+            }
+            logger.warn("Spill log is full, dropping event");
+        } catch (IOException e) {
+            logger.warn("Could not spill event: {}", e.getMessage());
+        }
+        droppedCounter.increment();
+        return false;
+    }
+
+    private void markUnhealthy(Throwable cause) {
+        if (producerHealthy) {
+            producerHealthy = false;
+            logger.warn("Kafka unavailable, spilling events to disk: {}", cause.getMessage());
+        }
+    }
+
+    /**
+     * Replay spilled events in order. The cursor only moves past records
+     * whose sends were acknowledged, so a failure mid-batch resends from the
+     * first unacknowledged record on the next run (at-least-once). Records
+     * that can never be sent, corrupt on disk or rejected by the broker for
+     * themselves, are counted as dead letters and skipped so they cannot
+     * hold up the rest of the log.
+     */
+    void drainSpillLog() {
+        try {
+            spillLog.flush();
+            while (!spillLog.isEmpty()) {
+                List<EventSpillLog.Record> records = spillLog.peek(DRAIN_BATCH);
+                if (records.isEmpty()) {
+                    return;
+                }
+
+                List<ListenableFuture<SendResult<String, byte[]>>> futures = new ArrayList<>(records.size());
+                for (EventSpillLog.Record record : records) {
+                    futures.add(record.isCorrupt() ? null : resend(record.getPayload()));
+                }
+
+                int done = 0;
+                int acked = 0;
+                for (ListenableFuture<SendResult<String, byte[]>> future : futures) {
+                    if (future == null) {
+                        deadLetterCounter.increment();
+                        logger.warn("Skipping spilled event that failed its CRC");
+                        done++;
+                        continue;
+                    }
+                    try {
+                        future.get(10, TimeUnit.SECONDS);
+                        acked++;
+                        done++;
+                    } catch (Exception e) {
+                        if (!isRejected(e)) {
+                            markUnhealthy(e);
+                            break;
+                        }
+                        deadLetterCounter.increment();
+                        logger.warn("Skipping spilled event the broker rejected: {}", e.getMessage());
+                        done++;
+                    }
+                }
+                if (done > 0) {
+                    spillLog.commit(records.get(done - 1));
+                    drainedCounter.increment(acked);
+                }
+                if (done < records.size()) {
+                    return;
+                }
+            }
+            if (!producerHealthy) {
+                producerHealthy = true;
+                logger.info("Kafka reachable again, spill log drained");
+            }
+        } catch (Exception e) {
+            markUnhealthy(e);
+        }
+    }
+
+    private ListenableFuture<SendResult<String, byte[]>> resend(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            String key = in.readUTF();
+            byte[] value = in.readAllBytes();
+            return kafkaTemplate.send(TOPIC, key.isEmpty() ? null : key, value);
+        } catch (Exception e) {
+            SettableListenableFuture<SendResult<String, byte[]>> failed = new SettableListenableFuture<>();
+            failed.setException(e);
+            return failed;
+        }
+    }
+
+    /**
+     * True if the failure is about the record itself, so retrying it can
+     * never succeed; broker, network and auth trouble is not
+     */
+    static boolean isRejected(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RecordTooLargeException || cause instanceof RecordBatchTooLargeException
+                    || cause instanceof InvalidRecordException || cause instanceof SerializationException
+                    || cause instanceof EOFException) {
+                return true;
+            }
+            if (cause instanceof RetriableException) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        sendExecutor.shutdown();
+        if (!sendExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+            logger.warn("{} queued events not sent before shutdown", sendExecutor.getQueue().size());
         }
+        drainExecutor.shutdownNow();
+        kafkaTemplate.flush();
+        spillLog.flush();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.savora.api.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for users.last_login. Logins only record the time in
+ * memory; a background thread writes the latest time per user in batched
+ * UPDATEs every flush interval, so repeated logins by one user between
+ * flushes cost a single row update and none of it is on the login path.
+ * A crash loses at most one interval of login times.
+ */
+@Service
+public class LastLoginWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginWriter.class);
+
+    private static final String UPDATE_SQL = "UPDATE users SET last_login = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final ConcurrentHashMap<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushExecutor;
+
+    public LastLoginWriter(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${auth.last-login.flush-interval-ms:5000}") long flushIntervalMs,
+            @Value("${auth.last-login.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "last-login-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        meterRegistry.gauge("savora.auth.last-login.pending", pending, Map::size);
+    }
+
+    public void record(Long userId, LocalDateTime loginTime) {
+        pending.merge(userId, loginTime, LastLoginWriter::latest);
+    }
+
+    /**
+     * Write out everything recorded so far; times that fail to write are
+     * put back for the next flush
+     */
+    public void flush() {
+        List<Object[]> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        for (Long userId : pending.keySet()) {
+            LocalDateTime loginTime = pending.remove(userId);
+            if (loginTime != null) {
+                batch.add(new Object[] {Timestamp.valueOf(loginTime), userId});
+            }
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+        } catch (Exception e) {
+            logger.warn("Failed to write {} last login times, retrying on next flush: {}", batch.size(), e.getMessage());
+            for (Object[] row : batch) {
+                pending.merge((Long) row[1], ((Timestamp) row[0]).toLocalDateTime(), LastLoginWriter::latest);
+            }
+        }
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+}
@@ -2,7 +2,11 @@ package com.savora.api.service;
 
 import com.savora.api.model.Recommendation;
 import com.savora.api.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
@@ -13,21 +17,35 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Service
+@Timed("savora.service")
 public class RecommendationService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationService.class);
+
+    // The active model version is read in the same statement, so a query sees one complete set
+    private static final String ACTIVE_VERSION = "model_version = (SELECT active_version FROM recommendation_model WHERE id = 1)";
+
+    // Recommendations are written by the batch job, so replica lag only delays a new batch
     @Autowired
+    @Qualifier("readJdbcTemplate")
     private JdbcTemplate jdbcTemplate;
     
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserAffinityService userAffinityService;
+
     public List<Recommendation> getRecommendations(Long userId) {
-        String sql = "SELECT * FROM user_recommendations WHERE user_id = ? ORDER BY recommendation_rank";
+        String sql = "SELECT * FROM user_recommendations WHERE " + ACTIVE_VERSION
+                + " AND user_id = ? ORDER BY recommendation_rank";
         
         try {
-            return jdbcTemplate.query(sql, new RecommendationRowMapper(), userId);
+            List<Recommendation> recommendations = jdbcTemplate.query(sql, new RecommendationRowMapper(), userId);
+            // Blend in clicks seen since the last batch run
+            return userAffinityService.personalize(userId, recommendations);
         } catch (Exception e) {
-            System.err.println("Error fetching recommendations: " + e.getMessage());
+            logger.warn("Error fetching recommendations: {}", e.getMessage());
             return getDefaultRecommendations();
         }
     }
@@ -40,12 +58,13 @@ public class RecommendationService {
 
     public List<Recommendation> getDefaultRecommendations() {
         // Provide a default set of popular restaurants if no personalized recommendations exist
-        String sql = "SELECT * FROM user_recommendations WHERE recommendation_rank <= 6 ORDER BY score DESC LIMIT 6";
+        String sql = "SELECT * FROM user_recommendations WHERE " + ACTIVE_VERSION
+                + " AND recommendation_rank <= 6 ORDER BY score DESC LIMIT 6";
         
         try {
             return jdbcTemplate.query(sql, new RecommendationRowMapper());
         } catch (Exception e) {
-            System.err.println("Error fetching default recommendations: " + e.getMessage());
+            logger.warn("Error fetching default recommendations: {}", e.getMessage());
             return createHardcodedRecommendations();
         }
     }
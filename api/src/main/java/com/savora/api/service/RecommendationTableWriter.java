@@ -0,0 +1,200 @@
+package com.savora.api.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces every user's recommendations at once. The new set is COPYed
+ * into a fresh partition of user_recommendations, indexed and attached, and
+ * recommendation_model is pointed at its model_version, all in one
+ * transaction: readers see the old set until the commit and the whole new
+ * set after it. Attaching takes a lock that does not conflict with reads,
+ * so readers never wait on a refresh.
+ *
+ * The previous version is kept for a manual rollback (point
+ * recommendation_model back at it); older ones are dropped after the swap.
+ * Dropping a partition does take an exclusive lock, so it gives up after
+ * lock-timeout-ms instead of queueing readers behind it, and is retried
+ * after the next refresh.
+ */
+@Service
+public class RecommendationTableWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecommendationTableWriter.class);
+
+    /**
+     * CSV columns, in order, after a header row
+     */
+    public static final String COLUMNS =
+            "user_id, restaurant_name, restaurant_categories, rating, review_count, price_range, score, recommendation_rank";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("user_recommendations_v(\\d+)");
+
+    private final DataSource dataSource;
+    private final int keepVersions;
+    private final long lockTimeoutMs;
+    private final Timer refreshTimer;
+
+    public RecommendationTableWriter(
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${recommendations.refresh.keep-versions:2}") int keepVersions,
+            @Value("${recommendations.refresh.lock-timeout-ms:500}") long lockTimeoutMs) {
+        this.dataSource = dataSource;
+        this.keepVersions = Math.max(1, keepVersions);
+        this.lockTimeoutMs = lockTimeoutMs;
+        this.refreshTimer = meterRegistry.timer("savora.recommendations.refresh");
+    }
+
+    /**
+     * Load the CSV as a new model version and make it the one readers see
+     *
+     * @throws IllegalArgumentException if a row does not fit the table; nothing changes
+     */
+    public RefreshResult replaceAll(Reader csv) throws SQLException, IOException {
+        long started = System.nanoTime();
+        RefreshResult result;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                result = load(connection, csv);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                // Class 22 (bad value) and 23 (constraint) are the upload's fault
+                String state = e.getSQLState();
+                if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                    throw new IllegalArgumentException("Rejected recommendation upload: " + e.getMessage(), e);
+                }
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            dropSuperseded(connection, result.getModelVersion());
+        }
+        long elapsed = System.nanoTime() - started;
+        refreshTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Recommendations now at model version {}: {} rows in {} ms",
+                result.getModelVersion(), result.getRows(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return result;
+    }
+
+    private RefreshResult load(Connection connection, Reader csv) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            // Serializes refreshes; a row lock, so it does not hold up readers of the pointer
+            statement.executeQuery("SELECT active_version FROM recommendation_model WHERE id = 1 FOR UPDATE").close();
+            long version;
+            try (ResultSet next = statement.executeQuery("SELECT nextval('recommendation_model_version_seq')")) {
+                next.next();
+                version = next.getLong(1);
+            }
+            String partition = "user_recommendations_v" + version;
+
+            statement.execute("CREATE TABLE " + partition + " (LIKE user_recommendations INCLUDING DEFAULTS)");
+            statement.execute("ALTER TABLE " + partition + " ALTER COLUMN model_version SET DEFAULT " + version);
+            long rows = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY " + partition + " (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv, HEADER true)", csv);
+
+            // Built after the load, which is faster than maintaining it row by row; ATTACH adopts it
+            // as the partition's part of idx_user_recommendations_user_id
+            statement.execute("CREATE INDEX ON " + partition + " (user_id, recommendation_rank)");
+            // Lets ATTACH skip scanning the rows to prove they belong
+            statement.execute("ALTER TABLE " + partition + " ADD CONSTRAINT " + partition
+                    + "_version CHECK (model_version = " + version + ")");
+            statement.execute("ANALYZE " + partition);
+            statement.execute("ALTER TABLE user_recommendations ATTACH PARTITION " + partition
+                    + " FOR VALUES IN (" + version + ")");
+            statement.executeUpdate("UPDATE recommendation_model SET active_version = " + version
+                    + ", row_count = " + rows + ", refreshed_at = now() WHERE id = 1");
+            return new RefreshResult(version, rows);
+        }
+    }
+
+    private void dropSuperseded(Connection connection, long activeVersion) {
+        List<Long> versions = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet partitions = statement.executeQuery("SELECT c.relname FROM pg_inherits i"
+                     + " JOIN pg_class c ON c.oid = i.inhrelid"
+                     + " WHERE i.inhparent = 'user_recommendations'::regclass")) {
+            while (partitions.next()) {
+                Matcher matcher = PARTITION_NAME.matcher(partitions.getString(1));
+                if (matcher.matches()) {
+                    versions.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not list recommendation partitions: {}", e.getMessage());
+            return;
+        }
+        versions.sort(null);
+        // Everything but the newest keepVersions, and never the active one
+        for (int i = 0; i < versions.size() - keepVersions; i++) {
+            long version = versions.get(i);
+            if (version == activeVersion) {
+                continue;
+            }
+            try (Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(false);
+                statement.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                statement.execute("DROP TABLE user_recommendations_v" + version);
+                connection.commit();
+            } catch (SQLException e) {
+                rollbackQuietly(connection);
+                logger.warn("Could not drop recommendation version {} yet: {}", version, e.getMessage());
+            } finally {
+                try {
+                    connection.setAutoCommit(true);
+                } catch (SQLException ignored) {
+                    // The pool discards a broken connection
+                }
+            }
+        }
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // The pool discards a broken connection
+        }
+    }
+
+    public static final class RefreshResult {
+        private final long modelVersion;
+        private final long rows;
+
+        RefreshResult(long modelVersion, long rows) {
+            this.modelVersion = modelVersion;
+            this.rows = rows;
+        }
+
+        public long getModelVersion() {
+            return modelVersion;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.savora.api.service;
 
+import com.savora.api.dto.RatingSummary;
 import com.savora.api.model.Restaurant;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
@@ -12,9 +17,14 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
+@Timed("savora.service")
 public class RestaurantService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RestaurantService.class);
+
+    // Catalog reads tolerate replica lag
     @Autowired
+    @Qualifier("readJdbcTemplate")
     private JdbcTemplate jdbcTemplate;
 
     /**
@@ -75,7 +85,7 @@ public class RestaurantService {
                 new RestaurantRowMapper()
             );
         } catch (Exception e) {
-            System.err.println("Error fetching restaurants: " + e.getMessage());
+            logger.warn("Error fetching restaurants: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -88,7 +98,7 @@ public class RestaurantService {
             String sql = "SELECT * FROM restaurants WHERE id = ?";
             return jdbcTemplate.queryForObject(sql, new RestaurantRowMapper(), id);
         } catch (Exception e) {
-            System.err.println("Error fetching restaurant by id: " + e.getMessage());
+            logger.warn("Error fetching restaurant by id: {}", e.getMessage());
             return null;
         }
     }
@@ -98,34 +108,52 @@ public class RestaurantService {
      */
     public List<String> getAllCuisines() {
         try {
-            String sql = "SELECT DISTINCT categories FROM restaurants WHERE categories IS NOT NULL";
-            List<String> allCategories = jdbcTemplate.query(sql, 
-                (rs, rowNum) -> rs.getString("categories"));
-            
-            // Parse individual cuisines from comma-separated lists
-            Set<String> uniqueCuisines = new HashSet<>();
-            for (String categories : allCategories) {
-                if (categories != null && !categories.isEmpty()) {
-                    String[] parts = categories.split(",");
-                    for (String part : parts) {
-                        String cuisine = part.trim();
-                        if (!cuisine.isEmpty()) {
-                            uniqueCuisines.add(cuisine);
-                        }
-                    }
-                }
-            }
-            
-            // Convert to sorted list
-            List<String> cuisines = new ArrayList<>(uniqueCuisines);
+            // cuisine_stats is kept current by triggers on restaurants (V5)
+            String sql = "SELECT ci.cuisine_type FROM cuisine_stats cs "
+                    + "JOIN cuisine_info ci ON ci.cuisine_id = cs.cuisine_id WHERE cs.restaurant_count > 0";
+            List<String> cuisines = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getString("cuisine_type"));
             cuisines.sort(String::compareToIgnoreCase);
             return cuisines;
         } catch (Exception e) {
-            System.err.println("Error fetching cuisines: " + e.getMessage());
+            logger.warn("Error fetching cuisines: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
     
+    /**
+     * Number of restaurants serving each cuisine, most common first
+     */
+    public Map<String, Integer> getCuisineCounts() {
+        try {
+            String sql = "SELECT ci.cuisine_type, cs.restaurant_count FROM cuisine_stats cs "
+                    + "JOIN cuisine_info ci ON ci.cuisine_id = cs.cuisine_id WHERE cs.restaurant_count > 0 "
+                    + "ORDER BY cs.restaurant_count DESC, ci.cuisine_type";
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            jdbcTemplate.query(sql, rs -> {
+                counts.put(rs.getString("cuisine_type"), rs.getInt("restaurant_count"));
+            });
+            return counts;
+        } catch (Exception e) {
+            logger.warn("Error fetching cuisine counts: {}", e.getMessage());
+            return new LinkedHashMap<>();
+        }
+    }
+    
+    /**
+     * Review count, average and star histogram of a restaurant, or null if there is no such restaurant
+     */
+    public RatingSummary getRatingSummary(Long restaurantId) {
+        String sql = "SELECT r.id, s.review_count, s.rating_sum, s.stars_1, s.stars_2, s.stars_3, s.stars_4, s.stars_5 "
+                + "FROM restaurants r LEFT JOIN restaurant_rating_stats s ON s.restaurant_id = r.id WHERE r.id = ?";
+        List<RatingSummary> summaries = jdbcTemplate.query(sql, (rs, rowNum) -> new RatingSummary(
+                rs.getLong("id"),
+                rs.getInt("review_count"),
+                rs.getLong("rating_sum"),
+                new int[] {rs.getInt("stars_1"), rs.getInt("stars_2"), rs.getInt("stars_3"), rs.getInt("stars_4"), rs.getInt("stars_5")}),
+                restaurantId);
+        return summaries.isEmpty() ? null : summaries.get(0);
+    }
+    
     /**
      * Get restaurants by cuisine with sorting options
      */
@@ -168,7 +196,7 @@ public class RestaurantService {
                 new RestaurantRowMapper()
             );
         } catch (Exception e) {
-            System.err.println("Error fetching restaurants by cuisine: " + e.getMessage());
+            logger.warn("Error fetching restaurants by cuisine: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -177,16 +205,25 @@ public class RestaurantService {
      * Get top-rated restaurants for each cuisine
      */
     public Map<String, List<Restaurant>> getTopRestaurantsByCuisine(int limit) {
-        Map<String, List<Restaurant>> result = new HashMap<>();
-        List<String> cuisines = getAllCuisines();
-        
-        for (String cuisine : cuisines) {
-            List<Restaurant> topRestaurants = getRestaurantsByCuisineAdvanced(cuisine, "rating", "desc", limit);
-            if (!topRestaurants.isEmpty()) {
-                result.put(cuisine, topRestaurants);
-            }
+        // One query: for each cuisine, the first rows of its idx_restaurant_cuisine_top range
+        String sql = "SELECT ci.cuisine_type, r.* FROM cuisine_stats cs "
+                + "JOIN cuisine_info ci ON ci.cuisine_id = cs.cuisine_id "
+                + "CROSS JOIN LATERAL (SELECT rc.restaurant_id, rc.rating FROM restaurant_cuisine rc "
+                + "    WHERE rc.cuisine_id = cs.cuisine_id "
+                + "    ORDER BY rc.rating DESC NULLS LAST, rc.restaurant_id LIMIT ?) top "
+                + "JOIN restaurants r ON r.id = top.restaurant_id "
+                + "WHERE cs.restaurant_count > 0 "
+                + "ORDER BY ci.cuisine_type, top.rating DESC NULLS LAST, top.restaurant_id";
+        Map<String, List<Restaurant>> result = new LinkedHashMap<>();
+        try {
+            RestaurantRowMapper rowMapper = new RestaurantRowMapper();
+            jdbcTemplate.query(sql, rs -> {
+                result.computeIfAbsent(rs.getString("cuisine_type"), cuisine -> new ArrayList<>())
+                        .add(rowMapper.mapRow(rs, 0));
+            }, limit);
+        } catch (Exception e) {
+            logger.warn("Error fetching top restaurants by cuisine: {}", e.getMessage());
         }
-        
         return result;
     }
     
@@ -198,7 +235,7 @@ public class RestaurantService {
             String sql = "SELECT * FROM restaurants WHERE price_range = ? ORDER BY rating DESC LIMIT 20";
             return jdbcTemplate.query(sql, new RestaurantRowMapper(), priceRange);
         } catch (Exception e) {
-            System.err.println("Error fetching restaurants by price range: " + e.getMessage());
+            logger.warn("Error fetching restaurants by price range: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -220,7 +257,7 @@ public class RestaurantService {
                 new RestaurantRowMapper()
             );
         } catch (Exception e) {
-            System.err.println("Error searching restaurants: " + e.getMessage());
+            logger.warn("Error searching restaurants: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -261,7 +298,7 @@ public class RestaurantService {
             if (i > 0) {
                 sql.append(" OR ");
             }
-            sql.append("LOWER(categories) LIKE ?");
+            sql.append("categories ILIKE ?");
         }
         
         // Create the parameter list for the query
@@ -288,7 +325,7 @@ public class RestaurantService {
             if (i > 0) {
                 sql.append(" OR ");
             }
-            sql.append("LOWER(categories) LIKE ?");
+            sql.append("categories ILIKE ?");
         }
         
         // Create parameter array with wildcards for LIKE query
@@ -358,7 +395,7 @@ public class RestaurantService {
      * @return List of restaurants for the specified cuisine
      */
     public List<Restaurant> getRestaurantsByCuisineWithSort(String cuisine, String sortBy, String sortOrder, Integer limit) {
-        String sql = "SELECT * FROM restaurants WHERE LOWER(categories) LIKE ? ORDER BY " + 
+        String sql = "SELECT * FROM restaurants WHERE categories ILIKE ? ORDER BY " + 
                      sanitizeSortField(sortBy) + " " + 
                      (sortOrder.equalsIgnoreCase("asc") ? "ASC" : "DESC") + 
                      " LIMIT ?";
@@ -403,7 +440,7 @@ public class RestaurantService {
         List<Object> params = new ArrayList<>();
         
         if (category != null && !category.isEmpty()) {
-            whereClause.append("LOWER(categories) LIKE ?");
+            whereClause.append("categories ILIKE ?");
             params.add("%" + category.toLowerCase() + "%");
         }
         
@@ -419,7 +456,7 @@ public class RestaurantService {
             if (whereClause.length() > 0) {
                 whereClause.append(" AND ");
             }
-            whereClause.append("(LOWER(address) LIKE ? OR LOWER(city) LIKE ?)");
+            whereClause.append("(address ILIKE ? OR city ILIKE ?)");
             params.add("%" + city.toLowerCase() + "%");
             params.add("%" + city.toLowerCase() + "%");
         }
@@ -0,0 +1,155 @@
+package com.savora.api.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Bloom filter over a sliding time window, built from one filter per time
+ * slice. Lookups check the current slice and the previous `slices` ones
+ * (so keys are remembered for between window and window + one slice),
+ * inserts go to the current slice, and a slot is cleared when the ring comes
+ * back round to it: memory is fixed at slices + 1 filters whatever the traffic.
+ *
+ * Each slice is sized for expectedPerSlice insertions at
+ * falsePositiveRate / (slices + 1), which keeps a lookup across the whole
+ * window at or below falsePositiveRate while the traffic estimate holds.
+ * Bits are set with CAS and only the first insert of a new slice takes a
+ * lock; two identical keys racing through mightContain and put can both be
+ * reported as new.
+ */
+public class RollingBloomFilter {
+
+    private final long sliceMillis;
+    private final int slices;
+    private final int bitsPerSlice;
+    private final int hashes;
+    private final LongSupplier clock;
+
+    private final AtomicLongArray[] bits;
+    private final AtomicLongArray sliceEpochs;
+    private final AtomicLongArray insertions;
+
+    public RollingBloomFilter(long windowMillis, int slices, long expectedPerSlice, double falsePositiveRate) {
+        this(windowMillis, slices, expectedPerSlice, falsePositiveRate, System::currentTimeMillis);
+    }
+
+    public RollingBloomFilter(long windowMillis, int slices, long expectedPerSlice, double falsePositiveRate,
+                              LongSupplier clock) {
+        if (slices < 1 || expectedPerSlice < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter settings");
+        }
+        this.sliceMillis = Math.max(1, windowMillis / slices);
+        this.slices = slices;
+        double sliceRate = falsePositiveRate / (slices + 1);
+        long optimalBits = (long) Math.ceil(-expectedPerSlice * Math.log(sliceRate) / (Math.log(2) * Math.log(2)));
+        this.bitsPerSlice = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+        this.hashes = Math.max(1, (int) Math.round((double) bitsPerSlice / expectedPerSlice * Math.log(2)));
+        this.clock = clock;
+
+        this.bits = new AtomicLongArray[slices + 1];
+        this.sliceEpochs = new AtomicLongArray(slices + 1);
+        this.insertions = new AtomicLongArray(slices + 1);
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = new AtomicLongArray((bitsPerSlice + 63) / 64);
+            sliceEpochs.set(i, -1);
+        }
+    }
+
+    /**
+     * False means the key was definitely not put within the window
+     */
+    public boolean mightContain(long hash1, long hash2) {
+        long epoch = currentEpoch();
+        for (int i = 0; i < bits.length; i++) {
+            long sliceEpoch = sliceEpochs.get(i);
+            if (sliceEpoch >= 0 && epoch - sliceEpoch <= slices && contains(bits[i], hash1, hash2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(long hash1, long hash2) {
+        int slot = currentSlot();
+        AtomicLongArray slice = bits[slot];
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash1, hash2, i);
+            long mask = 1L << (bit & 63);
+            int word = bit >>> 6;
+            long current = slice.get(word);
+            while ((current & mask) == 0 && !slice.compareAndSet(word, current, current | mask)) {
+                current = slice.get(word);
+            }
+        }
+        insertions.incrementAndGet(slot);
+    }
+
+    /**
+     * Expected false-positive rate of a lookup right now, from the fill of
+     * every live slice: 1 - prod(1 - (1 - e^(-k n / m))^k)
+     */
+    public double estimatedFalsePositiveRate() {
+        long epoch = currentEpoch();
+        double allMiss = 1;
+        for (int i = 0; i < bits.length; i++) {
+            long sliceEpoch = sliceEpochs.get(i);
+            if (sliceEpoch >= 0 && epoch - sliceEpoch <= slices) {
+                double filled = 1 - Math.exp(-(double) hashes * insertions.get(i) / bitsPerSlice);
+                allMiss *= 1 - Math.pow(filled, hashes);
+            }
+        }
+        return 1 - allMiss;
+    }
+
+    public long getMemoryBytes() {
+        return (long) bits.length * ((bitsPerSlice + 63) / 64) * Long.BYTES;
+    }
+
+    public int getHashCount() {
+        return hashes;
+    }
+
+    private boolean contains(AtomicLongArray slice, long hash1, long hash2) {
+        for (int i = 0; i < hashes; i++) {
+            int bit = index(hash1, hash2, i);
+            if ((slice.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Kirsch-Mitzenmacher: k indexes from two hashes
+    private int index(long hash1, long hash2, int i) {
+        return (int) Long.remainderUnsigned(hash1 + i * hash2, bitsPerSlice);
+    }
+
+    private long currentEpoch() {
+        return clock.getAsLong() / sliceMillis;
+    }
+
+    /**
+     * Slot for the current slice, clearing it first if it still holds an old
+     * one. Only the first put of each slice takes the lock.
+     */
+    private int currentSlot() {
+        long epoch = currentEpoch();
+        int slot = (int) (epoch % bits.length);
+        if (sliceEpochs.get(slot) == epoch) {
+            return slot;
+        }
+        synchronized (this) {
+            if (sliceEpochs.get(slot) != epoch) {
+                // Mark the slot dead before clearing so lookups skip it meanwhile
+                sliceEpochs.set(slot, -1);
+                AtomicLongArray slice = bits[slot];
+                for (int i = 0; i < slice.length(); i++) {
+                    slice.set(i, 0);
+                }
+                insertions.set(slot, 0);
+                sliceEpochs.set(slot, epoch);
+            }
+        }
+        return slot;
+    }
+}
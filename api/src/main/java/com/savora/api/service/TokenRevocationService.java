@@ -0,0 +1,205 @@
+package com.savora.api.service;
+
+import com.savora.api.model.TokenRevocation;
+import com.savora.api.repository.TokenRevocationRepository;
+import com.savora.api.security.JwtTokenProvider;
+import com.savora.api.security.TokenRevocationCheck;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logout and password-reset revocation for stateless JWTs. Revocations are
+ * rows in token_revocations, mirrored in memory as two maps so a check is
+ * two hash lookups and never a query:
+ *
+ *  - revoked token ids (jti, as a UUID) to the token's expiry;
+ *  - per-user "not before" epoch millis: tokens issued at or before it are void.
+ *
+ * Entries are dropped once the tokens they cover have expired, so memory
+ * follows the revocations of the last jwt.expiration seconds. Every
+ * instance polls the table for recent rows, re-reading a short overlap so
+ * rows committed late are not missed; a revocation therefore reaches the
+ * other instances within one poll interval.
+ */
+@Service
+public class TokenRevocationService implements TokenRevocationCheck {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    // Rows committed out of order, and clock skew between instances, must fit in this
+    private static final long POLL_OVERLAP_SECONDS = 30;
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final long tokenLifetimeSeconds;
+    private final ConcurrentHashMap<UUID, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> notBefore = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService pollExecutor;
+    private final long pollIntervalMs;
+
+    private volatile LocalDateTime lastSeen;
+
+    public TokenRevocationService(
+            TokenRevocationRepository tokenRevocationRepository,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.expiration}") long tokenLifetimeSeconds,
+            @Value("${auth.revocation.poll-interval-ms:2000}") long pollIntervalMs) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.tokenLifetimeSeconds = tokenLifetimeSeconds;
+        this.pollIntervalMs = pollIntervalMs;
+        this.pollExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-revocation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("savora.auth.revocations", this, service -> service.revokedTokens.size() + service.notBefore.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Everything that can still cover a live token, then only what is new
+        lastSeen = LocalDateTime.now().minusSeconds(tokenLifetimeSeconds);
+        pollExecutor.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        pollExecutor.scheduleWithFixedDelay(this::purge, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public boolean isRevoked(Claims claims) {
+        if (!notBefore.isEmpty()) {
+            Number userId = claims.get(JwtTokenProvider.USER_ID_CLAIM, Number.class);
+            Long issuedAt = issuedAtMillis(claims);
+            if (userId != null && issuedAt != null) {
+                Long cutoff = notBefore.get(userId.longValue());
+                if (cutoff != null && issuedAt <= cutoff) {
+                    return true;
+                }
+            }
+        }
+        if (!revokedTokens.isEmpty() && claims.getId() != null) {
+            UUID tokenId = parseTokenId(claims.getId());
+            return tokenId != null && revokedTokens.containsKey(tokenId);
+        }
+        return false;
+    }
+
+    /**
+     * Revoke one token, e.g. on logout
+     */
+    public void revokeToken(Claims claims) {
+        Number userId = claims.get(JwtTokenProvider.USER_ID_CLAIM, Number.class);
+        UUID tokenId = claims.getId() == null ? null : parseTokenId(claims.getId());
+        if (userId == null || tokenId == null) {
+            throw new IllegalArgumentException("Token has no id to revoke");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        tokenRevocationRepository.save(new TokenRevocation(userId.longValue(), tokenId.toString(), now,
+                toLocalDateTime(claims.getExpiration().getTime())));
+        revokedTokens.put(tokenId, claims.getExpiration().getTime());
+    }
+
+    /**
+     * Revoke every token the user holds, e.g. on password reset or "log out everywhere"
+     */
+    public void revokeAllTokens(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        tokenRevocationRepository.save(new TokenRevocation(userId, null, now, now.plusSeconds(tokenLifetimeSeconds)));
+        applyNotBefore(userId, now);
+    }
+
+    private void poll() {
+        try {
+            LocalDateTime since = lastSeen.minusSeconds(POLL_OVERLAP_SECONDS);
+            for (TokenRevocation revocation : tokenRevocationRepository.findByRevokedAtAfter(since)) {
+                if (revocation.getTokenId() == null) {
+                    applyNotBefore(revocation.getUserId(), revocation.getRevokedAt());
+                } else {
+                    UUID tokenId = parseTokenId(revocation.getTokenId());
+                    if (tokenId != null) {
+                        revokedTokens.put(tokenId, toEpochMillis(revocation.getExpiresAt()));
+                    }
+                }
+                if (revocation.getRevokedAt().isAfter(lastSeen)) {
+                    lastSeen = revocation.getRevokedAt();
+                }
+            }
+            dropExpired();
+        } catch (Exception e) {
+            logger.warn("Failed to poll token revocations: {}", e.getMessage());
+        }
+    }
+
+    private void purge() {
+        try {
+            int deleted = tokenRevocationRepository.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                logger.debug("Purged {} expired token revocations", deleted);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to purge token revocations: {}", e.getMessage());
+        }
+    }
+
+    // Millisecond precision, so a token issued just after a password reset, in the same second, stays valid
+    private void applyNotBefore(Long userId, LocalDateTime revokedAt) {
+        notBefore.merge(userId, toEpochMillis(revokedAt), Math::max);
+    }
+
+    /**
+     * Issue time in epoch millis. Tokens from before the iat_ms claim only
+     * have whole seconds and count as issued at the start of theirs, so one
+     * issued in the revoking second is still void.
+     */
+    private static Long issuedAtMillis(Claims claims) {
+        Number millis = claims.get(JwtTokenProvider.ISSUED_AT_MILLIS_CLAIM, Number.class);
+        if (millis != null) {
+            return millis.longValue();
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt == null ? null : issuedAt.getTime();
+    }
+
+    private void dropExpired() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+        long oldestLiveIssue = now - tokenLifetimeSeconds * 1000;
+        notBefore.values().removeIf(cutoff -> cutoff < oldestLiveIssue);
+    }
+
+    private static UUID parseTokenId(String tokenId) {
+        try {
+            return UUID.fromString(tokenId);
+        } catch (IllegalArgumentException e) {
+            // Not one of ours
+            return null;
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(new Date(epochMillis).toInstant(), ZoneId.systemDefault());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollExecutor.shutdownNow();
+    }
+}
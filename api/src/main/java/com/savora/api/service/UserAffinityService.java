@@ -0,0 +1,339 @@
+package com.savora.api.service;
+
+import com.savora.api.model.Event;
+import com.savora.api.model.Recommendation;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Online per-user cuisine affinity vectors, updated in place from interaction
+ * events so recommendations react to a click before the next batch run.
+ *
+ * Item vectors (restaurant -> cuisines) are loaded once and never change here.
+ * Users are in a ConcurrentHashMap and each user vector is an immutable
+ * float[] swapped with compare-and-set, so no update or read takes a lock
+ * shared with other users. About recommendations.online.max-users vectors
+ * are kept: once the map grows past that, one sweep drops the least recently
+ * active tenth, who fall back to batch results.
+ */
+@Service
+@Timed("savora.service")
+public class UserAffinityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAffinityService.class);
+
+    // Catalog reads tolerate replica lag
+    @Autowired
+    @Qualifier("readJdbcTemplate")
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${recommendations.online.learning-rate:0.2}")
+    private float learningRate;
+
+    @Value("${recommendations.online.decay:0.05}")
+    private float decay;
+
+    @Value("${recommendations.online.weight:1.0}")
+    private float affinityWeight;
+
+    @Value("${recommendations.online.max-results:6}")
+    private int maxResults;
+
+    @Value("${recommendations.online.max-users:100000}")
+    private int maxUsers;
+
+    private final Map<Long, UserVector> userVectors = new ConcurrentHashMap<>();
+    // Logical clock for last-touched stamps; only its order matters
+    private final AtomicLong touches = new AtomicLong();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private volatile ItemCatalog catalog;
+
+    // While the catalog cannot be loaded, events skip affinity updates rather than each waiting on the database
+    private static final long CATALOG_RETRY_MILLIS = 30_000;
+    private volatile long catalogRetryAt;
+
+    /**
+     * Fold a tracked event into the user's vector. Events without a user, for
+     * a user other than the authenticated one, or of a type that carries no
+     * preference signal, are ignored.
+     *
+     * @param authenticatedUserId id of the caller's token, or null if anonymous
+     */
+    public void recordEvent(Event event, Long authenticatedUserId) {
+        if (event.getUserId() == null || event.getEventType() == null
+                || !event.getUserId().equals(authenticatedUserId)) {
+            return;
+        }
+
+        ItemCatalog items = getCatalog();
+        if (items == null) {
+            return;
+        }
+
+        float strength;
+        int[] dimensions;
+        switch (event.getEventType()) {
+            case "CUISINE_SELECTED":
+                Integer index = items.cuisineIndex.get(normalize(asString(event.getData().get("cuisineType"))));
+                if (index == null) {
+                    return;
+                }
+                dimensions = new int[] { index };
+                strength = 1.0f;
+                break;
+            case "RESTAURANT_VIEWED":
+                dimensions = items.cuisinesOf(asLong(event.getData().get("restaurantId")));
+                strength = 0.5f;
+                break;
+            case "RESTAURANT_BOOKMARKED":
+                dimensions = items.cuisinesOf(asLong(event.getData().get("restaurantId")));
+                // Removing a bookmark is a (weaker) negative signal
+                strength = Boolean.FALSE.equals(event.getData().get("bookmarked")) ? -0.5f : 1.5f;
+                break;
+            default:
+                return;
+        }
+        if (dimensions.length == 0) {
+            return;
+        }
+
+        update(event.getUserId(), items.cuisineIndex.size(), dimensions, strength);
+    }
+
+    private void update(Long userId, int size, int[] dimensions, float strength) {
+        UserVector user = userVectors.get(userId);
+        if (user == null) {
+            // Stamped on creation, so a sweep running now does not take the newest user
+            user = userVectors.computeIfAbsent(userId, id -> new UserVector(new float[size], touches.incrementAndGet()));
+            if (userVectors.size() > maxUsers) {
+                evictIdle();
+            }
+        }
+        user.lastTouched = touches.incrementAndGet();
+        AtomicReference<float[]> ref = user.vector;
+        float step = learningRate * strength / dimensions.length;
+        float[] current;
+        float[] next;
+        do {
+            current = ref.get();
+            next = new float[size];
+            for (int i = 0; i < Math.min(size, current.length); i++) {
+                next[i] = current[i] * (1 - decay);
+            }
+            for (int dimension : dimensions) {
+                next[dimension] += step;
+            }
+        } while (!ref.compareAndSet(current, next));
+    }
+
+    /**
+     * Drop the least recently touched users down to 90% of max-users, so
+     * the sort is paid once per tenth of growth rather than per new user.
+     * Stamps move while this runs, so the choice is approximate.
+     */
+    private void evictIdle() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxUsers - maxUsers / 10;
+            long[] stamps = userVectors.values().stream().mapToLong(user -> user.lastTouched).toArray();
+            int excess = stamps.length - target;
+            if (excess <= 0) {
+                return;
+            }
+            Arrays.sort(stamps);
+            long cutoff = stamps[excess - 1];
+            userVectors.values().removeIf(user -> user.lastTouched <= cutoff);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    public boolean hasAffinity(Long userId) {
+        return userId != null && userVectors.containsKey(userId);
+    }
+
+    /**
+     * Re-rank the batch recommendations for a user with their online vector.
+     * Catalog restaurants compete with the batch list, scored with the same
+     * rating * 0.6 + popularity * 0.4 base as analytics.py plus the affinity.
+     */
+    public List<Recommendation> personalize(Long userId, List<Recommendation> batch) {
+        UserVector user = userId == null ? null : userVectors.get(userId);
+        ItemCatalog items = getCatalog();
+        if (user == null || items == null) {
+            return batch;
+        }
+        user.lastTouched = touches.incrementAndGet();
+        float[] vector = user.vector.get();
+
+        Map<String, Float> batchScores = new HashMap<>();
+        for (Recommendation recommendation : batch) {
+            batchScores.put(normalize(recommendation.getRestaurantName()), recommendation.getScore());
+        }
+
+        List<Recommendation> candidates = new ArrayList<>(items.restaurants.size());
+        for (Item item : items.restaurants) {
+            float affinity = 0;
+            for (int dimension : item.cuisines) {
+                if (dimension < vector.length) {
+                    affinity += vector[dimension];
+                }
+            }
+            float base = batchScores.getOrDefault(normalize(item.name),
+                    (float) (item.rating * 0.6 + (double) item.reviewCount / items.maxReviewCount * 0.4));
+
+            Recommendation recommendation = new Recommendation();
+            recommendation.setUserId(userId);
+            recommendation.setRestaurantName(item.name);
+            recommendation.setRestaurantCategories(item.categories);
+            recommendation.setRating((float) item.rating);
+            recommendation.setReviewCount(item.reviewCount);
+            recommendation.setPriceRange(item.priceRange);
+            recommendation.setScore(base + affinityWeight * affinity);
+            candidates.add(recommendation);
+        }
+
+        candidates.sort((a, b) -> Float.compare(b.getScore(), a.getScore()));
+        int size = Math.min(Math.max(maxResults, batch.size()), candidates.size());
+        List<Recommendation> result = new ArrayList<>(candidates.subList(0, size));
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < result.size(); i++) {
+            result.get(i).setRecommendationRank(i + 1);
+            result.get(i).setGeneratedAt(now);
+        }
+        return result;
+    }
+
+    private ItemCatalog getCatalog() {
+        ItemCatalog items = catalog;
+        if (items == null && System.currentTimeMillis() >= catalogRetryAt) {
+            synchronized (this) {
+                items = catalog;
+                if (items == null && System.currentTimeMillis() >= catalogRetryAt) {
+                    try {
+                        items = loadCatalog();
+                        catalog = items;
+                    } catch (Exception e) {
+                        catalogRetryAt = System.currentTimeMillis() + CATALOG_RETRY_MILLIS;
+                        logger.warn("Error loading restaurant vectors: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
+    private ItemCatalog loadCatalog() {
+        List<Item> restaurants = jdbcTemplate.query(
+            "SELECT id, name, categories, rating, review_count, price_range FROM restaurants",
+            (rs, rowNum) -> {
+                Item item = new Item();
+                item.id = rs.getLong("id");
+                item.name = rs.getString("name");
+                item.categories = rs.getString("categories");
+                item.rating = rs.getDouble("rating");
+                item.reviewCount = rs.getInt("review_count");
+                item.priceRange = rs.getString("price_range");
+                return item;
+            });
+
+        Map<String, Integer> cuisineIndex = new HashMap<>();
+        Map<Long, Item> byId = new HashMap<>();
+        int maxReviewCount = 1;
+        for (Item item : restaurants) {
+            List<Integer> dimensions = new ArrayList<>();
+            if (item.categories != null) {
+                for (String part : item.categories.split(",")) {
+                    String cuisine = normalize(part);
+                    if (!cuisine.isEmpty()) {
+                        dimensions.add(cuisineIndex.computeIfAbsent(cuisine, c -> cuisineIndex.size()));
+                    }
+                }
+            }
+            item.cuisines = dimensions.stream().mapToInt(Integer::intValue).toArray();
+            byId.put(item.id, item);
+            maxReviewCount = Math.max(maxReviewCount, item.reviewCount);
+        }
+        return new ItemCatalog(Collections.unmodifiableList(restaurants), byId, cuisineIndex, maxReviewCount);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String asString(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static Long asLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return value == null ? null : Long.valueOf(value.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class UserVector {
+        final AtomicReference<float[]> vector;
+        volatile long lastTouched;
+
+        UserVector(float[] vector, long lastTouched) {
+            this.vector = new AtomicReference<>(vector);
+            this.lastTouched = lastTouched;
+        }
+    }
+
+    private static class Item {
+        long id;
+        String name;
+        String categories;
+        double rating;
+        int reviewCount;
+        String priceRange;
+        int[] cuisines;
+    }
+
+    private static class ItemCatalog {
+        final List<Item> restaurants;
+        final Map<Long, Item> byId;
+        final Map<String, Integer> cuisineIndex;
+        final int maxReviewCount;
+
+        ItemCatalog(List<Item> restaurants, Map<Long, Item> byId, Map<String, Integer> cuisineIndex, int maxReviewCount) {
+            this.restaurants = restaurants;
+            this.byId = byId;
+            this.cuisineIndex = cuisineIndex;
+            this.maxReviewCount = maxReviewCount;
+        }
+
+        int[] cuisinesOf(Long restaurantId) {
+            Item item = restaurantId == null ? null : byId.get(restaurantId);
+            return item == null ? new int[0] : item.cuisines;
+        }
+    }
+}
@@ -5,7 +5,10 @@ import com.savora.api.dto.UserDto;
 import com.savora.api.dto.UserProfileUpdateRequest;
 import com.savora.api.model.User;
 import com.savora.api.repository.UserRepository;
+import com.savora.api.security.AccountUserDetails;
+import com.savora.api.security.UserDetailsCache;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,8 +18,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -24,14 +30,31 @@ public class UserService implements UserDetailsService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsCache userDetailsCache;
+    private final AccountAvailabilityService accountAvailabilityService;
+    private final TokenRevocationService tokenRevocationService;
     
     @Value("${reset.token.expiry.minutes:30}")
     private int resetTokenExpiryMinutes;
 
+    // Accounts that also get ROLE_ADMIN, e.g. for the event analytics endpoints
+    private final Set<String> adminEmails = new HashSet<>();
+
     // Note: We're injecting PasswordEncoder directly, not from WebSecurityConfig
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, UserDetailsCache userDetailsCache,
+                       AccountAvailabilityService accountAvailabilityService, TokenRevocationService tokenRevocationService,
+                       // Comma-separated; "a@x.com, b@x.com" and a trailing comma are fine
+                       @Value("${admin.emails:}") String adminEmails) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsCache = userDetailsCache;
+        this.accountAvailabilityService = accountAvailabilityService;
+        this.tokenRevocationService = tokenRevocationService;
+        for (String email : adminEmails.split(",")) {
+            if (!email.isBlank()) {
+                this.adminEmails.add(email.trim().toLowerCase());
+            }
+        }
     }
     
     @Override
@@ -39,11 +62,20 @@ public class UserService implements UserDetailsService {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
         
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"))
-        );
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        for (String role : getRoles(user.getEmail())) {
+            authorities.add(new SimpleGrantedAuthority(role));
+        }
+        return new AccountUserDetails(user, authorities);
+    }
+    
+    public List<String> getRoles(String email) {
+        List<String> roles = new ArrayList<>();
+        roles.add("ROLE_USER");
+        if (adminEmails.contains(email.toLowerCase())) {
+            roles.add("ROLE_ADMIN");
+        }
+        return roles;
     }
     
     public UserDto getUserByEmail(String email) {
@@ -62,14 +94,6 @@ public class UserService implements UserDetailsService {
         return dto;
     }
     
-    @Transactional
-    public void recordLogin(String email) {
-        userRepository.findByEmail(email).ifPresent(user -> {
-            user.setLastLogin(LocalDateTime.now());
-            userRepository.save(user);
-        });
-    }
-    
     @Transactional
     public UserDto updateUserProfile(String email, UserProfileUpdateRequest request) {
         User user = userRepository.findByEmail(email)
@@ -84,13 +108,15 @@ public class UserService implements UserDetailsService {
         }
         
         if (request.getUsername() != null && !request.getUsername().equals(user.getUsername())) {
-            if (userRepository.existsByUsername(request.getUsername())) {
+            if (!accountAvailabilityService.isUsernameAvailable(request.getUsername())) {
                 throw new RuntimeException("Username is already taken");
             }
             user.setUsername(request.getUsername());
+            accountAvailabilityService.recordTaken(request.getUsername(), null);
         }
         
         User updatedUser = userRepository.save(user);
+        userDetailsCache.evict(email);
         return mapToUserDto(updatedUser);
     }
     
@@ -121,6 +147,9 @@ public class UserService implements UserDetailsService {
         user.setResetToken(null);
         user.setResetTokenExpires(null);
         userRepository.save(user);
+        userDetailsCache.evict(user.getEmail());
+        // Sessions opened with the old password end here, on every instance
+        tokenRevocationService.revokeAllTokens(user.getId());
     }
     
     public boolean existsByEmail(String email) {
@@ -0,0 +1,77 @@
+-- Schema as created by postgres/init.sql, without the CSV imports. Databases
+-- initialised by that script are baselined at this version and skip it.
+
+CREATE TABLE IF NOT EXISTS users (
+    id SERIAL PRIMARY KEY,
+    username VARCHAR(50) UNIQUE NOT NULL,
+    email VARCHAR(255) UNIQUE NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    first_name VARCHAR(100),
+    last_name VARCHAR(100),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    last_login TIMESTAMP,
+    reset_token VARCHAR(255),
+    reset_token_expires TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS restaurants (
+    id SERIAL PRIMARY KEY,
+    name TEXT,
+    rating FLOAT,
+    review_count INT,
+    price_range VARCHAR(10),
+    categories TEXT,
+    address TEXT,
+    latitude FLOAT,
+    longitude FLOAT,
+    phone VARCHAR(20),
+    url TEXT
+);
+
+CREATE TABLE IF NOT EXISTS restaurant_reviews (
+    review_id SERIAL PRIMARY KEY,
+    user_id INT REFERENCES users(id) NULL,
+    restaurant_id INT REFERENCES restaurants(id) NULL,
+    restaurant_name TEXT,
+    reviewer_name TEXT,
+    review_rating INT CHECK (review_rating >= 1 AND review_rating <= 5),
+    review_text TEXT,
+    review_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS cuisine_info (
+    cuisine_id SERIAL PRIMARY KEY,
+    cuisine_type TEXT NOT NULL
+);
+
+INSERT INTO cuisine_info (cuisine_type) VALUES
+    ('Italian'),
+    ('Mexican'),
+    ('Mediterranean'),
+    ('Thai'),
+    ('Indian'),
+    ('French'),
+    ('Japanese'),
+    ('Chinese'),
+    ('American')
+ON CONFLICT DO NOTHING;
+
+CREATE TABLE IF NOT EXISTS restaurant_cuisine (
+    restaurant_id INT REFERENCES restaurants(id),
+    cuisine_id INT REFERENCES cuisine_info(cuisine_id),
+    PRIMARY KEY (restaurant_id, cuisine_id)
+);
+
+CREATE TABLE IF NOT EXISTS user_preferences (
+    user_id INT REFERENCES users(id),
+    cuisine_id INT REFERENCES cuisine_info(cuisine_id),
+    PRIMARY KEY (user_id, cuisine_id)
+);
+
+CREATE TABLE IF NOT EXISTS menu_item (
+    item_id SERIAL PRIMARY KEY,
+    restaurant_id INT REFERENCES restaurants(id),
+    item_name TEXT,
+    price FLOAT,
+    category TEXT
+);
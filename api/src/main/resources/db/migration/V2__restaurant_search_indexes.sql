@@ -0,0 +1,39 @@
+-- Indexes behind the catalog queries in RestaurantService. Substring filters
+-- (ILIKE '%x%') can only use trigram GIN indexes; equality on price_range
+-- plus ORDER BY rating DESC LIMIT n walks the composite btree and stops early.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- The entity and the location filters read city; fill it from the address
+-- ("520 S Front St, Ste 500, Mankato, MN 56001": the part before the state)
+ALTER TABLE restaurants ADD COLUMN IF NOT EXISTS city TEXT;
+UPDATE restaurants
+SET city = trim(substring(address FROM '([^,]+),\s*[A-Z]{2}\s+\d{5}'))
+WHERE city IS NULL AND address IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_restaurants_categories_trgm ON restaurants USING gin (categories gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_restaurants_name_trgm ON restaurants USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_restaurants_address_trgm ON restaurants USING gin (address gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_restaurants_city_trgm ON restaurants USING gin (city gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_restaurants_price_rating ON restaurants (price_range, rating DESC);
+CREATE INDEX IF NOT EXISTS idx_restaurants_rating ON restaurants (rating DESC);
+
+-- ILIKE selectivity is estimated by matching the pattern against the column
+-- histogram; with the default 100 entries every rare term looks like 1% of
+-- the table and the planner walks idx_restaurants_rating instead
+ALTER TABLE restaurants ALTER COLUMN categories SET STATISTICS 1000;
+ALTER TABLE restaurants ALTER COLUMN name SET STATISTICS 1000;
+
+CREATE INDEX IF NOT EXISTS idx_restaurant_reviews_restaurant_id ON restaurant_reviews (restaurant_id);
+
+-- The CSV import leaves restaurant_id empty; link reviews by name where the name is unambiguous
+UPDATE restaurant_reviews rr
+SET restaurant_id = r.id
+FROM restaurants r
+WHERE rr.restaurant_id IS NULL
+  AND r.name = rr.restaurant_name
+  AND (SELECT count(*) FROM restaurants same WHERE same.name = r.name) = 1;
+
+ANALYZE restaurants;
+ANALYZE restaurant_reviews;
@@ -0,0 +1,28 @@
+-- One cuisine_info row per distinct category (case-insensitive) and one
+-- restaurant_cuisine row per restaurant and category, split out of the
+-- comma-separated restaurants.categories.
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_cuisine_info_type ON cuisine_info (lower(cuisine_type));
+
+INSERT INTO cuisine_info (cuisine_type)
+SELECT DISTINCT ON (lower(category)) category
+FROM (
+    SELECT trim(part) AS category
+    FROM restaurants, regexp_split_to_table(categories, ',') AS part
+) parts
+WHERE category <> ''
+ORDER BY lower(category), category
+ON CONFLICT (lower(cuisine_type)) DO NOTHING;
+
+INSERT INTO restaurant_cuisine (restaurant_id, cuisine_id)
+SELECT DISTINCT r.id, ci.cuisine_id
+FROM restaurants r
+CROSS JOIN LATERAL regexp_split_to_table(r.categories, ',') AS part
+JOIN cuisine_info ci ON lower(ci.cuisine_type) = lower(trim(part))
+ON CONFLICT DO NOTHING;
+
+-- The primary key covers lookups by restaurant; this one covers "restaurants serving X"
+CREATE INDEX IF NOT EXISTS idx_restaurant_cuisine_cuisine ON restaurant_cuisine (cuisine_id, restaurant_id);
+
+ANALYZE cuisine_info;
+ANALYZE restaurant_cuisine;
@@ -0,0 +1,55 @@
+-- user_recommendations becomes a list-partitioned table keyed by
+-- model_version, with recommendation_model pointing at the version readers
+-- see. RecommendationTableWriter loads a new version into its own partition
+-- and flips the pointer in one transaction, so readers never see a
+-- half-written set. A table created earlier by hadoop/analytics.py becomes
+-- version 0.
+
+CREATE SEQUENCE IF NOT EXISTS user_recommendations_id_seq;
+-- The old table's SERIAL owns it, and that table is dropped once superseded
+ALTER SEQUENCE user_recommendations_id_seq OWNED BY NONE;
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class
+               WHERE relname = 'user_recommendations' AND relkind = 'r'
+                 AND relnamespace = current_schema()::regnamespace) THEN
+        ALTER TABLE user_recommendations RENAME TO user_recommendations_v0;
+        ALTER INDEX IF EXISTS idx_user_recommendations_user_id RENAME TO user_recommendations_v0_user_id_idx;
+        ALTER TABLE user_recommendations_v0 ADD COLUMN model_version BIGINT NOT NULL DEFAULT 0;
+    END IF;
+END $$;
+
+CREATE TABLE user_recommendations (
+    id INT NOT NULL DEFAULT nextval('user_recommendations_id_seq'),
+    user_id BIGINT NOT NULL,
+    restaurant_name VARCHAR(255) NOT NULL,
+    restaurant_categories VARCHAR(255),
+    rating FLOAT,
+    review_count INT,
+    price_range VARCHAR(20),
+    score FLOAT,
+    recommendation_rank INT NOT NULL,
+    generated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    model_version BIGINT NOT NULL
+) PARTITION BY LIST (model_version);
+
+CREATE TABLE IF NOT EXISTS user_recommendations_v0 (LIKE user_recommendations INCLUDING DEFAULTS);
+ALTER TABLE user_recommendations_v0 ALTER COLUMN model_version SET DEFAULT 0;
+-- Lets ATTACH skip scanning the rows to prove they belong
+ALTER TABLE user_recommendations_v0 ADD CONSTRAINT user_recommendations_v0_version CHECK (model_version = 0);
+ALTER TABLE user_recommendations ATTACH PARTITION user_recommendations_v0 FOR VALUES IN (0);
+
+-- Named as analytics.py names its index, so its CREATE INDEX IF NOT EXISTS is a no-op
+CREATE INDEX idx_user_recommendations_user_id ON user_recommendations (user_id, recommendation_rank);
+
+CREATE SEQUENCE IF NOT EXISTS recommendation_model_version_seq;
+
+CREATE TABLE IF NOT EXISTS recommendation_model (
+    id INT PRIMARY KEY CHECK (id = 1),
+    active_version BIGINT NOT NULL,
+    row_count BIGINT,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO recommendation_model (id, active_version) VALUES (1, 0) ON CONFLICT DO NOTHING;
@@ -0,0 +1,195 @@
+-- Aggregates the catalog endpoints read instead of recomputing, kept current
+-- by triggers as restaurants, their categories and reviews change:
+--
+--   restaurant_cuisine.rating     a copy of restaurants.rating, so a cuisine's
+--                                 top restaurants are one index range
+--   cuisine_stats                 restaurants per cuisine
+--   restaurant_rating_stats       review count, rating sum and 1-5 star
+--                                 histogram per restaurant
+
+ALTER TABLE restaurant_cuisine ADD COLUMN IF NOT EXISTS rating FLOAT;
+UPDATE restaurant_cuisine rc SET rating = r.rating FROM restaurants r WHERE r.id = rc.restaurant_id;
+DROP INDEX IF EXISTS idx_restaurant_cuisine_cuisine;
+CREATE INDEX idx_restaurant_cuisine_top ON restaurant_cuisine (cuisine_id, rating DESC NULLS LAST, restaurant_id);
+
+CREATE TABLE cuisine_stats (
+    cuisine_id INT PRIMARY KEY REFERENCES cuisine_info(cuisine_id),
+    restaurant_count INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO cuisine_stats (cuisine_id, restaurant_count)
+SELECT ci.cuisine_id, count(rc.restaurant_id)
+FROM cuisine_info ci
+LEFT JOIN restaurant_cuisine rc ON rc.cuisine_id = ci.cuisine_id
+GROUP BY ci.cuisine_id;
+
+CREATE TABLE restaurant_rating_stats (
+    restaurant_id INT PRIMARY KEY REFERENCES restaurants(id) ON DELETE CASCADE,
+    review_count INT NOT NULL DEFAULT 0,
+    rating_sum BIGINT NOT NULL DEFAULT 0,
+    stars_1 INT NOT NULL DEFAULT 0,
+    stars_2 INT NOT NULL DEFAULT 0,
+    stars_3 INT NOT NULL DEFAULT 0,
+    stars_4 INT NOT NULL DEFAULT 0,
+    stars_5 INT NOT NULL DEFAULT 0
+);
+
+INSERT INTO restaurant_rating_stats (restaurant_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5)
+SELECT restaurant_id, count(*), sum(review_rating),
+       count(*) FILTER (WHERE review_rating = 1), count(*) FILTER (WHERE review_rating = 2),
+       count(*) FILTER (WHERE review_rating = 3), count(*) FILTER (WHERE review_rating = 4),
+       count(*) FILTER (WHERE review_rating = 5)
+FROM restaurant_reviews
+WHERE restaurant_id IS NOT NULL AND review_rating IS NOT NULL
+GROUP BY restaurant_id;
+
+-- The triggers below run once per statement over its transition tables, one
+-- grouped upsert per aggregate: a bulk load updating the same few counter rows
+-- once per row would leave a version of each behind per row, unprunable until
+-- the load commits.
+
+-- Deleting a restaurant takes its cuisine rows with it
+ALTER TABLE restaurant_cuisine DROP CONSTRAINT IF EXISTS restaurant_cuisine_restaurant_id_fkey;
+ALTER TABLE restaurant_cuisine ADD CONSTRAINT restaurant_cuisine_restaurant_id_fkey
+    FOREIGN KEY (restaurant_id) REFERENCES restaurants(id) ON DELETE CASCADE;
+
+-- restaurants -> restaurant_cuisine: the same split as V3, for the given restaurants
+CREATE OR REPLACE FUNCTION resync_restaurant_cuisine(ids INT[]) RETURNS void AS $$
+    INSERT INTO cuisine_info (cuisine_type)
+    SELECT DISTINCT ON (lower(trim(part))) trim(part)
+    FROM restaurants r
+    CROSS JOIN LATERAL regexp_split_to_table(r.categories, ',') AS part
+    WHERE r.id IN (SELECT unnest(ids)) AND trim(part) <> ''
+    ORDER BY lower(trim(part)), trim(part)
+    ON CONFLICT (lower(cuisine_type)) DO NOTHING;
+
+    DELETE FROM restaurant_cuisine rc
+    WHERE rc.restaurant_id IN (SELECT unnest(ids))
+      AND NOT EXISTS (
+          SELECT 1
+          FROM restaurants r
+          CROSS JOIN LATERAL regexp_split_to_table(r.categories, ',') AS part
+          JOIN cuisine_info ci ON lower(ci.cuisine_type) = lower(trim(part))
+          WHERE r.id = rc.restaurant_id AND ci.cuisine_id = rc.cuisine_id);
+
+    INSERT INTO restaurant_cuisine (restaurant_id, cuisine_id, rating)
+    SELECT DISTINCT r.id, ci.cuisine_id, r.rating
+    FROM restaurants r
+    CROSS JOIN LATERAL regexp_split_to_table(r.categories, ',') AS part
+    JOIN cuisine_info ci ON lower(ci.cuisine_type) = lower(trim(part))
+    WHERE r.id IN (SELECT unnest(ids))
+    ON CONFLICT (restaurant_id, cuisine_id) DO UPDATE SET rating = EXCLUDED.rating;
+$$ LANGUAGE sql;
+
+CREATE OR REPLACE FUNCTION sync_restaurant_cuisine() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM resync_restaurant_cuisine(ARRAY(SELECT id FROM new_rows));
+    ELSE
+        PERFORM resync_restaurant_cuisine(ARRAY(
+            SELECT n.id FROM new_rows n JOIN old_rows o ON o.id = n.id
+            WHERE n.categories IS DISTINCT FROM o.categories OR n.rating IS DISTINCT FROM o.rating));
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER restaurants_cuisine_insert AFTER INSERT ON restaurants
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION sync_restaurant_cuisine();
+CREATE TRIGGER restaurants_cuisine_update AFTER UPDATE ON restaurants
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION sync_restaurant_cuisine();
+
+-- restaurant_cuisine -> cuisine_stats
+CREATE OR REPLACE FUNCTION count_cuisine_restaurants() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO cuisine_stats AS cs (cuisine_id, restaurant_count)
+        SELECT cuisine_id, count(*) FROM new_rows GROUP BY cuisine_id
+        ON CONFLICT (cuisine_id) DO UPDATE SET restaurant_count = cs.restaurant_count + EXCLUDED.restaurant_count;
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE cuisine_stats cs SET restaurant_count = cs.restaurant_count - removed.restaurants
+        FROM (SELECT cuisine_id, count(*) AS restaurants FROM old_rows GROUP BY cuisine_id) removed
+        WHERE cs.cuisine_id = removed.cuisine_id;
+    ELSE
+        -- Net change per cuisine; rating-only updates net to zero and write nothing
+        INSERT INTO cuisine_stats AS cs (cuisine_id, restaurant_count)
+        SELECT cuisine_id, sum(delta)
+        FROM (SELECT cuisine_id, 1 AS delta FROM new_rows
+              UNION ALL
+              SELECT cuisine_id, -1 FROM old_rows) changes
+        GROUP BY cuisine_id
+        HAVING sum(delta) <> 0
+        ON CONFLICT (cuisine_id) DO UPDATE SET restaurant_count = cs.restaurant_count + EXCLUDED.restaurant_count;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER restaurant_cuisine_count_insert AFTER INSERT ON restaurant_cuisine
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_cuisine_restaurants();
+CREATE TRIGGER restaurant_cuisine_count_update AFTER UPDATE ON restaurant_cuisine
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_cuisine_restaurants();
+CREATE TRIGGER restaurant_cuisine_count_delete AFTER DELETE ON restaurant_cuisine
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION count_cuisine_restaurants();
+
+-- restaurant_reviews -> restaurant_rating_stats: old rows subtracted, new rows added
+CREATE OR REPLACE FUNCTION aggregate_review_ratings() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        UPDATE restaurant_rating_stats s
+        SET review_count = s.review_count - o.review_count,
+            rating_sum = s.rating_sum - o.rating_sum,
+            stars_1 = s.stars_1 - o.stars_1,
+            stars_2 = s.stars_2 - o.stars_2,
+            stars_3 = s.stars_3 - o.stars_3,
+            stars_4 = s.stars_4 - o.stars_4,
+            stars_5 = s.stars_5 - o.stars_5
+        FROM (SELECT restaurant_id, count(*) AS review_count, sum(review_rating) AS rating_sum,
+                     count(*) FILTER (WHERE review_rating = 1) AS stars_1, count(*) FILTER (WHERE review_rating = 2) AS stars_2,
+                     count(*) FILTER (WHERE review_rating = 3) AS stars_3, count(*) FILTER (WHERE review_rating = 4) AS stars_4,
+                     count(*) FILTER (WHERE review_rating = 5) AS stars_5
+              FROM old_rows
+              WHERE restaurant_id IS NOT NULL AND review_rating IS NOT NULL
+              GROUP BY restaurant_id) o
+        WHERE s.restaurant_id = o.restaurant_id;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO restaurant_rating_stats AS s (restaurant_id, review_count, rating_sum, stars_1, stars_2, stars_3, stars_4, stars_5)
+        SELECT restaurant_id, count(*), sum(review_rating),
+               count(*) FILTER (WHERE review_rating = 1), count(*) FILTER (WHERE review_rating = 2),
+               count(*) FILTER (WHERE review_rating = 3), count(*) FILTER (WHERE review_rating = 4),
+               count(*) FILTER (WHERE review_rating = 5)
+        FROM new_rows
+        WHERE restaurant_id IS NOT NULL AND review_rating IS NOT NULL
+        GROUP BY restaurant_id
+        ON CONFLICT (restaurant_id) DO UPDATE
+        SET review_count = s.review_count + EXCLUDED.review_count,
+            rating_sum = s.rating_sum + EXCLUDED.rating_sum,
+            stars_1 = s.stars_1 + EXCLUDED.stars_1,
+            stars_2 = s.stars_2 + EXCLUDED.stars_2,
+            stars_3 = s.stars_3 + EXCLUDED.stars_3,
+            stars_4 = s.stars_4 + EXCLUDED.stars_4,
+            stars_5 = s.stars_5 + EXCLUDED.stars_5;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER restaurant_reviews_rating_stats_insert AFTER INSERT ON restaurant_reviews
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_review_ratings();
+CREATE TRIGGER restaurant_reviews_rating_stats_update AFTER UPDATE ON restaurant_reviews
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_review_ratings();
+CREATE TRIGGER restaurant_reviews_rating_stats_delete AFTER DELETE ON restaurant_reviews
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION aggregate_review_ratings();
+
+ANALYZE restaurant_cuisine;
+ANALYZE cuisine_stats;
+ANALYZE restaurant_rating_stats;
@@ -0,0 +1,35 @@
+-- Tables and columns the JPA entities map that, until now, only
+-- spring.jpa.hibernate.ddl-auto=update created. IF NOT EXISTS throughout,
+-- so databases Hibernate already updated migrate cleanly.
+
+-- TokenRevocation: a revoked token (token_id) or, without one, every token
+-- of the user issued before revoked_at. TokenRevocationService loads rows
+-- by revoked_at, and deletes them once expires_at has passed.
+CREATE TABLE IF NOT EXISTS token_revocations (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    token_id VARCHAR(36),
+    revoked_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_token_revocations_revoked_at ON token_revocations (revoked_at);
+
+-- Recommendation entity; recommendations are served from user_recommendations
+CREATE TABLE IF NOT EXISTS recommendations (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT,
+    restaurant_name VARCHAR(255),
+    restaurant_categories VARCHAR(255),
+    rating REAL,
+    review_count INT,
+    price_range VARCHAR(255),
+    score REAL,
+    recommendation_rank INT,
+    generated_at TIMESTAMP
+);
+
+-- Restaurant entity fields with no column in postgres/init.sql
+ALTER TABLE restaurants ADD COLUMN IF NOT EXISTS distance VARCHAR(255);
+ALTER TABLE restaurants ADD COLUMN IF NOT EXISTS image VARCHAR(255);
+ALTER TABLE restaurants ADD COLUMN IF NOT EXISTS bookmarked BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,118 @@
+package com.savora.api.security;
+
+import com.savora.api.service.KafkaProducerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RateLimitFilterTest {
+
+    private final JwtTokenProvider jwtTokenProvider = Mockito.mock(JwtTokenProvider.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<RateLimitFilter> filters = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        filters.forEach(RateLimitFilter::shutdown);
+    }
+
+    @Test
+    void eachRouteHasItsOwnBudgetAndRetryAfterIsTheWaitForOneToken() throws Exception {
+        // One event every 10 s, two logins a second; anything else is never limited
+        RateLimitFilter filter = filter("/api/events/**=0.1:1:low,/api/auth/**=2:2:high", 200, 500);
+
+        assertThat(call(filter, "/api/events/track", "10.0.0.1").getStatus()).isEqualTo(200);
+        MockHttpServletResponse limited = call(filter, "/api/events/track", "10.0.0.1");
+        assertThat(limited.getStatus()).isEqualTo(429);
+        assertThat(limited.getHeader("Retry-After")).isEqualTo("10");
+
+        assertThat(call(filter, "/api/auth/login", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(call(filter, "/api/auth/login", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(call(filter, "/api/auth/login", "10.0.0.1").getStatus()).isEqualTo(429);
+        assertThat(call(filter, "/api/restaurants", "10.0.0.1").getStatus()).isEqualTo(200);
+        // Another address is another client
+        assertThat(call(filter, "/api/events/track", "10.0.0.2").getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.get("savora.ratelimit.decisions").tag("decision", "limited").counters())
+                .extracting(counter -> counter.count()).containsExactlyInAnyOrder(1.0, 1.0);
+    }
+
+    @Test
+    void verifiedTokensAreKeyedByUserWithoutParsingTheToken() throws Exception {
+        RateLimitFilter filter = filter("/api/events/**=0.1:1:low", 200, 500);
+        when(jwtTokenProvider.getVerifiedSubject("known")).thenReturn("ana@example.com");
+
+        MockHttpServletRequest first = request("/api/events/track", "10.0.0.1");
+        first.addHeader("Authorization", "Bearer known");
+        MockHttpServletRequest sameUserElsewhere = request("/api/events/track", "10.0.0.2");
+        sameUserElsewhere.addHeader("Authorization", "Bearer known");
+        MockHttpServletRequest unknownToken = request("/api/events/track", "10.0.0.3");
+        unknownToken.addHeader("Authorization", "Bearer forged");
+
+        assertThat(call(filter, first, (req, res) -> { }).getStatus()).isEqualTo(200);
+        assertThat(call(filter, sameUserElsewhere, (req, res) -> { }).getStatus()).isEqualTo(429);
+        assertThat(call(filter, unknownToken, (req, res) -> { }).getStatus()).isEqualTo(200);
+        verify(jwtTokenProvider, never()).getUsernameFromToken(anyString());
+        verify(jwtTokenProvider, never()).parseToken(anyString());
+    }
+
+    @Test
+    void asyncRequestsStayInFlightAndAreTimedUntilTheyComplete() throws Exception {
+        // One thread and a 1 ms latency target, so each signal alone reads as saturation
+        RateLimitFilter filter = filter("/api/events/**=1000:1000:high", 1, 1);
+        MockHttpServletRequest request = request("/api/events/track", "10.0.0.1");
+        request.setAsyncSupported(true);
+
+        call(filter, request, (req, res) -> req.startAsync());
+        assertThat(pressure()).isEqualTo(1.0);
+
+        Thread.sleep(50);
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        // No longer in flight, and the 50 ms it took is in the latency average
+        assertThat(pressure()).isGreaterThan(1.0);
+    }
+
+    private RateLimitFilter filter(String routes, int maxThreads, double latencyTargetMs) {
+        KafkaProducerService kafkaProducerService = Mockito.mock(KafkaProducerService.class);
+        RateLimitFilter filter = new RateLimitFilter(jwtTokenProvider, kafkaProducerService, meterRegistry,
+                true, routes, false, maxThreads, latencyTargetMs, 0.7, 0.9);
+        filters.add(filter);
+        return filter;
+    }
+
+    private double pressure() {
+        return meterRegistry.get("savora.ratelimit.pressure").gauge().value();
+    }
+
+    private static MockHttpServletRequest request(String path, String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+
+    private static MockHttpServletResponse call(RateLimitFilter filter, String path, String remoteAddr)
+            throws Exception {
+        return call(filter, request(path, remoteAddr), (req, res) -> { });
+    }
+
+    private static MockHttpServletResponse call(RateLimitFilter filter, MockHttpServletRequest request,
+                                                FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
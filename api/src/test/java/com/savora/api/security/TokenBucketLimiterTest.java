@@ -0,0 +1,70 @@
+package com.savora.api.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    // 2 tokens a second, so one token every 500 ms
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(2, 3, now::get);
+
+    @Test
+    void burstIsAllowedAtOnceAndTheNextWaitsOneToken() {
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isZero();
+
+        assertThat(limiter.tryAcquire("a")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+        // A refusal takes nothing, so the wait only shrinks with time
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(limiter.tryAcquire("a")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void tokensRefillAtTheRateUpToTheBurst() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a");
+        }
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isPositive();
+
+        // Idle far longer than it takes to refill: still only the burst
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("a")).isZero();
+        }
+        assertThat(limiter.tryAcquire("a")).isPositive();
+    }
+
+    @Test
+    void keysHaveSeparateBucketsAndFullOnesAreSwept() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a");
+        }
+        assertThat(limiter.tryAcquire("a")).isPositive();
+        assertThat(limiter.tryAcquire("b")).isZero();
+        assertThat(limiter.size()).isEqualTo(2);
+
+        // b is full again after one token's time, a after three
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        limiter.sweep();
+        assertThat(limiter.size()).isEqualTo(1);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limiter.sweep();
+        assertThat(limiter.size()).isZero();
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> new TokenBucketLimiter(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucketLimiter(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,105 @@
+package com.savora.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.config.EventSchemaConfig;
+import com.savora.api.model.Event;
+import com.savora.events.EventDecoder;
+import com.savora.events.EventSchema;
+import com.savora.events.EventSchemaRegistry;
+import com.savora.events.UserEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * What the api writes with each shipped schema must read back the same in
+ * the api and in the archiver and sessionizer, which decode with
+ * event-format's EventDecoder
+ */
+class EventCodecTest {
+
+    private static final String TIMESTAMP = "2024-03-01T12:34:56.789Z";
+
+    private EventSchemaRegistry registry;
+    private EventCodec binaryCodec;
+    private EventCodec jsonCodec;
+    private EventDecoder consumerDecoder;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        registry = EventSchemaConfig.load(objectMapper, "classpath:event-schemas/*.json");
+        binaryCodec = new EventCodec(objectMapper, registry, "binary");
+        jsonCodec = new EventCodec(objectMapper, registry, "json");
+        consumerDecoder = new EventDecoder(registry);
+    }
+
+    @Test
+    void everySchemaVersionRoundTripsThroughTheApiAndTheConsumers() throws Exception {
+        assertThat(registry.getAll()).isNotEmpty();
+        for (EventSchema schema : registry.getAll()) {
+            Event event = sample(schema);
+
+            byte[] encoded = binaryCodec.encode(event);
+            assertThat(encoded[0]).as(schema.getEventType() + " v" + schema.getVersion() + " is binary").isZero();
+
+            Event decoded = binaryCodec.decode(encoded);
+            assertThat(decoded.getEventType()).isEqualTo(event.getEventType());
+            assertThat(decoded.getUserId()).isEqualTo(event.getUserId());
+            assertThat(decoded.getTimestamp()).isEqualTo(TIMESTAMP);
+            assertThat(decoded.getEventId()).isEqualTo(event.getEventId());
+            assertThat(decoded.getSessionId()).isEqualTo(event.getSessionId());
+            assertThat(decoded.getData()).isEqualTo(event.getData());
+
+            UserEvent consumed = consumerDecoder.decode(encoded, 0L);
+            assertThat(consumed).usingRecursiveComparison()
+                    .isEqualTo(consumerDecoder.decode(jsonCodec.encode(event), 0L));
+            assertThat(consumed.getTimestampMillis()).isEqualTo(Instant.parse(TIMESTAMP).toEpochMilli());
+        }
+    }
+
+    @Test
+    void eventsOutsideTheirSchemaFallBackToJson() {
+        Event event = sample(registry.getLatest("RESTAURANT_VIEWED"));
+        event.getData().put("notInSchema", 1L);
+
+        byte[] encoded = binaryCodec.encode(event);
+
+        assertThat((char) encoded[0]).isEqualTo('{');
+        assertThat(binaryCodec.decode(encoded).getData()).containsEntry("notInSchema", 1);
+    }
+
+    private static Event sample(EventSchema schema) {
+        Map<String, Object> data = new HashMap<>();
+        int n = 0;
+        for (EventSchema.Field field : schema.getFields()) {
+            n++;
+            switch (field.getType()) {
+                case "long":
+                    data.put(field.getName(), 1000L + n);
+                    break;
+                case "double":
+                    data.put(field.getName(), n + 0.25);
+                    break;
+                case "boolean":
+                    data.put(field.getName(), n % 2 == 0);
+                    break;
+                default:
+                    data.put(field.getName(), field.getName() + "-" + n);
+            }
+        }
+        Event event = new Event();
+        event.setEventType(schema.getEventType());
+        event.setUserId(42L);
+        event.setTimestamp(TIMESTAMP);
+        event.setEventId("evt-" + schema.getId());
+        event.setSessionId("sess-1");
+        event.setData(data);
+        return event;
+    }
+}
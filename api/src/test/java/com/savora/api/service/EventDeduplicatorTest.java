@@ -0,0 +1,97 @@
+package com.savora.api.service;
+
+import com.savora.api.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventDeduplicatorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void rememberedEventIsADuplicateAndCounted() {
+        EventDeduplicator deduplicator = deduplicator(true);
+        long[] fingerprint = deduplicator.fingerprint(event(7L, null, "2024-03-02T10:00:00Z"));
+
+        assertThat(deduplicator.isDuplicate(fingerprint)).isFalse();
+        deduplicator.remember(fingerprint);
+
+        // A double-click's second event differs only in its timestamp
+        assertThat(deduplicator.isDuplicate(deduplicator.fingerprint(event(7L, null, "2024-03-02T10:00:01Z"))))
+                .isTrue();
+        assertThat(meterRegistry.get("savora.events.duplicates").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void fingerprintUsesTheEventIdAndCanonicalData() {
+        EventDeduplicator deduplicator = deduplicator(true);
+        Event ordered = event(7L, null, null);
+        ordered.setData(new LinkedHashMap<>(Map.of("restaurantId", 12L)));
+        ordered.getData().put("tags", List.of("a", "b"));
+        Event reordered = event(7L, null, null);
+        reordered.setData(new LinkedHashMap<>(Map.of("tags", List.of("a", "b"))));
+        reordered.getData().put("restaurantId", 12L);
+        Event withId = event(7L, null, null);
+        withId.setEventId("e-1");
+        Event sameIdOtherData = event(7L, null, null);
+        sameIdOtherData.setEventId("e-1");
+        sameIdOtherData.setData(Map.of("restaurantId", 13L));
+
+        assertThat(deduplicator.fingerprint(ordered)).isEqualTo(deduplicator.fingerprint(reordered));
+        assertThat(deduplicator.fingerprint(withId)).isEqualTo(deduplicator.fingerprint(sameIdOtherData));
+        assertThat(deduplicator.fingerprint(withId)).isNotEqualTo(deduplicator.fingerprint(event(7L, null, null)));
+        assertThat(deduplicator.fingerprint(event(7L, null, null)))
+                .isNotEqualTo(deduplicator.fingerprint(event(8L, null, null)));
+    }
+
+    @Test
+    void anonymousEventsAreKeyedBySession() {
+        EventDeduplicator deduplicator = deduplicator(true);
+
+        assertThat(deduplicator.fingerprint(event(null, "s-1", null)))
+                .isEqualTo(deduplicator.fingerprint(event(null, "s-1", null)))
+                .isNotEqualTo(deduplicator.fingerprint(event(null, "s-2", null)));
+    }
+
+    @Test
+    void disabledDeduplicatorLetsEverythingThrough() {
+        EventDeduplicator deduplicator = deduplicator(false);
+        long[] fingerprint = deduplicator.fingerprint(event(7L, null, null));
+
+        deduplicator.remember(fingerprint);
+
+        assertThat(deduplicator.isEnabled()).isFalse();
+        assertThat(deduplicator.isDuplicate(fingerprint)).isFalse();
+        assertThat(meterRegistry.get("savora.events.duplicates").counter().count()).isZero();
+    }
+
+    @Test
+    void memoryAndFalsePositiveGaugesAreRegistered() {
+        // Gauges hold their filter weakly, so keep the deduplicator reachable
+        EventDeduplicator deduplicator = deduplicator(true);
+
+        assertThat(meterRegistry.get("savora.events.dedup.memory.bytes").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("savora.events.dedup.false.positive.rate").gauge().value()).isZero();
+        assertThat(deduplicator.isEnabled()).isTrue();
+    }
+
+    private EventDeduplicator deduplicator(boolean enabled) {
+        return new EventDeduplicator(meterRegistry, enabled, 60_000, 6, 1_000, 0.001);
+    }
+
+    private static Event event(Long userId, String sessionId, String timestamp) {
+        Event event = new Event();
+        event.setEventType("RESTAURANT_VIEWED");
+        event.setUserId(userId);
+        event.setSessionId(sessionId);
+        event.setTimestamp(timestamp);
+        event.setData(Map.of("restaurantId", 12L));
+        return event;
+    }
+}
@@ -0,0 +1,172 @@
+package com.savora.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.dto.EventBatchResponse;
+import com.savora.api.dto.EventBatchResponse.ItemStatus;
+import com.savora.api.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EventIngestServiceTest {
+
+    private KafkaProducerService kafkaProducerService;
+    private UserAffinityService userAffinityService;
+    private EventIngestService service;
+
+    @BeforeEach
+    void setUp() {
+        kafkaProducerService = Mockito.mock(KafkaProducerService.class);
+        userAffinityService = Mockito.mock(UserAffinityService.class);
+        when(kafkaProducerService.sendEventAsync(any())).thenReturn(true);
+        when(kafkaProducerService.sendEventsAsync(any())).thenReturn(true);
+        EventDeduplicator deduplicator = new EventDeduplicator(new SimpleMeterRegistry(), true, 60_000, 6, 1000, 0.001);
+        service = new EventIngestService(kafkaProducerService, userAffinityService, deduplicator, new ObjectMapper(), 1000);
+    }
+
+    @Test
+    void singleEventWithMalformedTypeIsRejectedBeforeKafka() {
+        Event event = event("../../etc/passwd");
+
+        assertThatThrownBy(() -> service.track(event, 7L))
+                .isInstanceOf(InvalidEventException.class)
+                .hasMessageContaining("eventType");
+        verify(kafkaProducerService, never()).sendEventAsync(any());
+        verify(userAffinityService, never()).recordEvent(any(), any());
+    }
+
+    @Test
+    void singleEventWithBadTimestampOrOversizedIdIsRejected() {
+        Event badTimestamp = event("RESTAURANT_VIEWED");
+        badTimestamp.setTimestamp("yesterday");
+        Event longId = event("RESTAURANT_VIEWED");
+        longId.setEventId("x".repeat(129));
+
+        assertThatThrownBy(() -> service.track(badTimestamp, 7L)).isInstanceOf(InvalidEventException.class);
+        assertThatThrownBy(() -> service.track(longId, 7L)).isInstanceOf(InvalidEventException.class);
+        verify(kafkaProducerService, never()).sendEventAsync(any());
+    }
+
+    @Test
+    void validSingleEventIsSentWithServerTimestamp() {
+        Event event = event("RESTAURANT_VIEWED");
+
+        assertThat(service.track(event, 7L)).isEqualTo(EventIngestService.Outcome.ACCEPTED);
+        assertThat(event.getTimestamp()).isNotEmpty();
+        verify(kafkaProducerService).sendEventAsync(event);
+        verify(userAffinityService).recordEvent(event, 7L);
+    }
+
+    @Test
+    void queueFullEventCountsTowardsAffinityOnlyOnceRetried() {
+        Event event = event("RESTAURANT_VIEWED");
+        when(kafkaProducerService.sendEventAsync(event)).thenReturn(false, true);
+
+        assertThat(service.track(event, 7L)).isEqualTo(EventIngestService.Outcome.QUEUE_FULL);
+        verify(userAffinityService, never()).recordEvent(any(), any());
+
+        assertThat(service.track(event, 7L)).isEqualTo(EventIngestService.Outcome.ACCEPTED);
+        verify(userAffinityService).recordEvent(event, 7L);
+    }
+
+    @Test
+    void batchReportsEachItemInRequestOrder() {
+        Event first = event("RESTAURANT_VIEWED");
+        Event second = event("RESTAURANT_BOOKMARKED");
+        // Same type, user and data as the first, so the same event sent twice
+        Event repeat = event("RESTAURANT_VIEWED");
+
+        EventBatchResponse response = service.trackBatch(
+                Arrays.asList(first, event("bad type"), repeat, null, second), 7L);
+
+        assertThat(response.getResults()).extracting(ItemStatus::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(response.getResults()).extracting(ItemStatus::getStatus).containsExactly(
+                ItemStatus.ACCEPTED, ItemStatus.INVALID, ItemStatus.DUPLICATE, ItemStatus.INVALID, ItemStatus.ACCEPTED);
+        assertThat(response.getAccepted()).isEqualTo(2);
+        assertThat(response.getDuplicates()).isEqualTo(1);
+        assertThat(response.getRejected()).isEqualTo(2);
+        assertThat(EventIngestService.isQueueFull(response)).isFalse();
+        verify(kafkaProducerService).sendEventsAsync(List.of(first, second));
+        verify(userAffinityService).recordEvent(first, 7L);
+        verify(userAffinityService).recordEvent(second, 7L);
+    }
+
+    @Test
+    void acceptedBatchEventsAreDuplicatesInTheNextBatch() {
+        Event original = event("RESTAURANT_VIEWED");
+        service.trackBatch(List.of(original), 7L);
+
+        EventBatchResponse response = service.trackBatch(List.of(event("RESTAURANT_VIEWED")), 7L);
+
+        assertThat(response.getResults()).extracting(ItemStatus::getStatus).containsExactly(ItemStatus.DUPLICATE);
+        verify(kafkaProducerService).sendEventsAsync(List.of(original));
+        verify(kafkaProducerService).sendEventsAsync(List.of());
+    }
+
+    @Test
+    void ndjsonMarksMalformedLinesInvalidAndSkipsBlankOnes() {
+        String body = "{\"eventType\":\"RESTAURANT_VIEWED\",\"userId\":7,\"restaurantId\":12}\n"
+                + "\n"
+                + "{\"eventType\":\n"
+                + "   \n"
+                + "{\"eventType\":\"CUISINE_SELECTED\",\"userId\":7,\"cuisineType\":\"Thai\"}\n";
+
+        EventBatchResponse response = service.trackNdjson(body, 7L);
+
+        assertThat(response.getResults()).extracting(ItemStatus::getIndex).containsExactly(0, 1, 2);
+        assertThat(response.getResults()).extracting(ItemStatus::getStatus)
+                .containsExactly(ItemStatus.ACCEPTED, ItemStatus.INVALID, ItemStatus.ACCEPTED);
+        assertThat(response.getResults().get(1).getError()).isEqualTo("Malformed JSON");
+        verify(userAffinityService, times(2)).recordEvent(any(), any());
+    }
+
+    @Test
+    void batchOverTheMaximumSizeIsRejected() {
+        EventIngestService small = new EventIngestService(kafkaProducerService, userAffinityService,
+                new EventDeduplicator(new SimpleMeterRegistry(), true, 60_000, 6, 1000, 0.001), new ObjectMapper(), 2);
+        List<Event> events = List.of(event("A"), event("B"), event("C"));
+
+        assertThatThrownBy(() -> small.trackBatch(events, 7L)).isInstanceOf(IllegalArgumentException.class);
+        verify(kafkaProducerService, never()).sendEventsAsync(any());
+    }
+
+    @Test
+    void batchTheQueueCannotTakeIsDroppedAndCanBeRetried() {
+        when(kafkaProducerService.sendEventsAsync(any())).thenReturn(false, true);
+        List<Event> events = Arrays.asList(event("RESTAURANT_VIEWED"), null);
+
+        EventBatchResponse dropped = service.trackBatch(events, 7L);
+
+        assertThat(dropped.getResults()).extracting(ItemStatus::getStatus)
+                .containsExactly(ItemStatus.DROPPED, ItemStatus.INVALID);
+        assertThat(EventIngestService.isQueueFull(dropped)).isTrue();
+        verify(userAffinityService, never()).recordEvent(any(), any());
+
+        // Dropped events were not remembered, so the retry goes through
+        EventBatchResponse retried = service.trackBatch(events, 7L);
+        assertThat(retried.getResults()).extracting(ItemStatus::getStatus)
+                .containsExactly(ItemStatus.ACCEPTED, ItemStatus.INVALID);
+        assertThat(EventIngestService.isQueueFull(retried)).isFalse();
+    }
+
+    private static Event event(String type) {
+        Event event = new Event();
+        event.setEventType(type);
+        event.setUserId(7L);
+        event.setData(Map.of("restaurantId", 12L));
+        return event;
+    }
+}
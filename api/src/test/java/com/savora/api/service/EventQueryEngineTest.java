@@ -0,0 +1,221 @@
+package com.savora.api.service;
+
+import com.savora.api.dto.EventQueryRequest;
+import com.savora.api.dto.EventQueryResponse;
+import com.savora.events.ColumnarFileWriter;
+import com.savora.events.UserEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class EventQueryEngineTest {
+
+    @TempDir
+    Path archive;
+
+    private EventQueryEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        write("2024-03-01", "RESTAURANT_VIEWED", "part-0",
+                viewed(1L, "2024-03-01T10:00:00Z", "search", 12L),
+                viewed(2L, "2024-03-01T11:00:00Z", "search", 12L),
+                viewed(1L, "2024-03-01T12:00:00Z", "feed", 11L),
+                viewed(3L, "2024-03-01T13:00:00Z", null, 12L),
+                viewed(1L, "2024-03-01T14:00:00Z", "search", 13L));
+        // A write still in progress
+        write("2024-03-01", "RESTAURANT_VIEWED", ".part-1",
+                viewed(9L, "2024-03-01T15:00:00Z", "search", 12L));
+        write("2024-03-01", "CUISINE_SELECTED", "part-0",
+                cuisine(1L, "2024-03-01T10:05:00Z", "Thai", 2.5),
+                cuisine(2L, "2024-03-01T11:05:00Z", "Thai", -1.5),
+                cuisine(1L, "2024-03-01T12:05:00Z", "Vietnamese", 2.5),
+                cuisine(null, "2024-03-01T13:05:00Z", "Thai", 2.5));
+        // The last row is past the end of the queries below, so this file is filtered row by row
+        write("2024-03-02", "RESTAURANT_VIEWED", "part-0",
+                viewed(2L, "2024-03-02T09:00:00Z", "search", 12L),
+                viewed(4L, "2024-03-02T10:00:00Z", "feed", 11L),
+                viewed(5L, "2024-03-03T00:30:00Z", "search", 12L));
+        // Arrived late: its footer range is outside the queries below
+        write("2024-03-02", "RESTAURANT_VIEWED", "part-late",
+                viewed(6L, "2024-03-04T08:00:00Z", "search", 12L));
+        write("2024-03-05", "RESTAURANT_VIEWED", "part-0",
+                viewed(7L, "2024-03-05T08:00:00Z", "search", 12L));
+
+        engine = new EventQueryEngine(archive.toString(), 2, 366, 10_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void countsByEventTypeAndReportsPruning() {
+        EventQueryResponse response = engine.query(request(List.of(), List.of("eventType")));
+
+        assertThat(response.getRows()).extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("RESTAURANT_VIEWED"), 7L), tuple(List.of("CUISINE_SELECTED"), 4L));
+        assertThat(response.getGroups()).isEqualTo(2);
+        assertThat(response.getPartitionsScanned()).isEqualTo(3);
+        assertThat(response.getPartitionsPruned()).isEqualTo(1);
+        assertThat(response.getFilesScanned()).isEqualTo(3);
+        assertThat(response.getFilesPruned()).isEqualTo(1);
+        assertThat(response.getRowsScanned()).isEqualTo(12);
+        assertThat(response.getRowsMatched()).isEqualTo(11);
+    }
+
+    @Test
+    void topGroupsAreKeptAndNullIsItsOwnGroup() {
+        EventQueryRequest request = request(List.of("RESTAURANT_VIEWED"), List.of("source"));
+        request.setLimit(2);
+
+        EventQueryResponse top = engine.query(request);
+        assertThat(top.getRows()).extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("search"), 4L), tuple(List.of("feed"), 2L));
+        assertThat(top.getGroups()).isEqualTo(3);
+        assertThat(top.getPartitionsPruned()).isEqualTo(2);
+
+        request.setLimit(10);
+        assertThat(engine.query(request).getRows()).extracting(EventQueryResponse.Row::getKey)
+                .last().isEqualTo(Arrays.asList((String) null));
+    }
+
+    @Test
+    void compositeKeysCombineDayAndColumnCodes() {
+        EventQueryResponse response = engine.query(request(List.of("RESTAURANT_VIEWED"), List.of("day", "source")));
+
+        // Ties are broken by key, with null first
+        assertThat(response.getRows()).extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(
+                        tuple(List.of("2024-03-01", "search"), 3L),
+                        tuple(Arrays.asList("2024-03-01", null), 1L),
+                        tuple(List.of("2024-03-01", "feed"), 1L),
+                        tuple(List.of("2024-03-02", "feed"), 1L),
+                        tuple(List.of("2024-03-02", "search"), 1L));
+        assertThat(response.getColumns()).containsExactly("day", "source");
+    }
+
+    @Test
+    void filtersNarrowTheSelectionBeforeGrouping() {
+        EventQueryRequest request = request(List.of(), List.of("restaurantId"));
+        request.getFilters().put("source", "search");
+        request.getFilters().put("day", "2024-03-01");
+
+        EventQueryResponse response = engine.query(request);
+
+        assertThat(response.getRows()).extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("12"), 2L), tuple(List.of("13"), 1L));
+        assertThat(response.getRowsMatched()).isEqualTo(3);
+    }
+
+    @Test
+    void numericFilterComparesTheValueText() {
+        EventQueryRequest request = request(List.of(), List.of("source"));
+        request.getFilters().put("restaurantId", "12");
+
+        assertThat(engine.query(request).getRows())
+                .extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("search"), 3L), tuple(Arrays.asList((String) null), 1L));
+    }
+
+    @Test
+    void numbersAreGroupedByRankIncludingNegativeDoubles() {
+        EventQueryResponse response = engine.query(request(List.of("CUISINE_SELECTED"), List.of("score")));
+
+        assertThat(response.getRows()).extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("2.5"), 3L), tuple(List.of("-1.5"), 1L));
+    }
+
+    @Test
+    void distinctUsersAreMergedAcrossFiles() {
+        EventQueryRequest request = request(List.of(), List.of("eventType"));
+        request.setMetric(EventQueryRequest.METRIC_USERS);
+
+        // Users 1 to 4 viewed (user 2 on both days); the anonymous selection is not a user
+        assertThat(engine.query(request).getRows())
+                .extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("RESTAURANT_VIEWED"), 4L), tuple(List.of("CUISINE_SELECTED"), 2L));
+    }
+
+    @Test
+    void keySpacesTooLargeForAnArrayAreCountedInAMap() throws IOException {
+        // 102 distinct values plus null in each of three columns is over the dense limit
+        UserEvent[] events = new UserEvent[103];
+        for (int i = 0; i < 102; i++) {
+            events[i] = wide(i, i);
+        }
+        events[102] = wide(102, 0);
+        write("2024-03-01", "WIDE", "part-0", events);
+
+        EventQueryRequest request = request(List.of("WIDE"), List.of("a", "b", "c"));
+        request.setLimit(2);
+        EventQueryResponse response = engine.query(request);
+
+        assertThat(response.getGroups()).isEqualTo(102);
+        assertThat(response.getRows()).extracting(EventQueryResponse.Row::getKey, EventQueryResponse.Row::getValue)
+                .containsExactly(tuple(List.of("0", "0", "0"), 2L), tuple(List.of("1", "1", "1"), 1L));
+    }
+
+    @Test
+    void invalidRequestsAreRejected() {
+        EventQueryRequest backwards = request(List.of(), List.of());
+        backwards.setFrom(LocalDate.parse("2024-03-03"));
+        EventQueryRequest badDay = request(List.of(), List.of());
+        badDay.getFilters().put("day", "March 1st");
+
+        assertThatThrownBy(() -> engine.query(backwards)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.query(badDay)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("day filter");
+    }
+
+    private static EventQueryRequest request(List<String> eventTypes, List<String> groupBy) {
+        EventQueryRequest request = new EventQueryRequest();
+        request.setFrom(LocalDate.parse("2024-03-01"));
+        request.setTo(LocalDate.parse("2024-03-02"));
+        request.setEventTypes(new ArrayList<>(eventTypes));
+        request.setGroupBy(new ArrayList<>(groupBy));
+        return request;
+    }
+
+    private void write(String date, String eventType, String name, UserEvent... events) throws IOException {
+        Path directory = archive.resolve("date=" + date).resolve("event_type=" + eventType);
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(name + ".svc"), new ColumnarFileWriter().write(eventType, List.of(events)));
+    }
+
+    private static UserEvent viewed(Long userId, String time, String source, long restaurantId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("restaurantId", restaurantId);
+        if (source != null) {
+            data.put("source", source);
+        }
+        return new UserEvent("RESTAURANT_VIEWED", userId, Instant.parse(time).toEpochMilli(), data);
+    }
+
+    private static UserEvent cuisine(Long userId, String time, String cuisineType, double score) {
+        return new UserEvent("CUISINE_SELECTED", userId, Instant.parse(time).toEpochMilli(),
+                Map.of("cuisineType", cuisineType, "score", score));
+    }
+
+    private static UserEvent wide(int row, long value) {
+        return new UserEvent("WIDE", 1L, Instant.parse("2024-03-01T10:00:00Z").toEpochMilli() + row,
+                Map.of("a", value, "b", value, "c", value));
+    }
+}
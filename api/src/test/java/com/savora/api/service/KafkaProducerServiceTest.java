@@ -0,0 +1,223 @@
+package com.savora.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.api.model.Event;
+import com.savora.events.EventSchemaRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaProducerServiceTest {
+
+    private static final int SEGMENT_BYTES = 1 << 16;
+
+    @TempDir
+    Path directory;
+
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private EventSpillLog spillLog;
+    private MeterRegistry meterRegistry;
+    private KafkaProducerService service;
+    private final EventCodec codec = new EventCodec(
+            new ObjectMapper(), new EventSchemaRegistry(Collections.emptyList()), "json");
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafkaTemplate = Mockito.mock(KafkaTemplate.class);
+        spillLog = new EventSpillLog(directory, SEGMENT_BYTES, 4);
+        meterRegistry = new SimpleMeterRegistry();
+        // Drains only when the test calls drainSpillLog
+        service = new KafkaProducerService(kafkaTemplate, codec, spillLog, meterRegistry, 100, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.shutdown();
+        spillLog.close();
+    }
+
+    @Test
+    void batchOfCorruptRecordsIsSkippedNotRetriedForever() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            spill("u:" + i, "{\"n\":" + i + "}");
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(String.format("%020d.log", 0)),
+                StandardOpenOption.WRITE)) {
+            // Flip the CRC of every record behind the mapped buffer's back
+            int position = 0;
+            for (int i = 0; i < 3; i++) {
+                channel.write(ByteBuffer.wrap(new byte[] { 0x7F }), position + 4);
+                position += 8 + record("u:" + i, "{\"n\":" + i + "}").length;
+            }
+        }
+
+        service.drainSpillLog();
+
+        assertThat(spillLog.isEmpty()).isTrue();
+        assertThat(meterRegistry.counter("savora.events.spill.dead.letter").count()).isEqualTo(3);
+        verify(kafkaTemplate, never()).send(anyString(), any(), any());
+    }
+
+    @Test
+    void recordRejectedByTheBrokerDoesNotBlockTheOnesBehindIt() throws IOException {
+        spill("u:1", "too large");
+        spill("u:2", "fine");
+        when(kafkaTemplate.send(eq("user-events"), eq("u:1"), any())).thenReturn(failed(new RecordTooLargeException("too large")));
+        when(kafkaTemplate.send(eq("user-events"), eq("u:2"), any())).thenReturn(acked());
+
+        service.drainSpillLog();
+
+        assertThat(spillLog.isEmpty()).isTrue();
+        assertThat(meterRegistry.counter("savora.events.spill.dead.letter").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("savora.events.spill.drained").count()).isEqualTo(1);
+    }
+
+    @Test
+    void retriableFailureKeepsTheRecordForTheNextRun() throws IOException {
+        spill("u:1", "later");
+        when(kafkaTemplate.send(eq("user-events"), eq("u:1"), any())).thenReturn(failed(new TimeoutException("no broker")));
+
+        service.drainSpillLog();
+
+        assertThat(spillLog.isEmpty()).isFalse();
+        assertThat(meterRegistry.counter("savora.events.spill.dead.letter").count()).isZero();
+    }
+
+    @Test
+    void brokerKilledMidStreamSpillsSurvivesATornTailAndDrainsInOrder() throws Exception {
+        AtomicBoolean brokerUp = new AtomicBoolean(true);
+        List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+        when(kafkaTemplate.send(eq("user-events"), any(), any())).thenAnswer(invocation -> {
+            if (!brokerUp.get()) {
+                return failed(new TimeoutException("broker down"));
+            }
+            Event event = codec.decode(invocation.getArgument(2));
+            delivered.add(((Number) event.getData().get("n")).intValue());
+            return acked();
+        });
+
+        for (int n = 0; n < 10; n++) {
+            assertThat(service.sendEventAsync(event(n))).isTrue();
+        }
+        await(() -> delivered.size() == 10);
+        brokerUp.set(false);
+        for (int n = 10; n < 40; n++) {
+            assertThat(service.sendEventAsync(event(n))).isTrue();
+        }
+        await(() -> meterRegistry.counter("savora.events.spilled").count() == 30);
+        assertThat(spillLog.isEmpty()).isFalse();
+        assertThat(delivered).hasSize(10);
+
+        // Crash: the process dies in the middle of writing one more record
+        service.shutdown();
+        spillLog.close();
+        Path segment = directory.resolve(String.format("%020d.log", 0));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int end = endOfRecords(channel);
+            channel.write(ByteBuffer.allocate(12).putInt(200).putInt(0xBAD).putInt(42).flip(), end);
+        }
+
+        spillLog = new EventSpillLog(directory, SEGMENT_BYTES, 4);
+        service = new KafkaProducerService(kafkaTemplate, codec, spillLog, meterRegistry, 100, 3_600_000);
+        brokerUp.set(true);
+        service.drainSpillLog();
+
+        assertThat(spillLog.isEmpty()).isTrue();
+        List<Integer> expected = new ArrayList<>();
+        for (int n = 0; n < 40; n++) {
+            expected.add(n);
+        }
+        assertThat(delivered).containsExactlyElementsOf(expected);
+        assertThat(meterRegistry.counter("savora.events.spill.dead.letter").count()).isZero();
+    }
+
+    private void spill(String key, String value) throws IOException {
+        assertThat(spillLog.append(record(key, value))).isTrue();
+    }
+
+    private static Event event(int n) {
+        Event event = new Event();
+        event.setEventType("RESTAURANT_VIEWED");
+        event.setUserId(7L);
+        event.setData(Map.of("n", n));
+        return event;
+    }
+
+    // Position of the first empty frame in a segment
+    private static int endOfRecords(FileChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        int position = 0;
+        while (true) {
+            length.clear();
+            channel.read(length, position);
+            int value = length.getInt(0);
+            if (value == 0) {
+                return position;
+            }
+            position += 8 + value;
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("timed out").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static byte[] record(String key, String value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key);
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        return bytes.toByteArray();
+    }
+
+    private static ListenableFuture<SendResult<String, byte[]>> acked() {
+        SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+        future.set(new SendResult<>(null, null));
+        return future;
+    }
+
+    private static ListenableFuture<SendResult<String, byte[]>> failed(Exception e) {
+        SettableListenableFuture<SendResult<String, byte[]>> future = new SettableListenableFuture<>();
+        future.setException(e);
+        return future;
+    }
+}
@@ -0,0 +1,105 @@
+package com.savora.api.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+class RollingBloomFilterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void keysAreRememberedForTheWindowPlusAtMostOneSlice() {
+        // Six 1 s slices
+        RollingBloomFilter filter = new RollingBloomFilter(6_000, 6, 1_000, 0.01, now::get);
+        filter.put(1, 3);
+
+        now.addAndGet(5_999);
+        assertThat(filter.mightContain(1, 3)).isTrue();
+        now.addAndGet(1_000);
+        assertThat(filter.mightContain(1, 3)).isTrue();
+        // Its slice is now older than the window
+        now.addAndGet(1);
+        assertThat(filter.mightContain(1, 3)).isFalse();
+    }
+
+    @Test
+    void slotsAreClearedWhenTheRingComesBackRound() {
+        RollingBloomFilter filter = new RollingBloomFilter(6_000, 6, 1_000, 0.01, now::get);
+        filter.put(1, 3);
+        now.addAndGet(3_000);
+        filter.put(5, 7);
+
+        // Seven slots: the first key's slot is reused, and must not bring its old bits along
+        now.addAndGet(4_000);
+        filter.put(9, 11);
+        assertThat(filter.mightContain(1, 3)).isFalse();
+        assertThat(filter.mightContain(5, 7)).isTrue();
+        assertThat(filter.mightContain(9, 11)).isTrue();
+    }
+
+    @Test
+    void memoryDoesNotGrowWithTraffic() {
+        RollingBloomFilter filter = new RollingBloomFilter(6_000, 6, 1_000, 0.01, now::get);
+        long memory = filter.getMemoryBytes();
+        SplittableRandom random = new SplittableRandom(1);
+
+        for (int slice = 0; slice < 30; slice++) {
+            for (int i = 0; i < 10_000; i++) {
+                filter.put(random.nextLong(), random.nextLong());
+            }
+            now.addAndGet(1_000);
+        }
+
+        assertThat(filter.getMemoryBytes()).isEqualTo(memory);
+        // Seven slices of about 13.6 bits per expected key, for 0.01 / 7 per slice
+        assertThat(memory).isBetween(7 * 1_000 * 13L / 8, 7 * 1_000 * 15L / 8 + 7 * 8);
+    }
+
+    @Test
+    void falsePositiveRateStaysWithinTheConfiguredRateAtCapacity() {
+        double configured = 0.01;
+        RollingBloomFilter filter = new RollingBloomFilter(6_000, 6, 10_000, configured, now::get);
+        SplittableRandom random = new SplittableRandom(42);
+
+        // Every live slice holds exactly its expected count
+        for (int slice = 0; slice < 7; slice++) {
+            for (int i = 0; i < 10_000; i++) {
+                filter.put(random.nextLong(), random.nextLong());
+            }
+            if (slice < 6) {
+                now.addAndGet(1_000);
+            }
+        }
+
+        int probes = 200_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(random.nextLong(), random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        double observed = (double) falsePositives / probes;
+        // The sizing targets the configured rate exactly at capacity; 10% covers sampling noise (about 2%)
+        assertThat(observed).isLessThan(configured * 1.1);
+        // Rounding the hash count leaves the model a hair either side of the target at capacity
+        assertThat(filter.estimatedFalsePositiveRate()).isCloseTo(configured, withinPercentage(2));
+        assertThat(filter.estimatedFalsePositiveRate()).isCloseTo(observed, offset(0.002));
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> new RollingBloomFilter(6_000, 0, 1_000, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RollingBloomFilter(6_000, 6, 0, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RollingBloomFilter(6_000, 6, 1_000, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
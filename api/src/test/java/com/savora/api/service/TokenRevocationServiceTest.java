@@ -0,0 +1,82 @@
+package com.savora.api.service;
+
+import com.savora.api.model.TokenRevocation;
+import com.savora.api.repository.TokenRevocationRepository;
+import com.savora.api.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+class TokenRevocationServiceTest {
+
+    private TokenRevocationRepository repository;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = Mockito.mock(TokenRevocationRepository.class);
+        service = new TokenRevocationService(repository, new SimpleMeterRegistry(), 3600, 2000);
+    }
+
+    @Test
+    void revokingAllTokensVoidsThoseIssuedUpToTheMillisecond() {
+        long cutoff = revokeAll(7L);
+
+        assertThat(service.isRevoked(claims(7L, cutoff - 1))).isTrue();
+        assertThat(service.isRevoked(claims(7L, cutoff))).isTrue();
+        assertThat(service.isRevoked(claims(7L, cutoff + 1))).isFalse();
+        assertThat(service.isRevoked(claims(8L, cutoff - 1))).isFalse();
+    }
+
+    @Test
+    void tokensWithOnlyWholeSecondsAreVoidThroughTheRevokingSecond() {
+        long cutoff = revokeAll(7L);
+        Claims legacy = Jwts.claims();
+        legacy.put(JwtTokenProvider.USER_ID_CLAIM, 7);
+        legacy.setIssuedAt(new Date(cutoff / 1000 * 1000));
+
+        assertThat(service.isRevoked(legacy)).isTrue();
+    }
+
+    @Test
+    void tokenIssuedRightAfterARevocationIsAccepted() throws InterruptedException {
+        JwtTokenProvider provider = new JwtTokenProvider("c2F2b3JhLXRlc3Qtc2VjcmV0", 3600, false, 10, 60);
+        provider.setRevocationChecks(List.of(service));
+        String before = provider.generateToken(7L, "ana@example.com", List.of("USER"));
+
+        service.revokeAllTokens(7L);
+        // A millisecond on, so almost always within the same second as the revocation
+        Thread.sleep(2);
+        String after = provider.generateToken(7L, "ana@example.com", List.of("USER"));
+
+        assertThat(provider.parseToken(after).getSubject()).isEqualTo("ana@example.com");
+        assertThat(service.isRevoked(Jwts.parser().setSigningKey("c2F2b3JhLXRlc3Qtc2VjcmV0")
+                .parseClaimsJws(before).getBody())).isTrue();
+    }
+
+    private long revokeAll(Long userId) {
+        service.revokeAllTokens(userId);
+        ArgumentCaptor<TokenRevocation> saved = ArgumentCaptor.forClass(TokenRevocation.class);
+        verify(repository).save(saved.capture());
+        return saved.getValue().getRevokedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Claims claims(Long userId, long issuedAtMillis) {
+        Claims claims = Jwts.claims();
+        claims.put(JwtTokenProvider.USER_ID_CLAIM, userId);
+        claims.put(JwtTokenProvider.ISSUED_AT_MILLIS_CLAIM, issuedAtMillis);
+        claims.setIssuedAt(new Date(issuedAtMillis / 1000 * 1000));
+        return claims;
+    }
+}
@@ -0,0 +1,129 @@
+package com.savora.api.service;
+
+import com.savora.api.model.Event;
+import com.savora.api.model.Recommendation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+class UserAffinityServiceTest {
+
+    private UserAffinityService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ResultSet pho = row(12L, "Pho Place", "Vietnamese, Soup", 4.5, 40);
+        ResultSet tacos = row(13L, "Taco Stand", "Mexican", 4.5, 40);
+        JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenAnswer(invocation -> {
+            RowMapper<?> mapper = invocation.getArgument(1);
+            return List.of(mapper.mapRow(pho, 0), mapper.mapRow(tacos, 1));
+        });
+
+        service = new UserAffinityService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "learningRate", 0.2f);
+        ReflectionTestUtils.setField(service, "decay", 0.05f);
+        ReflectionTestUtils.setField(service, "affinityWeight", 1.0f);
+        ReflectionTestUtils.setField(service, "maxResults", 6);
+        ReflectionTestUtils.setField(service, "maxUsers", 2);
+    }
+
+    @Test
+    void eventsForAnotherUserAreIgnored() {
+        service.recordEvent(viewed(7L), 8L);
+        service.recordEvent(viewed(7L), null);
+        assertThat(service.hasAffinity(7L)).isFalse();
+
+        service.recordEvent(viewed(7L), 7L);
+        assertThat(service.hasAffinity(7L)).isTrue();
+    }
+
+    @Test
+    void leastRecentlyActiveUserIsEvictedPastTheLimit() {
+        service.recordEvent(viewed(1L), 1L);
+        service.recordEvent(viewed(2L), 2L);
+        service.recordEvent(viewed(1L), 1L);
+        service.recordEvent(viewed(3L), 3L);
+
+        assertThat(service.hasAffinity(1L)).isTrue();
+        assertThat(service.hasAffinity(2L)).isFalse();
+        assertThat(service.hasAffinity(3L)).isTrue();
+    }
+
+    @Test
+    void sweepKeepsTheMapNearTheLimitAndKeepsRecentUsers() {
+        ReflectionTestUtils.setField(service, "maxUsers", 100);
+        for (long user = 1; user <= 250; user++) {
+            service.recordEvent(viewed(user), user);
+            service.recordEvent(viewed(1L), 1L);
+        }
+
+        long kept = LongStream.rangeClosed(1, 250).filter(service::hasAffinity).count();
+        assertThat(kept).isBetween(90L, 100L);
+        assertThat(service.hasAffinity(1L)).isTrue();
+        assertThat(service.hasAffinity(250L)).isTrue();
+        assertThat(service.hasAffinity(2L)).isFalse();
+    }
+
+    @Test
+    void recordedEventsReorderTheBatchTowardsTheUsersCuisine() {
+        List<Recommendation> batch = List.of(recommendation("Taco Stand", 3.0f), recommendation("Pho Place", 2.95f));
+        assertThat(service.personalize(7L, batch)).isSameAs(batch);
+
+        service.recordEvent(viewed(7L), 7L);
+        Event selected = new Event();
+        selected.setEventType("CUISINE_SELECTED");
+        selected.setUserId(7L);
+        selected.setData(Map.of("cuisineType", "Vietnamese"));
+        service.recordEvent(selected, 7L);
+
+        List<Recommendation> personalized = service.personalize(7L, batch);
+        assertThat(personalized).extracting(Recommendation::getRestaurantName)
+                .containsExactly("Pho Place", "Taco Stand");
+        assertThat(personalized.get(0).getRecommendationRank()).isEqualTo(1);
+        assertThat(personalized.get(0).getScore()).isGreaterThan(3.0f);
+        // Nobody else's ranking moves
+        assertThat(service.personalize(8L, batch)).isSameAs(batch);
+    }
+
+    private static ResultSet row(long id, String name, String categories, double rating, int reviewCount)
+            throws Exception {
+        ResultSet row = Mockito.mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(id);
+        when(row.getString("name")).thenReturn(name);
+        when(row.getString("categories")).thenReturn(categories);
+        when(row.getDouble("rating")).thenReturn(rating);
+        when(row.getInt("review_count")).thenReturn(reviewCount);
+        when(row.getString("price_range")).thenReturn("$");
+        return row;
+    }
+
+    private static Recommendation recommendation(String restaurantName, float score) {
+        Recommendation recommendation = new Recommendation();
+        recommendation.setRestaurantName(restaurantName);
+        recommendation.setScore(score);
+        return recommendation;
+    }
+
+    private static Event viewed(Long userId) {
+        Event event = new Event();
+        event.setEventType("RESTAURANT_VIEWED");
+        event.setUserId(userId);
+        event.setData(Map.of("restaurantId", 12L));
+        return event;
+    }
+}
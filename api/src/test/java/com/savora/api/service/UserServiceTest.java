@@ -0,0 +1,33 @@
+package com.savora.api.service;
+
+import com.savora.api.repository.UserRepository;
+import com.savora.api.security.UserDetailsCache;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserServiceTest {
+
+    @Test
+    void adminEmailsAreTrimmedAndMatchedIgnoringCase() {
+        UserService service = service(" Admin@Savora.com ,ops@savora.com,, ");
+
+        assertThat(service.getRoles("admin@savora.com")).containsExactly("ROLE_USER", "ROLE_ADMIN");
+        assertThat(service.getRoles("OPS@savora.com")).containsExactly("ROLE_USER", "ROLE_ADMIN");
+        assertThat(service.getRoles("someone@savora.com")).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void emptyOrBlankEntriesGrantNobodyAdmin() {
+        assertThat(service("").getRoles("")).containsExactly("ROLE_USER");
+        assertThat(service(" , ").getRoles(" ")).containsExactly("ROLE_USER");
+    }
+
+    private static UserService service(String adminEmails) {
+        return new UserService(Mockito.mock(UserRepository.class), Mockito.mock(PasswordEncoder.class),
+                Mockito.mock(UserDetailsCache.class), Mockito.mock(AccountAvailabilityService.class),
+                Mockito.mock(TokenRevocationService.class), adminEmails);
+    }
+}
@@ -0,0 +1,18 @@
+package com.savora.archiver;
+
+import java.io.IOException;
+
+/**
+ * Where archive files go. Paths are relative to the file system's root and
+ * use '/' as separator.
+ */
+public interface ArchiveFileSystem {
+
+    /**
+     * Write a complete file. When this returns the file is durable; if it
+     * throws, no file is visible at the path.
+     */
+    void writeAtomically(String path, byte[] content) throws IOException;
+
+    String describe();
+}
@@ -0,0 +1,94 @@
+package com.savora.archiver;
+
+import java.util.Map;
+
+/**
+ * Settings read from the environment, named like the ones kafka-consumer.py uses
+ */
+public class ArchiverConfig {
+
+    private final Map<String, String> env;
+
+    public ArchiverConfig(Map<String, String> env) {
+        this.env = env;
+    }
+
+    public static ArchiverConfig fromEnvironment() {
+        return new ArchiverConfig(System.getenv());
+    }
+
+    public String getKafkaBrokers() {
+        return get("KAFKA_BROKERS", "kafka:9093");
+    }
+
+    public String getKafkaTopic() {
+        return get("KAFKA_TOPIC", "user-events");
+    }
+
+    /**
+     * Separate from hdfs-consumer-group so both consumers can run side by side
+     */
+    public String getKafkaGroupId() {
+        return get("KAFKA_GROUP_ID", "event-archiver");
+    }
+
+    public int getPollMaxRecords() {
+        return Integer.parseInt(get("POLL_MAX_RECORDS", "5000"));
+    }
+
+    /**
+     * "local" writes under ARCHIVE_DIR, "webhdfs" under HDFS_BASE_PATH on HDFS_URL
+     */
+    public String getFileSystem() {
+        return get("ARCHIVE_FS", "local");
+    }
+
+    public String getArchiveDir() {
+        return get("ARCHIVE_DIR", "archive");
+    }
+
+    public String getHdfsUrl() {
+        return get("HDFS_URL", "http://namenode:9870");
+    }
+
+    public String getHdfsUser() {
+        return get("HDFS_USER", "hdfs");
+    }
+
+    public String getHdfsBasePath() {
+        return get("HDFS_BASE_PATH", "/user/savora/archive");
+    }
+
+    /**
+     * Directory of the api's event-schemas/*.json, needed to read binary-encoded events
+     */
+    public String getSchemaDir() {
+        return get("EVENT_SCHEMA_DIR", "../api/src/main/resources/event-schemas");
+    }
+
+    /**
+     * A partition file is rolled once this many bytes of events are buffered for it
+     */
+    public long getRollMaxBytes() {
+        return Long.parseLong(get("ROLL_MAX_BYTES", "67108864"));
+    }
+
+    /**
+     * ... or once its first event has been buffered this long
+     */
+    public long getRollIntervalMs() {
+        return Long.parseLong(get("ROLL_INTERVAL_MS", "600000"));
+    }
+
+    /**
+     * Cap on all buffered events; the largest partition is rolled early to stay below it
+     */
+    public long getMaxBufferedBytes() {
+        return Long.parseLong(get("MAX_BUFFERED_BYTES", "268435456"));
+    }
+
+    private String get(String name, String defaultValue) {
+        String value = env.get(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
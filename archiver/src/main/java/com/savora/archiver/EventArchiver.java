@@ -0,0 +1,326 @@
+package com.savora.archiver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.savora.events.ColumnarEventFile;
+import com.savora.events.ColumnarFileWriter;
+import com.savora.events.ColumnarFormat;
+import com.savora.events.EventDecoder;
+import com.savora.events.EventSchema;
+import com.savora.events.UserEvent;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Consumes user-events in large batches and writes them as compressed
+ * columnar files, one per UTC date and event type:
+ *
+ *   date=2024-03-02/event_type=RESTAURANT_VIEWED/part-<opened millis>-<instance>-<seq>.svc
+ *
+ * A file is rolled when its buffer reaches ROLL_MAX_BYTES or ROLL_INTERVAL_MS.
+ * Auto-commit is off: the committed offset of a Kafka partition never passes
+ * the first record still sitting in an unwritten buffer, so a crash replays
+ * at most the unwritten events (at-least-once; a file written just before a
+ * crash may be written again). Events that can never be archived, because
+ * they are unreadable, have a malformed event type or a file system refuses
+ * their path, are skipped and counted as dead letters instead.
+ *
+ *   java -jar archiver.jar              run the consumer
+ *   java -jar archiver.jar dump <file>  print an archive file as JSON lines
+ */
+public class EventArchiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventArchiver.class);
+
+    private static final long RETRY_BACKOFF_MS = 5000;
+
+    private final ArchiverConfig config;
+    private final EventDecoder decoder;
+    private final ArchiveFileSystem fileSystem;
+    private final ColumnarFileWriter writer = new ColumnarFileWriter();
+    private final Consumer<String, byte[]> consumer;
+    private final String instanceId;
+
+    private final Map<String, PartitionBuffer> buffers = new LinkedHashMap<>();
+    private final Map<TopicPartition, Long> consumedPositions = new HashMap<>();
+    private final Map<TopicPartition, Long> committedPositions = new HashMap<>();
+    private long bufferedBytes;
+    private long fileSequence;
+    private long nextWriteAttempt;
+    private boolean paused;
+    private long deadLetters;
+
+    public EventArchiver(ArchiverConfig config, EventDecoder decoder, ArchiveFileSystem fileSystem) {
+        this(config, decoder, fileSystem, UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    private EventArchiver(ArchiverConfig config, EventDecoder decoder, ArchiveFileSystem fileSystem, String instanceId) {
+        this(config, decoder, fileSystem, instanceId, createConsumer(config, "event-archiver-" + instanceId));
+    }
+
+    EventArchiver(ArchiverConfig config, EventDecoder decoder, ArchiveFileSystem fileSystem,
+                  String instanceId, Consumer<String, byte[]> consumer) {
+        this.config = config;
+        this.decoder = decoder;
+        this.fileSystem = fileSystem;
+        this.instanceId = instanceId;
+        this.consumer = consumer;
+    }
+
+    private static KafkaConsumer<String, byte[]> createConsumer(ArchiverConfig config, String clientId) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, config.getKafkaGroupId());
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // Large fetches: wait for up to 1 MB or 500 ms, take up to POLL_MAX_RECORDS per poll
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, config.getPollMaxRecords());
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1048576);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 500);
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, 8388608);
+        props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000);
+        return new KafkaConsumer<>(props);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("dump")) {
+            dump(args[1]);
+            return;
+        }
+
+        ArchiverConfig config = ArchiverConfig.fromEnvironment();
+        EventDecoder decoder = new EventDecoder(Paths.get(config.getSchemaDir()));
+        ArchiveFileSystem fileSystem = "webhdfs".equalsIgnoreCase(config.getFileSystem())
+                ? new WebHdfsArchiveFileSystem(config.getHdfsUrl(), config.getHdfsUser(), config.getHdfsBasePath())
+                : new LocalArchiveFileSystem(Paths.get(config.getArchiveDir()));
+        logger.info("Archiving {} from {} to {} ({} event schemas loaded)",
+                config.getKafkaTopic(), config.getKafkaBrokers(), fileSystem.describe(), decoder.getSchemaCount());
+
+        EventArchiver archiver = new EventArchiver(config, decoder, fileSystem);
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            archiver.consumer.wakeup();
+            try {
+                mainThread.join(30000);
+            } catch (InterruptedException ignored) {
+            }
+        }));
+        archiver.run();
+    }
+
+    public void run() {
+        consumer.subscribe(List.of(config.getKafkaTopic()), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                // Another consumer takes these over from the last commit, so hand over everything we hold
+                writeAll();
+                commitWritten();
+                partitions.forEach(consumedPositions::remove);
+                partitions.forEach(committedPositions::remove);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                logger.info("Assigned {}", partitions);
+            }
+        });
+
+        try {
+            while (true) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(1000));
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    buffer(record);
+                }
+                rollDueFiles(System.currentTimeMillis());
+                commitWritten();
+                applyBackpressure();
+            }
+        } catch (WakeupException e) {
+            logger.info("Shutting down");
+        } finally {
+            writeAll();
+            commitWritten();
+            consumer.close();
+            logger.info("Closed; {} dead-lettered events skipped, {} bytes left unwritten", deadLetters, bufferedBytes);
+        }
+    }
+
+    private void buffer(ConsumerRecord<String, byte[]> record) {
+        TopicPartition source = new TopicPartition(record.topic(), record.partition());
+        consumedPositions.put(source, record.offset() + 1);
+        if (record.value() == null) {
+            return;
+        }
+
+        UserEvent event;
+        try {
+            event = decoder.decode(record.value(), record.timestamp());
+        } catch (Exception e) {
+            deadLetters++;
+            logger.warn("Skipping unreadable event at {}@{}: {}", source, record.offset(), e.getMessage());
+            return;
+        }
+        // The type becomes a directory name, so anything else could escape the archive root
+        if (!EventSchema.isValidEventType(event.getEventType())) {
+            deadLetters++;
+            logger.warn("Skipping event with malformed type at {}@{}", source, record.offset());
+            return;
+        }
+
+        String date = Instant.ofEpochMilli(event.getTimestampMillis()).atZone(ZoneOffset.UTC).toLocalDate().toString();
+        String key = date + "/" + event.getEventType();
+        PartitionBuffer buffer = buffers.computeIfAbsent(key,
+                k -> new PartitionBuffer(date, event.getEventType(), System.currentTimeMillis()));
+        buffer.add(event, source, record.offset(), record.serializedValueSize());
+        bufferedBytes += record.serializedValueSize();
+    }
+
+    private void rollDueFiles(long now) {
+        if (now < nextWriteAttempt) {
+            return;
+        }
+        Iterator<PartitionBuffer> iterator = buffers.values().iterator();
+        while (iterator.hasNext()) {
+            PartitionBuffer buffer = iterator.next();
+            if (buffer.getBytes() >= config.getRollMaxBytes() || now - buffer.getOpenedAt() >= config.getRollIntervalMs()) {
+                if (!write(buffer)) {
+                    return;
+                }
+                iterator.remove();
+            }
+        }
+        // Over the memory cap: roll the biggest buffers early
+        while (bufferedBytes > config.getMaxBufferedBytes() && !buffers.isEmpty()) {
+            PartitionBuffer largest = buffers.values().stream()
+                    .max(Comparator.comparingLong(PartitionBuffer::getBytes))
+                    .get();
+            if (!write(largest)) {
+                return;
+            }
+            buffers.remove(largest.getDate() + "/" + largest.getEventType());
+        }
+    }
+
+    private void writeAll() {
+        Iterator<PartitionBuffer> iterator = buffers.values().iterator();
+        while (iterator.hasNext()) {
+            if (!write(iterator.next())) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    private boolean write(PartitionBuffer buffer) {
+        String path = "date=" + buffer.getDate() + "/event_type=" + buffer.getEventType()
+                + "/part-" + buffer.getOpenedAt() + "-" + instanceId + "-" + (fileSequence++) + ColumnarFormat.FILE_SUFFIX;
+        try {
+            byte[] content = writer.write(buffer.getEventType(), buffer.getEvents());
+            fileSystem.writeAtomically(path, content);
+            bufferedBytes -= buffer.getBytes();
+            logger.info("Wrote {} ({} events, {} -> {} bytes)",
+                    path, buffer.getEvents().size(), buffer.getBytes(), content.length);
+            return true;
+        } catch (IOException e) {
+            nextWriteAttempt = System.currentTimeMillis() + RETRY_BACKOFF_MS;
+            logger.warn("Could not write {}, retrying in {} ms: {}", path, RETRY_BACKOFF_MS, e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            // Retrying cannot help, and throwing would stop the consumer for every other partition
+            deadLetters += buffer.getEvents().size();
+            bufferedBytes -= buffer.getBytes();
+            logger.error("Dropping {} events that cannot be written to {}", buffer.getEvents().size(), path, e);
+            return true;
+        }
+    }
+
+    long getDeadLetters() {
+        return deadLetters;
+    }
+
+    /**
+     * Commit, per Kafka partition, up to the first record still buffered
+     * (or everything consumed if none is)
+     */
+    private void commitWritten() {
+        Map<TopicPartition, Long> safe = new HashMap<>(consumedPositions);
+        for (PartitionBuffer buffer : buffers.values()) {
+            buffer.getFirstOffsets().forEach((source, offset) -> safe.merge(source, offset, Math::min));
+        }
+
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        safe.forEach((source, offset) -> {
+            Long committed = committedPositions.get(source);
+            if (committed == null || offset > committed) {
+                offsets.put(source, new OffsetAndMetadata(offset));
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.commitSync(offsets);
+            offsets.forEach((source, offset) -> committedPositions.put(source, offset.offset()));
+        } catch (WakeupException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("Offset commit failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stop fetching while the file system is failing and the buffers are full
+     */
+    private void applyBackpressure() {
+        boolean full = bufferedBytes > config.getMaxBufferedBytes();
+        if (full && !paused) {
+            consumer.pause(consumer.assignment());
+            paused = true;
+            logger.warn("Buffers full ({} bytes), pausing consumption until files can be written", bufferedBytes);
+        } else if (!full && paused) {
+            consumer.resume(consumer.paused());
+            paused = false;
+            logger.info("Resuming consumption");
+        }
+    }
+
+    private static void dump(String file) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (UserEvent event : ColumnarEventFile.open(Paths.get(file)).readAll()) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("eventType", event.getEventType());
+            json.put("timestamp", Instant.ofEpochMilli(event.getTimestampMillis()).toString());
+            json.put("userId", event.getUserId());
+            json.putAll(event.getData());
+            System.out.println(objectMapper.writeValueAsString(json));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.savora.archiver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Archive under a local directory: temp file, fsync, atomic rename, fsync directory
+ */
+public class LocalArchiveFileSystem implements ArchiveFileSystem {
+
+    private final Path root;
+
+    public LocalArchiveFileSystem(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the path leads outside the archive directory
+     */
+    @Override
+    public void writeAtomically(String path, byte[] content) throws IOException {
+        Path target = root.resolve(path).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new IllegalArgumentException(path + " is outside " + root);
+        }
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        Path temp = directory.resolve("." + target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        syncDirectory(directory);
+    }
+
+    @Override
+    public String describe() {
+        return root.toString();
+    }
+
+    private static void syncDirectory(Path directory) {
+        // Makes the rename itself durable; not supported on every platform
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
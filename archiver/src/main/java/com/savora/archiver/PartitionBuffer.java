@@ -0,0 +1,63 @@
+package com.savora.archiver;
+
+import com.savora.events.UserEvent;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events waiting to be written to one output partition (UTC date + event type),
+ * plus the lowest Kafka offset per topic partition they came from, which is
+ * as far as offsets may be committed while this buffer is unwritten.
+ */
+public class PartitionBuffer {
+
+    private final String date;
+    private final String eventType;
+    private final long openedAt;
+    private final List<UserEvent> events = new ArrayList<>();
+    private final Map<TopicPartition, Long> firstOffsets = new HashMap<>();
+    private long bytes;
+
+    public PartitionBuffer(String date, String eventType, long openedAt) {
+        this.date = date;
+        this.eventType = eventType;
+        this.openedAt = openedAt;
+    }
+
+    public void add(UserEvent event, TopicPartition source, long offset, int size) {
+        events.add(event);
+        firstOffsets.putIfAbsent(source, offset);
+        bytes += size;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public long getOpenedAt() {
+        return openedAt;
+    }
+
+    public List<UserEvent> getEvents() {
+        return events;
+    }
+
+    public Map<TopicPartition, Long> getFirstOffsets() {
+        return firstOffsets;
+    }
+
+    /**
+     * Serialized size of the buffered Kafka records
+     */
+    public long getBytes() {
+        return bytes;
+    }
+}
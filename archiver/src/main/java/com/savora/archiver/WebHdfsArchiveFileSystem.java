@@ -0,0 +1,114 @@
+package com.savora.archiver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Archive on HDFS through the namenode's WebHDFS REST API, the same endpoint
+ * kafka-consumer.py uses, so no Hadoop client jars are needed. Files are
+ * created under a temporary name, closed (which waits for the datanode
+ * pipeline to acknowledge every block) and then renamed into place.
+ */
+public class WebHdfsArchiveFileSystem implements ArchiveFileSystem {
+
+    private final String url;
+    private final String user;
+    private final String basePath;
+    private final HttpClient client;
+
+    public WebHdfsArchiveFileSystem(String url, String user, String basePath) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.user = user;
+        this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+        // CREATE answers with a redirect to a datanode that has to be followed by hand
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the path has a "." or ".." segment
+     */
+    @Override
+    public void writeAtomically(String path, byte[] content) throws IOException {
+        for (String segment : path.split("/")) {
+            if (segment.equals(".") || segment.equals("..")) {
+                throw new IllegalArgumentException(path + " is outside " + basePath);
+            }
+        }
+        String target = basePath + "/" + path;
+        String directory = target.substring(0, target.lastIndexOf('/'));
+        String temp = directory + "/." + target.substring(target.lastIndexOf('/') + 1) + ".tmp";
+
+        expectBoolean(send(HttpRequest.newBuilder(operation(directory, "MKDIRS", ""))
+                .PUT(HttpRequest.BodyPublishers.noBody())), "MKDIRS " + directory);
+
+        HttpResponse<String> redirect = send(HttpRequest.newBuilder(operation(temp, "CREATE", "&overwrite=true"))
+                .PUT(HttpRequest.BodyPublishers.noBody()));
+        String location = redirect.headers().firstValue("Location").orElse(null);
+        if (redirect.statusCode() != 307 || location == null) {
+            throw new IOException("CREATE " + temp + " failed: HTTP " + redirect.statusCode() + " " + redirect.body());
+        }
+        HttpResponse<String> created = send(HttpRequest.newBuilder(URI.create(location))
+                .header("Content-Type", "application/octet-stream")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(content)));
+        if (created.statusCode() != 201) {
+            throw new IOException("Writing " + temp + " failed: HTTP " + created.statusCode() + " " + created.body());
+        }
+
+        try {
+            expectBoolean(send(HttpRequest.newBuilder(operation(temp, "RENAME", "&destination=" + encode(target)))
+                    .PUT(HttpRequest.BodyPublishers.noBody())), "RENAME " + temp);
+        } catch (IOException e) {
+            send(HttpRequest.newBuilder(operation(temp, "DELETE", "")).DELETE());
+            throw e;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return url + basePath;
+    }
+
+    URI operation(String path, String op, String parameters) {
+        return URI.create(url + "/webhdfs/v1" + encodePath(path) + "?op=" + op + "&user.name=" + encode(user) + parameters);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException {
+        try {
+            return client.send(request.timeout(Duration.ofSeconds(60)).build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted talking to WebHDFS", e);
+        }
+    }
+
+    private static void expectBoolean(HttpResponse<String> response, String what) throws IOException {
+        if (response.statusCode() != 200 || !response.body().contains("true")) {
+            throw new IOException(what + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Percent-encode each segment, so a space or '%' in a partition value
+     * cannot make URI.create throw
+     */
+    private static String encodePath(String path) {
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = encode(segments[i]).replace("+", "%20").replace("%3D", "=");
+        }
+        return String.join("/", segments);
+    }
+}
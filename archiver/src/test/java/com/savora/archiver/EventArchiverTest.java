@@ -0,0 +1,146 @@
+package com.savora.archiver;
+
+import com.savora.events.ColumnarEventFile;
+import com.savora.events.EventDecoder;
+import com.savora.events.EventSchemaRegistry;
+import com.savora.events.UserEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventArchiverTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("user-events", 0);
+
+    @TempDir
+    Path directory;
+
+    private Path root;
+    private final Map<TopicPartition, OffsetAndMetadata> committed = new HashMap<>();
+    private MockConsumer<String, byte[]> consumer;
+
+    @BeforeEach
+    void setUp() {
+        root = directory.resolve("archive");
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+                committed.putAll(offsets);
+                super.commitSync(offsets);
+            }
+        };
+    }
+
+    @Test
+    void malformedEventTypesAreDeadLetteredAndNothingLeavesTheArchive() throws IOException {
+        EventArchiver archiver = archiver(new LocalArchiveFileSystem(root));
+
+        run(archiver,
+                event("RESTAURANT_VIEWED"),
+                event("../../../escaped"),
+                event("A B%"),
+                "not json");
+
+        assertEquals(3, archiver.getDeadLetters());
+        assertEquals(List.of("archive"), list(directory));
+        List<Path> files = files(root);
+        assertEquals(1, files.size());
+        assertEquals(root.resolve("date=2024-03-02/event_type=RESTAURANT_VIEWED"), files.get(0).getParent());
+        List<UserEvent> archived = ColumnarEventFile.open(files.get(0)).readAll();
+        assertEquals(1, archived.size());
+        assertEquals(7L, archived.get(0).getUserId());
+        assertEquals(4, committed.get(PARTITION).offset());
+    }
+
+    @Test
+    void pathTheFileSystemRefusesIsDroppedAndConsumingCarriesOn() throws IOException {
+        LocalArchiveFileSystem local = new LocalArchiveFileSystem(root);
+        EventArchiver archiver = archiver(new ArchiveFileSystem() {
+            @Override
+            public void writeAtomically(String path, byte[] content) throws IOException {
+                if (path.contains("event_type=SEARCH")) {
+                    throw new IllegalArgumentException("refused");
+                }
+                local.writeAtomically(path, content);
+            }
+
+            @Override
+            public String describe() {
+                return local.describe();
+            }
+        });
+
+        run(archiver, event("SEARCH"), event("SEARCH"), event("RESTAURANT_VIEWED"));
+
+        assertEquals(2, archiver.getDeadLetters());
+        List<Path> files = files(root);
+        assertEquals(1, files.size());
+        assertEquals("event_type=RESTAURANT_VIEWED", files.get(0).getParent().getFileName().toString());
+        assertEquals(3, committed.get(PARTITION).offset());
+    }
+
+    private EventArchiver archiver(ArchiveFileSystem fileSystem) {
+        EventDecoder decoder = new EventDecoder(new EventSchemaRegistry(Collections.emptyList()));
+        return new EventArchiver(new ArchiverConfig(Map.of()), decoder, fileSystem, "test", consumer);
+    }
+
+    /**
+     * Deliver the values in one poll, then shut down, which writes every buffer
+     */
+    private void run(EventArchiver archiver, String... values) {
+        consumer.schedulePollTask(() -> {
+            consumer.rebalance(List.of(PARTITION));
+            consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+            for (int offset = 0; offset < values.length; offset++) {
+                byte[] value = values[offset].getBytes(StandardCharsets.UTF_8);
+                consumer.addRecord(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset,
+                        1_709_373_600_000L, TimestampType.CREATE_TIME, -1, value.length, null, value,
+                        new RecordHeaders(), Optional.empty()));
+            }
+        });
+        consumer.schedulePollTask(consumer::wakeup);
+        archiver.run();
+    }
+
+    private static String event(String eventType) {
+        return "{\"eventType\":\"" + eventType + "\",\"userId\":7,\"timestamp\":\"2024-03-02T10:00:00Z\","
+                + "\"data\":{\"restaurantId\":12}}";
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> files(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+}
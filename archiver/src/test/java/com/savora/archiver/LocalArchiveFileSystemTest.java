@@ -0,0 +1,41 @@
+package com.savora.archiver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalArchiveFileSystemTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void fileIsWrittenUnderTheRootWithNoTempFileLeft() throws IOException {
+        LocalArchiveFileSystem fileSystem = new LocalArchiveFileSystem(directory.resolve("archive"));
+
+        fileSystem.writeAtomically("date=2024-03-02/event_type=SEARCH/part-1.svc", new byte[] {1, 2, 3});
+
+        Path partition = directory.resolve("archive/date=2024-03-02/event_type=SEARCH");
+        assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(partition.resolve("part-1.svc")));
+        assertFalse(Files.exists(partition.resolve(".part-1.svc.tmp")));
+    }
+
+    @Test
+    void pathEscapingTheRootIsRefusedBeforeAnythingIsCreated() {
+        LocalArchiveFileSystem fileSystem = new LocalArchiveFileSystem(directory.resolve("archive"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> fileSystem.writeAtomically("date=2024-03-02/event_type=../../../../escaped/part-1.svc", new byte[1]));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileSystem.writeAtomically("/tmp/part-1.svc", new byte[1]));
+        assertFalse(Files.exists(directory.resolve("escaped")));
+        assertFalse(Files.exists(directory.resolve("archive")));
+    }
+}
@@ -0,0 +1,29 @@
+package com.savora.archiver;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WebHdfsArchiveFileSystemTest {
+
+    private final WebHdfsArchiveFileSystem fileSystem =
+            new WebHdfsArchiveFileSystem("http://namenode:9870/", "hdfs", "/user/savora/archive/");
+
+    @Test
+    void pathIsPercentEncodedPerSegment() {
+        URI uri = fileSystem.operation("/user/savora/archive/date=2024-03-02/event_type=A B%/part-1.svc", "MKDIRS", "");
+
+        assertEquals("/webhdfs/v1/user/savora/archive/date=2024-03-02/event_type=A%20B%25/part-1.svc", uri.getRawPath());
+        assertEquals("/webhdfs/v1/user/savora/archive/date=2024-03-02/event_type=A B%/part-1.svc", uri.getPath());
+        assertEquals("op=MKDIRS&user.name=hdfs", uri.getRawQuery());
+    }
+
+    @Test
+    void dotSegmentsAreRefusedWithoutContactingTheNamenode() {
+        assertThrows(IllegalArgumentException.class,
+                () -> fileSystem.writeAtomically("date=2024-03-02/event_type=../../etc/part-1.svc", new byte[1]));
+    }
+}
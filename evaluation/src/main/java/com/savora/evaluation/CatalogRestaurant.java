@@ -0,0 +1,59 @@
+package com.savora.evaluation;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable view of one restaurant as the scorers see it
+ */
+public final class CatalogRestaurant {
+
+    private final String key;
+    private final String name;
+    private final List<String> categories;
+    private final String categoriesText;
+    private final String priceRange;
+    private final double rating;
+    private final int reviewCount;
+
+    public CatalogRestaurant(String name, List<String> categories, String priceRange, double rating, int reviewCount) {
+        this.key = RestaurantCatalog.normalize(name);
+        this.name = name;
+        this.categories = categories;
+        this.categoriesText = String.join(", ", categories).toLowerCase(Locale.ROOT);
+        this.priceRange = priceRange;
+        this.rating = rating;
+        this.reviewCount = reviewCount;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public String getPriceRange() {
+        return priceRange;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+
+    public int getReviewCount() {
+        return reviewCount;
+    }
+
+    /**
+     * Same substring test analytics.py applies to the raw categories string
+     */
+    public boolean matchesCuisine(String cuisine) {
+        return categoriesText.contains(cuisine.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,74 @@
+package com.savora.evaluation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 reader for the scraped CSV exports in data_collection.
+ * Quoted fields may contain commas, doubled quotes and line breaks.
+ */
+public final class CsvReader {
+
+    private CsvReader() {
+    }
+
+    /**
+     * Read every record of the file, header row excluded
+     */
+    public static List<String[]> readAll(Path path) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean header = true;
+            int c;
+            while ((c = reader.read()) != -1) {
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (next != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    if (!header) {
+                        rows.add(fields.toArray(new String[0]));
+                    }
+                    header = false;
+                    fields.clear();
+                } else if (ch != '\r') {
+                    field.append(ch);
+                }
+            }
+            if (field.length() > 0 || !fields.isEmpty()) {
+                fields.add(field.toString());
+                if (!header) {
+                    rows.add(fields.toArray(new String[0]));
+                }
+            }
+        }
+        return rows;
+    }
+}
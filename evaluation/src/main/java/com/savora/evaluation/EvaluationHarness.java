@@ -0,0 +1,169 @@
+package com.savora.evaluation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offline replay of a time-split event log against a recommender.
+ *
+ * Events before the split build each user's profile; restaurants the user
+ * viewed or bookmarked after the split are the relevant set. Runs entirely
+ * from local files, e.g.
+ *
+ *   mvn -q compile exec:java -Dexec.args="--events fixtures/events.jsonl --k 6"
+ */
+public class EvaluationHarness {
+
+    private final RestaurantCatalog catalog;
+    private final List<Interaction> interactions;
+
+    public EvaluationHarness(RestaurantCatalog catalog, List<Interaction> interactions) {
+        this.catalog = catalog;
+        this.interactions = interactions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        Path events = Paths.get(options.getOrDefault("events", "fixtures/events.jsonl"));
+        Path restaurants = Paths.get(options.getOrDefault("restaurants", "../data_collection/mankato_restaurants.csv"));
+        Path reviews = Paths.get(options.getOrDefault("reviews", "../data_collection/mankato_restaurant_reviews.csv"));
+        int k = Integer.parseInt(options.getOrDefault("k", "6"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "20"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "50"));
+
+        RestaurantCatalog catalog = RestaurantCatalog.load(restaurants, reviews);
+        List<Interaction> interactions = new EventLogReader().read(events);
+        EvaluationHarness harness = new EvaluationHarness(catalog, interactions);
+
+        Instant split = options.containsKey("split")
+                ? Instant.parse(options.get("split"))
+                : harness.splitAtFraction(Double.parseDouble(options.getOrDefault("train-fraction", "0.8")));
+
+        List<Recommender> recommenders = new ArrayList<>();
+        String weights = options.get("weights");
+        if (weights != null) {
+            String[] parts = weights.split(",");
+            recommenders.add(new PopularityRecommender(catalog, Double.parseDouble(parts[0]), Double.parseDouble(parts[1])));
+        } else {
+            recommenders.add(new PopularityRecommender(catalog));
+        }
+
+        System.out.printf(Locale.ROOT, "catalog=%d restaurants, events=%d, split=%s, k=%d%n",
+                catalog.size(), interactions.size(), split, k);
+        for (Recommender recommender : recommenders) {
+            harness.evaluate(recommender, split, k, warmup, iterations).print();
+        }
+    }
+
+    /**
+     * Timestamp below which the given fraction of events falls
+     */
+    public Instant splitAtFraction(double fraction) {
+        if (interactions.isEmpty()) {
+            return Instant.EPOCH;
+        }
+        int index = (int) Math.min(interactions.size() - 1, Math.max(0, Math.round(interactions.size() * fraction)));
+        return interactions.get(index).getTimestamp();
+    }
+
+    public Report evaluate(Recommender recommender, Instant split, int k, int warmup, int iterations) {
+        Map<Long, UserProfile> profiles = new HashMap<>();
+        Map<Long, Set<String>> relevant = new LinkedHashMap<>();
+        for (Interaction interaction : interactions) {
+            if (interaction.getTimestamp().isBefore(split)) {
+                profiles.computeIfAbsent(interaction.getUserId(), UserProfile::new).record(interaction);
+            } else if (interaction.isRestaurantSignal() && catalog.get(interaction.getRestaurantKey()) != null) {
+                relevant.computeIfAbsent(interaction.getUserId(), id -> new HashSet<>()).add(interaction.getRestaurantKey());
+            }
+        }
+
+        List<UserProfile> testUsers = new ArrayList<>(relevant.size());
+        for (Long userId : relevant.keySet()) {
+            testUsers.add(profiles.getOrDefault(userId, new UserProfile(userId)));
+        }
+
+        // Quality is deterministic, so score one pass; latency needs warmed-up repeats
+        RankingMetrics metrics = new RankingMetrics(k);
+        for (UserProfile profile : testUsers) {
+            metrics.add(recommender.recommend(profile, k), relevant.get(profile.getUserId()));
+        }
+
+        LatencyRecorder latency = new LatencyRecorder();
+        for (int round = 0; round < warmup + iterations; round++) {
+            if (round == warmup) {
+                latency.reset();
+            }
+            for (UserProfile profile : testUsers) {
+                latency.start();
+                recommender.recommend(profile, k);
+                latency.stop();
+            }
+        }
+
+        return new Report(recommender.getName(), k, metrics, catalog.size(), latency);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value pairs, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * Quality and cost of one recommender over the test users
+     */
+    public static class Report {
+        private final String recommender;
+        private final int k;
+        private final RankingMetrics metrics;
+        private final int catalogSize;
+        private final LatencyRecorder latency;
+
+        Report(String recommender, int k, RankingMetrics metrics, int catalogSize, LatencyRecorder latency) {
+            this.recommender = recommender;
+            this.k = k;
+            this.metrics = metrics;
+            this.catalogSize = catalogSize;
+            this.latency = latency;
+        }
+
+        public RankingMetrics getMetrics() {
+            return metrics;
+        }
+
+        public LatencyRecorder getLatency() {
+            return latency;
+        }
+
+        public double getCoverage() {
+            return metrics.getCoverage(catalogSize);
+        }
+
+        public void print() {
+            System.out.printf(Locale.ROOT, "%n%s over %d test users%n", recommender, metrics.getUsers());
+            System.out.printf(Locale.ROOT, "  precision@%d  %.4f%n", k, metrics.getPrecision());
+            System.out.printf(Locale.ROOT, "  recall@%d     %.4f%n", k, metrics.getRecall());
+            System.out.printf(Locale.ROOT, "  ndcg@%d       %.4f%n", k, metrics.getNdcg());
+            System.out.printf(Locale.ROOT, "  coverage     %.4f%n", getCoverage());
+            System.out.printf(Locale.ROOT, "  latency p50  %.1f us%n", latency.percentileMicros(50));
+            System.out.printf(Locale.ROOT, "  latency p99  %.1f us%n", latency.percentileMicros(99));
+            System.out.printf(Locale.ROOT, "  alloc/req    %d bytes (%d timed calls)%n",
+                    latency.allocatedBytesPerRequest(), latency.getCount());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.savora.evaluation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads a JSON-lines event log in the format KafkaProducerService publishes.
+ * Event data is flattened onto the top level by Event's @JsonAnyGetter; a
+ * nested "data" object (as the webapp posts it) is accepted as well.
+ */
+public class EventLogReader {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public List<Interaction> read(Path path) throws IOException {
+        List<Interaction> interactions = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Interaction interaction;
+                try {
+                    interaction = parse(line);
+                } catch (JsonProcessingException e) {
+                    // A truncated or corrupt line must not end the whole replay
+                    interaction = null;
+                }
+                if (interaction == null) {
+                    System.err.println("Skipping unusable event on line " + lineNumber);
+                    continue;
+                }
+                interactions.add(interaction);
+            }
+        }
+        interactions.sort(Comparator.comparing(Interaction::getTimestamp));
+        return interactions;
+    }
+
+    private Interaction parse(String line) throws JsonProcessingException {
+        JsonNode event = objectMapper.readTree(line);
+        JsonNode userId = event.get("userId");
+        String eventType = text(event, "eventType");
+        String timestamp = text(event, "timestamp");
+        if (userId == null || !userId.canConvertToLong() || eventType == null || timestamp == null) {
+            return null;
+        }
+
+        Instant instant;
+        try {
+            instant = Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+
+        JsonNode data = event.has("data") && event.get("data").isObject() ? event.get("data") : event;
+        String restaurantName = text(data, "restaurantName");
+        String restaurantKey = restaurantName == null ? null : RestaurantCatalog.normalize(restaurantName);
+
+        // Un-bookmarking is not a positive signal
+        if ("RESTAURANT_BOOKMARKED".equals(eventType) && data.has("bookmarked")
+                && !data.get("bookmarked").asBoolean()) {
+            restaurantKey = null;
+        }
+        return new Interaction(userId.asLong(), eventType, instant, restaurantKey, text(data, "cuisineType"));
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
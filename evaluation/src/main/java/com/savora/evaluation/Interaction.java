@@ -0,0 +1,51 @@
+package com.savora.evaluation;
+
+import java.time.Instant;
+
+/**
+ * One replayed user event, reduced to the fields the scorers use
+ */
+public final class Interaction {
+
+    private final long userId;
+    private final String eventType;
+    private final Instant timestamp;
+    private final String restaurantKey;
+    private final String cuisine;
+
+    public Interaction(long userId, String eventType, Instant timestamp, String restaurantKey, String cuisine) {
+        this.userId = userId;
+        this.eventType = eventType;
+        this.timestamp = timestamp;
+        this.restaurantKey = restaurantKey;
+        this.cuisine = cuisine;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getRestaurantKey() {
+        return restaurantKey;
+    }
+
+    public String getCuisine() {
+        return cuisine;
+    }
+
+    /**
+     * Views and bookmarks are the positive signals we try to predict
+     */
+    public boolean isRestaurantSignal() {
+        return restaurantKey != null
+                && ("RESTAURANT_VIEWED".equals(eventType) || "RESTAURANT_BOOKMARKED".equals(eventType));
+    }
+}
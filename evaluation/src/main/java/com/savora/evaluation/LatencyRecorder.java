@@ -0,0 +1,77 @@
+package com.savora.evaluation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Per-request wall time and heap allocation for scorer calls. Allocation
+ * uses the HotSpot per-thread counter, so calls must happen on one thread.
+ */
+public class LatencyRecorder {
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private long[] samples = new long[1024];
+    private int count;
+    private long allocatedBytes;
+    private long startNanos;
+    private long startAllocated;
+
+    public LatencyRecorder() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            this.threadBean = (com.sun.management.ThreadMXBean) bean;
+            this.threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            this.threadBean = null;
+        }
+    }
+
+    public void start() {
+        startAllocated = threadBean == null ? 0 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        long elapsed = System.nanoTime() - startNanos;
+        if (threadBean != null) {
+            allocatedBytes += threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - startAllocated;
+        }
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = elapsed;
+    }
+
+    public void reset() {
+        count = 0;
+        allocatedBytes = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Nearest-rank percentile in microseconds
+     */
+    public double percentileMicros(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(rank, count - 1))] / 1000.0;
+    }
+
+    /**
+     * Mean bytes allocated per request, or -1 if the JVM cannot report it
+     */
+    public long allocatedBytesPerRequest() {
+        if (threadBean == null) {
+            return -1;
+        }
+        return count == 0 ? 0 : allocatedBytes / count;
+    }
+}
@@ -0,0 +1,70 @@
+package com.savora.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Port of generate_recommendations in hadoop/analytics.py: restaurants matching
+ * any selected cuisine, scored as rating * 0.6 + (reviewCount / maxReviewCount) * 0.4.
+ */
+public class PopularityRecommender implements Recommender {
+
+    private final RestaurantCatalog catalog;
+    private final double ratingWeight;
+    private final double popularityWeight;
+
+    public PopularityRecommender(RestaurantCatalog catalog) {
+        this(catalog, 0.6, 0.4);
+    }
+
+    public PopularityRecommender(RestaurantCatalog catalog, double ratingWeight, double popularityWeight) {
+        this.catalog = catalog;
+        this.ratingWeight = ratingWeight;
+        this.popularityWeight = popularityWeight;
+    }
+
+    @Override
+    public String getName() {
+        return "popularity(" + ratingWeight + "," + popularityWeight + ")";
+    }
+
+    @Override
+    public List<String> recommend(UserProfile profile, int k) {
+        List<String> cuisines = profile.getCuisinePreferences();
+        List<CatalogRestaurant> candidates = new ArrayList<>();
+        for (CatalogRestaurant restaurant : catalog.getRestaurants()) {
+            if (cuisines.isEmpty() || matchesAny(restaurant, cuisines)) {
+                candidates.add(restaurant);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(catalog.getRestaurants());
+        }
+
+        int maxReviews = 1;
+        for (CatalogRestaurant restaurant : candidates) {
+            maxReviews = Math.max(maxReviews, restaurant.getReviewCount());
+        }
+        final double max = maxReviews;
+        candidates.sort((a, b) -> Double.compare(score(b, max), score(a, max)));
+
+        List<String> keys = new ArrayList<>(Math.min(k, candidates.size()));
+        for (int i = 0; i < candidates.size() && keys.size() < k; i++) {
+            keys.add(candidates.get(i).getKey());
+        }
+        return keys;
+    }
+
+    private double score(CatalogRestaurant restaurant, double maxReviews) {
+        return restaurant.getRating() * ratingWeight + (restaurant.getReviewCount() / maxReviews) * popularityWeight;
+    }
+
+    private static boolean matchesAny(CatalogRestaurant restaurant, List<String> cuisines) {
+        for (String cuisine : cuisines) {
+            if (restaurant.matchesCuisine(cuisine)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
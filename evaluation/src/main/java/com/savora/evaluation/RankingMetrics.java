@@ -0,0 +1,73 @@
+package com.savora.evaluation;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Accumulates top-k ranking quality over all evaluated users
+ */
+public class RankingMetrics {
+
+    private final int k;
+    private final Set<String> recommendedItems = new HashSet<>();
+    private double precisionSum;
+    private double recallSum;
+    private double ndcgSum;
+    private int users;
+
+    public RankingMetrics(int k) {
+        this.k = k;
+    }
+
+    public void add(List<String> recommended, Set<String> relevant) {
+        int hits = 0;
+        double dcg = 0;
+        int depth = Math.min(k, recommended.size());
+        for (int i = 0; i < depth; i++) {
+            String item = recommended.get(i);
+            recommendedItems.add(item);
+            if (relevant.contains(item)) {
+                hits++;
+                dcg += 1.0 / log2(i + 2);
+            }
+        }
+
+        double idcg = 0;
+        for (int i = 0; i < Math.min(k, relevant.size()); i++) {
+            idcg += 1.0 / log2(i + 2);
+        }
+
+        precisionSum += (double) hits / k;
+        recallSum += relevant.isEmpty() ? 0 : (double) hits / relevant.size();
+        ndcgSum += idcg == 0 ? 0 : dcg / idcg;
+        users++;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public double getPrecision() {
+        return users == 0 ? 0 : precisionSum / users;
+    }
+
+    public double getRecall() {
+        return users == 0 ? 0 : recallSum / users;
+    }
+
+    public double getNdcg() {
+        return users == 0 ? 0 : ndcgSum / users;
+    }
+
+    /**
+     * Share of the catalog that appeared in at least one top-k list
+     */
+    public double getCoverage(int catalogSize) {
+        return catalogSize == 0 ? 0 : (double) recommendedItems.size() / catalogSize;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
@@ -0,0 +1,17 @@
+package com.savora.evaluation;
+
+import java.util.List;
+
+/**
+ * A scoring strategy under evaluation. Implementations must be thread-confined
+ * or stateless; the harness calls them once per test user.
+ */
+public interface Recommender {
+
+    String getName();
+
+    /**
+     * Return up to k restaurant keys, best first
+     */
+    List<String> recommend(UserProfile profile, int k);
+}
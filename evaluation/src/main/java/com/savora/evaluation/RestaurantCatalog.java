@@ -0,0 +1,116 @@
+package com.savora.evaluation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Restaurant catalog built from the same fixtures postgres/init.sql loads:
+ * mankato_restaurants.csv for metadata and mankato_restaurant_reviews.csv
+ * (the restaurant_reviews table) for rating and review count.
+ */
+public class RestaurantCatalog {
+
+    private final Map<String, CatalogRestaurant> byKey;
+    private final int maxReviewCount;
+
+    public RestaurantCatalog(Collection<CatalogRestaurant> restaurants) {
+        Map<String, CatalogRestaurant> map = new LinkedHashMap<>();
+        int max = 0;
+        for (CatalogRestaurant restaurant : restaurants) {
+            map.put(restaurant.getKey(), restaurant);
+            max = Math.max(max, restaurant.getReviewCount());
+        }
+        this.byKey = Collections.unmodifiableMap(map);
+        this.maxReviewCount = max;
+    }
+
+    /**
+     * Load the catalog, preferring ratings aggregated from restaurant_reviews
+     * and falling back to the Yelp rating in the restaurants export.
+     */
+    public static RestaurantCatalog load(Path restaurantsCsv, Path reviewsCsv) throws IOException {
+        Map<String, int[]> reviewStats = new HashMap<>();
+        if (reviewsCsv != null) {
+            for (String[] row : CsvReader.readAll(reviewsCsv)) {
+                if (row.length < 3) {
+                    continue;
+                }
+                int[] stats = reviewStats.computeIfAbsent(normalize(row[0]), k -> new int[2]);
+                stats[0] += parseReviewRating(row[2]);
+                stats[1]++;
+            }
+        }
+
+        List<CatalogRestaurant> restaurants = new ArrayList<>();
+        for (String[] row : CsvReader.readAll(restaurantsCsv)) {
+            if (row.length < 5 || row[0].isEmpty()) {
+                continue;
+            }
+            List<String> categories = new ArrayList<>();
+            for (String part : row[4].split(",")) {
+                String category = part.trim();
+                if (!category.isEmpty()) {
+                    categories.add(category);
+                }
+            }
+
+            double rating = parseDouble(row[1]);
+            int reviewCount = (int) parseDouble(row[2]);
+            int[] stats = reviewStats.get(normalize(row[0]));
+            if (stats != null && stats[1] > 0) {
+                rating = (double) stats[0] / stats[1];
+                reviewCount = stats[1];
+            }
+            restaurants.add(new CatalogRestaurant(row[0], categories, row[3], rating, reviewCount));
+        }
+        return new RestaurantCatalog(restaurants);
+    }
+
+    public CatalogRestaurant get(String key) {
+        return byKey.get(key);
+    }
+
+    public Collection<CatalogRestaurant> getRestaurants() {
+        return byKey.values();
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    public int getMaxReviewCount() {
+        return maxReviewCount;
+    }
+
+    /**
+     * Restaurants are matched by name, the same key user_recommendations uses
+     */
+    public static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int parseReviewRating(String value) {
+        // Mirrors the CASE expression in postgres/init.sql ("5 stars" -> 5, unknown -> 3)
+        String trimmed = value.trim();
+        if (!trimmed.isEmpty() && trimmed.charAt(0) >= '1' && trimmed.charAt(0) <= '5') {
+            return trimmed.charAt(0) - '0';
+        }
+        return 3;
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.savora.evaluation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a scorer is allowed to know about a user: everything from the
+ * training half of the log and nothing from the test half.
+ */
+public class UserProfile {
+
+    private final long userId;
+    private final Map<String, Integer> cuisineCounts = new HashMap<>();
+    private final Set<String> seenRestaurants = new HashSet<>();
+
+    public UserProfile(long userId) {
+        this.userId = userId;
+    }
+
+    public void record(Interaction interaction) {
+        if ("CUISINE_SELECTED".equals(interaction.getEventType()) && interaction.getCuisine() != null) {
+            cuisineCounts.merge(interaction.getCuisine(), 1, Integer::sum);
+        }
+        if (interaction.isRestaurantSignal()) {
+            seenRestaurants.add(interaction.getRestaurantKey());
+        }
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * Cuisines ordered most-selected first, like Counter.most_common()
+     */
+    public List<String> getCuisinePreferences() {
+        List<String> cuisines = new ArrayList<>(cuisineCounts.keySet());
+        cuisines.sort((a, b) -> Integer.compare(cuisineCounts.get(b), cuisineCounts.get(a)));
+        return cuisines;
+    }
+
+    public Set<String> getSeenRestaurants() {
+        return seenRestaurants;
+    }
+}
@@ -0,0 +1,46 @@
+package com.savora.evaluation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventLogReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void malformedAndUnusableLinesAreSkipped() throws IOException {
+        Path log = directory.resolve("events.jsonl");
+        Files.writeString(log, String.join("\n",
+                "{\"eventType\":\"RESTAURANT_VIEWED\",\"userId\":7,\"timestamp\":\"2024-03-02T10:05:00Z\","
+                        + "\"restaurantName\":\"Pho Place\"}",
+                "{\"eventType\":\"RESTAURANT_VIEWED\",\"userId\":7,\"timest",
+                "",
+                "not json at all",
+                "{\"eventType\":\"RESTAURANT_VIEWED\",\"timestamp\":\"2024-03-02T10:06:00Z\"}",
+                "{\"eventType\":\"CUISINE_SELECTED\",\"userId\":8,\"timestamp\":\"2024-03-02T10:00:00Z\","
+                        + "\"data\":{\"cuisineType\":\"Thai\"}}",
+                "{\"eventType\":\"RESTAURANT_BOOKMARKED\",\"userId\":8,\"timestamp\":\"2024-03-02T10:07:00Z\","
+                        + "\"restaurantName\":\"Pho Place\",\"bookmarked\":false}"));
+
+        List<Interaction> interactions = new EventLogReader().read(log);
+
+        assertEquals(3, interactions.size());
+        // Sorted by time
+        assertEquals(Instant.parse("2024-03-02T10:00:00Z"), interactions.get(0).getTimestamp());
+        assertEquals("Thai", interactions.get(0).getCuisine());
+        assertEquals(7, interactions.get(1).getUserId());
+        assertEquals(RestaurantCatalog.normalize("Pho Place"), interactions.get(1).getRestaurantKey());
+        // Un-bookmarking carries no restaurant
+        assertNull(interactions.get(2).getRestaurantKey());
+    }
+}
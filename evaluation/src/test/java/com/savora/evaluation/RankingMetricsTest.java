@@ -0,0 +1,72 @@
+package com.savora.evaluation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RankingMetricsTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void metricsAreAveragedOverUsers() {
+        RankingMetrics metrics = new RankingMetrics(3);
+        // Hits at ranks 1 and 3; d is past k
+        metrics.add(List.of("a", "b", "c", "d"), Set.of("a", "c"));
+        // No hits
+        metrics.add(List.of("e"), Set.of("f", "g"));
+
+        assertEquals(2, metrics.getUsers());
+        // (2/3 + 0) / 2
+        assertEquals(1.0 / 3, metrics.getPrecision(), DELTA);
+        // (2/2 + 0/2) / 2
+        assertEquals(0.5, metrics.getRecall(), DELTA);
+        // DCG 1/log2(2) + 1/log2(4) = 1.5 against the ideal 1 + 1/log2(3), then averaged with 0
+        assertEquals(1.5 / (1 + 1 / log2(3)) / 2, metrics.getNdcg(), DELTA);
+        // a, b, c and e of an 8-restaurant catalog
+        assertEquals(0.5, metrics.getCoverage(8), DELTA);
+    }
+
+    @Test
+    void shortListsAreScoredAgainstK() {
+        RankingMetrics metrics = new RankingMetrics(3);
+        metrics.add(List.of("a"), Set.of("a"));
+
+        assertEquals(1.0 / 3, metrics.getPrecision(), DELTA);
+        assertEquals(1.0, metrics.getRecall(), DELTA);
+        assertEquals(1.0, metrics.getNdcg(), DELTA);
+    }
+
+    @Test
+    void idealRankingIsCappedAtK() {
+        RankingMetrics metrics = new RankingMetrics(2);
+        // Four relevant items, but only two places: a perfect top 2
+        metrics.add(List.of("a", "b", "x"), Set.of("a", "b", "c", "d"));
+
+        assertEquals(1.0, metrics.getPrecision(), DELTA);
+        assertEquals(0.5, metrics.getRecall(), DELTA);
+        assertEquals(1.0, metrics.getNdcg(), DELTA);
+    }
+
+    @Test
+    void nothingRelevantOrNothingAddedScoresZero() {
+        RankingMetrics empty = new RankingMetrics(3);
+        assertEquals(0, empty.getPrecision(), DELTA);
+        assertEquals(0, empty.getRecall(), DELTA);
+        assertEquals(0, empty.getNdcg(), DELTA);
+        assertEquals(0, empty.getCoverage(0), DELTA);
+
+        RankingMetrics metrics = new RankingMetrics(3);
+        metrics.add(List.of("a", "b"), Set.of());
+        assertEquals(0, metrics.getRecall(), DELTA);
+        assertEquals(0, metrics.getNdcg(), DELTA);
+        assertEquals(1.0, metrics.getCoverage(2), DELTA);
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
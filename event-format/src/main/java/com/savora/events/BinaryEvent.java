@@ -0,0 +1,54 @@
+package com.savora.events;
+
+import java.util.Map;
+
+/**
+ * The fields of an event as the binary encoding carries them
+ */
+public class BinaryEvent {
+
+    private final String eventType;
+    private final Long userId;
+    private final Long timestampMillis;
+    private final String eventId;
+    private final String sessionId;
+    private final Map<String, Object> data;
+
+    public BinaryEvent(String eventType, Long userId, Long timestampMillis, String eventId, String sessionId,
+                       Map<String, Object> data) {
+        this.eventType = eventType;
+        this.userId = userId;
+        this.timestampMillis = timestampMillis;
+        this.eventId = eventId;
+        this.sessionId = sessionId;
+        this.data = data;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    // Null if the event had no timestamp
+    public Long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Schema fields by name; values are Long, Double, Boolean or String
+     */
+    public Map<String, Object> getData() {
+        return data;
+    }
+}
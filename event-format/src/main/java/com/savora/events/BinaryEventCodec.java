@@ -0,0 +1,259 @@
+package com.savora.events;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of events on the user-events topic, for event types with
+ * a registered schema:
+ *
+ *   0x00 magic | varint schema id
+ *   | flags (1 = userId, 2 = timestamp, 4 = eventId, 8 = sessionId)
+ *   | zigzag varlong userId | zigzag varlong epoch millis | eventId | sessionId
+ *   | presence bitmap (one bit per schema field) | present field values
+ *
+ * longs are zigzag varints, doubles 8 bytes big-endian, booleans one byte and
+ * strings a varint length plus UTF-8. The topic also carries plain JSON
+ * events; readers tell the two apart by the first byte, since JSON never
+ * starts with 0x00.
+ */
+public class BinaryEventCodec {
+
+    public static final byte MAGIC = 0x00;
+
+    private static final int HAS_USER = 1;
+    private static final int HAS_TIMESTAMP = 2;
+    private static final int HAS_EVENT_ID = 4;
+    private static final int HAS_SESSION_ID = 8;
+
+    private final EventSchemaRegistry registry;
+
+    public BinaryEventCodec(EventSchemaRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static boolean isBinary(byte[] message) {
+        return message.length > 0 && message[0] == MAGIC;
+    }
+
+    /**
+     * Binary form of the event, or null if it does not fit its schema exactly
+     * (unknown type or field, or a value of the wrong type)
+     */
+    public byte[] encode(BinaryEvent event) {
+        EventSchema schema = registry.getLatest(event.getEventType());
+        if (schema == null) {
+            return null;
+        }
+        List<EventSchema.Field> fields = schema.getFields();
+        Map<String, Object> data = event.getData();
+        if (data.size() > fields.size()) {
+            return null;
+        }
+
+        byte[] presence = new byte[(fields.size() + 7) / 8];
+        int matched = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            if (data.get(fields.get(i).getName()) != null) {
+                presence[i / 8] |= 1 << (i % 8);
+                matched++;
+            }
+        }
+        // Every non-null entry must map to a schema field
+        int nonNull = 0;
+        for (Object value : data.values()) {
+            if (value != null) {
+                nonNull++;
+            }
+        }
+        if (matched != nonNull) {
+            return null;
+        }
+
+        Output out = new Output();
+        out.write(MAGIC);
+        out.writeVarLong(schema.getId());
+        out.write((event.getUserId() != null ? HAS_USER : 0)
+                | (event.getTimestampMillis() != null ? HAS_TIMESTAMP : 0)
+                | (event.getEventId() != null ? HAS_EVENT_ID : 0)
+                | (event.getSessionId() != null ? HAS_SESSION_ID : 0));
+        if (event.getUserId() != null) {
+            out.writeVarLong(zigzag(event.getUserId()));
+        }
+        if (event.getTimestampMillis() != null) {
+            out.writeVarLong(zigzag(event.getTimestampMillis()));
+        }
+        if (event.getEventId() != null) {
+            out.writeString(event.getEventId());
+        }
+        if (event.getSessionId() != null) {
+            out.writeString(event.getSessionId());
+        }
+        out.write(presence);
+
+        for (EventSchema.Field field : fields) {
+            Object value = data.get(field.getName());
+            if (value == null) {
+                continue;
+            }
+            switch (field.getType()) {
+                case "long":
+                    if (!(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                        return null;
+                    }
+                    out.writeVarLong(zigzag(((Number) value).longValue()));
+                    break;
+                case "double":
+                    if (!(value instanceof Number)) {
+                        return null;
+                    }
+                    long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) (bits >>> shift));
+                    }
+                    break;
+                case "boolean":
+                    if (!(value instanceof Boolean)) {
+                        return null;
+                    }
+                    out.write((Boolean) value ? 1 : 0);
+                    break;
+                default:
+                    if (!(value instanceof String)) {
+                        return null;
+                    }
+                    out.writeString((String) value);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the message is not binary, names an
+     *         unknown schema id or is malformed
+     */
+    public BinaryEvent decode(byte[] message) {
+        if (!isBinary(message)) {
+            throw new IllegalArgumentException("Not a binary-encoded event");
+        }
+        try {
+            return decode(ByteBuffer.wrap(message, 1, message.length - 1));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary event", e);
+        }
+    }
+
+    private BinaryEvent decode(ByteBuffer in) {
+        int schemaId = (int) readVarLong(in);
+        EventSchema schema = registry.getById(schemaId);
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown event schema id " + schemaId);
+        }
+
+        int flags = in.get();
+        Long userId = (flags & HAS_USER) != 0 ? unzigzag(readVarLong(in)) : null;
+        Long timestampMillis = (flags & HAS_TIMESTAMP) != 0 ? unzigzag(readVarLong(in)) : null;
+        String eventId = (flags & HAS_EVENT_ID) != 0 ? readString(in) : null;
+        String sessionId = (flags & HAS_SESSION_ID) != 0 ? readString(in) : null;
+
+        List<EventSchema.Field> fields = schema.getFields();
+        byte[] presence = new byte[(fields.size() + 7) / 8];
+        in.get(presence);
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            if ((presence[i / 8] & (1 << (i % 8))) == 0) {
+                continue;
+            }
+            EventSchema.Field field = fields.get(i);
+            switch (field.getType()) {
+                case "long":
+                    data.put(field.getName(), unzigzag(readVarLong(in)));
+                    break;
+                case "double":
+                    data.put(field.getName(), in.getDouble());
+                    break;
+                case "boolean":
+                    data.put(field.getName(), in.get() != 0);
+                    break;
+                default:
+                    data.put(field.getName(), readString(in));
+            }
+        }
+        return new BinaryEvent(schema.getEventType(), userId, timestampMillis, eventId, sessionId, data);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[(int) readVarLong(in)];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Unsynchronized growable buffer; ByteArrayOutputStream locks on every write
+     */
+    private static final class Output {
+        private byte[] buffer = new byte[64];
+        private int size;
+
+        void write(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            write(utf8);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.savora.events;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader for archive files written by ColumnarFileWriter. Opening a file
+ * reads only its footer; each column is then read and inflated on demand,
+ * so a query pays I/O only for the columns it touches. Columns come back
+ * row-aligned.
+ */
+public class ColumnarEventFile {
+
+    private final Path path;
+    private final String eventType;
+    private final int rowCount;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final Map<String, ColumnMeta> columns = new LinkedHashMap<>();
+
+    private ColumnarEventFile(Path path, ByteBuffer footer) throws IOException {
+        this.path = path;
+        int version = (int) ColumnarFormat.readVarLong(footer);
+        if (version != ColumnarFormat.VERSION) {
+            throw new IOException(path + ": unsupported archive file version " + version);
+        }
+        this.eventType = readString(footer);
+        this.rowCount = (int) ColumnarFormat.readVarLong(footer);
+        this.minTimestamp = ColumnarFormat.unzigzag(ColumnarFormat.readVarLong(footer));
+        this.maxTimestamp = ColumnarFormat.unzigzag(ColumnarFormat.readVarLong(footer));
+        int columnCount = (int) ColumnarFormat.readVarLong(footer);
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString(footer);
+            ColumnMeta meta = new ColumnMeta(footer.get(), footer.get(), ColumnarFormat.readVarLong(footer),
+                    (int) ColumnarFormat.readVarLong(footer), (int) ColumnarFormat.readVarLong(footer));
+            columns.put(name, meta);
+        }
+    }
+
+    public static ColumnarEventFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            byte[] expected = ColumnarFormat.MAGIC;
+            if (size < 2 * expected.length + 4) {
+                throw new IOException(path + " is not an archive file");
+            }
+            ByteBuffer tail = read(channel, size - expected.length - 4, expected.length + 4);
+            byte[] magic = new byte[expected.length];
+            int footerLength = tail.getInt();
+            tail.get(magic);
+            if (!Arrays.equals(magic, expected) || footerLength <= 0 || footerLength > size) {
+                throw new IOException(path + " is not an archive file");
+            }
+            return new ColumnarEventFile(path, read(channel, size - expected.length - 4 - footerLength, footerLength));
+        }
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getMinTimestamp() {
+        return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public boolean hasColumn(String name) {
+        return columns.containsKey(name);
+    }
+
+    public List<String> getColumnNames() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    /**
+     * Decode one column; a column the file does not have comes back all null
+     */
+    public Column readColumn(String name) throws IOException {
+        ColumnMeta meta = columns.get(name);
+        if (meta == null) {
+            return Column.allNull(rowCount);
+        }
+        ByteBuffer raw;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            raw = ByteBuffer.wrap(inflate(read(channel, meta.offset, meta.compressedLength), meta.length));
+        }
+        byte[] presence = new byte[(rowCount + 7) / 8];
+        raw.get(presence);
+
+        Column column = new Column(meta.type, rowCount);
+        if (meta.type == ColumnarFormat.TYPE_STRING) {
+            column.codes = new int[rowCount];
+            if (meta.encoding == ColumnarFormat.ENCODING_DICTIONARY) {
+                column.dictionary = new String[(int) ColumnarFormat.readVarLong(raw)];
+                for (int i = 0; i < column.dictionary.length; i++) {
+                    column.dictionary[i] = readString(raw);
+                }
+            }
+        } else if (meta.type == ColumnarFormat.TYPE_DOUBLE) {
+            column.doubles = new double[rowCount];
+        } else if (meta.type == ColumnarFormat.TYPE_BOOLEAN) {
+            column.codes = new int[rowCount];
+            column.dictionary = new String[] {"false", "true"};
+        } else {
+            column.longs = new long[rowCount];
+        }
+
+        // Plain strings get a dictionary built here, so every string column is int codes downstream
+        Map<String, Integer> plainCodes = meta.type == ColumnarFormat.TYPE_STRING && column.dictionary == null ? new HashMap<>() : null;
+        long previous = 0;
+        for (int row = 0; row < rowCount; row++) {
+            boolean present = (presence[row >>> 3] & (1 << (row & 7))) != 0;
+            column.present[row] = present;
+            if (!present) {
+                if (column.codes != null) {
+                    column.codes[row] = -1;
+                }
+                continue;
+            }
+            switch (meta.type) {
+                case ColumnarFormat.TYPE_LONG:
+                    long value = ColumnarFormat.unzigzag(ColumnarFormat.readVarLong(raw));
+                    if (meta.encoding == ColumnarFormat.ENCODING_DELTA) {
+                        value += previous;
+                    }
+                    previous = value;
+                    column.longs[row] = value;
+                    break;
+                case ColumnarFormat.TYPE_DOUBLE:
+                    column.doubles[row] = raw.getDouble();
+                    break;
+                case ColumnarFormat.TYPE_BOOLEAN:
+                    column.codes[row] = raw.get() != 0 ? 1 : 0;
+                    break;
+                default:
+                    if (plainCodes != null) {
+                        String text = readString(raw);
+                        column.codes[row] = plainCodes.computeIfAbsent(text, k -> plainCodes.size());
+                    } else {
+                        column.codes[row] = (int) ColumnarFormat.readVarLong(raw);
+                    }
+            }
+        }
+        if (plainCodes != null) {
+            column.dictionary = new String[plainCodes.size()];
+            plainCodes.forEach((text, code) -> column.dictionary[code] = text);
+        }
+        return column;
+    }
+
+    /**
+     * Every row as an event, for dumping a file; queries read single columns
+     */
+    public List<UserEvent> readAll() throws IOException {
+        Column timestamps = readColumn(ColumnarFormat.TIMESTAMP_COLUMN);
+        Column userIds = readColumn(ColumnarFormat.USER_ID_COLUMN);
+        Map<String, Column> data = new LinkedHashMap<>();
+        for (String name : columns.keySet()) {
+            if (!name.equals(ColumnarFormat.TIMESTAMP_COLUMN) && !name.equals(ColumnarFormat.USER_ID_COLUMN)) {
+                data.put(name, readColumn(name));
+            }
+        }
+
+        List<UserEvent> events = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (Map.Entry<String, Column> entry : data.entrySet()) {
+                Object value = entry.getValue().value(row);
+                if (value != null) {
+                    fields.put(entry.getKey(), value);
+                }
+            }
+            Long userId = userIds.isPresent(row) ? userIds.getLongs()[row] : null;
+            events.add(new UserEvent(eventType, userId, timestamps.getLongs()[row], fields));
+        }
+        return events;
+    }
+
+    /**
+     * One decoded column. Strings and booleans are int codes into dictionary
+     * (-1 for null); longs and doubles are primitive arrays with a presence mask.
+     */
+    public static final class Column {
+        private final byte type;
+        private final boolean[] present;
+        private long[] longs;
+        private double[] doubles;
+        private int[] codes;
+        private String[] dictionary;
+
+        Column(byte type, int rows) {
+            this.type = type;
+            this.present = new boolean[rows];
+        }
+
+        static Column allNull(int rows) {
+            Column column = new Column(ColumnarFormat.TYPE_STRING, rows);
+            column.codes = new int[rows];
+            Arrays.fill(column.codes, -1);
+            column.dictionary = new String[0];
+            return column;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public boolean isPresent(int row) {
+            return present[row];
+        }
+
+        // Null unless the column holds longs
+        public long[] getLongs() {
+            return longs;
+        }
+
+        // Null unless the column holds doubles
+        public double[] getDoubles() {
+            return doubles;
+        }
+
+        // Null unless the column holds strings or booleans
+        public int[] getCodes() {
+            return codes;
+        }
+
+        public String[] getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * Value of a row as text, for group keys and filters
+         */
+        public String text(int row) {
+            if (!present[row]) {
+                return null;
+            }
+            if (codes != null) {
+                return dictionary[codes[row]];
+            }
+            return longs != null ? String.valueOf(longs[row]) : String.valueOf(doubles[row]);
+        }
+
+        /**
+         * Value of a row in its stored type: Long, Double, Boolean or String
+         */
+        Object value(int row) {
+            if (!present[row]) {
+                return null;
+            }
+            if (type == ColumnarFormat.TYPE_BOOLEAN) {
+                return codes[row] == 1;
+            }
+            if (codes != null) {
+                return dictionary[codes[row]];
+            }
+            return longs != null ? (Object) longs[row] : (Object) doubles[row];
+        }
+    }
+
+    private static final class ColumnMeta {
+        final byte type;
+        final byte encoding;
+        final long offset;
+        final int compressedLength;
+        final int length;
+
+        ColumnMeta(byte type, byte encoding, long offset, int compressedLength, int length) {
+            this.type = type;
+            this.encoding = encoding;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.length = length;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] inflate(ByteBuffer compressed, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array(), 0, compressed.limit());
+            byte[] raw = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IOException("Truncated column chunk");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[(int) ColumnarFormat.readVarLong(in)];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
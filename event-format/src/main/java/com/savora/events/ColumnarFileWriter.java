@@ -0,0 +1,214 @@
+package com.savora.events;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes a batch of events of one type into a complete archive file.
+ * See ColumnarFormat for the layout.
+ */
+public class ColumnarFileWriter {
+
+    private final int compressionLevel;
+
+    public ColumnarFileWriter() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ColumnarFileWriter(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public byte[] write(String eventType, List<UserEvent> events) {
+        List<UserEvent> rows = new ArrayList<>(events);
+        rows.sort(Comparator.comparingLong(UserEvent::getTimestampMillis));
+
+        List<Object[]> columns = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Object[] timestamps = new Object[rows.size()];
+        Object[] userIds = new Object[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            timestamps[i] = rows.get(i).getTimestampMillis();
+            userIds[i] = rows.get(i).getUserId();
+        }
+        names.add(ColumnarFormat.TIMESTAMP_COLUMN);
+        columns.add(timestamps);
+        names.add(ColumnarFormat.USER_ID_COLUMN);
+        columns.add(userIds);
+
+        TreeSet<String> dataNames = new TreeSet<>();
+        rows.forEach(row -> dataNames.addAll(row.getData().keySet()));
+        for (String name : dataNames) {
+            Object[] values = new Object[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                values[i] = rows.get(i).getData().get(name);
+            }
+            names.add(name);
+            columns.add(values);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.writeBytes(ColumnarFormat.MAGIC);
+        ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        ColumnarFormat.writeVarLong(footer, ColumnarFormat.VERSION);
+        writeString(footer, eventType);
+        ColumnarFormat.writeVarLong(footer, rows.size());
+        ColumnarFormat.writeVarLong(footer, ColumnarFormat.zigzag(rows.isEmpty() ? 0 : rows.get(0).getTimestampMillis()));
+        ColumnarFormat.writeVarLong(footer, ColumnarFormat.zigzag(rows.isEmpty() ? 0 : rows.get(rows.size() - 1).getTimestampMillis()));
+        ColumnarFormat.writeVarLong(footer, columns.size());
+
+        for (int c = 0; c < columns.size(); c++) {
+            Object[] values = columns.get(c);
+            byte type = inferType(values);
+            byte encoding;
+            if (names.get(c).equals(ColumnarFormat.TIMESTAMP_COLUMN)) {
+                encoding = ColumnarFormat.ENCODING_DELTA;
+            } else if (type == ColumnarFormat.TYPE_STRING && useDictionary(values)) {
+                encoding = ColumnarFormat.ENCODING_DICTIONARY;
+            } else {
+                encoding = ColumnarFormat.ENCODING_PLAIN;
+            }
+            byte[] raw = encodeColumn(values, type, encoding);
+            byte[] compressed = deflate(raw);
+
+            writeString(footer, names.get(c));
+            footer.write(type);
+            footer.write(encoding);
+            ColumnarFormat.writeVarLong(footer, file.size());
+            ColumnarFormat.writeVarLong(footer, compressed.length);
+            ColumnarFormat.writeVarLong(footer, raw.length);
+            file.writeBytes(compressed);
+        }
+
+        byte[] footerBytes = footer.toByteArray();
+        file.writeBytes(footerBytes);
+        int length = footerBytes.length;
+        file.write(length >>> 24);
+        file.write(length >>> 16);
+        file.write(length >>> 8);
+        file.write(length);
+        file.writeBytes(ColumnarFormat.MAGIC);
+        return file.toByteArray();
+    }
+
+    /**
+     * Narrowest type all present values fit; mixed columns are stored as strings
+     */
+    private static byte inferType(Object[] values) {
+        boolean allLong = true;
+        boolean allNumber = true;
+        boolean allBoolean = true;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            allLong &= value instanceof Long;
+            allNumber &= value instanceof Long || value instanceof Double;
+            allBoolean &= value instanceof Boolean;
+        }
+        if (allLong) {
+            return ColumnarFormat.TYPE_LONG;
+        }
+        if (allNumber) {
+            return ColumnarFormat.TYPE_DOUBLE;
+        }
+        return allBoolean ? ColumnarFormat.TYPE_BOOLEAN : ColumnarFormat.TYPE_STRING;
+    }
+
+    private static boolean useDictionary(Object[] values) {
+        int present = 0;
+        TreeSet<String> distinct = new TreeSet<>();
+        for (Object value : values) {
+            if (value != null) {
+                present++;
+                distinct.add(String.valueOf(value));
+            }
+        }
+        return distinct.size() * 2 <= present;
+    }
+
+    private static byte[] encodeColumn(Object[] values, byte type, byte encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] presence = new byte[(values.length + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                presence[i / 8] |= 1 << (i % 8);
+            }
+        }
+        out.writeBytes(presence);
+
+        Map<String, Integer> dictionary = null;
+        if (encoding == ColumnarFormat.ENCODING_DICTIONARY) {
+            dictionary = new HashMap<>();
+            List<String> entries = new ArrayList<>();
+            for (Object value : values) {
+                if (value != null && dictionary.putIfAbsent(String.valueOf(value), dictionary.size()) == null) {
+                    entries.add(String.valueOf(value));
+                }
+            }
+            ColumnarFormat.writeVarLong(out, entries.size());
+            for (String entry : entries) {
+                writeString(out, entry);
+            }
+        }
+
+        long previous = 0;
+        for (Object value : values) {
+            if (value == null) {
+                continue;
+            }
+            switch (type) {
+                case ColumnarFormat.TYPE_LONG:
+                    long number = (Long) value;
+                    ColumnarFormat.writeVarLong(out, ColumnarFormat.zigzag(encoding == ColumnarFormat.ENCODING_DELTA ? number - previous : number));
+                    previous = number;
+                    break;
+                case ColumnarFormat.TYPE_DOUBLE:
+                    long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) (bits >>> shift));
+                    }
+                    break;
+                case ColumnarFormat.TYPE_BOOLEAN:
+                    out.write((Boolean) value ? 1 : 0);
+                    break;
+                default:
+                    if (dictionary != null) {
+                        ColumnarFormat.writeVarLong(out, dictionary.get(String.valueOf(value)));
+                    } else {
+                        writeString(out, String.valueOf(value));
+                    }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        ColumnarFormat.writeVarLong(out, utf8.length);
+        out.writeBytes(utf8);
+    }
+}
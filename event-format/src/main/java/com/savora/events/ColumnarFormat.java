@@ -0,0 +1,70 @@
+package com.savora.events;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of an archive file (.svc), one event type and UTC date per file:
+ *
+ *   "SVCF" | column chunks | footer | int32 footer length | "SVCF"
+ *
+ * Each column chunk is deflate-compressed and holds a presence bitmap (one
+ * bit per row) followed by the values of the present rows. The footer lists
+ * the event type, row count, min/max timestamp and, per column, its name,
+ * type, encoding and chunk offset/lengths, so a reader can fetch only the
+ * columns it needs. Rows are sorted by timestamp.
+ *
+ * Encodings: PLAIN longs are zigzag varints, DELTA longs zigzag varints of
+ * the difference to the previous present value, doubles 8 bytes big-endian,
+ * booleans one byte, PLAIN strings varint length + UTF-8, DICTIONARY strings
+ * a varint-counted dictionary followed by one varint index per value.
+ */
+public final class ColumnarFormat {
+
+    public static final byte[] MAGIC = {'S', 'V', 'C', 'F'};
+    public static final int VERSION = 1;
+    public static final String FILE_SUFFIX = ".svc";
+
+    public static final String TIMESTAMP_COLUMN = "timestamp";
+    public static final String USER_ID_COLUMN = "userId";
+
+    public static final byte TYPE_LONG = 1;
+    public static final byte TYPE_DOUBLE = 2;
+    public static final byte TYPE_BOOLEAN = 3;
+    public static final byte TYPE_STRING = 4;
+
+    public static final byte ENCODING_PLAIN = 0;
+    public static final byte ENCODING_DELTA = 1;
+    public static final byte ENCODING_DICTIONARY = 2;
+
+    private ColumnarFormat() {
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,129 @@
+package com.savora.events;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads user-events values in either form the api's EventCodec writes:
+ * flat JSON, or BinaryEventCodec's 0x00 + schema id + binary fields.
+ * eventId and sessionId end up in the data map next to the schema fields.
+ */
+public class EventDecoder {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final EventSchemaRegistry registry;
+    private final BinaryEventCodec binaryCodec;
+
+    public EventDecoder(EventSchemaRegistry registry) {
+        this.registry = registry;
+        this.binaryCodec = new BinaryEventCodec(registry);
+    }
+
+    /**
+     * @param schemaDir directory of event-schemas/*.json; may be missing if
+     *                  the api only publishes JSON
+     */
+    public EventDecoder(Path schemaDir) throws IOException {
+        this(EventSchemaRegistry.fromDirectory(schemaDir));
+    }
+
+    public int getSchemaCount() {
+        return registry.size();
+    }
+
+    /**
+     * @param fallbackTimestamp used when the event carries no timestamp of its own,
+     *                          normally the Kafka record timestamp
+     */
+    public UserEvent decode(byte[] value, long fallbackTimestamp) throws IOException {
+        if (BinaryEventCodec.isBinary(value)) {
+            return decodeBinary(value, fallbackTimestamp);
+        }
+        return decodeJson(objectMapper.readTree(value), fallbackTimestamp);
+    }
+
+    private UserEvent decodeJson(JsonNode event, long fallbackTimestamp) {
+        String eventType = text(event.get("eventType"));
+        if (eventType == null) {
+            throw new IllegalArgumentException("Event has no eventType");
+        }
+        JsonNode userId = event.get("userId");
+        long timestamp = parseTimestamp(text(event.get("timestamp")), fallbackTimestamp);
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = event.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            if (name.equals("eventType") || name.equals("userId") || name.equals("timestamp")) {
+                continue;
+            }
+            if (name.equals("data") && field.getValue().isObject()) {
+                field.getValue().fields().forEachRemaining(nested -> put(data, nested.getKey(), nested.getValue()));
+            } else {
+                put(data, name, field.getValue());
+            }
+        }
+        Long user = userId != null && userId.canConvertToLong() ? userId.asLong() : null;
+        return new UserEvent(eventType, user, timestamp, data);
+    }
+
+    private UserEvent decodeBinary(byte[] value, long fallbackTimestamp) {
+        BinaryEvent event = binaryCodec.decode(value);
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (event.getEventId() != null) {
+            data.put("eventId", event.getEventId());
+        }
+        if (event.getSessionId() != null) {
+            data.put("sessionId", event.getSessionId());
+        }
+        data.putAll(event.getData());
+        long timestamp = event.getTimestampMillis() != null ? event.getTimestampMillis() : fallbackTimestamp;
+        return new UserEvent(event.getEventType(), event.getUserId(), timestamp, data);
+    }
+
+    private static void put(Map<String, Object> data, String name, JsonNode value) {
+        if (value == null || value.isNull()) {
+            return;
+        }
+        if (value.isIntegralNumber() && value.canConvertToLong()) {
+            data.put(name, value.asLong());
+        } else if (value.isNumber()) {
+            data.put(name, value.asDouble());
+        } else if (value.isBoolean()) {
+            data.put(name, value.asBoolean());
+        } else if (value.isTextual()) {
+            data.put(name, value.asText());
+        } else {
+            data.put(name, value.toString());
+        }
+    }
+
+    private static long parseTimestamp(String timestamp, long fallback) {
+        if (timestamp == null) {
+            return fallback;
+        }
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return fallback;
+            }
+        }
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+}
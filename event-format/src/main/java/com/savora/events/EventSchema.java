@@ -0,0 +1,92 @@
+package com.savora.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Versioned field layout for one event type, as stored in the schema registry.
+ * Field types: long, double, boolean, string.
+ */
+public class EventSchema {
+
+    private static final Pattern EVENT_TYPE = Pattern.compile("[A-Z][A-Z0-9_]{0,63}");
+
+    private int id;
+    private String eventType;
+    private int version;
+    private List<Field> fields = new ArrayList<>();
+
+    /**
+     * Event types are upper snake case, since they become archive directory names
+     */
+    public static boolean isValidEventType(String eventType) {
+        return eventType != null && EVENT_TYPE.matcher(eventType).matches();
+    }
+
+    // Default constructor
+    public EventSchema() {
+    }
+
+    // Getters and setters
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<Field> fields) {
+        this.fields = fields;
+    }
+
+    public static class Field {
+        private String name;
+        private String type;
+
+        public Field() {
+        }
+
+        public Field(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.savora.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * File-backed stand-in for a schema registry. Every *.json file of the
+ * api's event-schemas holds one EventSchema; ids must be unique across all
+ * files. Writers use the highest version of a type, readers resolve any id
+ * they find in a message, so old messages stay readable after a bump.
+ */
+public class EventSchemaRegistry {
+
+    private static final Set<String> FIELD_TYPES = Set.of("long", "double", "boolean", "string");
+
+    private final Map<Integer, EventSchema> byId = new HashMap<>();
+    private final Map<String, EventSchema> latestByType = new HashMap<>();
+
+    public EventSchemaRegistry(Collection<EventSchema> schemas) {
+        schemas.forEach(this::register);
+    }
+
+    /**
+     * Load every *.json schema in a directory; a missing directory gives an
+     * empty registry, for deployments that only publish JSON events
+     */
+    public static EventSchemaRegistry fromDirectory(Path directory) throws IOException {
+        List<EventSchema> schemas = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            ObjectMapper objectMapper = new ObjectMapper();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+                for (Path file : files) {
+                    schemas.add(objectMapper.readValue(file.toFile(), EventSchema.class));
+                }
+            }
+        }
+        return new EventSchemaRegistry(schemas);
+    }
+
+    private void register(EventSchema schema) {
+        for (EventSchema.Field field : schema.getFields()) {
+            if (!FIELD_TYPES.contains(field.getType())) {
+                throw new IllegalStateException("Schema " + schema.getId() + " field " + field.getName()
+                        + " has unsupported type " + field.getType() + "; expected one of " + FIELD_TYPES);
+            }
+        }
+        EventSchema existing = byId.putIfAbsent(schema.getId(), schema);
+        if (existing != null) {
+            throw new IllegalStateException("Duplicate event schema id " + schema.getId() + " for "
+                    + Arrays.asList(existing.getEventType(), schema.getEventType()));
+        }
+        latestByType.merge(schema.getEventType(), schema,
+                (current, candidate) -> candidate.getVersion() > current.getVersion() ? candidate : current);
+    }
+
+    public EventSchema getById(int id) {
+        return byId.get(id);
+    }
+
+    public EventSchema getLatest(String eventType) {
+        return eventType == null ? null : latestByType.get(eventType);
+    }
+
+    public Collection<EventSchema> getAll() {
+        return byId.values();
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
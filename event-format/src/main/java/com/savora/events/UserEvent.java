@@ -0,0 +1,40 @@
+package com.savora.events;
+
+import java.util.Map;
+
+/**
+ * One decoded event from the user-events topic, as its consumers see it
+ */
+public class UserEvent {
+
+    private final String eventType;
+    private final Long userId;
+    private final long timestampMillis;
+    private final Map<String, Object> data;
+
+    public UserEvent(String eventType, Long userId, long timestampMillis, Map<String, Object> data) {
+        this.eventType = eventType;
+        this.userId = userId;
+        this.timestampMillis = timestampMillis;
+        this.data = data;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Event-specific fields; values are Long, Double, Boolean or String
+     */
+    public Map<String, Object> getData() {
+        return data;
+    }
+}
@@ -0,0 +1,102 @@
+package com.savora.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryEventCodecTest {
+
+    private final EventSchemaRegistry registry = new EventSchemaRegistry(List.of(
+            schema(10, "RESTAURANT_VIEWED", 1, new EventSchema.Field("restaurantId", "long")),
+            schema(11, "RESTAURANT_VIEWED", 2, new EventSchema.Field("restaurantId", "long"),
+                    new EventSchema.Field("rating", "double"), new EventSchema.Field("fromSearch", "boolean"),
+                    new EventSchema.Field("source", "string"))));
+    private final BinaryEventCodec codec = new BinaryEventCodec(registry);
+
+    @Test
+    void everyFieldTypeRoundTripsWithTheLatestVersion() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("restaurantId", -42L);
+        data.put("rating", 4.5);
+        data.put("fromSearch", true);
+        data.put("source", "héllo");
+        BinaryEvent event = new BinaryEvent("RESTAURANT_VIEWED", 7L, 1_700_000_000_123L, "e-1", "s-1", data);
+
+        byte[] encoded = codec.encode(event);
+        assertTrue(BinaryEventCodec.isBinary(encoded));
+        BinaryEvent decoded = codec.decode(encoded);
+
+        assertEquals("RESTAURANT_VIEWED", decoded.getEventType());
+        assertEquals(7L, decoded.getUserId());
+        assertEquals(1_700_000_000_123L, decoded.getTimestampMillis());
+        assertEquals("e-1", decoded.getEventId());
+        assertEquals("s-1", decoded.getSessionId());
+        assertEquals(data, decoded.getData());
+    }
+
+    @Test
+    void messagesWrittenWithAnOlderVersionStayReadable() {
+        EventSchemaRegistry v1Only = new EventSchemaRegistry(List.of(
+                schema(10, "RESTAURANT_VIEWED", 1, new EventSchema.Field("restaurantId", "long"))));
+        byte[] written = new BinaryEventCodec(v1Only).encode(
+                new BinaryEvent("RESTAURANT_VIEWED", null, null, null, null, Map.of("restaurantId", 12L)));
+
+        BinaryEvent decoded = codec.decode(written);
+
+        assertNull(decoded.getUserId());
+        assertNull(decoded.getTimestampMillis());
+        assertEquals(Map.of("restaurantId", 12L), decoded.getData());
+    }
+
+    @Test
+    void eventsThatDoNotFitTheirSchemaAreNotEncoded() {
+        assertNull(codec.encode(new BinaryEvent("UNKNOWN", null, null, null, null, Map.of())));
+        assertNull(codec.encode(new BinaryEvent("RESTAURANT_VIEWED", null, null, null, null, Map.of("other", 1L))));
+        assertNull(codec.encode(new BinaryEvent("RESTAURANT_VIEWED", null, null, null, null, Map.of("restaurantId", "12"))));
+    }
+
+    @Test
+    void truncatedOrUnknownMessagesAreRejected() {
+        byte[] encoded = codec.encode(new BinaryEvent("RESTAURANT_VIEWED", 7L, 1L, "e-1", null,
+                Map.of("restaurantId", 12L, "source", "home")));
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(Arrays.copyOf(encoded, encoded.length - 2)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(new byte[] {BinaryEventCodec.MAGIC, 99}));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("{}".getBytes()));
+    }
+
+    @Test
+    void decoderFlattensBinaryAndJsonEventsAlike() throws Exception {
+        EventDecoder decoder = new EventDecoder(registry);
+        byte[] binary = codec.encode(new BinaryEvent("RESTAURANT_VIEWED", 7L, null, "e-1", null,
+                Map.of("restaurantId", 12L)));
+        byte[] json = "{\"eventType\":\"RESTAURANT_VIEWED\",\"userId\":7,\"eventId\":\"e-1\",\"data\":{\"restaurantId\":12}}"
+                .getBytes();
+
+        UserEvent fromBinary = decoder.decode(binary, 5L);
+        UserEvent fromJson = decoder.decode(json, 5L);
+
+        assertEquals(fromJson.getEventType(), fromBinary.getEventType());
+        assertEquals(fromJson.getUserId(), fromBinary.getUserId());
+        assertEquals(5L, fromBinary.getTimestampMillis());
+        assertEquals(fromJson.getData(), fromBinary.getData());
+    }
+
+    private static EventSchema schema(int id, String eventType, int version, EventSchema.Field... fields) {
+        EventSchema schema = new EventSchema();
+        schema.setId(id);
+        schema.setEventType(eventType);
+        schema.setVersion(version);
+        schema.setFields(Arrays.asList(fields));
+        return schema;
+    }
+}
@@ -0,0 +1,99 @@
+package com.savora.events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarEventFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenEventsReadBackInTimestampOrder() throws IOException {
+        List<UserEvent> events = new ArrayList<>();
+        events.add(event(7L, 3_000, "restaurantId", 12L, "source", "search", "rating", 4.5, "fromSearch", true));
+        events.add(event(null, 1_000, "restaurantId", 11L, "source", "feed", "rating", 3.0, "fromSearch", false));
+        events.add(event(8L, 2_000, "restaurantId", 12L, "source", "search"));
+
+        ColumnarEventFile file = open(new ColumnarFileWriter().write("RESTAURANT_VIEWED", events));
+        List<UserEvent> read = file.readAll();
+
+        assertEquals("RESTAURANT_VIEWED", file.getEventType());
+        assertEquals(3, file.getRowCount());
+        assertEquals(1_000, file.getMinTimestamp());
+        assertEquals(3_000, file.getMaxTimestamp());
+        assertEquals(3, read.size());
+        assertEquals(1_000, read.get(0).getTimestampMillis());
+        assertNull(read.get(0).getUserId());
+        assertEquals(Map.of("restaurantId", 11L, "source", "feed", "rating", 3.0, "fromSearch", false),
+                read.get(0).getData());
+        assertEquals(8L, read.get(1).getUserId());
+        assertEquals(Map.of("restaurantId", 12L, "source", "search"), read.get(1).getData());
+        assertEquals(Map.of("restaurantId", 12L, "source", "search", "rating", 4.5, "fromSearch", true),
+                read.get(2).getData());
+    }
+
+    @Test
+    void columnsDecodeToCodesAndPrimitiveArrays() throws IOException {
+        List<UserEvent> events = new ArrayList<>();
+        events.add(event(1L, 100, "source", "search", "rating", 2.5));
+        events.add(event(2L, 200, "source", "search"));
+        events.add(event(3L, 300, "source", "feed", "rating", 5.0));
+
+        ColumnarEventFile file = open(new ColumnarFileWriter().write("RESTAURANT_VIEWED", events));
+
+        assertArrayEquals(new long[] {100, 200, 300}, file.readColumn(ColumnarFormat.TIMESTAMP_COLUMN).getLongs());
+        ColumnarEventFile.Column source = file.readColumn("source");
+        assertEquals("search", source.getDictionary()[source.getCodes()[1]]);
+        assertEquals("feed", source.text(2));
+        ColumnarEventFile.Column rating = file.readColumn("rating");
+        assertFalse(rating.isPresent(1));
+        assertNull(rating.text(1));
+        assertEquals(5.0, rating.getDoubles()[2]);
+
+        ColumnarEventFile.Column missing = file.readColumn("nope");
+        assertFalse(file.hasColumn("nope"));
+        assertNull(missing.text(0));
+        assertEquals(-1, missing.getCodes()[0]);
+    }
+
+    @Test
+    void fileWithoutTheTrailerIsRejected() throws IOException {
+        byte[] bytes = new ColumnarFileWriter().write("RESTAURANT_VIEWED", List.of(event(1L, 100)));
+        Path truncated = directory.resolve("truncated" + ColumnarFormat.FILE_SUFFIX);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 2));
+
+        IOException e = assertThrows(IOException.class, () -> ColumnarEventFile.open(truncated));
+        assertTrue(e.getMessage().contains("not an archive file"));
+    }
+
+    private ColumnarEventFile open(byte[] bytes) throws IOException {
+        Path path = Files.createTempFile(directory, "part-", ColumnarFormat.FILE_SUFFIX);
+        Files.write(path, bytes);
+        return ColumnarEventFile.open(path);
+    }
+
+    private static UserEvent event(Long userId, long timestamp, Object... fields) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < fields.length; i += 2) {
+            data.put((String) fields[i], fields[i + 1]);
+        }
+        return new UserEvent("RESTAURANT_VIEWED", userId, timestamp, data);
+    }
+}
@@ -1,5 +1,7 @@
 #!/usr/bin/env python3
+import io
 import os
+import csv
 import json
 import argparse
 import subprocess
@@ -11,6 +13,7 @@ from collections import defaultdict, Counter
 import psycopg2
 from psycopg2 import sql
 from psycopg2.extras import execute_values
+import requests
 
 # Configuration
 HDFS_URL = os.getenv('HDFS_URL', 'http://namenode:9870')
@@ -26,6 +29,12 @@ PG_DB = os.getenv('PG_DB', 'savora')
 PG_USER = os.getenv('PG_USER', 'user')
 PG_PASSWORD = os.getenv('PG_PASSWORD', 'password')
 
+# Savora API: with both set, --all replaces every user's recommendations in one bulk upload
+SAVORA_API_URL = os.getenv('SAVORA_API_URL', '')
+SAVORA_API_TOKEN = os.getenv('SAVORA_API_TOKEN', '')  # JWT of an admin user
+RECOMMENDATION_COLUMNS = ['user_id', 'restaurant_name', 'restaurant_categories', 'rating',
+                          'review_count', 'price_range', 'score', 'recommendation_rank']
+
 def get_db_connection():
     """Create a connection to the PostgreSQL database"""
     try:
@@ -76,40 +85,46 @@ def create_recommendations_table():
     finally:
         conn.close()
 
+def recommendation_rows(user_id, recommendations):
+    """The top 6 recommendations as rows in RECOMMENDATION_COLUMNS order"""
+    rows = []
+    top_recommendations = recommendations.head(6)
+    for rank, (_, restaurant) in enumerate(top_recommendations.iterrows(), 1):
+        rows.append((
+            int(user_id),
+            restaurant.get('Restaurant Name', ''),
+            restaurant.get('Categories', ''),
+            float(restaurant.get('Rating', 0)),
+            int(restaurant.get('Review Count', 0)),
+            restaurant.get('Price Range', ''),
+            float(restaurant.get('Score', 0)) if 'Score' in restaurant else float(restaurant.get('Rating', 0)),
+            rank
+        ))
+    return rows
+
 def save_recommendations_to_db(user_id, recommendations):
-    """Save the top 6 recommendations to the database"""
+    """Save the top 6 recommendations to the database, in the model version readers currently see"""
     conn = get_db_connection()
     if not conn:
         return False
     
     try:
-        # Get the top 6 recommendations
-        top_recommendations = recommendations.head(6)
-        
-        # Prepare data for insertion
-        data = []
-        for rank, (_, restaurant) in enumerate(top_recommendations.iterrows(), 1):
-            record = (
-                int(user_id),
-                restaurant.get('Restaurant Name', ''),
-                restaurant.get('Categories', ''),
-                float(restaurant.get('Rating', 0)),
-                int(restaurant.get('Review Count', 0)),
-                restaurant.get('Price Range', ''),
-                float(restaurant.get('Score', 0)) if 'Score' in restaurant else float(restaurant.get('Rating', 0)),
-                rank
-            )
-            data.append(record)
+        data = recommendation_rows(user_id, recommendations)
         
-        # Delete existing recommendations for this user
         with conn.cursor() as cur:
-            cur.execute("DELETE FROM user_recommendations WHERE user_id = %s", (int(user_id),))
+            cur.execute("SELECT active_version FROM recommendation_model WHERE id = 1")
+            model_version = cur.fetchone()[0]
+            data = [row + (model_version,) for row in data]
+
+            # Delete existing recommendations for this user
+            cur.execute("DELETE FROM user_recommendations WHERE user_id = %s AND model_version = %s",
+                        (int(user_id), model_version))
             
             # Insert new recommendations
             insert_query = """
             INSERT INTO user_recommendations (
                 user_id, restaurant_name, restaurant_categories, 
-                rating, review_count, price_range, score, recommendation_rank
+                rating, review_count, price_range, score, recommendation_rank, model_version
             ) VALUES %s
             """
             execute_values(cur, insert_query, data)
@@ -124,6 +139,30 @@ def save_recommendations_to_db(user_id, recommendations):
     finally:
         conn.close()
 
+def upload_all_recommendations(rows):
+    """Replace every user's recommendations through the API, which swaps the whole set in atomically"""
+    buffer = io.StringIO()
+    writer = csv.writer(buffer)
+    writer.writerow(RECOMMENDATION_COLUMNS)
+    writer.writerows(rows)
+    try:
+        response = requests.put(
+            f"{SAVORA_API_URL.rstrip('/')}/api/admin/recommendations",
+            data=buffer.getvalue().encode('utf-8'),
+            headers={
+                'Content-Type': 'text/csv; charset=utf-8',
+                'Authorization': f"Bearer {SAVORA_API_TOKEN}"
+            },
+            timeout=600
+        )
+        response.raise_for_status()
+        result = response.json()
+        print(f"Uploaded {result['rows']} recommendations as model version {result['modelVersion']}")
+        return True
+    except Exception as e:
+        print(f"Error uploading recommendations: {e}")
+        return False
+
 def run_hdfs_command(cmd):
     """Run an HDFS command and return the output"""
     print(f"Running: {cmd}")
@@ -607,6 +646,11 @@ def generate_all_user_recommendations():
         print("No users found with event data")
         return
     
+    # One upload at the end instead of a delete and insert per user, so readers never see a partial set
+    bulk_upload = bool(SAVORA_API_URL and SAVORA_API_TOKEN)
+    all_rows = []
+    all_recommendations = {}
+    
     results = []
     for user_id in users:
         print(f"Generating recommendations for user {user_id}")
@@ -618,7 +662,11 @@ def generate_all_user_recommendations():
         recommendations = generate_recommendations(user_analysis, restaurant_df)
         
         # Save to PostgreSQL database
-        save_recommendations_to_db(user_id, recommendations)
+        if bulk_upload:
+            all_rows.extend(recommendation_rows(user_id, recommendations))
+            all_recommendations[user_id] = recommendations.head(6)
+        else:
+            save_recommendations_to_db(user_id, recommendations)
         
         # Generate visualizations
         visualization_paths = generate_visualizations(user_id, user_analysis, recommendations)
@@ -631,6 +679,11 @@ def generate_all_user_recommendations():
             'output_file': output_file
         })
     
+    if bulk_upload and not upload_all_recommendations(all_rows):
+        print("Bulk upload failed, saving recommendations user by user")
+        for user_id, recommendations in all_recommendations.items():
+            save_recommendations_to_db(user_id, recommendations)
+    
     # Generate a summary file
     summary_file = f"{OUTPUT_DIR}/recommendation_summary_{datetime.now().strftime('%Y%m%d_%H%M%S')}.txt"
     with open(summary_file, 'w') as f:
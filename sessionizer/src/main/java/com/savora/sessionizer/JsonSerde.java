@@ -0,0 +1,51 @@
+package com.savora.sessionizer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+
+/**
+ * Jackson serde for state store and output values
+ */
+public class JsonSerde<T> implements Serde<T> {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Class<T> type;
+
+    public JsonSerde(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return (topic, value) -> {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return objectMapper.writeValueAsBytes(value);
+            } catch (IOException e) {
+                throw new SerializationException("Cannot serialize " + type.getSimpleName(), e);
+            }
+        };
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        return (topic, bytes) -> {
+            if (bytes == null) {
+                return null;
+            }
+            try {
+                return objectMapper.readValue(bytes, type);
+            } catch (IOException e) {
+                throw new SerializationException("Cannot deserialize " + type.getSimpleName(), e);
+            }
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package com.savora.sessionizer;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.savora.events.UserEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregate of one user session; the value of both the session store and
+ * the user-sessions topic. Lists are distinct, in first-seen order and
+ * capped at MAX_ITEMS so a runaway session cannot grow the store unboundedly.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SessionSummary {
+
+    static final int MAX_ITEMS = 50;
+
+    private String key;
+    private Long userId;
+    private String sessionId;
+    private long start;
+    private long end;
+    private int eventCount;
+    private Map<String, Integer> eventCounts = new TreeMap<>();
+    private List<String> cuisines = new ArrayList<>();
+    private List<String> dietaryPreferences = new ArrayList<>();
+    private List<String> restaurantsViewed = new ArrayList<>();
+    private List<String> restaurantsBookmarked = new ArrayList<>();
+    private List<String> searches = new ArrayList<>();
+
+    public SessionSummary() {
+    }
+
+    public SessionSummary add(UserEvent event) {
+        long timestamp = event.getTimestampMillis();
+        if (eventCount == 0 || timestamp < start) {
+            start = timestamp;
+        }
+        if (eventCount == 0 || timestamp > end) {
+            end = timestamp;
+        }
+        eventCount++;
+        eventCounts.merge(event.getEventType(), 1, Integer::sum);
+        if (userId == null) {
+            userId = event.getUserId();
+        }
+        Map<String, Object> data = event.getData();
+        if (sessionId == null && data.get("sessionId") != null) {
+            sessionId = String.valueOf(data.get("sessionId"));
+        }
+
+        switch (event.getEventType()) {
+            case "CUISINE_SELECTED":
+                addDistinct(cuisines, data.get("cuisineType"));
+                break;
+            case "DIETARY_PREFERENCE_SELECTED":
+                addDistinct(dietaryPreferences, data.get("preference"));
+                break;
+            case "RESTAURANT_VIEWED":
+                addDistinct(restaurantsViewed, restaurant(data));
+                break;
+            case "RESTAURANT_BOOKMARKED":
+                if (!Boolean.FALSE.equals(data.get("bookmarked"))) {
+                    addDistinct(restaurantsBookmarked, restaurant(data));
+                }
+                break;
+            case "SEARCH_PERFORMED":
+                addDistinct(searches, data.get("query") != null ? data.get("query") : data.get("location"));
+                break;
+            default:
+                break;
+        }
+        return this;
+    }
+
+    /**
+     * Combine two sessions that an event has bridged
+     */
+    public SessionSummary merge(SessionSummary other) {
+        // Streams merges into a fresh initializer value, which has no events yet
+        if (other.eventCount == 0) {
+            return this;
+        }
+        if (eventCount == 0) {
+            return other;
+        }
+        SessionSummary merged = new SessionSummary();
+        SessionSummary first = start <= other.start ? this : other;
+        SessionSummary second = first == this ? other : this;
+        merged.key = first.key != null ? first.key : second.key;
+        merged.userId = first.userId != null ? first.userId : second.userId;
+        merged.sessionId = first.sessionId != null ? first.sessionId : second.sessionId;
+        merged.start = Math.min(start, other.start);
+        merged.end = Math.max(end, other.end);
+        merged.eventCount = eventCount + other.eventCount;
+        eventCounts.forEach((type, count) -> merged.eventCounts.merge(type, count, Integer::sum));
+        other.eventCounts.forEach((type, count) -> merged.eventCounts.merge(type, count, Integer::sum));
+        mergeDistinct(merged.cuisines, first.cuisines, second.cuisines);
+        mergeDistinct(merged.dietaryPreferences, first.dietaryPreferences, second.dietaryPreferences);
+        mergeDistinct(merged.restaurantsViewed, first.restaurantsViewed, second.restaurantsViewed);
+        mergeDistinct(merged.restaurantsBookmarked, first.restaurantsBookmarked, second.restaurantsBookmarked);
+        mergeDistinct(merged.searches, first.searches, second.searches);
+        return merged;
+    }
+
+    private static Object restaurant(Map<String, Object> data) {
+        return data.get("restaurantName") != null ? data.get("restaurantName") : data.get("restaurantId");
+    }
+
+    private static void addDistinct(List<String> list, Object value) {
+        if (value != null && list.size() < MAX_ITEMS && !list.contains(String.valueOf(value))) {
+            list.add(String.valueOf(value));
+        }
+    }
+
+    private static void mergeDistinct(List<String> target, List<String> first, List<String> second) {
+        first.forEach(value -> addDistinct(target, value));
+        second.forEach(value -> addDistinct(target, value));
+    }
+
+    // Derived values, written to the output topic for consumers' convenience
+    public String getSessionStart() {
+        return Instant.ofEpochMilli(start).toString();
+    }
+
+    public String getSessionEnd() {
+        return Instant.ofEpochMilli(end).toString();
+    }
+
+    public long getDurationSeconds() {
+        return (end - start) / 1000;
+    }
+
+    // Getters and setters
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public void setEnd(long end) {
+        this.end = end;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(int eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public Map<String, Integer> getEventCounts() {
+        return eventCounts;
+    }
+
+    public void setEventCounts(Map<String, Integer> eventCounts) {
+        this.eventCounts = new TreeMap<>(eventCounts);
+    }
+
+    public List<String> getCuisines() {
+        return cuisines;
+    }
+
+    public void setCuisines(List<String> cuisines) {
+        this.cuisines = cuisines;
+    }
+
+    public List<String> getDietaryPreferences() {
+        return dietaryPreferences;
+    }
+
+    public void setDietaryPreferences(List<String> dietaryPreferences) {
+        this.dietaryPreferences = dietaryPreferences;
+    }
+
+    public List<String> getRestaurantsViewed() {
+        return restaurantsViewed;
+    }
+
+    public void setRestaurantsViewed(List<String> restaurantsViewed) {
+        this.restaurantsViewed = restaurantsViewed;
+    }
+
+    public List<String> getRestaurantsBookmarked() {
+        return restaurantsBookmarked;
+    }
+
+    public void setRestaurantsBookmarked(List<String> restaurantsBookmarked) {
+        this.restaurantsBookmarked = restaurantsBookmarked;
+    }
+
+    public List<String> getSearches() {
+        return searches;
+    }
+
+    public void setSearches(List<String> searches) {
+        this.searches = searches;
+    }
+}
@@ -0,0 +1,148 @@
+package com.savora.sessionizer;
+
+import com.savora.events.EventDecoder;
+import com.savora.events.UserEvent;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.SessionWindows;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.ValueTransformerWithKey;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.state.SessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Kafka Streams job that turns user-events into one summary per session.
+ *
+ * The api keys every event by user ("u:<userId>", or "s:<sessionId>" for
+ * anonymous users), so each user's events are already on one partition in
+ * order and are grouped without a repartition topic. Records with any other
+ * key (written before user keying, or with neither id) are skipped.
+ *
+ * A session closes after SESSION_GAP_MS without events, by Kafka record time.
+ * Its summary goes to user-sessions once stream time on the partition has
+ * passed the gap plus SESSION_GRACE_MS, i.e. when later events arrive, so
+ * on a quiet partition the last sessions are emitted late. The summary's
+ * start, end and duration are the window's bounds, so they agree with the
+ * gap that closed it; client event timestamps can be skewed or replayed
+ * from the api's spill log long after the fact.
+ */
+public class Sessionizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(Sessionizer.class);
+
+    static final String STORE_NAME = "user-sessions-store";
+
+    public static Topology buildTopology(SessionizerConfig config, EventDecoder decoder) {
+        JsonSerde<SessionSummary> summarySerde = new JsonSerde<>(SessionSummary.class);
+        StreamsBuilder builder = new StreamsBuilder();
+
+        builder.stream(config.getInputTopic(), Consumed.with(Serdes.String(), Serdes.ByteArray()))
+                .filter((key, value) -> value != null && isUserKey(key))
+                .transformValues(() -> new DecodeTransformer(decoder))
+                .filter((key, event) -> event != null)
+                // Key unchanged, so no repartition topic and no serde needed for the events
+                .groupByKey()
+                .windowedBy(SessionWindows.ofInactivityGapAndGrace(
+                        Duration.ofMillis(config.getInactivityGapMs()), Duration.ofMillis(config.getGraceMs())))
+                .aggregate(
+                        SessionSummary::new,
+                        (key, event, summary) -> summary.add(event),
+                        (key, left, right) -> left.merge(right),
+                        Materialized.<String, SessionSummary, SessionStore<Bytes, byte[]>>as(STORE_NAME)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(summarySerde))
+                // Emit each session once, when it can no longer change
+                .suppress(Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()))
+                .toStream()
+                .filter((window, summary) -> summary != null)
+                .map((Windowed<String> window, SessionSummary summary) -> {
+                    summary.setKey(window.key());
+                    summary.setStart(window.window().start());
+                    summary.setEnd(window.window().end());
+                    return KeyValue.pair(window.key(), summary);
+                })
+                .to(config.getOutputTopic(), Produced.with(Serdes.String(), summarySerde));
+        return builder.build();
+    }
+
+    static boolean isUserKey(String key) {
+        return key != null && (key.startsWith("u:") || key.startsWith("s:"));
+    }
+
+    /**
+     * Decodes values, falling back to the record timestamp for events without one
+     */
+    private static final class DecodeTransformer implements ValueTransformerWithKey<String, byte[], UserEvent> {
+        private final EventDecoder decoder;
+        private ProcessorContext context;
+
+        DecodeTransformer(EventDecoder decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        public void init(ProcessorContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public UserEvent transform(String key, byte[] value) {
+            try {
+                return decoder.decode(value, context.timestamp());
+            } catch (Exception e) {
+                logger.warn("Skipping unreadable event at {}@{}: {}", context.partition(), context.offset(), e.getMessage());
+                return null;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SessionizerConfig config = SessionizerConfig.fromEnvironment();
+        EventDecoder decoder = new EventDecoder(Paths.get(config.getSchemaDir()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, config.getApplicationId());
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        props.put(StreamsConfig.STATE_DIR_CONFIG, config.getStateDir());
+        // At-least-once (the default): exactly-once needs a replicated transaction log,
+        // which the single-broker compose setup cannot provide
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.AT_LEAST_ONCE);
+        // Sessions are a real-time view: start from new events, not the topic's history
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG), "latest");
+
+        Topology topology = buildTopology(config, decoder);
+        logger.info("Sessionizing {} into {} (gap {} ms)\n{}", config.getInputTopic(), config.getOutputTopic(),
+                config.getInactivityGapMs(), topology.describe());
+
+        KafkaStreams streams = new KafkaStreams(topology, props);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            streams.close(Duration.ofSeconds(30));
+            stopped.countDown();
+        }));
+        streams.start();
+        stopped.await();
+    }
+}
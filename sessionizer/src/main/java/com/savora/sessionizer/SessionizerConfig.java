@@ -0,0 +1,65 @@
+package com.savora.sessionizer;
+
+import java.util.Map;
+
+/**
+ * Settings read from the environment, named like the archiver's
+ */
+public class SessionizerConfig {
+
+    private final Map<String, String> env;
+
+    public SessionizerConfig(Map<String, String> env) {
+        this.env = env;
+    }
+
+    public static SessionizerConfig fromEnvironment() {
+        return new SessionizerConfig(System.getenv());
+    }
+
+    public String getKafkaBrokers() {
+        return get("KAFKA_BROKERS", "kafka:9093");
+    }
+
+    public String getInputTopic() {
+        return get("KAFKA_TOPIC", "user-events");
+    }
+
+    public String getOutputTopic() {
+        return get("SESSION_TOPIC", "user-sessions");
+    }
+
+    /**
+     * Kafka Streams application id: consumer group and prefix of the internal topics
+     */
+    public String getApplicationId() {
+        return get("APPLICATION_ID", "savora-sessionizer");
+    }
+
+    public String getStateDir() {
+        return get("STATE_DIR", "/tmp/savora-sessionizer");
+    }
+
+    public String getSchemaDir() {
+        return get("EVENT_SCHEMA_DIR", "../api/src/main/resources/event-schemas");
+    }
+
+    /**
+     * A session ends after this long without an event from the user
+     */
+    public long getInactivityGapMs() {
+        return Long.parseLong(get("SESSION_GAP_MS", "1800000"));
+    }
+
+    /**
+     * How late an event may arrive and still join its session
+     */
+    public long getGraceMs() {
+        return Long.parseLong(get("SESSION_GRACE_MS", "60000"));
+    }
+
+    private String get(String name, String defaultValue) {
+        String value = env.get(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,171 @@
+package com.savora.sessionizer;
+
+import com.savora.events.EventDecoder;
+import com.savora.events.EventSchemaRegistry;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionizerTest {
+
+    private static final long GAP_MS = 60_000;
+    private static final long GRACE_MS = 60_000;
+    // Offsets in the tests are from here; session store lookups at times below zero fail
+    private static final long BASE = Instant.parse("2024-03-02T10:00:00Z").toEpochMilli();
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, byte[]> events;
+    private TestOutputTopic<String, SessionSummary> sessions;
+
+    @BeforeEach
+    void setUp() {
+        SessionizerConfig config = new SessionizerConfig(Map.of(
+                "SESSION_GAP_MS", String.valueOf(GAP_MS),
+                "SESSION_GRACE_MS", String.valueOf(GRACE_MS)));
+        EventDecoder decoder = new EventDecoder(new EventSchemaRegistry(Collections.emptyList()));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "sessionizer-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "unused:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(Sessionizer.buildTopology(config, decoder), props);
+        events = driver.createInputTopic(config.getInputTopic(), new StringSerializer(), new ByteArraySerializer());
+        sessions = driver.createOutputTopic(config.getOutputTopic(), new StringDeserializer(),
+                new JsonSerde<>(SessionSummary.class).deserializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void sessionIsEmittedOnceWhenStreamTimePassesGapAndGrace() {
+        send("u:7", 0, "CUISINE_SELECTED", "\"cuisineType\":\"Thai\"");
+        send("u:7", 10_000, "RESTAURANT_VIEWED", "\"restaurantName\":\"Baan\"");
+        send("u:7", 20_000, "RESTAURANT_VIEWED", "\"restaurantName\":\"Baan\"");
+        // Another user's event moves stream time, but not past the session's close
+        send("u:8", 20_000 + GAP_MS + GRACE_MS - 1, "SEARCH_PERFORMED", "\"query\":\"pho\"");
+        assertTrue(sessions.isEmpty());
+
+        send("u:8", 20_000 + GAP_MS + GRACE_MS, "SEARCH_PERFORMED", "\"query\":\"pho\"");
+
+        List<KeyValue<String, SessionSummary>> emitted = sessions.readKeyValuesToList();
+        assertEquals(1, emitted.size());
+        SessionSummary summary = emitted.get(0).value;
+        assertEquals("u:7", emitted.get(0).key);
+        assertEquals("u:7", summary.getKey());
+        assertEquals(7L, summary.getUserId());
+        assertEquals(3, summary.getEventCount());
+        assertEquals(BASE, summary.getStart());
+        assertEquals(BASE + 20_000, summary.getEnd());
+        assertEquals(Map.of("CUISINE_SELECTED", 1, "RESTAURANT_VIEWED", 2), summary.getEventCounts());
+        assertEquals(List.of("Thai"), summary.getCuisines());
+        assertEquals(List.of("Baan"), summary.getRestaurantsViewed());
+    }
+
+    @Test
+    void lateEventBridgingTwoSessionsMergesThem() {
+        send("u:7", 0, "RESTAURANT_VIEWED", "\"restaurantName\":\"Baan\"");
+        send("u:7", 90_000, "RESTAURANT_VIEWED", "\"restaurantName\":\"Zeta\"");
+        // Out of order, but within grace: within the gap of both neighbours
+        send("u:7", 45_000, "RESTAURANT_BOOKMARKED", "\"restaurantName\":\"Baan\"");
+
+        send("u:9", 90_000 + GAP_MS + GRACE_MS, "SEARCH_PERFORMED", "\"query\":\"pho\"");
+
+        List<SessionSummary> emitted = sessions.readValuesToList();
+        assertEquals(1, emitted.size());
+        SessionSummary summary = emitted.get(0);
+        assertEquals(3, summary.getEventCount());
+        assertEquals(BASE, summary.getStart());
+        assertEquals(BASE + 90_000, summary.getEnd());
+        assertEquals(List.of("Baan", "Zeta"), summary.getRestaurantsViewed());
+        assertEquals(List.of("Baan"), summary.getRestaurantsBookmarked());
+    }
+
+    @Test
+    void anonymousSessionsAreKeptApartFromLoggedInOnes() {
+        send("s:tab-1", 0, "RESTAURANT_VIEWED", "\"restaurantName\":\"Baan\",\"sessionId\":\"tab-1\"");
+        send("u:7", 5_000, "RESTAURANT_VIEWED", "\"restaurantName\":\"Zeta\"");
+
+        send("u:9", 5_000 + GAP_MS + GRACE_MS, "SEARCH_PERFORMED", "\"query\":\"pho\"");
+
+        Map<String, SessionSummary> emitted = sessions.readKeyValuesToMap();
+        assertEquals(2, emitted.size());
+        assertNull(emitted.get("s:tab-1").getUserId());
+        assertEquals("tab-1", emitted.get("s:tab-1").getSessionId());
+        assertEquals(List.of("Baan"), emitted.get("s:tab-1").getRestaurantsViewed());
+        assertEquals(List.of("Zeta"), emitted.get("u:7").getRestaurantsViewed());
+    }
+
+    @Test
+    void unkeyedAndUnreadableRecordsAreSkippedWithoutStoppingTheStream() {
+        events.pipeInput("restaurant-12", json(7L, "RESTAURANT_VIEWED", "\"restaurantName\":\"Baan\""), at(0));
+        events.pipeInput(null, json(7L, "RESTAURANT_VIEWED", "\"restaurantName\":\"Baan\""), at(0));
+        events.pipeInput("u:7", "not json".getBytes(StandardCharsets.UTF_8), at(0));
+        events.pipeInput("u:7", null, at(0));
+        send("u:7", 1_000, "RESTAURANT_VIEWED", "\"restaurantName\":\"Zeta\"");
+
+        send("u:9", 1_000 + GAP_MS + GRACE_MS, "SEARCH_PERFORMED", "\"query\":\"pho\"");
+
+        List<SessionSummary> emitted = sessions.readValuesToList();
+        assertEquals(1, emitted.size());
+        assertEquals(1, emitted.get(0).getEventCount());
+        assertEquals(List.of("Zeta"), emitted.get(0).getRestaurantsViewed());
+    }
+
+    @Test
+    void sessionBoundsAreTheWindowsNotTheClientClock() {
+        // The client's clock is an hour behind, but the gap is measured in record time
+        String clientTime = Instant.ofEpochMilli(BASE - 3_600_000).toString();
+        events.pipeInput("u:7", ("{\"eventType\":\"RESTAURANT_VIEWED\",\"userId\":7,\"timestamp\":\""
+                + clientTime + "\",\"data\":{\"restaurantName\":\"Baan\"}}").getBytes(StandardCharsets.UTF_8), at(0));
+        send("u:7", 30_000, "RESTAURANT_VIEWED", "\"restaurantName\":\"Zeta\"");
+
+        send("u:9", 30_000 + GAP_MS + GRACE_MS, "SEARCH_PERFORMED", "\"query\":\"pho\"");
+
+        SessionSummary summary = sessions.readKeyValuesToMap().get("u:7");
+        assertEquals(BASE, summary.getStart());
+        assertEquals(BASE + 30_000, summary.getEnd());
+        assertEquals(30, summary.getDurationSeconds());
+    }
+
+    private void send(String key, long timestamp, String eventType, String data) {
+        Long userId = key.startsWith("u:") ? Long.valueOf(key.substring(2)) : null;
+        events.pipeInput(key, json(userId, eventType, data), at(timestamp));
+    }
+
+    // No timestamp in the body, so the decoder falls back to the record time
+    private static byte[] json(Long userId, String eventType, String data) {
+        return ("{\"eventType\":\"" + eventType + "\",\"userId\":" + userId + ",\"data\":{" + data + "}}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Instant at(long offset) {
+        return Instant.ofEpochMilli(BASE + offset);
+    }
+}
@@ -7,6 +7,60 @@ import axios from 'axios';
 // Base endpoint for our event API - make sure to use the API_URL variable
 const API_URL = process.env.REACT_APP_API_URL || 'http://localhost:5000/api';
 
+// The same action repeated within this long (a double-click, or a handler
+// firing twice) is sent with the first one's eventId, so the API drops it
+const REPEAT_WINDOW_MS = 2000;
+
+// Event key -> { id, at } of actions tracked in the last REPEAT_WINDOW_MS
+const recentActions = new Map();
+
+const randomId = () => (window.crypto && window.crypto.randomUUID
+  ? window.crypto.randomUUID()
+  : `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`);
+
+/**
+ * Id for this browser tab, kept in sessionStorage. Lets the API key and
+ * sessionize events from users who are not logged in.
+ */
+const getSessionId = () => {
+  try {
+    let sessionId = sessionStorage.getItem('savoraSessionId');
+    if (!sessionId) {
+      sessionId = randomId();
+      sessionStorage.setItem('savoraSessionId', sessionId);
+    }
+    return sessionId;
+  } catch (e) {
+    return undefined;
+  }
+};
+
+/**
+ * eventId for one logical action: new for a new action, the earlier id for
+ * a repeat of one tracked less than REPEAT_WINDOW_MS ago
+ */
+const getActionId = (eventType, eventData, userId) => {
+  const now = Date.now();
+  recentActions.forEach((action, key) => {
+    if (now - action.at >= REPEAT_WINDOW_MS) {
+      recentActions.delete(key);
+    }
+  });
+  let key;
+  try {
+    key = JSON.stringify([eventType, userId, eventData]);
+  } catch (e) {
+    return randomId();
+  }
+  const recent = recentActions.get(key);
+  if (recent) {
+    return recent.id;
+  }
+  const id = randomId();
+  recentActions.set(key, { id, at: now });
+  return id;
+};
+
 /**
  * Track a user event
  * @param {string} eventType - Type of event from EventTypes
@@ -23,12 +77,15 @@ export const trackEvent = async (eventType, eventData = {}) => {
       console.error('Error getting user from localStorage:', e);
     }
     
-    // Create event with timestamp, type, data, and userId
+    // Create event with timestamp, type, data, and userId; the eventId lets
+    // the API drop the event if a retry or a double-click delivers it twice
     const event = {
+      eventId: getActionId(eventType, eventData, userId),
       eventType,
       timestamp: new Date().toISOString(),
       data: eventData,
-      userId // Include userId in the event
+      userId, // Include userId in the event
+      sessionId: getSessionId()
     };
     
     console.log(`Tracking event: ${eventType}`, event);
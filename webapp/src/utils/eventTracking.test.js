@@ -0,0 +1,37 @@
+import axios from 'axios';
+import { trackEvent, EventTypes } from './eventTracking';
+
+// A factory, so jest never loads axios's ES module build
+jest.mock('axios', () => ({ post: jest.fn() }));
+
+const sentEventIds = () => axios.post.mock.calls.map(([, event]) => event.eventId);
+
+beforeEach(() => {
+  jest.useFakeTimers();
+  axios.post.mockReset();
+  axios.post.mockResolvedValue({});
+});
+
+afterEach(() => {
+  jest.useRealTimers();
+});
+
+test('a double-click sends the same eventId twice, so the API keeps one', async () => {
+  await trackEvent(EventTypes.RESTAURANT_BOOKMARKED, { restaurantId: 12 });
+  jest.advanceTimersByTime(300);
+  await trackEvent(EventTypes.RESTAURANT_BOOKMARKED, { restaurantId: 12 });
+
+  const [first, second] = sentEventIds();
+  expect(first).toBeTruthy();
+  expect(second).toBe(first);
+});
+
+test('different actions, or the same one later, get their own eventId', async () => {
+  await trackEvent(EventTypes.RESTAURANT_VIEWED, { restaurantId: 1 });
+  await trackEvent(EventTypes.RESTAURANT_VIEWED, { restaurantId: 2 });
+  jest.advanceTimersByTime(5000);
+  await trackEvent(EventTypes.RESTAURANT_VIEWED, { restaurantId: 1 });
+
+  const ids = sentEventIds();
+  expect(new Set(ids).size).toBe(3);
+});